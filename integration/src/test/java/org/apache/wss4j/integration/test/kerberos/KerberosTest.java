@@ -25,9 +25,11 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.crypto.SecretKey;
+import javax.security.auth.Subject;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.PasswordCallback;
@@ -44,6 +46,7 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.apache.kerby.kerberos.kerb.server.SimpleKdcServer;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosClientSubjectCache;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.common.spnego.SpnegoTokenContext;
 import org.apache.wss4j.common.token.BinarySecurity;
@@ -80,8 +83,11 @@ import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -125,9 +131,11 @@ public class KerberosTest {
         // Create principals
         String alice = "alice@service.ws.apache.org";
         String bob = "bob/service.ws.apache.org@service.ws.apache.org";
+        String carol = "carol/service.ws.apache.org@service.ws.apache.org";
 
         kerbyServer.createPrincipal(alice, "alice");
         kerbyServer.createPrincipal(bob, "bob");
+        kerbyServer.createPrincipal(carol, "carol");
 
         kerbyServer.start();
 
@@ -215,6 +223,80 @@ public class KerberosTest {
         assertTrue(principal.getName().contains("alice"));
     }
 
+    /**
+     * Test retrieving several service tickets using a KerberosClientSubjectCache, so that the
+     * JAAS login (and TGT) is reused. The cached Subject holds a service ticket for each of the two
+     * services that are called in turn, and each token must still be a fresh, valid AP-REQ for the
+     * requested service, using the session key of that service's ticket.
+     */
+    @Test
+    public void testKerberosClientSubjectCache() throws Exception {
+        if (!runTests) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        CallbackHandler callbackHandler = new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                PasswordCallback passwordCallback = (PasswordCallback)callbacks[0];
+                if (passwordCallback.getPrompt().contains("alice")) {
+                    passwordCallback.setPassword("alice".toCharArray());
+                } else if (passwordCallback.getPrompt().contains("bob")) {
+                    passwordCallback.setPassword("bob".toCharArray());
+                } else if (passwordCallback.getPrompt().contains("carol")) {
+                    passwordCallback.setPassword("carol".toCharArray());
+                }
+            }
+        };
+        KerberosClientSubjectCache subjectCache = new KerberosClientSubjectCache();
+
+        String[] services = {"bob", "carol"};
+        WSSecurityEngine[] secEngines = new WSSecurityEngine[services.length];
+        for (int i = 0; i < services.length; i++) {
+            WSSConfig wssConfig = WSSConfig.getNewInstance();
+            KerberosTokenValidator validator = new KerberosTokenValidator();
+            validator.setContextName(services[i]);
+            validator.setServiceName(services[i] + "@service.ws.apache.org");
+            wssConfig.setValidator(WSConstants.BINARY_TOKEN, validator);
+            secEngines[i] = new WSSecurityEngine();
+            secEngines[i].setWssConfig(wssConfig);
+        }
+
+        byte[] previousToken = null;
+        for (int i = 0; i < 4; i++) {
+            int service = i % services.length;
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            KerberosSecurity bst = new KerberosSecurity(doc);
+            bst.setKerberosClientSubjectCache(subjectCache);
+            bst.retrieveServiceTicket("alice", callbackHandler, services[service] + "@service.ws.apache.org");
+            WSSecurityUtil.prependChildElement(secHeader.getSecurityHeaderElement(), bst.getElement());
+            assertNotNull(bst.getSecretKey());
+            assertFalse(Arrays.equals(previousToken, bst.getToken()));
+            previousToken = bst.getToken();
+
+            WSHandlerResult results =
+                secEngines[service].processSecurityHeader(doc, null, callbackHandler, null);
+            WSSecurityEngineResult actionResult =
+                results.getActionResults().get(WSConstants.BST).get(0);
+            Principal principal = (Principal)actionResult.get(WSSecurityEngineResult.TAG_PRINCIPAL);
+            assertTrue(principal.getName().contains("alice"));
+            // The client and the service must agree on the session key
+            assertArrayEquals(bst.getSecretKey().getEncoded(),
+                              (byte[])actionResult.get(WSSecurityEngineResult.TAG_SECRET));
+        }
+
+        Subject subject = subjectCache.getSubject("alice", callbackHandler);
+        assertSame(subject, subjectCache.getSubject("alice", callbackHandler));
+        assertNotNull(KerberosClientSubjectCache.getTGT(subject));
+        for (String service : services) {
+            assertNotNull(KerberosClientSubjectCache.getServiceTicket(subject, service + "@service.ws.apache.org", false));
+        }
+    }
+
     /**
      * Get and validate a SPNEGO token.
      */
@@ -445,6 +445,16 @@ public class ConfigurationConstants {
      */
     public static final String ENABLE_REVOCATION = "enableRevocation";
 
+    /**
+     * This parameter sets whether the Crypto instances loaded by a WSHandler are held in the
+     * CryptoRegistry that is shared by the whole JVM (see CryptoFactory#getCryptoRegistry), rather
+     * than in a registry of the handler. A shared Crypto is keyed only by its properties file name
+     * or Properties, so only enable this when every handler in the JVM loads a given properties
+     * file in the same way (classloader, PasswordEncryptor, loadCryptoFromPropertiesFile). The
+     * default is "false".
+     */
+    public static final String SHARED_CRYPTO_REGISTRY = "sharedCryptoRegistry";
+
     /**
      * This parameter sets whether to use a single certificate or a whole certificate
      * chain when constructing a BinarySecurityToken used for direct reference in
@@ -480,6 +490,16 @@ public class ConfigurationConstants {
      */
     public static final String REQUIRE_TIMESTAMP_EXPIRES = "requireTimestampExpires";
 
+    /**
+     * Set the value of this parameter to true to perform the cheap checks of security header
+     * processing over the whole security header before any of it is processed. A message with an
+     * expired Timestamp or UsernameToken, a replayed UsernameToken nonce, multiple Timestamps, or
+     * Signature/EncryptedKey algorithms that don't match the AlgorithmSuite is then rejected
+     * before any private key or signature operation is performed for it. The security header is
+     * still processed in document order. This only applies to the DOM code. The default is "false".
+     */
+    public static final String PRE_VALIDATE_SECURITY_HEADER = "preValidateSecurityHeader";
+
     /**
      * Defines whether to encrypt the symmetric encryption key or not. If true
      * (the default), the symmetric key used for encryption is encrypted in turn,
@@ -924,6 +944,72 @@ public class ConfigurationConstants {
      */
     public static final String SAML_ONE_TIME_USE_CACHE_INSTANCE = "samlOneTimeUseCacheInstance";
 
+    /**
+     * This holds a reference to an EncryptedKeyCache instance used to cache the unwrapped session
+     * keys of received EncryptedKeys, keyed by their EncryptedKeySHA1 identifier. A cached key is
+     * reused for subsequent messages that carry the same EncryptedKey, or that reference it via an
+     * EncryptedKeySHA1 KeyIdentifier, instead of performing the private key operation or invoking
+     * the CallbackHandler. There is no default, i.e. the cache is disabled unless an instance
+     * (e.g. MemoryEncryptedKeyCache) is configured.
+     */
+    public static final String ENCRYPTED_KEY_CACHE_INSTANCE = "encryptedKeyCacheInstance";
+
+    /**
+     * This holds a reference to a SecurityContextTokenStore instance used to store the secrets of
+     * WS-SecureConversation security contexts. The store is consulted before the CallbackHandler is
+     * invoked to retrieve the secret of a SecurityContextToken, and is populated with the secret it
+     * returns. There is no default, i.e. the CallbackHandler is invoked for every message unless an
+     * instance (e.g. MemorySecurityContextTokenStore) is configured.
+     */
+    public static final String SECURITY_CONTEXT_TOKEN_STORE_INSTANCE = "securityContextTokenStoreInstance";
+
+    /**
+     * This holds a reference to a DerivedKeyCache instance used to cache keys derived from a
+     * DerivedKeyToken or from a received UsernameToken, keyed by the derivation parameters. There is
+     * no default, i.e. the key is derived for every token unless an instance (e.g. MemoryDerivedKeyCache)
+     * is configured.
+     */
+    public static final String DERIVED_KEY_CACHE_INSTANCE = "derivedKeyCacheInstance";
+
+    /**
+     * This holds a reference to a KerberosClientSubjectCache instance used by a client to cache
+     * the Subject obtained from the JAAS login, so that the TGT and service tickets are reused for
+     * outbound Kerberos tokens until they are about to expire. There is no default, i.e. a JAAS
+     * login is performed for every outbound Kerberos token unless an instance is configured. The
+     * DOM WSHandler makes the instance available via RequestData#getKerberosClientSubjectCache, for
+     * the code that creates the KerberosSecurity token.
+     */
+    public static final String KERBEROS_CLIENT_SUBJECT_CACHE_INSTANCE = "kerberosClientSubjectCacheInstance";
+
+    /**
+     * This holds a reference to a VerifiedSamlAssertionCache instance used to remember signed SAML
+     * Assertions whose signature has been successfully verified, until the NotOnOrAfter time of the
+     * Assertion. The signature of the same Assertion received on subsequent messages is then not
+     * verified again, although trust in the signing credential, its Conditions and its Subject
+     * Confirmation are still checked.
+     * There is no default, i.e. the signature of every Assertion is verified unless an instance
+     * (e.g. MemoryVerifiedSamlAssertionCache) is configured.
+     */
+    public static final String VERIFIED_SAML_ASSERTION_CACHE_INSTANCE = "verifiedSamlAssertionCacheInstance";
+
+    /**
+     * This holds a reference to an OutboundSamlAssertionCache instance used to reuse signed SAML
+     * Assertions created by the SAML CallbackHandler on the outbound side. A signed sender-vouches or
+     * bearer Assertion created from identical callback content is then sent on subsequent messages,
+     * rather than being built and signed for every message, until only a fraction of its validity
+     * period remains. There is no default, i.e. a new Assertion is created for every message unless
+     * an instance (e.g. MemoryOutboundSamlAssertionCache) is configured.
+     */
+    public static final String OUTBOUND_SAML_ASSERTION_CACHE_INSTANCE = "outboundSamlAssertionCacheInstance";
+
+    /**
+     * This holds a reference to a SecurityMetrics instance, to which the time spent processing
+     * the security header, its individual tokens, trust verification, decryption and replay cache
+     * lookups is reported. There is no default, i.e. no measurements are taken unless an instance
+     * (e.g. MemorySecurityMetrics) is configured.
+     */
+    public static final String SECURITY_METRICS_INSTANCE = "securityMetricsInstance";
+
     /**
      * This holds a reference to a PasswordEncryptor instance, which is used to encrypt or
      * decrypt passwords in the Merlin Crypto implementation (or any custom Crypto implementations).
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, in-memory store of secret key bytes. Entries are evicted in least-recently-used order
+ * once the maximum number of entries is reached, and are never returned after their expiry. Secret
+ * keys are copied on the way in and on the way out, and are zeroed when the cache is closed.
+ */
+abstract class AbstractMemorySecretCache implements Closeable {
+
+    private final Map<String, CacheEntry> cache;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long ttl;
+    private final long maxTTL;
+
+    /**
+     * @param maxEntries The maximum number of secret keys to hold
+     * @param ttl The default time in seconds that a secret key is cached for
+     * @param maxTTL The maximum time in seconds that a secret key can be cached for
+     */
+    AbstractMemorySecretCache(final int maxEntries, long ttl, long maxTTL) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maxEntries parameter must be greater than 0");
+        }
+        if (ttl < 1 || ttl > maxTTL) {
+            throw new IllegalArgumentException("The ttl parameter must be between 1 and " + maxTTL + " (seconds)");
+        }
+        this.ttl = ttl;
+        this.maxTTL = maxTTL;
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public void add(String identifier, byte[] secretKey) {
+        add(identifier, secretKey, Instant.now().plusSeconds(ttl));
+    }
+
+    public void add(String identifier, byte[] secretKey, Instant expiry) {
+        if (identifier == null || identifier.length() == 0 || secretKey == null || secretKey.length == 0) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(now.plusSeconds(maxTTL))) {
+            expiry = now.plusSeconds(ttl);
+        }
+
+        CacheEntry entry = new CacheEntry(secretKey.clone(), expiry);
+        lock.lock();
+        try {
+            cache.put(identifier, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public byte[] get(String identifier) {
+        if (identifier == null || identifier.length() == 0) {
+            return null;
+        }
+
+        CacheEntry entry;
+        lock.lock();
+        try {
+            entry = cache.get(identifier);
+            if (entry != null && entry.expiry.isBefore(Instant.now())) {
+                cache.remove(identifier);
+                entry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return entry != null ? entry.secretKey.clone() : null;
+    }
+
+    public void remove(String identifier) {
+        if (identifier == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            CacheEntry entry = cache.remove(identifier);
+            if (entry != null) {
+                Arrays.fill(entry.secretKey, (byte) 0);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            for (CacheEntry entry : cache.values()) {
+                Arrays.fill(entry.secretKey, (byte) 0);
+            }
+            cache.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class CacheEntry {
+        private final byte[] secretKey;
+        private final Instant expiry;
+
+        CacheEntry(byte[] secretKey, Instant expiry) {
+            this.secretKey = secretKey;
+            this.expiry = expiry;
+        }
+    }
+}
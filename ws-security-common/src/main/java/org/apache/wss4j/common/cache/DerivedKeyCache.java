@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.time.Instant;
+
+/**
+ * A cache of derived keys. Entries are keyed by an identifier computed from the derivation
+ * parameters (algorithm, secret, label, nonce, offset and length), see
+ * {@link org.apache.wss4j.common.derivedKey.DerivedKeyUtils#getDerivedKeyIdentifier}, so that a
+ * DerivedKeyToken that is referenced repeatedly within a security context is only derived once.
+ */
+public interface DerivedKeyCache extends Closeable {
+
+    /**
+     * Add the given derived key to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier of the derivation parameters
+     * @param derivedKey The derived key bytes
+     */
+    void add(String identifier, byte[] derivedKey);
+
+    /**
+     * Add the given derived key to the cache to be cached for the given time
+     * @param identifier The identifier of the derivation parameters
+     * @param derivedKey The derived key bytes
+     * @param expiry A custom expiry time for the derived key
+     */
+    void add(String identifier, byte[] derivedKey, Instant expiry);
+
+    /**
+     * Return the derived key stored for the given identifier, or null if there is no
+     * (unexpired) entry for it
+     * @param identifier The identifier of the derivation parameters
+     */
+    byte[] get(String identifier);
+
+}
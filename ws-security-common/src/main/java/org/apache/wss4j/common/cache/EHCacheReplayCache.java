@@ -22,6 +22,11 @@ package org.apache.wss4j.common.cache;
 import java.io.File;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.ehcache.Cache;
@@ -139,6 +144,56 @@ public class EHCacheReplayCache implements ReplayCache {
         return element != null;
     }
 
+    /**
+     * Return those of the given identifiers that are contained in the cache
+     * @param identifiers The identifiers to check
+     */
+    @Override
+    public Set<String> getContained(Collection<String> identifiers) {
+        Set<String> contained = new HashSet<>();
+        for (Map.Entry<String, EHCacheValue> entry : cache.getAll(new HashSet<>(identifiers)).entrySet()) {
+            if (entry.getValue() != null) {
+                contained.add(entry.getKey());
+            }
+        }
+        return contained;
+    }
+
+    /**
+     * Add all of the given identifiers to the cache
+     * @param identifiers The identifiers to be added, mapped to a custom expiry time (or null)
+     */
+    @Override
+    public void addAll(Map<String, Instant> identifiers) {
+        Map<String, EHCacheValue> values = new HashMap<>();
+        for (Map.Entry<String, Instant> entry : identifiers.entrySet()) {
+            String identifier = entry.getKey();
+            if (identifier != null && identifier.length() != 0) {
+                values.put(identifier, new EHCacheValue(identifier, entry.getValue()));
+            }
+        }
+        cache.putAll(values);
+    }
+
+    /**
+     * Add those of the given identifiers that are not contained in the cache, and return those
+     * that are. Each identifier is added with Cache.putIfAbsent, so this is atomic per identifier.
+     * @param identifiers The identifiers to be added, mapped to a custom expiry time (or null)
+     * @return the identifiers that were already contained in the cache
+     */
+    @Override
+    public Set<String> addAllIfAbsent(Map<String, Instant> identifiers) {
+        Set<String> contained = new HashSet<>();
+        for (Map.Entry<String, Instant> entry : identifiers.entrySet()) {
+            String identifier = entry.getKey();
+            if (identifier != null && identifier.length() != 0
+                && cache.putIfAbsent(identifier, new EHCacheValue(identifier, entry.getValue())) != null) {
+                contained.add(identifier);
+            }
+        }
+        return contained;
+    }
+
     // Only exposed for testing
     EHCacheValue get(String identifier) {
         return cache.get(identifier);
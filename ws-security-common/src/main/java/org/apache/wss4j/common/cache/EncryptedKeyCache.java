@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.time.Instant;
+
+/**
+ * A cache of unwrapped (decrypted) EncryptedKey session keys. Entries are keyed by the
+ * EncryptedKeySHA1 identifier of the EncryptedKey, i.e. the Base64 encoded SHA-1 digest of the
+ * octets of the xenc:CipherValue. A hit allows an EncryptedKey that is reused across messages,
+ * or referenced via an EncryptedKeySHA1 KeyIdentifier, to be resolved without a private key
+ * operation or a CallbackHandler round trip. A session key that is wrapped with a key agreement
+ * (xenc:AgreementMethod) is instead keyed by a digest that also covers the key wrap algorithm and
+ * the AgreementMethod, as the CipherValue alone doesn't identify the key encryption key.
+ */
+public interface EncryptedKeyCache extends Closeable {
+
+    /**
+     * Add the given secret key to the cache. It will be cached for a default amount of time.
+     * @param identifier The EncryptedKeySHA1 identifier of the EncryptedKey
+     * @param secretKey The unwrapped secret key bytes
+     */
+    void add(String identifier, byte[] secretKey);
+
+    /**
+     * Add the given secret key to the cache to be cached for the given time
+     * @param identifier The EncryptedKeySHA1 identifier of the EncryptedKey
+     * @param secretKey The unwrapped secret key bytes
+     * @param expiry A custom expiry time for the secret key
+     */
+    void add(String identifier, byte[] secretKey, Instant expiry);
+
+    /**
+     * Return the secret key stored for the given identifier, or null if there is no
+     * (unexpired) entry for it
+     * @param identifier The EncryptedKeySHA1 identifier of the EncryptedKey
+     */
+    byte[] get(String identifier);
+
+}
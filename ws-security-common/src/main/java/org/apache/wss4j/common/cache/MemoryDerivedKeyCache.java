@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+/**
+ * A simple bounded, in-memory DerivedKeyCache. Entries are evicted in least-recently-used order
+ * once the maximum number of entries is reached, and are never returned after their expiry. The
+ * default TTL is 5 minutes and the max TTL is 60 minutes.
+ */
+public class MemoryDerivedKeyCache extends AbstractMemorySecretCache implements DerivedKeyCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    public MemoryDerivedKeyCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxEntries The maximum number of derived keys to hold
+     * @param ttl The default time in seconds that a derived key is cached for
+     */
+    public MemoryDerivedKeyCache(int maxEntries, long ttl) {
+        super(maxEntries, ttl, MAX_TTL);
+    }
+
+}
@@ -0,0 +1,298 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.saml.bean.SubjectBean;
+import org.apache.wss4j.common.util.DOM2Writer;
+import org.apache.xml.security.parser.XMLParserException;
+import org.apache.xml.security.utils.XMLUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * A simple bounded, in-memory OutboundSamlAssertionCache. Only signed sender-vouches and bearer
+ * Assertions without a Subject KeyInfo or a OneTimeUse Condition are reused. They are cached under
+ * the complete content of the SAMLCallback (Subject, Issuer, Conditions including the
+ * AudienceRestrictions, statements and signing parameters), so a callback that sets e.g. an explicit
+ * NotOnOrAfter or AuthenticationInstant for every message simply gets a new Assertion every time.
+ *
+ * The signed Assertion is serialized once and parsed again for every message that reuses it. It is
+ * reused until less than the "renewal fraction" of its validity period remains. Once less than
+ * twice that fraction remains, a single replacement is issued in the background, while other
+ * messages keep on using the current Assertion. Entries are evicted in least-recently-used order
+ * once the maximum number of entries is reached.
+ *
+ * Replacements are issued on a given Executor, or else on a single daemon thread that is owned by
+ * this cache and is shut down when the cache is closed.
+ */
+public class MemoryOutboundSamlAssertionCache implements OutboundSamlAssertionCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+    public static final double DEFAULT_RENEWAL_FRACTION = 0.2;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(MemoryOutboundSamlAssertionCache.class);
+
+    private final Map<List<Object>, CachedAssertion> cache;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final double renewalFraction;
+    private final Executor preIssueExecutor;
+    private final ExecutorService ownedExecutor;
+
+    public MemoryOutboundSamlAssertionCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_RENEWAL_FRACTION);
+    }
+
+    /**
+     * @param maxEntries The maximum number of signed Assertions to hold
+     * @param renewalFraction The fraction (between 0 and 0.5) of the validity period of an Assertion
+     * that must remain for it to be reused
+     */
+    public MemoryOutboundSamlAssertionCache(final int maxEntries, double renewalFraction) {
+        this(maxEntries, renewalFraction, null);
+    }
+
+    /**
+     * @param maxEntries The maximum number of signed Assertions to hold
+     * @param renewalFraction The fraction (between 0 and 0.5) of the validity period of an Assertion
+     * that must remain for it to be reused
+     * @param preIssueExecutor The Executor used to issue replacement Assertions in the background. It
+     * is not shut down when this cache is closed. If null, the cache uses a single thread of its own.
+     */
+    public MemoryOutboundSamlAssertionCache(
+        final int maxEntries, double renewalFraction, Executor preIssueExecutor
+    ) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maxEntries parameter must be greater than 0");
+        }
+        if (!(renewalFraction > 0.0 && renewalFraction <= 0.5)) {
+            throw new IllegalArgumentException("The renewalFraction parameter must be greater than 0 and at most 0.5");
+        }
+        this.renewalFraction = renewalFraction;
+        if (preIssueExecutor != null) {
+            this.preIssueExecutor = preIssueExecutor;
+            this.ownedExecutor = null;
+        } else {
+            this.ownedExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "wss4j-saml-pre-issue");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.preIssueExecutor = ownedExecutor;
+        }
+        this.cache = new LinkedHashMap<List<Object>, CachedAssertion>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedAssertion> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public SamlAssertionWrapper getAssertion(SAMLCallback samlCallback) throws WSSecurityException {
+        if (!isReusable(samlCallback)) {
+            SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+            if (samlCallback.isSignAssertion()) {
+                signAssertion(samlAssertion, samlCallback);
+            }
+            return samlAssertion;
+        }
+
+        List<Object> key = createKey(samlCallback);
+        CachedAssertion cachedAssertion;
+        lock.lock();
+        try {
+            cachedAssertion = cache.get(key);
+        } finally {
+            lock.unlock();
+        }
+
+        Instant now = Instant.now();
+        if (cachedAssertion != null && now.isBefore(cachedAssertion.reuseUntil)) {
+            if (!now.isBefore(cachedAssertion.renewAfter)
+                && cachedAssertion.renewing.compareAndSet(false, true)) {
+                preIssue(key, samlCallback, cachedAssertion);
+            }
+            return cachedAssertion.toAssertion();
+        }
+
+        return issue(key, samlCallback);
+    }
+
+    private void preIssue(List<Object> key, SAMLCallback samlCallback, CachedAssertion cachedAssertion) {
+        try {
+            preIssueExecutor.execute(() -> {
+                try {
+                    issue(key, samlCallback);
+                } catch (WSSecurityException ex) {
+                    LOG.debug("Error issuing a replacement SAML Assertion: {}", ex.getMessage(), ex);
+                    cachedAssertion.renewing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            cachedAssertion.renewing.set(false);
+        }
+    }
+
+    /**
+     * Build and sign a new Assertion, and cache it if its validity period allows it to be reused
+     */
+    private SamlAssertionWrapper issue(List<Object> key, SAMLCallback samlCallback) throws WSSecurityException {
+        SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+        signAssertion(samlAssertion, samlCallback);
+        Instant issued = Instant.now();
+
+        // Marshalling the Assertion creates the signature. Wrap the signed Element so that it is
+        // imported into the message rather than being marshalled and signed again.
+        Element assertionElement = samlAssertion.toDOM(null);
+        SamlAssertionWrapper signedAssertion = new SamlAssertionWrapper(assertionElement);
+
+        Instant notOnOrAfter = signedAssertion.getNotOnOrAfter();
+        if (notOnOrAfter != null && notOnOrAfter.isAfter(issued)) {
+            Duration validity = Duration.between(issued, notOnOrAfter);
+            Instant reuseUntil = notOnOrAfter.minusMillis((long)(validity.toMillis() * renewalFraction));
+            Instant renewAfter = notOnOrAfter.minusMillis((long)(validity.toMillis() * 2 * renewalFraction));
+            if (reuseUntil.isAfter(issued)) {
+                byte[] serializedAssertion =
+                    DOM2Writer.nodeToString(assertionElement).getBytes(StandardCharsets.UTF_8);
+                lock.lock();
+                try {
+                    cache.put(key, new CachedAssertion(serializedAssertion, renewAfter, reuseUntil));
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        return signedAssertion;
+    }
+
+    private static void signAssertion(
+        SamlAssertionWrapper samlAssertion, SAMLCallback samlCallback
+    ) throws WSSecurityException {
+        samlAssertion.signAssertion(
+            samlCallback.getIssuerKeyName(),
+            samlCallback.getIssuerKeyPassword(),
+            samlCallback.getIssuerCrypto(),
+            samlCallback.isSendKeyValue(),
+            samlCallback.getCanonicalizationAlgorithm(),
+            samlCallback.getSignatureAlgorithm(),
+            samlCallback.getSignatureDigestAlgorithm()
+        );
+    }
+
+    /**
+     * Only a signed sender-vouches or bearer Assertion, that does not carry key material of the
+     * Subject and may be used more than once, is reused.
+     */
+    private static boolean isReusable(SAMLCallback samlCallback) {
+        if (!samlCallback.isSignAssertion() || samlCallback.getAssertionElement() != null) {
+            return false;
+        }
+        SubjectBean subject = samlCallback.getSubject();
+        if (subject == null || subject.getKeyInfo() != null) {
+            return false;
+        }
+        String confirmationMethod = subject.getSubjectConfirmationMethod();
+        if (confirmationMethod != null && !OpenSAMLUtil.isMethodSenderVouches(confirmationMethod)
+            && !OpenSAMLUtil.isMethodBearer(confirmationMethod)) {
+            return false;
+        }
+        return samlCallback.getConditions() == null || !samlCallback.getConditions().isOneTimeUse();
+    }
+
+    private static List<Object> createKey(SAMLCallback samlCallback) {
+        return Arrays.asList(
+            samlCallback.getSamlVersion(),
+            samlCallback.getSubject(),
+            samlCallback.getIssuer(),
+            samlCallback.getIssuerFormat(),
+            samlCallback.getIssuerQualifier(),
+            samlCallback.getConditions(),
+            samlCallback.getAdvice(),
+            samlCallback.getAuthenticationStatementData(),
+            samlCallback.getAttributeStatementData(),
+            samlCallback.getAuthDecisionStatementData(),
+            samlCallback.getIssuerCrypto(),
+            samlCallback.getIssuerKeyName(),
+            samlCallback.isSendKeyValue(),
+            samlCallback.getCanonicalizationAlgorithm(),
+            samlCallback.getSignatureAlgorithm(),
+            samlCallback.getSignatureDigestAlgorithm()
+        );
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+        lock.lock();
+        try {
+            cache.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class CachedAssertion {
+        private final byte[] serializedAssertion;
+        private final Instant renewAfter;
+        private final Instant reuseUntil;
+        private final AtomicBoolean renewing = new AtomicBoolean();
+
+        CachedAssertion(byte[] serializedAssertion, Instant renewAfter, Instant reuseUntil) {
+            this.serializedAssertion = serializedAssertion;
+            this.renewAfter = renewAfter;
+            this.reuseUntil = reuseUntil;
+        }
+
+        SamlAssertionWrapper toAssertion() throws WSSecurityException {
+            try {
+                Document doc = XMLUtils.read(new ByteArrayInputStream(serializedAssertion), true);
+                return new SamlAssertionWrapper(doc.getDocumentElement());
+            } catch (XMLParserException ex) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+            }
+        }
+    }
+}
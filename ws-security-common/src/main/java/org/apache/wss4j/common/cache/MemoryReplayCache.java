@@ -22,14 +22,16 @@ package org.apache.wss4j.common.cache;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A simple in-memory HashSet based cache to prevent against replay attacks. The default TTL is 5 minutes
@@ -40,7 +42,8 @@ public class MemoryReplayCache implements ReplayCache {
     public static final long DEFAULT_TTL = 60L * 5L;
     public static final long MAX_TTL = DEFAULT_TTL * 12L;
     private final SortedMap<Instant, List<String>> cache = new TreeMap<>();
-    private final Set<String> ids = Collections.synchronizedSet(new HashSet<>());
+    private final Set<String> ids = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
 
     /**
      * Add the given identifier to the cache. It will be cached for a default amount of time.
@@ -60,21 +63,56 @@ public class MemoryReplayCache implements ReplayCache {
             return;
         }
 
+        addExpiry(identifier, getExpiry(expiry));
+        ids.add(identifier);
+    }
+
+    /**
+     * Add those of the given identifiers that are not contained in the cache, and return those
+     * that are. This is atomic per identifier.
+     * @param identifiers The identifiers to be added, mapped to a custom expiry time (or null)
+     * @return the identifiers that were already contained in the cache
+     */
+    @Override
+    public Set<String> addAllIfAbsent(Map<String, Instant> identifiers) {
+        processTokenExpiry();
+
+        Set<String> contained = new HashSet<>();
+        for (Entry<String, Instant> entry : identifiers.entrySet()) {
+            String identifier = entry.getKey();
+            if (identifier == null || identifier.length() == 0) {
+                continue;
+            }
+            if (ids.add(identifier)) {
+                addExpiry(identifier, getExpiry(entry.getValue()));
+            } else {
+                contained.add(identifier);
+            }
+        }
+        return contained;
+    }
+
+    private static Instant getExpiry(Instant expiry) {
         Instant now = Instant.now();
         Instant maxTTL = now.plusSeconds(MAX_TTL);
         if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxTTL)) {
-            expiry = now.plusSeconds(DEFAULT_TTL);
+            return now.plusSeconds(DEFAULT_TTL);
         }
+        return expiry;
+    }
 
-        synchronized (cache) {
+    private void addExpiry(String identifier, Instant expiry) {
+        lock.lock();
+        try {
             List<String> list = cache.get(expiry);
             if (list == null) {
                 list = new ArrayList<>(1);
                 cache.put(expiry, list);
             }
             list.add(identifier);
+        } finally {
+            lock.unlock();
         }
-        ids.add(identifier);
     }
 
     /**
@@ -92,7 +130,8 @@ public class MemoryReplayCache implements ReplayCache {
 
     protected void processTokenExpiry() {
         Instant current = Instant.now();
-        synchronized (cache) {
+        lock.lock();
+        try {
             Iterator<Entry<Instant, List<String>>> it = cache.entrySet().iterator();
             while (it.hasNext()) {
                 Entry<Instant, List<String>> entry = it.next();
@@ -105,12 +144,19 @@ public class MemoryReplayCache implements ReplayCache {
                     break;
                 }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
-    public synchronized void close() throws IOException {
-        cache.clear();
-        ids.clear();
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            cache.clear();
+            ids.clear();
+        } finally {
+            lock.unlock();
+        }
     }
 }
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.cache;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A simple bounded, in-memory VerifiedSamlAssertionCache. Entries are evicted in least-recently-used
+ * order once the maximum number of entries is reached, and are never returned after their expiry.
+ * The default TTL is 5 minutes and the max TTL is 60 minutes, i.e. the signature of a cached
+ * Assertion is verified again at least once an hour.
+ */
+public class MemoryVerifiedSamlAssertionCache implements VerifiedSamlAssertionCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final Map<String, Instant> cache;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long ttl;
+
+    public MemoryVerifiedSamlAssertionCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxEntries The maximum number of Assertion identifiers to hold
+     * @param ttl The default time in seconds that an Assertion identifier is cached for
+     */
+    public MemoryVerifiedSamlAssertionCache(final int maxEntries, long ttl) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maxEntries parameter must be greater than 0");
+        }
+        if (ttl < 1 || ttl > MAX_TTL) {
+            throw new IllegalArgumentException("The ttl parameter must be between 1 and " + MAX_TTL + " (seconds)");
+        }
+        this.ttl = ttl;
+        this.cache = new LinkedHashMap<String, Instant>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Instant> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public void add(String identifier) {
+        add(identifier, Instant.now().plusSeconds(ttl));
+    }
+
+    public void add(String identifier, Instant expiry) {
+        if (identifier == null || identifier.length() == 0) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        Instant maxExpiry = now.plusSeconds(MAX_TTL);
+        if (expiry == null) {
+            expiry = now.plusSeconds(ttl);
+        } else if (expiry.isBefore(now)) {
+            return;
+        } else if (expiry.isAfter(maxExpiry)) {
+            expiry = maxExpiry;
+        }
+
+        lock.lock();
+        try {
+            cache.put(identifier, expiry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean contains(String identifier) {
+        if (identifier == null || identifier.length() == 0) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            Instant expiry = cache.get(identifier);
+            if (expiry != null && expiry.isBefore(Instant.now())) {
+                cache.remove(identifier);
+                expiry = null;
+            }
+            return expiry != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            cache.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
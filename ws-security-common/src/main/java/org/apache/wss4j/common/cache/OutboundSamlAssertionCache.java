@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+
+/**
+ * A cache of signed SAML Assertions issued on the outbound side. A signed Assertion that is
+ * created from identical SAMLCallback content (e.g. a sender-vouches or bearer Assertion for the
+ * same principal) is reused for subsequent messages, instead of being built and signed again for
+ * every message, until only a configured fraction of its validity period remains.
+ */
+public interface OutboundSamlAssertionCache extends Closeable {
+
+    /**
+     * Return the SAML Assertion for the given (populated) SAMLCallback. A previously issued signed
+     * Assertion is returned if it can be reused. Otherwise a new Assertion is created from the
+     * SAMLCallback, and signed if {@link SAMLCallback#isSignAssertion()} is true. The returned
+     * SamlAssertionWrapper is not shared with any other caller.
+     * @param samlCallback The SAMLCallback populated by the SAML CallbackHandler
+     * @return the SAML Assertion
+     * @throws WSSecurityException if a new Assertion can't be created or signed
+     */
+    SamlAssertionWrapper getAssertion(SAMLCallback samlCallback) throws WSSecurityException;
+
+}
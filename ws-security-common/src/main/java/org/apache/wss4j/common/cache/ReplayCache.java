@@ -21,6 +21,11 @@ package org.apache.wss4j.common.cache;
 
 import java.io.Closeable;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * A cache to store (String) identifiers to avoid replay attacks. An example of such an identifier
@@ -47,4 +52,56 @@ public interface ReplayCache extends Closeable {
      */
     boolean contains(String identifier);
 
+    /**
+     * Return those of the given identifiers that are contained in the cache. Implementations that
+     * are backed by a remote store should override this to check all of the identifiers in one
+     * round trip.
+     * @param identifiers The identifiers to check
+     */
+    default Set<String> getContained(Collection<String> identifiers) {
+        Set<String> contained = new HashSet<>();
+        for (String identifier : identifiers) {
+            if (contains(identifier)) {
+                contained.add(identifier);
+            }
+        }
+        return contained;
+    }
+
+    /**
+     * Add all of the given identifiers to the cache. Implementations that are backed by a remote
+     * store should override this to add all of the identifiers in one round trip.
+     * @param identifiers The identifiers to be added, mapped to a custom expiry time for each
+     * identifier, or to null to cache it for a default amount of time
+     */
+    default void addAll(Map<String, Instant> identifiers) {
+        for (Map.Entry<String, Instant> entry : identifiers.entrySet()) {
+            if (entry.getValue() == null) {
+                add(entry.getKey());
+            } else {
+                add(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Add those of the given identifiers that are not contained in the cache, and return those
+     * that are. For each identifier, checking and adding it must be atomic, so that when several
+     * callers add the same identifier concurrently, exactly one of them does not get it back.
+     * The default implementation is only atomic with respect to other calls of this method on the
+     * same instance. Implementations should override it with an atomic add-if-absent of the store.
+     * @param identifiers The identifiers to be added, mapped to a custom expiry time for each
+     * identifier, or to null to cache it for a default amount of time
+     * @return the identifiers that were already contained in the cache, and so were not added
+     */
+    default Set<String> addAllIfAbsent(Map<String, Instant> identifiers) {
+        synchronized (this) {
+            Set<String> contained = getContained(identifiers.keySet());
+            Map<String, Instant> absent = new HashMap<>(identifiers);
+            absent.keySet().removeAll(contained);
+            addAll(absent);
+            return contained;
+        }
+    }
+
 }
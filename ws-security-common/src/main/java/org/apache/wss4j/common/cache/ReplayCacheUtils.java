@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import org.apache.wss4j.common.jfr.JFRSupport;
+import org.apache.wss4j.common.jfr.ReplayCacheEvent;
+import org.apache.wss4j.common.metrics.MetricsTimer;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+
+/**
+ * Replay cache lookups that are reported to a SecurityMetrics instance (if any) and as a JFR event.
+ */
+public final class ReplayCacheUtils {
+
+    private ReplayCacheUtils() {
+        // complete
+    }
+
+    /**
+     * Check whether the given identifier is in the replay cache
+     * @param replayCache the replay cache
+     * @param identifier the identifier to look up
+     * @param cache the kind of replay cache, e.g. Nonce, Timestamp or SAMLOneTimeUse
+     * @param metrics the SecurityMetrics instance to report the lookup to, or null
+     * @return whether the identifier is in the replay cache, i.e. whether a replay was detected
+     */
+    public static boolean contains(
+        ReplayCache replayCache, String identifier, String cache, SecurityMetrics metrics
+    ) {
+        ReplayCacheEvent event = JFRSupport.isAvailable() ? new ReplayCacheEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        MetricsTimer timer = MetricsTimer.start(metrics, SecurityMetrics.Stage.REPLAY_CACHE, cache);
+        boolean replayed = false;
+        boolean success = false;
+        try {
+            replayed = replayCache.contains(identifier);
+            success = true;
+            return replayed;
+        } finally {
+            timer.stop(success);
+            if (event != null && event.shouldCommit()) {
+                event.cache = cache;
+                event.replayDetected = replayed;
+                event.commit();
+            }
+        }
+    }
+
+}
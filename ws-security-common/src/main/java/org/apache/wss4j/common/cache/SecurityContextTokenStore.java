@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.time.Instant;
+
+/**
+ * A store of WS-SecureConversation session secrets, keyed by the wsc:Identifier (or wsu:Id) of the
+ * SecurityContextToken. It is consulted before the CallbackHandler is invoked with a
+ * WSPasswordCallback of usage SECURITY_CONTEXT_TOKEN, and is populated with the secret the
+ * CallbackHandler returns.
+ */
+public interface SecurityContextTokenStore extends Closeable {
+
+    /**
+     * Add the given secret to the store. It will be stored for a default amount of time.
+     * @param identifier The identifier of the SecurityContextToken
+     * @param secret The secret associated with the SecurityContextToken
+     */
+    void add(String identifier, byte[] secret);
+
+    /**
+     * Add the given secret to the store to be stored for the given time
+     * @param identifier The identifier of the SecurityContextToken
+     * @param secret The secret associated with the SecurityContextToken
+     * @param expiry A custom expiry time for the secret, e.g. the expiry of the security context
+     */
+    void add(String identifier, byte[] secret, Instant expiry);
+
+    /**
+     * Return the secret stored for the given identifier, or null if there is no
+     * (unexpired) entry for it
+     * @param identifier The identifier of the SecurityContextToken
+     */
+    byte[] get(String identifier);
+
+    /**
+     * Remove the secret stored for the given identifier, e.g. when the security context is cancelled
+     * @param identifier The identifier of the SecurityContextToken
+     */
+    void remove(String identifier);
+
+}
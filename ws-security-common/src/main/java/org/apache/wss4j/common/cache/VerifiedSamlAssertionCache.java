@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.time.Instant;
+
+/**
+ * A cache of signed SAML Assertions whose signature has already been verified. Entries are keyed
+ * by a digest of the Assertion, see
+ * {@link org.apache.wss4j.common.saml.SAMLUtil#getVerifiedAssertionIdentifier}, so that the
+ * signature of the same (e.g. STS issued) Assertion presented on subsequent messages is not
+ * verified again until it expires. The KeyInfo of the signature is still processed, and trust in
+ * the signing credential, the Conditions and the Subject Confirmation of the Assertion are still
+ * checked for every message.
+ */
+public interface VerifiedSamlAssertionCache extends Closeable {
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier of the verified Assertion
+     */
+    void add(String identifier);
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time
+     * @param identifier The identifier of the verified Assertion
+     * @param expiry A custom expiry time for the identifier, typically the NotOnOrAfter time
+     * of the Assertion
+     */
+    void add(String identifier, Instant expiry);
+
+    /**
+     * Return true if the given identifier is contained in the cache, and has not expired
+     * @param identifier The identifier of the verified Assertion
+     */
+    boolean contains(String identifier);
+
+}
@@ -99,33 +99,49 @@ public class AlgorithmSuiteValidator {
         for (Object refObject : xmlSignature.getSignedInfo().getReferences()) {
             Reference reference = (Reference)refObject;
             // Digest Algorithm
-            String digestMethod = reference.getDigestMethod().getAlgorithm();
-            Set<String> allowedDigestAlgorithms = algorithmSuite.getDigestAlgorithms();
-            if (!allowedDigestAlgorithms.isEmpty()
-                    && !allowedDigestAlgorithms.contains(digestMethod)) {
-                LOG.warn(
-                    "DigestMethod " + digestMethod + " does not match required value"
-                );
-                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY);
-            }
+            checkDigestAlgorithm(reference.getDigestMethod().getAlgorithm());
 
             // Transform Algorithms
             for (int i = 0; i < reference.getTransforms().size(); i++) {
                 Transform transform = (Transform)reference.getTransforms().get(i);
-                String algorithm = transform.getAlgorithm();
-                Set<String> allowedTransformAlgorithms =
-                        algorithmSuite.getTransformAlgorithms();
-                if (!allowedTransformAlgorithms.isEmpty()
-                        && !allowedTransformAlgorithms.contains(algorithm)) {
-                    LOG.warn(
-                        "Transform method " + algorithm + " does not match required value"
-                    );
-                    throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY);
-                }
+                checkTransformAlgorithm(transform.getAlgorithm());
             }
         }
     }
 
+    /**
+     * Check the Digest Algorithm
+     */
+    public void checkDigestAlgorithm(
+        String digestMethod
+    ) throws WSSecurityException {
+        Set<String> allowedDigestAlgorithms = algorithmSuite.getDigestAlgorithms();
+        if (!allowedDigestAlgorithms.isEmpty()
+                && !allowedDigestAlgorithms.contains(digestMethod)) {
+            LOG.warn(
+                "DigestMethod " + digestMethod + " does not match required value"
+            );
+            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY);
+        }
+    }
+
+    /**
+     * Check the Transform Algorithm
+     */
+    public void checkTransformAlgorithm(
+        String algorithm
+    ) throws WSSecurityException {
+        Set<String> allowedTransformAlgorithms =
+                algorithmSuite.getTransformAlgorithms();
+        if (!allowedTransformAlgorithms.isEmpty()
+                && !allowedTransformAlgorithms.contains(algorithm)) {
+            LOG.warn(
+                "Transform method " + algorithm + " does not match required value"
+            );
+            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY);
+        }
+    }
+
     public void checkEncryptionKeyWrapAlgorithm(
         String keyWrapAlgorithm
     ) throws WSSecurityException {
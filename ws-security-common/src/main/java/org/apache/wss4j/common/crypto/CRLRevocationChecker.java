@@ -0,0 +1,535 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.cert.CRLReason;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertPathValidatorException.BasicReason;
+import java.security.cert.Certificate;
+import java.security.cert.PKIXCertPathChecker;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A PKIXCertPathChecker that checks certificates against an index of the serial numbers revoked
+ * by a set of CRLs, instead of letting the PKIX CertPathValidator search the CRLs linearly for
+ * each certificate. The revoked serial numbers are held per issuer in a sorted array, and the
+ * signature of each CRL is verified once, when it is indexed, against the certificates of its
+ * issuer. The index is immutable and replaced atomically by {@link #update}, so it can be
+ * refreshed (e.g. in the background by {@link #scheduleRefresh}) while certificates are checked.
+ * A checker that refreshes its CRLs on a thread of its own must be closed once it is no longer
+ * used, which stops the thread.
+ *
+ * As with the PKIX revocation checking that it replaces, a certificate is rejected if there is
+ * no current CRL for its issuer. The index treats each CRL as complete for its issuer, so CRLs
+ * that only cover part of the certificates of an issuer (delta CRLs and CRLs with a scoped
+ * IssuingDistributionPoint), or that have critical extensions the index does not understand,
+ * are not supported. Such CRLs must be checked by the PKIX CertPathValidator instead, see
+ * {@link #isIndexable}.
+ */
+public class CRLRevocationChecker extends PKIXCertPathChecker implements Closeable {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CRLRevocationChecker.class);
+
+    /**
+     * Loads the current CRLs, and the certificates their signatures are verified against
+     */
+    public interface CRLSource {
+        Collection<X509CRL> loadCRLs() throws WSSecurityException;
+
+        Collection<X509Certificate> loadIssuerCertificates() throws WSSecurityException;
+    }
+
+    private static final String ISSUING_DISTRIBUTION_POINT_OID = "2.5.29.28";
+    private static final String DELTA_CRL_INDICATOR_OID = "2.5.29.27";
+
+    /** The critical CRL extensions the index understands: IssuingDistributionPoint, CRLNumber, AKI */
+    private static final Set<String> SUPPORTED_CRL_EXTENSIONS =
+        Set.of(ISSUING_DISTRIBUTION_POINT_OID, "2.5.29.20", "2.5.29.35");
+
+    /** The critical CRL entry extensions the index understands: ReasonCode, InvalidityDate, CertificateIssuer */
+    private static final Set<String> SUPPORTED_CRL_ENTRY_EXTENSIONS = Set.of("2.5.29.21", "2.5.29.24", "2.5.29.29");
+
+    /*
+     * The context-specific tags of the (implicitly tagged) fields of the IssuingDistributionPoint
+     */
+    private static final byte DISTRIBUTION_POINT_TAG = (byte)0xA0;
+    private static final byte ONLY_CONTAINS_USER_CERTS_TAG = (byte)0x81;
+    private static final byte ONLY_CONTAINS_CA_CERTS_TAG = (byte)0x82;
+    private static final byte ONLY_SOME_REASONS_TAG = (byte)0x83;
+    private static final byte INDIRECT_CRL_TAG = (byte)0x84;
+    private static final byte ONLY_CONTAINS_ATTRIBUTE_CERTS_TAG = (byte)0x85;
+
+    private volatile Map<X500Principal, RevokedSerials> index = Collections.emptyMap();
+    private RefreshTask refreshTask;
+
+    public CRLRevocationChecker(Collection<X509CRL> crls, Collection<X509Certificate> issuerCertificates)
+        throws WSSecurityException {
+        update(crls, issuerCertificates);
+    }
+
+    /**
+     * Replace the index with one built from the given CRLs. The signature of each CRL must be
+     * verifiable by (the public key of) one of the given certificates of its issuer, otherwise
+     * the existing index is kept and an exception is thrown.
+     *
+     * The entries of an indirect CRL (one whose IssuingDistributionPoint extension sets
+     * indirectCRL) may name another certificate issuer. Such entries are only indexed if that
+     * issuer also has a CRL of its own, so an indirect CRL can revoke more certificates of an
+     * issuer, but never makes the revocation status of an issuer without a CRL known. Entries
+     * naming another issuer in a CRL that is not indirect are ignored.
+     *
+     * If one of the CRLs is not supported by the index (see {@link #isIndexable}), the existing
+     * index is kept and an exception is thrown.
+     */
+    public final void update(Collection<X509CRL> crls, Collection<X509Certificate> issuerCertificates)
+        throws WSSecurityException {
+        Map<X500Principal, List<BigInteger>> revokedSerials = new HashMap<>();
+        Map<X500Principal, Date> thisUpdates = new HashMap<>();
+        Map<X500Principal, Date> nextUpdates = new HashMap<>();
+        Map<X500Principal, List<BigInteger>> indirectSerials = new HashMap<>();
+        Map<X500Principal, Date> indirectThisUpdates = new HashMap<>();
+        Map<X500Principal, Date> indirectNextUpdates = new HashMap<>();
+        for (X509CRL crl : crls) {
+            X500Principal crlIssuer = crl.getIssuerX500Principal();
+            verify(crl, issuerCertificates);
+            Map<Byte, byte[]> distributionPoint = getIssuingDistributionPoint(crl);
+            String unsupportedFeature = getUnsupportedFeature(crl, distributionPoint);
+            if (unsupportedFeature != null) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, "unsupportedCRL",
+                    new Object[] {crlIssuer.getName(), unsupportedFeature}
+                );
+            }
+            boolean indirect = isTrue(distributionPoint.get(INDIRECT_CRL_TAG));
+
+            // Several CRLs of the same issuer are valid only as long as all of them are
+            addValidity(crlIssuer, crl, thisUpdates, nextUpdates);
+            revokedSerials.computeIfAbsent(crlIssuer, k -> new ArrayList<>());
+
+            Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+            if (entries == null) {
+                continue;
+            }
+            X500Principal certificateIssuer = crlIssuer;
+            for (X509CRLEntry entry : entries) {
+                // Indirect CRLs name the issuer of the following entries in the entry itself
+                if (entry.getCertificateIssuer() != null) {
+                    certificateIssuer = entry.getCertificateIssuer();
+                }
+                if (entry.getRevocationReason() == CRLReason.REMOVE_FROM_CRL) {
+                    continue;
+                }
+                if (crlIssuer.equals(certificateIssuer)) {
+                    revokedSerials.get(crlIssuer).add(entry.getSerialNumber());
+                } else if (indirect) {
+                    indirectSerials.computeIfAbsent(certificateIssuer, k -> new ArrayList<>())
+                        .add(entry.getSerialNumber());
+                    addValidity(certificateIssuer, crl, indirectThisUpdates, indirectNextUpdates);
+                } else {
+                    LOG.warn("Ignoring an entry of the CRL of {} for issuer {}, as the CRL is not indirect",
+                             crlIssuer.getName(), certificateIssuer.getName());
+                }
+            }
+        }
+
+        for (Map.Entry<X500Principal, List<BigInteger>> entry : indirectSerials.entrySet()) {
+            X500Principal certificateIssuer = entry.getKey();
+            if (!revokedSerials.containsKey(certificateIssuer)) {
+                LOG.warn("Ignoring the entries of an indirect CRL for issuer {}, which has no CRL of its own",
+                         certificateIssuer.getName());
+                continue;
+            }
+            revokedSerials.get(certificateIssuer).addAll(entry.getValue());
+            // The entries are valid only as long as both the indirect CRL(s) and the issuer's own CRL(s) are
+            thisUpdates.put(certificateIssuer,
+                            latest(thisUpdates.get(certificateIssuer), indirectThisUpdates.get(certificateIssuer)));
+            nextUpdates.put(certificateIssuer,
+                            earliest(nextUpdates.get(certificateIssuer), indirectNextUpdates.get(certificateIssuer)));
+        }
+
+        Map<X500Principal, RevokedSerials> newIndex = new HashMap<>(revokedSerials.size());
+        for (Map.Entry<X500Principal, List<BigInteger>> entry : revokedSerials.entrySet()) {
+            BigInteger[] serials = entry.getValue().toArray(new BigInteger[0]);
+            Arrays.sort(serials);
+            X500Principal issuer = entry.getKey();
+            newIndex.put(issuer, new RevokedSerials(serials, thisUpdates.get(issuer), nextUpdates.get(issuer)));
+        }
+        index = Collections.unmodifiableMap(newIndex);
+        LOG.debug("Indexed the revoked certificates of {} CRL(s)", crls.size());
+    }
+
+    /**
+     * Return true if the given CRL is supported by the index, i.e. if it is a complete CRL for its
+     * issuer (not a delta CRL, and without an IssuingDistributionPoint that limits it to a
+     * distribution point, to some revocation reasons or to some kinds of certificates), and it has
+     * no critical CRL or CRL entry extensions other than those the index understands.
+     */
+    public static boolean isIndexable(X509CRL crl) {
+        try {
+            String unsupportedFeature = getUnsupportedFeature(crl, getIssuingDistributionPoint(crl));
+            if (unsupportedFeature != null) {
+                LOG.debug("The CRL of {} can't be indexed: {}", crl.getIssuerX500Principal().getName(),
+                          unsupportedFeature);
+                return false;
+            }
+            return true;
+        } catch (WSSecurityException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Periodically reload the CRLs from the given source and update the index, on a single daemon
+     * thread that is owned by this checker. See {@link #scheduleRefresh(CRLSource, long,
+     * ScheduledExecutorService)}.
+     * @param source the source of the CRLs
+     * @param interval the refresh interval in seconds
+     */
+    public void scheduleRefresh(CRLSource source, long interval) {
+        scheduleRefresh(source, interval, null);
+    }
+
+    /**
+     * Periodically reload the CRLs from the given source and update the index. If a reload fails,
+     * the existing index is kept. The refresh task holds only a weak reference to this checker,
+     * so it stops once the checker (and the Crypto instance using it) is no longer referenced.
+     * @param source the source of the CRLs
+     * @param interval the refresh interval in seconds
+     * @param executor the ScheduledExecutorService to refresh the CRLs on. It is not shut down
+     * when the refresh is cancelled. If null, the checker uses a single thread of its own, which
+     * is stopped by {@link #cancelRefresh()} or {@link #close()}.
+     */
+    public synchronized void scheduleRefresh(
+        CRLSource source, long interval, ScheduledExecutorService executor
+    ) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The refresh interval must be greater than 0");
+        }
+        cancelRefresh();
+        refreshTask = new RefreshTask(this, source, executor);
+        refreshTask.schedule(interval);
+    }
+
+    /**
+     * Stop refreshing the CRLs in the background
+     */
+    public synchronized void cancelRefresh() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+    }
+
+    /**
+     * Stop refreshing the CRLs in the background. The checker can still be used to check
+     * certificates against the CRLs it has indexed.
+     */
+    @Override
+    public void close() {
+        cancelRefresh();
+    }
+
+    /**
+     * Return true if the given certificate is revoked according to the indexed CRLs
+     */
+    public boolean isRevoked(X509Certificate certificate) {
+        RevokedSerials revokedSerials = index.get(certificate.getIssuerX500Principal());
+        return revokedSerials != null && revokedSerials.contains(certificate.getSerialNumber());
+    }
+
+    @Override
+    public void init(boolean forward) {
+        // The check does not depend on the order of the certificates
+    }
+
+    @Override
+    public boolean isForwardCheckingSupported() {
+        return true;
+    }
+
+    @Override
+    public Set<String> getSupportedExtensions() {
+        return null;
+    }
+
+    @Override
+    public void check(Certificate cert, Collection<String> unresolvedCritExts) throws CertPathValidatorException {
+        X509Certificate certificate = (X509Certificate) cert;
+        X500Principal issuer = certificate.getIssuerX500Principal();
+        RevokedSerials revokedSerials = index.get(issuer);
+        if (revokedSerials == null) {
+            throw new CertPathValidatorException(
+                "No CRL was found for issuer " + issuer.getName(), null, null, -1,
+                BasicReason.UNDETERMINED_REVOCATION_STATUS
+            );
+        }
+        Date now = new Date();
+        if (revokedSerials.thisUpdate != null && revokedSerials.thisUpdate.after(now)) {
+            throw new CertPathValidatorException(
+                "The CRL of issuer " + issuer.getName() + " is not valid yet", null, null, -1,
+                BasicReason.UNDETERMINED_REVOCATION_STATUS
+            );
+        }
+        if (revokedSerials.nextUpdate != null && revokedSerials.nextUpdate.before(now)) {
+            throw new CertPathValidatorException(
+                "The CRL of issuer " + issuer.getName() + " has expired", null, null, -1,
+                BasicReason.UNDETERMINED_REVOCATION_STATUS
+            );
+        }
+        if (revokedSerials.contains(certificate.getSerialNumber())) {
+            throw new CertPathValidatorException(
+                "Certificate has been revoked, serial number: " + certificate.getSerialNumber(), null, null, -1,
+                BasicReason.REVOKED
+            );
+        }
+    }
+
+    private static void verify(X509CRL crl, Collection<X509Certificate> issuerCertificates)
+        throws WSSecurityException {
+        X500Principal crlIssuer = crl.getIssuerX500Principal();
+        for (X509Certificate issuerCertificate : issuerCertificates) {
+            if (crlIssuer.equals(issuerCertificate.getSubjectX500Principal())) {
+                try {
+                    crl.verify(issuerCertificate.getPublicKey());
+                    return;
+                } catch (GeneralSecurityException ex) {
+                    LOG.debug(ex.getMessage(), ex);
+                }
+            }
+        }
+        throw new WSSecurityException(
+            WSSecurityException.ErrorCode.FAILURE, "invalidCRL", new Object[] {crlIssuer.getName()}
+        );
+    }
+
+    /**
+     * Return a description of the first feature of the given CRL that the index does not support,
+     * or null if the CRL can be indexed
+     */
+    private static String getUnsupportedFeature(X509CRL crl, Map<Byte, byte[]> distributionPoint) {
+        if (crl.getExtensionValue(DELTA_CRL_INDICATOR_OID) != null) {
+            return "delta CRL";
+        }
+        if (distributionPoint.containsKey(DISTRIBUTION_POINT_TAG)) {
+            return "IssuingDistributionPoint with a distribution point name";
+        }
+        if (distributionPoint.containsKey(ONLY_SOME_REASONS_TAG)) {
+            return "IssuingDistributionPoint with onlySomeReasons";
+        }
+        if (isTrue(distributionPoint.get(ONLY_CONTAINS_USER_CERTS_TAG))
+            || isTrue(distributionPoint.get(ONLY_CONTAINS_CA_CERTS_TAG))
+            || isTrue(distributionPoint.get(ONLY_CONTAINS_ATTRIBUTE_CERTS_TAG))) {
+            return "IssuingDistributionPoint limited to some kinds of certificates";
+        }
+        String extension = getUnsupportedExtension(crl.getCriticalExtensionOIDs(), SUPPORTED_CRL_EXTENSIONS);
+        if (extension != null) {
+            return "critical extension " + extension;
+        }
+        Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+        if (entries != null) {
+            for (X509CRLEntry entry : entries) {
+                extension =
+                    getUnsupportedExtension(entry.getCriticalExtensionOIDs(), SUPPORTED_CRL_ENTRY_EXTENSIONS);
+                if (extension != null) {
+                    return "critical entry extension " + extension;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String getUnsupportedExtension(Set<String> criticalExtensions, Set<String> supportedExtensions) {
+        if (criticalExtensions != null) {
+            for (String extension : criticalExtensions) {
+                if (!supportedExtensions.contains(extension)) {
+                    return extension;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add the thisUpdate and nextUpdate dates of the given CRL to those of the given issuer
+     */
+    private static void addValidity(X500Principal issuer, X509CRL crl,
+                                    Map<X500Principal, Date> thisUpdates, Map<X500Principal, Date> nextUpdates) {
+        if (nextUpdates.containsKey(issuer)) {
+            thisUpdates.put(issuer, latest(thisUpdates.get(issuer), crl.getThisUpdate()));
+            nextUpdates.put(issuer, earliest(nextUpdates.get(issuer), crl.getNextUpdate()));
+        } else {
+            thisUpdates.put(issuer, crl.getThisUpdate());
+            nextUpdates.put(issuer, crl.getNextUpdate());
+        }
+    }
+
+    /**
+     * Return the later of two thisUpdate dates
+     */
+    private static Date latest(Date first, Date second) {
+        if (first == null) {
+            return second;
+        } else if (second == null || first.after(second)) {
+            return first;
+        }
+        return second;
+    }
+
+    /**
+     * Return the earlier of two nextUpdate dates, where null means that there is no next update
+     */
+    private static Date earliest(Date first, Date second) {
+        if (first == null) {
+            return second;
+        } else if (second == null || first.before(second)) {
+            return first;
+        }
+        return second;
+    }
+
+    /**
+     * Return the fields of the IssuingDistributionPoint extension of the given CRL, keyed by their
+     * context-specific tag, or an empty map if the CRL has no such extension
+     */
+    private static Map<Byte, byte[]> getIssuingDistributionPoint(X509CRL crl) throws WSSecurityException {
+        byte[] extensionValue = crl.getExtensionValue(ISSUING_DISTRIBUTION_POINT_OID);
+        if (extensionValue == null) {
+            return Collections.emptyMap();
+        }
+        DERDecoder extension = new DERDecoder(extensionValue);
+        extension.expect(DERDecoder.TYPE_OCTET_STRING);
+        extension.getLength();
+        extension.expect(DERDecoder.TYPE_SEQUENCE);
+        int length = extension.getLength();
+        DERDecoder distributionPoint = new DERDecoder(extension.getBytes(length));
+        Map<Byte, byte[]> fields = new HashMap<>();
+        while (!distributionPoint.isAtEnd()) {
+            byte tag = distributionPoint.getBytes(1)[0];
+            fields.put(tag, distributionPoint.getBytes(distributionPoint.getLength()));
+        }
+        return fields;
+    }
+
+    /**
+     * Return true if the given value of a BOOLEAN field is present and true
+     */
+    private static boolean isTrue(byte[] value) {
+        return value != null && value.length == 1 && value[0] != 0;
+    }
+
+    private static final class RevokedSerials {
+        private final BigInteger[] serials;
+        private final Date thisUpdate;
+        private final Date nextUpdate;
+
+        RevokedSerials(BigInteger[] serials, Date thisUpdate, Date nextUpdate) {
+            this.serials = serials;
+            this.thisUpdate = thisUpdate;
+            this.nextUpdate = nextUpdate;
+        }
+
+        boolean contains(BigInteger serial) {
+            return Arrays.binarySearch(serials, serial) >= 0;
+        }
+    }
+
+    /**
+     * Refreshes the CRLs of a checker on the given ScheduledExecutorService, or else on a single
+     * daemon thread of its own that is shut down when the task is cancelled
+     */
+    private static final class RefreshTask implements Runnable {
+        private final WeakReference<CRLRevocationChecker> checkerReference;
+        private final CRLSource source;
+        private final ScheduledExecutorService executor;
+        private final boolean ownsExecutor;
+        private volatile ScheduledFuture<?> future;
+
+        RefreshTask(CRLRevocationChecker checker, CRLSource source, ScheduledExecutorService executor) {
+            this.checkerReference = new WeakReference<>(checker);
+            this.source = source;
+            if (executor != null) {
+                this.executor = executor;
+                this.ownsExecutor = false;
+            } else {
+                this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "wss4j-crl-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                this.ownsExecutor = true;
+            }
+        }
+
+        void schedule(long interval) {
+            future = executor.scheduleWithFixedDelay(this, interval, interval, TimeUnit.SECONDS);
+        }
+
+        void cancel() {
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            if (ownsExecutor) {
+                executor.shutdownNow();
+            }
+        }
+
+        @Override
+        public void run() {
+            CRLRevocationChecker checker = checkerReference.get();
+            if (checker == null) {
+                LOG.debug("The CRLRevocationChecker is no longer in use, so its CRLs are no longer refreshed");
+                cancel();
+                return;
+            }
+            try {
+                checker.update(source.loadCRLs(), source.loadIssuerCertificates());
+            } catch (WSSecurityException | RuntimeException ex) {
+                LOG.warn("Error refreshing the CRLs, keeping the existing revocation index: {}", ex.getMessage());
+                LOG.debug(ex.getMessage(), ex);
+            }
+        }
+    }
+}
@@ -41,6 +41,7 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.x500.X500Principal;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.JCAEnginePool;
 
 /**
  * A Crypto implementation based on a simple array of X509Certificate(s). PrivateKeys are not
@@ -363,33 +364,30 @@ public class CertificateStore extends CryptoBase {
      * @throws WSSecurityException if problems during keystore handling or wrong certificate
      */
     private X509Certificate[] getX509Certificates(byte[] thumb) throws WSSecurityException {
-        MessageDigest sha = null;
-
         if (trustedCerts == null) {
             return new X509Certificate[0];
         }
 
-        try {
-            sha = MessageDigest.getInstance("SHA1");
+        try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA1")) {
+            for (X509Certificate trustedCert : trustedCerts) {
+                try {
+                    sha.get().update(trustedCert.getEncoded());
+                } catch (CertificateEncodingException ex) {
+                    throw new WSSecurityException(
+                        WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
+                    );
+                }
+                byte[] data = sha.get().digest();
+
+                if (Arrays.equals(data, thumb)) {
+                    return new X509Certificate[]{trustedCert};
+                }
+            }
         } catch (NoSuchAlgorithmException e) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
             );
         }
-        for (X509Certificate trustedCert : trustedCerts) {
-            try {
-                sha.update(trustedCert.getEncoded());
-            } catch (CertificateEncodingException ex) {
-                throw new WSSecurityException(
-                    WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
-                );
-            }
-            byte[] data = sha.digest();
-
-            if (Arrays.equals(data, thumb)) {
-                return new X509Certificate[]{trustedCert};
-            }
-        }
         return new X509Certificate[0];
     }
 
@@ -35,6 +35,8 @@ public abstract class CryptoFactory {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(CryptoFactory.class);
 
+    private static final CryptoRegistry CRYPTO_REGISTRY = new CryptoRegistry();
+
     /**
      * getInstance
      * <p/>
@@ -187,6 +189,26 @@ public abstract class CryptoFactory {
         return getInstance(properties, customClassLoader, null);
     }
 
+    /**
+     * Returns a Crypto instance for the given property file from the shared CryptoRegistry,
+     * loading it with {@link #getInstance(String)} only if it is not already registered. The
+     * returned instance is shared, and so must not be modified by the caller.
+     *
+     * @param propFilename The name of the property file to load
+     * @return The crypto implementation that was defined
+     * @throws WSSecurityException if there is an error in loading the crypto properties
+     */
+    public static Crypto getCachedInstance(String propFilename) throws WSSecurityException {
+        return CRYPTO_REGISTRY.getCrypto(propFilename, () -> getInstance(propFilename));
+    }
+
+    /**
+     * @return the CryptoRegistry used by {@link #getCachedInstance(String)}
+     */
+    public static CryptoRegistry getCryptoRegistry() {
+        return CRYPTO_REGISTRY;
+    }
+
     /**
      * This allows loading the classes with a custom class loader
      * @param cryptoClass
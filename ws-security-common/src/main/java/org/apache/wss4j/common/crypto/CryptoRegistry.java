@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A bounded, thread-safe registry of Crypto instances, keyed for example by the properties file
+ * or reference id they were loaded from. Once the maximum number of entries is exceeded, the least
+ * recently used Crypto instances are evicted, and will be loaded again the next time they are
+ * requested. The time of last use is only tracked to the nearest second, so eviction is approximate,
+ * but lookups do not contend on a lock. When many Crypto instances are configured with the same
+ * truststore, the {@link Merlin#STORES_SHARED} property allows them to share a single parsed copy
+ * of it.
+ */
+public class CryptoRegistry {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final long ACCESS_RESOLUTION = TimeUnit.SECONDS.toNanos(1L);
+
+    private final ConcurrentMap<Object, RegisteredCrypto> cryptos = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int maxEntries;
+
+    public CryptoRegistry() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries The maximum number of Crypto instances to hold
+     */
+    public CryptoRegistry(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Return the Crypto instance stored under the given key, or null if there is none
+     */
+    public Crypto getCrypto(Object key) {
+        RegisteredCrypto registeredCrypto = cryptos.get(key);
+        if (registeredCrypto == null) {
+            return null;
+        }
+        registeredCrypto.touch();
+        return registeredCrypto.crypto;
+    }
+
+    /**
+     * Return the Crypto instance stored under the given key, loading and storing it with the
+     * given CryptoLoader if there is none. The Crypto is loaded without holding a lock, so
+     * concurrent callers may load it more than once, but they all get the same instance.
+     */
+    public Crypto getCrypto(Object key, CryptoLoader cryptoLoader) throws WSSecurityException {
+        Crypto crypto = getCrypto(key);
+        if (crypto == null) {
+            crypto = cryptoLoader.load();
+            if (crypto != null) {
+                RegisteredCrypto existing = cryptos.putIfAbsent(key, new RegisteredCrypto(crypto));
+                if (existing != null) {
+                    crypto = existing.crypto;
+                } else {
+                    evict();
+                }
+            }
+        }
+        return crypto;
+    }
+
+    /**
+     * Store the given Crypto instance under the given key. The key must not be modified afterwards.
+     */
+    public void putCrypto(Object key, Crypto crypto) {
+        cryptos.put(key, new RegisteredCrypto(crypto));
+        evict();
+    }
+
+    public Crypto removeCrypto(Object key) {
+        RegisteredCrypto registeredCrypto = cryptos.remove(key);
+        return registeredCrypto != null ? registeredCrypto.crypto : null;
+    }
+
+    public void clear() {
+        cryptos.clear();
+    }
+
+    public int size() {
+        return cryptos.size();
+    }
+
+    /**
+     * Evict the least recently used entries once the maximum number of entries is exceeded. This only
+     * happens when a Crypto instance is added, and is skipped if another thread is already evicting,
+     * so the registry may briefly hold a few more entries than the maximum.
+     */
+    private void evict() {
+        if (cryptos.size() <= maxEntries || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            while (cryptos.size() > maxEntries) {
+                // Take the access times first, as they may change while sorting
+                List<EvictionCandidate> candidates = new ArrayList<>(cryptos.size());
+                for (Map.Entry<Object, RegisteredCrypto> entry : cryptos.entrySet()) {
+                    candidates.add(new EvictionCandidate(entry.getKey(), entry.getValue()));
+                }
+                candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+                int excess = candidates.size() - maxEntries;
+                for (int i = 0; i < excess; i++) {
+                    EvictionCandidate candidate = candidates.get(i);
+                    cryptos.remove(candidate.key, candidate.registeredCrypto);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Loads a Crypto instance that is not yet held in the registry
+     */
+    @FunctionalInterface
+    public interface CryptoLoader {
+        Crypto load() throws WSSecurityException;
+    }
+
+    private static final class RegisteredCrypto {
+        private final Crypto crypto;
+        private volatile long lastAccess = System.nanoTime();
+
+        RegisteredCrypto(Crypto crypto) {
+            this.crypto = crypto;
+        }
+
+        void touch() {
+            long now = System.nanoTime();
+            // Only write the shared field once per second, to keep lookups cheap
+            if (now - lastAccess > ACCESS_RESOLUTION) {
+                lastAccess = now;
+            }
+        }
+    }
+
+    private static final class EvictionCandidate {
+        private final Object key;
+        private final RegisteredCrypto registeredCrypto;
+        private final long lastAccess;
+
+        EvictionCandidate(Object key, RegisteredCrypto registeredCrypto) {
+            this.key = key;
+            this.registeredCrypto = registeredCrypto;
+            this.lastAccess = registeredCrypto.lastAccess;
+        }
+    }
+
+}
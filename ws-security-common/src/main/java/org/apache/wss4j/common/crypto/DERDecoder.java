@@ -126,6 +126,15 @@ public class DERDecoder {
         pos++;
     }
 
+    /**
+     * Test if the current position is at the end of the array.
+     *
+     * @return true if there are no more bytes to decode.
+     */
+    public boolean isAtEnd() {
+        return pos >= arr.length;
+    }
+
     /**
      * Test if the byte at the current position matches the given value.
      *
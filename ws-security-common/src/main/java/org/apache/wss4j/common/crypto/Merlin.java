@@ -19,10 +19,17 @@
 
 package org.apache.wss4j.common.crypto;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
@@ -52,6 +59,7 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
@@ -59,6 +67,11 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
 import javax.security.auth.callback.Callback;
@@ -68,13 +81,24 @@ import javax.security.auth.x500.X500Principal;
 
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.jfr.CertificatePathValidationEvent;
+import org.apache.wss4j.common.jfr.JFRSupport;
+import org.apache.wss4j.common.util.JCAEnginePool;
 import org.apache.wss4j.common.util.Loader;
 
 /**
  * A Crypto implementation based on two Java KeyStore objects, one being the keystore, and one
  * being the truststore.
+ *
+ * Information derived from the stores, such as the TrustAnchors, is cached per snapshot of the
+ * stores (see {@link #getSnapshot()}), so changes made in place to the KeyStore objects are not
+ * seen. Set the modified KeyStore again, set a new one or {@link #reload()} the stores instead.
+ *
+ * An instance that reloads its stores or refreshes its CRLs in the background (see
+ * {@link #RELOAD_INTERVAL} and {@link #X509_CRL_REFRESH_INTERVAL}) does so on threads of its own,
+ * and must be closed once it is no longer used, which stops the threads.
  */
-public class Merlin extends CryptoBase {
+public class Merlin extends CryptoBase implements Closeable {
 
     public static final String ENCRYPTED_PASSWORD_PREFIX = "ENC(";
     public static final String ENCRYPTED_PASSWORD_SUFFIX = ")";
@@ -118,22 +142,41 @@ public class Merlin extends CryptoBase {
      * CRL configuration
      */
     public static final String X509_CRL_FILE = "x509crl.file";
+    public static final String X509_CRL_INDEXED = "x509crl.indexed";
+    public static final String X509_CRL_REFRESH_INTERVAL = "x509crl.refresh.interval";
+
+    /*
+     * Reload properties
+     */
+    public static final String RELOAD_INTERVAL = "reload.interval";
+
+    /*
+     * Share identical keystore/truststore files (and the TrustAnchors derived from them) between
+     * Crypto instances. Shared stores must not be modified.
+     */
+    public static final String STORES_SHARED = "stores.shared";
 
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(Merlin.class);
     private static final String COMMA_SEPARATOR = ",";
 
     protected Properties properties;
-    protected KeyStore keystore;
-    protected KeyStore truststore;
-    protected CertStore crlCertStore;
-    protected boolean loadCACerts;
+    protected volatile KeyStore keystore;
+    protected volatile KeyStore truststore;
+    protected volatile CertStore crlCertStore;
+    protected volatile CRLRevocationChecker crlRevocationChecker;
+    protected volatile boolean loadCACerts;
     protected boolean privatePasswordSet;
     protected PasswordEncryptor passwordEncryptor;
 
     private boolean certProviderHandlesNameConstraints = false;
     private boolean enablePrivateKeyCaching = true;
-    private Map<String, PrivateKey> privateKeyCache = new ConcurrentHashMap<>();
+    private boolean shareStores;
+    private volatile Snapshot snapshot;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private ClassLoader loader;
+    private boolean reloadInstance;
+    private ReloadTask reloadTask;
 
     public Merlin() {
         // default constructor
@@ -170,6 +213,7 @@ public class Merlin extends CryptoBase {
             return;
         }
         this.properties = properties;
+        this.loader = loader;
         this.passwordEncryptor = passwordEncryptor;
 
         String prefix = PREFIX;
@@ -206,6 +250,11 @@ public class Merlin extends CryptoBase {
             certProviderHandlesNameConstraints = Boolean.parseBoolean(cpNameConstraintsProp);
         }
 
+        String sharedStoresProp = properties.getProperty(prefix + STORES_SHARED);
+        if (sharedStoresProp != null) {
+            shareStores = Boolean.parseBoolean(sharedStoresProp.trim());
+        }
+
         //
         // Load the KeyStore
         //
@@ -231,7 +280,7 @@ public class Merlin extends CryptoBase {
                 if (type != null) {
                     type = type.trim();
                 }
-                keystore = load(is, passwd, keystoreProvider, type);
+                keystore = loadStore(is, passwd, keystoreProvider, type);
                 LOG.debug(
                     "The KeyStore {} of type {} has been loaded", keyStoreLocation, type
                 );
@@ -281,7 +330,7 @@ public class Merlin extends CryptoBase {
                 if (type != null) {
                     type = type.trim();
                 }
-                truststore = load(is, passwd, trustProvider, type);
+                truststore = loadStore(is, passwd, trustProvider, type);
                 LOG.debug(
                     "The TrustStore {} of type {} has been loaded", trustStoreLocation, type
                 );
@@ -300,7 +349,7 @@ public class Merlin extends CryptoBase {
                         cacertsPasswd = cacertsPasswd.trim();
                         cacertsPasswd = decryptPassword(cacertsPasswd, passwordEncryptor);
                     }
-                    truststore = load(is, cacertsPasswd, null, KeyStore.getDefaultType());
+                    truststore = loadStore(is, cacertsPasswd, null, KeyStore.getDefaultType());
                     LOG.debug("CA certs have been loaded");
                     loadCACerts = true;
                 }
@@ -313,38 +362,66 @@ public class Merlin extends CryptoBase {
         String crlLocations = properties.getProperty(prefix + X509_CRL_FILE);
         if (crlLocations != null) {
             String[] splittedCrlsLocations = crlLocations.split(COMMA_SEPARATOR);
-            List<X509CRL> crls = new ArrayList<>(splittedCrlsLocations.length);
-            for (String crlLocation : splittedCrlsLocations) {
-                try (InputStream is = loadInputStream(loader, crlLocation.trim())) {
-                    CertificateFactory cf = getCertificateFactory();
-                    X509CRL crl = (X509CRL)cf.generateCRL(is);
-                    crls.add(crl);
+            KeyStoreCRLSource crlSource =
+                new KeyStoreCRLSource(loader, splittedCrlsLocations, getCertificateFactory(), keystore, truststore);
+            List<X509CRL> crls = crlSource.loadCRLs();
+
+            String crlRefreshInterval = properties.getProperty(prefix + X509_CRL_REFRESH_INTERVAL);
+            String crlIndexed = properties.getProperty(prefix + X509_CRL_INDEXED);
+            boolean indexed =
+                crlRefreshInterval != null || crlIndexed != null && Boolean.parseBoolean(crlIndexed.trim());
+            if (indexed && !crls.stream().allMatch(CRLRevocationChecker::isIndexable)) {
+                // Partial (delta or scoped) CRLs must be combined by the PKIX CertPathValidator
+                LOG.warn("The CRL files {} can't be indexed, so they are checked by the CertPathValidator "
+                         + "and not refreshed", crlLocations);
+                indexed = false;
+            }
+            if (indexed) {
+                crlRevocationChecker = new CRLRevocationChecker(crls, crlSource.loadIssuerCertificates());
+                if (crlRefreshInterval != null) {
+                    crlRevocationChecker.scheduleRefresh(crlSource, Long.parseLong(crlRefreshInterval.trim()));
+                }
+                LOG.debug("The CRL files {} have been indexed", crlLocations);
+            } else {
+                try {
+                    if (keystoreProvider == null || keystoreProvider.length() == 0) {
+                        crlCertStore =
+                                CertStore.getInstance(
+                                        "Collection",
+                                        new CollectionCertStoreParameters(crls)
+                                );
+
+                    } else {
+                        crlCertStore =
+                                CertStore.getInstance(
+                                        "Collection",
+                                        new CollectionCertStoreParameters(crls),
+                                        keystoreProvider
+                                );
+                    }
                 } catch (Exception e) {
                     LOG.debug(e.getMessage(), e);
                     throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
                 }
+                LOG.debug("The CRL files {} have been loaded", crlLocations);
             }
-            try {
-                if (keystoreProvider == null || keystoreProvider.length() == 0) {
-                    crlCertStore =
-                            CertStore.getInstance(
-                                    "Collection",
-                                    new CollectionCertStoreParameters(crls)
-                            );
+        }
 
-                } else {
-                    crlCertStore =
-                            CertStore.getInstance(
-                                    "Collection",
-                                    new CollectionCertStoreParameters(crls),
-                                    keystoreProvider
-                            );
+        String reloadInterval = properties.getProperty(prefix + RELOAD_INTERVAL);
+        if (reloadInterval != null && !reloadInstance) {
+            List<String> locations = new ArrayList<>();
+            if (keyStoreLocation != null) {
+                locations.add(keyStoreLocation);
+            }
+            if (trustStoreLocation != null) {
+                locations.add(trustStoreLocation);
+            }
+            if (crlLocations != null) {
+                for (String crlLocation : crlLocations.split(COMMA_SEPARATOR)) {
+                    locations.add(crlLocation.trim());
                 }
-            } catch (Exception e) {
-                LOG.debug(e.getMessage(), e);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
             }
-            LOG.debug("The CRL files {} have been loaded", crlLocations);
+            scheduleReload(locations, Long.parseLong(reloadInterval.trim()));
         }
     }
 
@@ -384,6 +461,18 @@ public class Merlin extends CryptoBase {
         return ks;
     }
 
+    /**
+     * Load the keystore from an <code>InputStream</code>, or return the shared instance of an
+     * identical store if stores are shared.
+     */
+    private KeyStore loadStore(InputStream input, String storepass, String provider, String type)
+        throws WSSecurityException, IOException {
+        if (shareStores) {
+            return SharedKeyStores.getKeyStore(this, input, storepass, provider, type);
+        }
+        return load(input, storepass, provider, type);
+    }
+
     //
     // Accessor methods
     //
@@ -398,16 +487,21 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Set the Keystore on this Crypto instance
+     * Set the Keystore on this Crypto instance. Information derived from it (e.g. the TrustAnchors) is
+     * cached until a Keystore is set again, so a Keystore that has been modified in place must be set
+     * again for the changes to be seen.
      *
      * @param keyStore the Keystore to set
      */
     public void setKeyStore(KeyStore keyStore) {
         keystore = keyStore;
+        clearSnapshot();
     }
 
     /**
-     * Gets the trust store that was loaded by the underlying implementation
+     * Gets the trust store that was loaded by the underlying implementation. Changes made to it in
+     * place are not seen by this Crypto instance until it is set again via
+     * {@link #setTrustStore(KeyStore)}.
      *
      * @return the trust store
      */
@@ -416,12 +510,27 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Set the trust store on this Crypto instance
+     * Set the trust store on this Crypto instance. Information derived from it (e.g. the TrustAnchors) is
+     * cached until a trust store is set again, so a trust store that has been modified in place must be
+     * set again for the changes to be seen.
      *
      * @param trustStore the trust store to set
      */
     public void setTrustStore(KeyStore trustStore) {
         truststore = trustStore;
+        clearSnapshot();
+    }
+
+    /**
+     * Discard the current Snapshot, so that the next one is created from the current stores
+     */
+    private void clearSnapshot() {
+        snapshotLock.lock();
+        try {
+            snapshot = null;
+        } finally {
+            snapshotLock.unlock();
+        }
     }
 
     /**
@@ -434,6 +543,23 @@ public class Merlin extends CryptoBase {
         this.crlCertStore = crlCertStore;
     }
 
+    /**
+     * Set the CRLRevocationChecker used for Certificate Revocation checking. If this is set, it is
+     * used instead of the CertStore of CRLs.
+     * @param crlRevocationChecker the CRLRevocationChecker used for Certificate Revocation checking
+     */
+    public void setCRLRevocationChecker(CRLRevocationChecker crlRevocationChecker) {
+        this.crlRevocationChecker = crlRevocationChecker;
+    }
+
+    /**
+     * Get the CRLRevocationChecker used for Certificate Revocation checking
+     * @return the CRLRevocationChecker used for Certificate Revocation checking
+     */
+    public CRLRevocationChecker getCRLRevocationChecker() {
+        return crlRevocationChecker;
+    }
+
     /**
      * Get the CertStore from which to obtain a list of CRLs for Certificate Revocation
      * checking.
@@ -444,6 +570,194 @@ public class Merlin extends CryptoBase {
         return crlCertStore;
     }
 
+    /**
+     * Get the current Snapshot of the keystore, truststore and CRLs. A Snapshot is immutable, and
+     * a new one is created whenever one of the stores is replaced, either via a setter or by
+     * {@link #reload()}. Methods that use several of the stores should get the Snapshot once, so
+     * that they see a consistent view of the stores while they are being replaced.
+     *
+     * @return the current Snapshot
+     */
+    protected Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.matches(this)) {
+            return current;
+        }
+
+        snapshotLock.lock();
+        try {
+            current = snapshot;
+            if (current == null || !current.matches(this)) {
+                current = new Snapshot(keystore, truststore, crlCertStore, crlRevocationChecker, loadCACerts);
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Reload the keystore, truststore and CRLs from the properties this Crypto instance was
+     * loaded with, and replace the current stores with them atomically. Certificates that are
+     * being validated while the stores are reloaded are validated against the previous stores.
+     * If the stores can't be loaded, the current stores are kept.
+     *
+     * Note that stores which were set via a setter are replaced by those that are configured
+     * in the properties.
+     *
+     * @throws WSSecurityException if the stores can't be loaded
+     * @throws IOException if the stores can't be read
+     */
+    public void reload() throws WSSecurityException, IOException {
+        if (properties == null) {
+            return;
+        }
+        Merlin reloaded = createReloadInstance();
+        reloaded.reloadInstance = true;
+        reloaded.loadProperties(properties, loader, passwordEncryptor);
+
+        CRLRevocationChecker previousRevocationChecker;
+        snapshotLock.lock();
+        try {
+            previousRevocationChecker = crlRevocationChecker;
+            keystore = reloaded.keystore;
+            truststore = reloaded.truststore;
+            crlCertStore = reloaded.crlCertStore;
+            crlRevocationChecker = reloaded.crlRevocationChecker;
+            loadCACerts = reloaded.loadCACerts;
+            snapshot = new Snapshot(keystore, truststore, crlCertStore, crlRevocationChecker, loadCACerts);
+        } finally {
+            snapshotLock.unlock();
+        }
+
+        if (previousRevocationChecker != null && previousRevocationChecker != crlRevocationChecker) {
+            previousRevocationChecker.cancelRefresh();
+        }
+        LOG.debug("The KeyStore, TrustStore and CRLs have been reloaded");
+    }
+
+    /**
+     * Create the instance that {@link #reload()} loads the stores with, before they are swapped
+     * into this instance. By default this is a new instance of the class of this instance, so the
+     * stores are loaded as this class loads them. Subclasses without a public default constructor
+     * must override this method.
+     *
+     * @return a new, unloaded, instance of this class
+     * @throws WSSecurityException if the instance can't be created
+     */
+    protected Merlin createReloadInstance() throws WSSecurityException {
+        try {
+            return getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
+                    "empty", new Object[] {getClass().getName() + " cannot create instance"});
+        }
+    }
+
+    /**
+     * Check the given locations for changes every interval seconds, on a single daemon thread that
+     * is owned by this Crypto instance. See {@link #scheduleReload(Collection, long,
+     * ScheduledExecutorService)}.
+     *
+     * @param locations the locations of the keystore, truststore and CRL files
+     * @param interval the interval in seconds between two checks
+     */
+    public void scheduleReload(Collection<String> locations, long interval) {
+        scheduleReload(locations, interval, null);
+    }
+
+    /**
+     * Check the given locations for changes (to the last modified time or the size of the
+     * files) every interval seconds, and {@link #reload()} the stores if any of them has changed.
+     * Only locations on the file system can be checked for changes. The check is cancelled once
+     * this Crypto instance is closed or garbage collected.
+     *
+     * @param locations the locations of the keystore, truststore and CRL files
+     * @param interval the interval in seconds between two checks
+     * @param executor the ScheduledExecutorService to check for changes on. It is not shut down
+     * when the check is cancelled. If null, this instance uses a single thread of its own, which
+     * is stopped by {@link #cancelReload()} or {@link #close()}.
+     */
+    public synchronized void scheduleReload(
+        Collection<String> locations, long interval, ScheduledExecutorService executor
+    ) {
+        List<Path> paths = new ArrayList<>();
+        for (String location : locations) {
+            Path path = getPath(location);
+            if (path != null) {
+                paths.add(path);
+            } else {
+                LOG.warn("{} is not a file, so it will not be reloaded when it changes", location);
+            }
+        }
+
+        cancelReload();
+        reloadTask = new ReloadTask(this, paths, executor);
+        reloadTask.schedule(interval);
+    }
+
+    /**
+     * Check the locations given to {@link #scheduleReload} for changes now, rather than waiting
+     * for the next scheduled check, and {@link #reload()} the stores if any of them has changed.
+     *
+     * @return true if the stores have been reloaded
+     * @throws WSSecurityException if the stores can't be loaded
+     * @throws IOException if the stores can't be read
+     */
+    public boolean reloadIfModified() throws WSSecurityException, IOException {
+        ReloadTask task;
+        synchronized (this) {
+            task = reloadTask;
+        }
+        return task != null && task.reloadIfModified(this);
+    }
+
+    /**
+     * Cancel the checks for changes to the stores
+     */
+    public synchronized void cancelReload() {
+        if (reloadTask != null) {
+            reloadTask.cancel();
+            reloadTask = null;
+        }
+    }
+
+    /**
+     * Stop checking the stores for changes and refreshing the CRLs in the background. This Crypto
+     * instance can still be used with the stores it has loaded.
+     */
+    @Override
+    public void close() {
+        cancelReload();
+        CRLRevocationChecker checker = crlRevocationChecker;
+        if (checker != null) {
+            checker.cancelRefresh();
+        }
+    }
+
+    private Path getPath(String location) {
+        try {
+            URL url = null;
+            try {
+                url = new URL(location);
+            } catch (MalformedURLException ex) { //NOPMD
+                // skip
+            }
+            if (url == null) {
+                url = Loader.getResource(loader, location);
+            }
+            if (url != null) {
+                return "file".equals(url.getProtocol()) ? Paths.get(url.toURI()) : null;
+            }
+            Path path = Paths.get(location);
+            return Files.isRegularFile(path) ? path : null;
+        } catch (URISyntaxException | InvalidPathException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
     /**
      * Singleton certificate factory for this Crypto instance.
      * <p/>
@@ -516,6 +830,7 @@ public class Merlin extends CryptoBase {
      */
     @Override
     public String getDefaultX509Identifier() throws WSSecurityException {
+        KeyStore keystore = getSnapshot().getKeyStore();
         if (super.getDefaultX509Identifier() != null) {
             return super.getDefaultX509Identifier();
         }
@@ -590,6 +905,9 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException
      */
     public String getX509Identifier(X509Certificate cert) throws WSSecurityException {
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
+        KeyStore truststore = current.getTrustStore();
         String identifier = null;
 
         if (keystore != null) {
@@ -614,6 +932,7 @@ public class Merlin extends CryptoBase {
         X509Certificate certificate,
         CallbackHandler callbackHandler
     ) throws WSSecurityException {
+        KeyStore keystore = getSnapshot().getKeyStore();
         if (keystore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
@@ -653,6 +972,7 @@ public class Merlin extends CryptoBase {
         PublicKey publicKey,
         CallbackHandler callbackHandler
     ) throws WSSecurityException {
+        KeyStore keystore = getSnapshot().getKeyStore();
         if (keystore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
@@ -692,6 +1012,8 @@ public class Merlin extends CryptoBase {
         String identifier,
         String password
     ) throws WSSecurityException {
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
         if (keystore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
@@ -716,7 +1038,7 @@ public class Merlin extends CryptoBase {
                 }
             }
             if (enablePrivateKeyCaching) {
-                Key privateKey = privateKeyCache.get(identifier);
+                Key privateKey = current.privateKeyCache.get(identifier);
                 if (privateKey != null) {
                     return (PrivateKey) privateKey;
                 }
@@ -733,7 +1055,7 @@ public class Merlin extends CryptoBase {
             }
 
             if (enablePrivateKeyCaching) {
-                privateKeyCache.put(identifier, (PrivateKey) keyTmp);
+                current.privateKeyCache.put(identifier, (PrivateKey) keyTmp);
             }
             return (PrivateKey) keyTmp;
         } catch (KeyStoreException | UnrecoverableKeyException | NoSuchAlgorithmException ex) {
@@ -757,6 +1079,9 @@ public class Merlin extends CryptoBase {
         boolean enableRevocation,
         Collection<Pattern> subjectCertConstraints
     ) throws WSSecurityException {
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
+        KeyStore truststore = current.getTrustStore();
         //
         // FIRST step - Search the keystore for the transmitted certificate
         //
@@ -828,19 +1153,7 @@ public class Merlin extends CryptoBase {
         );
 
         try {
-            Set<TrustAnchor> set = new HashSet<>();
-            if (truststore != null) {
-                addTrustAnchors(set, truststore);
-            }
-
-            //
-            // Add certificates from the keystore - only if there is no TrustStore, apart from
-            // the case that the truststore is the JDK CA certs. This behaviour is preserved
-            // for backwards compatibility reasons
-            //
-            if (keystore != null && (truststore == null || loadCACerts)) {
-                addTrustAnchors(set, keystore);
-            }
+            Set<TrustAnchor> set = getTrustAnchors(current);
 
             // Verify the trust path using the above settings
             String provider = getCryptoProvider();
@@ -903,9 +1216,24 @@ public class Merlin extends CryptoBase {
     public void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
                             Collection<Pattern> subjectCertConstraints,
                             Collection<Pattern> issuerCertConstraints) throws WSSecurityException {
-        verifyTrust(certs, enableRevocation, subjectCertConstraints);
-        if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        CertificatePathValidationEvent event = JFRSupport.isAvailable() ? new CertificatePathValidationEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        boolean success = false;
+        try {
+            verifyTrust(certs, enableRevocation, subjectCertConstraints);
+            if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+            }
+            success = true;
+        } finally {
+            if (event != null && event.shouldCommit()) {
+                event.chainLength = certs.length;
+                event.revocationEnabled = enableRevocation;
+                event.success = success;
+                event.commit();
+            }
         }
     }
 
@@ -913,7 +1241,16 @@ public class Merlin extends CryptoBase {
     protected PKIXParameters createPKIXParameters(
         Set<TrustAnchor> trustAnchors, boolean enableRevocation
     ) throws InvalidAlgorithmParameterException {
+        Snapshot current = getSnapshot();
+        CRLRevocationChecker crlRevocationChecker = current.getCRLRevocationChecker();
+        CertStore crlCertStore = current.getCRLCertStore();
         PKIXParameters param = new PKIXParameters(trustAnchors);
+        if (enableRevocation && crlRevocationChecker != null) {
+            // The indexed CRLs replace the revocation checking of the CertPathValidator
+            param.setRevocationEnabled(false);
+            param.addCertPathChecker(crlRevocationChecker);
+            return param;
+        }
         param.setRevocationEnabled(enableRevocation);
         if (enableRevocation && crlCertStore != null) {
             param.addCertStore(crlCertStore);
@@ -929,6 +1266,9 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException if the PublicKey is invalid
      */
     public void verifyTrust(PublicKey publicKey) throws WSSecurityException {
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
+        KeyStore truststore = current.getTrustStore();
         //
         // If the public key is null, do not trust the signature
         //
@@ -958,6 +1298,9 @@ public class Merlin extends CryptoBase {
         String issuer,
         BigInteger serialNumber
     ) throws WSSecurityException {
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
+        KeyStore truststore = current.getTrustStore();
         //
         // Convert the subject DN to a java X500Principal object first. This is to ensure
         // interop with a DN constructed from .NET, where e.g. it uses "S" instead of "ST".
@@ -1052,24 +1395,25 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException if problems during keystore handling or wrong certificate
      */
     private X509Certificate[] getX509Certificates(byte[] thumbprint) throws WSSecurityException {
-        MessageDigest sha = null;
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
+        KeyStore truststore = current.getTrustStore();
+        Certificate[] certs = null;
 
-        try {
-            sha = MessageDigest.getInstance("SHA1");
+        try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA1")) {
+            if (keystore != null) {
+                certs = getCertificates(thumbprint, keystore, sha.get(), false);
+            }
+
+            //If we can't find the issuer in the keystore then look at the truststore
+            if ((certs == null || certs.length == 0) && truststore != null) {
+                certs = getCertificates(thumbprint, truststore, sha.get(), true);
+            }
         } catch (NoSuchAlgorithmException e) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
             );
         }
-        Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(thumbprint, keystore, sha, false);
-        }
-
-        //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(thumbprint, truststore, sha, true);
-        }
 
         if (certs == null || certs.length == 0) {
             return new X509Certificate[0];
@@ -1142,6 +1486,9 @@ public class Merlin extends CryptoBase {
      * @return the X509 certificate (chain) that was found (can be null)
      */
     private X509Certificate[] getX509CertificatesSKI(byte[] skiBytes) throws WSSecurityException {
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
+        KeyStore truststore = current.getTrustStore();
         Certificate[] certs = null;
         if (keystore != null) {
             certs = getCertificates(skiBytes, keystore, false);
@@ -1215,6 +1562,9 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException
      */
     private X509Certificate[] getX509CertificatesSubjectDN(String subjectDN) throws WSSecurityException {
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
+        KeyStore truststore = current.getTrustStore();
         Object subject = convertSubjectToPrincipal(subjectDN);
 
         List<Certificate[]> certs = null;
@@ -1260,6 +1610,9 @@ public class Merlin extends CryptoBase {
      * @return an X509 Certificate (chain) that corresponds to the identifier
      */
     private X509Certificate[] getX509Certificates(String identifier) throws WSSecurityException {
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
+        KeyStore truststore = current.getTrustStore();
         if (identifier == null) {
             return new X509Certificate[0];
         }
@@ -1439,6 +1792,59 @@ public class Merlin extends CryptoBase {
         }
     }
 
+    /**
+     * Get the TrustAnchors of the given Snapshot, i.e. the certificates of the truststore, and
+     * those of the keystore if there is no truststore (or if the truststore is the JDK CA certs).
+     * The TrustAnchors are only read from the stores the first time they are requested for a
+     * Snapshot.
+     * @param current the Snapshot of the stores
+     * @return the (unmodifiable) Set of TrustAnchors
+     */
+    protected Set<TrustAnchor> getTrustAnchors(Snapshot current)
+            throws KeyStoreException, WSSecurityException {
+        Set<TrustAnchor> trustAnchors = current.trustAnchors;
+        if (trustAnchors == null) {
+            //
+            // If the TrustAnchors only come from a single shared store, then they are shared as well
+            //
+            KeyStore sharedStore = null;
+            if (shareStores) {
+                if (current.getTrustStore() != null && !current.isLoadCACerts()) {
+                    sharedStore = current.getTrustStore();
+                } else if (current.getTrustStore() == null) {
+                    sharedStore = current.getKeyStore();
+                }
+            }
+            if (sharedStore != null) {
+                trustAnchors = SharedKeyStores.getTrustAnchors(sharedStore, certProviderHandlesNameConstraints);
+                if (trustAnchors != null) {
+                    current.trustAnchors = trustAnchors;
+                    return trustAnchors;
+                }
+            }
+
+            Set<TrustAnchor> set = new HashSet<>();
+            if (current.getTrustStore() != null) {
+                addTrustAnchors(set, current.getTrustStore());
+            }
+
+            //
+            // Add certificates from the keystore - only if there is no TrustStore, apart from
+            // the case that the truststore is the JDK CA certs. This behaviour is preserved
+            // for backwards compatibility reasons
+            //
+            if (current.getKeyStore() != null && (current.getTrustStore() == null || current.isLoadCACerts())) {
+                addTrustAnchors(set, current.getKeyStore());
+            }
+            trustAnchors = Collections.unmodifiableSet(set);
+            current.trustAnchors = trustAnchors;
+            if (sharedStore != null) {
+                SharedKeyStores.setTrustAnchors(sharedStore, certProviderHandlesNameConstraints, trustAnchors);
+            }
+        }
+        return trustAnchors;
+    }
+
     /**
      * Get an implementation-specific identifier that corresponds to the X509Certificate. In
      * this case, the identifier is the KeyStore alias.
@@ -1544,7 +1950,7 @@ public class Merlin extends CryptoBase {
 
     public void clearCache() {
         if (enablePrivateKeyCaching) {
-            privateKeyCache.clear();
+            getSnapshot().privateKeyCache.clear();
         }
     }
 
@@ -1555,4 +1961,209 @@ public class Merlin extends CryptoBase {
     public void setEnablePrivateKeyCaching(boolean enablePrivateKeyCaching) {
         this.enablePrivateKeyCaching = enablePrivateKeyCaching;
     }
+
+    /**
+     * Loads the configured CRL files, and the certificates of the KeyStore and TrustStore to verify
+     * them with. It deliberately holds no reference to the Merlin instance, so that a background
+     * refresh does not keep the Merlin instance alive.
+     */
+    private static final class KeyStoreCRLSource implements CRLRevocationChecker.CRLSource {
+        private final ClassLoader loader;
+        private final String[] crlLocations;
+        private final CertificateFactory certificateFactory;
+        private final KeyStore keystore;
+        private final KeyStore truststore;
+
+        KeyStoreCRLSource(ClassLoader loader, String[] crlLocations, CertificateFactory certificateFactory,
+                          KeyStore keystore, KeyStore truststore) {
+            this.loader = loader;
+            this.crlLocations = crlLocations;
+            this.certificateFactory = certificateFactory;
+            this.keystore = keystore;
+            this.truststore = truststore;
+        }
+
+        @Override
+        public List<X509CRL> loadCRLs() throws WSSecurityException {
+            List<X509CRL> crls = new ArrayList<>(crlLocations.length);
+            for (String crlLocation : crlLocations) {
+                try (InputStream is = loadInputStream(loader, crlLocation.trim())) {
+                    X509CRL crl = (X509CRL)certificateFactory.generateCRL(is);
+                    crls.add(crl);
+                } catch (Exception e) {
+                    LOG.debug(e.getMessage(), e);
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+                }
+            }
+            return crls;
+        }
+
+        @Override
+        public List<X509Certificate> loadIssuerCertificates() throws WSSecurityException {
+            List<X509Certificate> certificates = new ArrayList<>();
+            try {
+                for (KeyStore store : new KeyStore[] {keystore, truststore}) {
+                    if (store == null) {
+                        continue;
+                    }
+                    for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
+                        String alias = e.nextElement();
+                        Certificate[] certs = store.getCertificateChain(alias);
+                        if (certs == null || certs.length == 0) {
+                            certs = new Certificate[] {store.getCertificate(alias)};
+                        }
+                        for (Certificate cert : certs) {
+                            if (cert instanceof X509Certificate) {
+                                certificates.add((X509Certificate)cert);
+                            }
+                        }
+                    }
+                }
+            } catch (KeyStoreException e) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
+            }
+            return certificates;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the keystore, truststore and CRLs, together with the information
+     * that is derived from them, i.e. the TrustAnchors and the cached private keys.
+     */
+    protected static final class Snapshot {
+        private final KeyStore keystore;
+        private final KeyStore truststore;
+        private final CertStore crlCertStore;
+        private final CRLRevocationChecker crlRevocationChecker;
+        private final boolean loadCACerts;
+        private final Map<String, PrivateKey> privateKeyCache = new ConcurrentHashMap<>();
+        private volatile Set<TrustAnchor> trustAnchors;
+
+        Snapshot(KeyStore keystore, KeyStore truststore, CertStore crlCertStore,
+                 CRLRevocationChecker crlRevocationChecker, boolean loadCACerts) {
+            this.keystore = keystore;
+            this.truststore = truststore;
+            this.crlCertStore = crlCertStore;
+            this.crlRevocationChecker = crlRevocationChecker;
+            this.loadCACerts = loadCACerts;
+        }
+
+        private boolean matches(Merlin merlin) {
+            return keystore == merlin.keystore && truststore == merlin.truststore
+                && crlCertStore == merlin.crlCertStore && crlRevocationChecker == merlin.crlRevocationChecker
+                && loadCACerts == merlin.loadCACerts;
+        }
+
+        public KeyStore getKeyStore() {
+            return keystore;
+        }
+
+        public KeyStore getTrustStore() {
+            return truststore;
+        }
+
+        public CertStore getCRLCertStore() {
+            return crlCertStore;
+        }
+
+        public CRLRevocationChecker getCRLRevocationChecker() {
+            return crlRevocationChecker;
+        }
+
+        public boolean isLoadCACerts() {
+            return loadCACerts;
+        }
+    }
+
+    /**
+     * Reloads the stores of a Merlin instance when one of the given files changes. It only holds a
+     * weak reference to the Merlin instance, and cancels itself once it has been garbage collected.
+     * It runs on the given ScheduledExecutorService, or else on a single daemon thread of its own
+     * that is shut down when the task is cancelled.
+     */
+    private static final class ReloadTask implements Runnable {
+        private final WeakReference<Merlin> merlinReference;
+        private final List<Path> paths;
+        private final ScheduledExecutorService executor;
+        private final boolean ownsExecutor;
+        private final ReentrantLock lock = new ReentrantLock();
+        private List<String> lastModified;
+        private volatile ScheduledFuture<?> future;
+
+        ReloadTask(Merlin merlin, List<Path> paths, ScheduledExecutorService executor) {
+            this.merlinReference = new WeakReference<>(merlin);
+            this.paths = paths;
+            this.lastModified = getLastModified();
+            if (executor != null) {
+                this.executor = executor;
+                this.ownsExecutor = false;
+            } else {
+                this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "wss4j-crypto-reload");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                this.ownsExecutor = true;
+            }
+        }
+
+        void schedule(long interval) {
+            future = executor.scheduleWithFixedDelay(this, interval, interval, TimeUnit.SECONDS);
+        }
+
+        void cancel() {
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            if (ownsExecutor) {
+                executor.shutdownNow();
+            }
+        }
+
+        @Override
+        public void run() {
+            Merlin merlin = merlinReference.get();
+            if (merlin == null) {
+                LOG.debug("The Merlin instance is no longer in use, so its stores are no longer checked for changes");
+                cancel();
+                return;
+            }
+            try {
+                reloadIfModified(merlin);
+            } catch (WSSecurityException | IOException | RuntimeException ex) {
+                LOG.warn("Error reloading the KeyStore, TrustStore or CRLs, keeping the existing ones: {}",
+                         ex.getMessage());
+                LOG.debug(ex.getMessage(), ex);
+            }
+        }
+
+        boolean reloadIfModified(Merlin merlin) throws WSSecurityException, IOException {
+            lock.lock();
+            try {
+                List<String> modified = getLastModified();
+                if (modified.equals(lastModified)) {
+                    return false;
+                }
+                merlin.reload();
+                lastModified = modified;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private List<String> getLastModified() {
+            List<String> modified = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                try {
+                    modified.add(Files.getLastModifiedTime(path) + "/" + Files.size(path));
+                } catch (IOException ex) {
+                    // The file is being replaced, or has been removed
+                    modified.add(null);
+                }
+            }
+            return modified;
+        }
+    }
 }
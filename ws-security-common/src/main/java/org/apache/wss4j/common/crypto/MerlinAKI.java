@@ -39,7 +39,6 @@ import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
@@ -166,19 +165,7 @@ public class MerlinAKI extends Merlin {
             List<X509Certificate> certList = Arrays.asList(x509certs);
             CertPath path = getCertificateFactory().generateCertPath(certList);
 
-            Set<TrustAnchor> set = new HashSet<>();
-            if (truststore != null) {
-                addTrustAnchors(set, truststore);
-            }
-
-            //
-            // Add certificates from the keystore - only if there is no TrustStore, apart from
-            // the case that the truststore is the JDK CA certs. This behaviour is preserved
-            // for backwards compatibility reasons
-            //
-            if (keystore != null && (truststore == null || loadCACerts)) {
-                addTrustAnchors(set, keystore);
-            }
+            Set<TrustAnchor> set = getTrustAnchors(getSnapshot());
 
             // Verify the trust path using the above settings
             String provider = getCryptoProvider();
@@ -213,6 +200,9 @@ public class MerlinAKI extends Merlin {
             return new X509Certificate[0];
         }
 
+        Snapshot current = getSnapshot();
+        KeyStore keystore = current.getKeyStore();
+        KeyStore truststore = current.getTrustStore();
         Certificate[] certs = null;
         if (keystore != null) {
             certs = getCertificates(keyIdentifierBytes, keystore);
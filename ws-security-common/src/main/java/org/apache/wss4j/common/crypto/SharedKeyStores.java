@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.TrustAnchor;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A bounded registry of KeyStores that are shared between Merlin instances, keyed by a SHA-256
+ * digest of the store content, type, provider and password. Identical keystore or truststore files
+ * that are configured for several Crypto instances are only parsed once, and the TrustAnchors
+ * derived from a shared store are only built once. Shared KeyStores must not be modified.
+ */
+final class SharedKeyStores {
+
+    static final int MAX_ENTRIES = 100;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SharedKeyStores.class);
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private static final Map<String, KeyStore> KEYSTORES =
+        new LinkedHashMap<String, KeyStore>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KeyStore> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    private static final Map<KeyStore, Set<TrustAnchor>> TRUST_ANCHORS = new WeakHashMap<>();
+
+    private static final Map<KeyStore, Set<TrustAnchor>> NAME_CONSTRAINED_TRUST_ANCHORS = new WeakHashMap<>();
+
+    private SharedKeyStores() {
+        // complete
+    }
+
+    /**
+     * Get the shared KeyStore for the given store content, loading it with the given Merlin if
+     * it is not yet shared.
+     */
+    static KeyStore getKeyStore(
+        Merlin merlin, InputStream input, String storepass, String provider, String type
+    ) throws WSSecurityException, IOException {
+        byte[] content = input.readAllBytes();
+        String key = createKey(content, storepass, provider, type);
+
+        LOCK.lock();
+        try {
+            KeyStore keyStore = KEYSTORES.get(key);
+            if (keyStore != null) {
+                LOG.debug("Using a shared KeyStore of type {}", type);
+                return keyStore;
+            }
+        } finally {
+            LOCK.unlock();
+        }
+
+        KeyStore keyStore = merlin.load(new ByteArrayInputStream(content), storepass, provider, type);
+        LOCK.lock();
+        try {
+            KeyStore existing = KEYSTORES.putIfAbsent(key, keyStore);
+            return existing != null ? existing : keyStore;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * Return the TrustAnchors that have been built for the given shared KeyStore, or null
+     */
+    static Set<TrustAnchor> getTrustAnchors(KeyStore keyStore, boolean nameConstraints) {
+        LOCK.lock();
+        try {
+            return nameConstraints ? NAME_CONSTRAINED_TRUST_ANCHORS.get(keyStore) : TRUST_ANCHORS.get(keyStore);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * Store the (unmodifiable) TrustAnchors that have been built for the given KeyStore, if it is shared
+     */
+    static void setTrustAnchors(KeyStore keyStore, boolean nameConstraints, Set<TrustAnchor> trustAnchors) {
+        LOCK.lock();
+        try {
+            if (KEYSTORES.containsValue(keyStore)) {
+                if (nameConstraints) {
+                    NAME_CONSTRAINED_TRUST_ANCHORS.put(keyStore, trustAnchors);
+                } else {
+                    TRUST_ANCHORS.put(keyStore, trustAnchors);
+                }
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    static void clear() {
+        LOCK.lock();
+        try {
+            KEYSTORES.clear();
+            TRUST_ANCHORS.clear();
+            NAME_CONSTRAINED_TRUST_ANCHORS.clear();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static String createKey(
+        byte[] content, String storepass, String provider, String type
+    ) throws WSSecurityException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String value : new String[] {type, provider, storepass}) {
+                if (value != null) {
+                    digest.update(value.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte)0);
+            }
+            digest.update(content);
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+    }
+
+}
@@ -25,15 +25,33 @@ import java.security.Security;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A Provider that delegates to a Provider set for the current thread. Service lookups are
+ * resolved without locking against an immutable snapshot of the services of the delegated
+ * Provider, which is taken the first time the Provider is used. Changes made via this Provider
+ * discard the snapshot. Services that are added to the delegated Provider directly are still
+ * found, as lookups that miss the snapshot are delegated to the Provider each time. getServices()
+ * replaces the snapshot if the services of the Provider have changed since it was taken.
+ */
 public final class ThreadLocalSecurityProvider extends Provider {
 
     private static final long serialVersionUID = 3556396671069994931L;
     private static final String NAME = "TLSP";
     private static final ThreadLocal<Provider> PROVIDER = new ThreadLocal<>();
-    private static boolean installed = false;
+    private static final int MAX_SNAPSHOTS = 64;
+    // Copy-on-write, keyed by identity as Provider inherits an (expensive) content based hashCode
+    private static volatile Map<Provider, ServiceSnapshot> snapshots = Collections.emptyMap();
+    private static final ReentrantLock SNAPSHOT_LOCK = new ReentrantLock();
+    private static volatile boolean installed = false;
 
     public static synchronized void install() {
         Security.insertProviderAt(new ThreadLocalSecurityProvider(),
@@ -43,6 +61,7 @@ public final class ThreadLocalSecurityProvider extends Provider {
 
     public static synchronized void uninstall() {
         Security.removeProvider(NAME);
+        snapshots = Collections.emptyMap();
         installed = false;
     }
 
@@ -62,36 +81,47 @@ public final class ThreadLocalSecurityProvider extends Provider {
         PROVIDER.remove();
     }
 
+    /**
+     * Get the Provider that this Provider delegates to on the current thread
+     * @return the Provider of the current thread, or null if there is none or this Provider is not installed
+     */
+    public static Provider getCurrentProvider() {
+        return installed ? PROVIDER.get() : null;
+    }
+
     private Provider getProvider() {
         return PROVIDER.get();
     }
 
     @Override
-    public synchronized void clear() {
+    public void clear() {
         Provider p = getProvider();
         if (p != null) {
             p.clear();
+            discardSnapshot(p);
         }
     }
 
     @Override
-    public synchronized void load(InputStream inStream) throws IOException {
+    public void load(InputStream inStream) throws IOException {
         Provider p = getProvider();
         if (p != null) {
             p.load(inStream);
+            discardSnapshot(p);
         }
     }
 
     @Override
-    public synchronized void putAll(Map<?, ?> t) {
+    public void putAll(Map<?, ?> t) {
         Provider p = getProvider();
         if (p != null) {
             p.putAll(t);
+            discardSnapshot(p);
         }
     }
 
     @Override
-    public synchronized Set<Map.Entry<Object, Object>> entrySet() {
+    public Set<Map.Entry<Object, Object>> entrySet() {
         Provider p = getProvider();
         if (p != null) {
             return p.entrySet();
@@ -121,20 +151,24 @@ public final class ThreadLocalSecurityProvider extends Provider {
     }
 
     @Override
-    public synchronized Object put(Object key, Object value) {
+    public Object put(Object key, Object value) {
         Provider p = getProvider();
         if (p != null) {
-            return p.put(key, value);
+            Object result = p.put(key, value);
+            discardSnapshot(p);
+            return result;
         } else {
             return null;
         }
     }
 
     @Override
-    public synchronized Object remove(Object key) {
+    public Object remove(Object key) {
         Provider p = getProvider();
         if (p != null) {
-            return p.remove(key);
+            Object result = p.remove(key);
+            discardSnapshot(p);
+            return result;
         } else {
             return null;
         }
@@ -181,23 +215,107 @@ public final class ThreadLocalSecurityProvider extends Provider {
     }
 
     @Override
-    public synchronized Service getService(String type, String algorithm) {
+    public Service getService(String type, String algorithm) {
         Provider p = getProvider();
         if (p != null) {
-            return p.getService(type, algorithm);
+            return getSnapshot(p).getService(p, type, algorithm);
         } else {
             return null;
         }
     }
 
     @Override
-    public synchronized Set<Service> getServices() {
+    public Set<Service> getServices() {
         Provider p = getProvider();
         if (p != null) {
-            return p.getServices();
+            // The Provider returns the same Set until its services change, so this checks whether
+            // the snapshot is still current
+            Set<Service> services = p.getServices();
+            ServiceSnapshot snapshot = snapshots.get(p);
+            if (snapshot == null || snapshot.services != services) {
+                putSnapshot(p, new ServiceSnapshot(services));
+            }
+            return services;
         } else {
             return Collections.emptySet();
         }
     }
 
+    private static ServiceSnapshot getSnapshot(Provider p) {
+        ServiceSnapshot snapshot = snapshots.get(p);
+        if (snapshot == null) {
+            // Provider.getServices() is synchronized, so only call it when (re)building a snapshot
+            snapshot = new ServiceSnapshot(p.getServices());
+            putSnapshot(p, snapshot);
+        }
+        return snapshot;
+    }
+
+    private static void putSnapshot(Provider p, ServiceSnapshot snapshot) {
+        SNAPSHOT_LOCK.lock();
+        try {
+            Map<Provider, ServiceSnapshot> current = snapshots;
+            Map<Provider, ServiceSnapshot> updated =
+                current.size() < MAX_SNAPSHOTS ? new IdentityHashMap<>(current) : new IdentityHashMap<>();
+            updated.put(p, snapshot);
+            snapshots = updated;
+        } finally {
+            SNAPSHOT_LOCK.unlock();
+        }
+    }
+
+    private static void discardSnapshot(Provider p) {
+        SNAPSHOT_LOCK.lock();
+        try {
+            if (snapshots.containsKey(p)) {
+                Map<Provider, ServiceSnapshot> updated = new IdentityHashMap<>(snapshots);
+                updated.remove(p);
+                snapshots = updated;
+            }
+        } finally {
+            SNAPSHOT_LOCK.unlock();
+        }
+    }
+
+    /**
+     * An immutable view of the services of a Provider, indexed by type and (upper case) algorithm.
+     * Lookups by alias, which are not visible via the public Service API, are delegated to the
+     * Provider once and the service found remembered. Lookups that find no service are not
+     * remembered, so that services which are added to the Provider later are found.
+     */
+    private static final class ServiceSnapshot {
+
+        private final Set<Service> services;
+        private final Map<String, Service> index;
+        private final ConcurrentMap<String, Service> resolved = new ConcurrentHashMap<>();
+
+        ServiceSnapshot(Set<Service> services) {
+            this.services = services;
+            Map<String, Service> serviceIndex = new HashMap<>(services.size() * 2);
+            for (Service service : services) {
+                serviceIndex.putIfAbsent(getKey(service.getType(), service.getAlgorithm()), service);
+            }
+            index = Collections.unmodifiableMap(serviceIndex);
+        }
+
+        Service getService(Provider p, String type, String algorithm) {
+            String key = getKey(type, algorithm);
+            Service service = index.get(key);
+            if (service == null) {
+                service = resolved.get(key);
+                if (service == null) {
+                    service = p.getService(type, algorithm);
+                    if (service != null) {
+                        resolved.putIfAbsent(key, service);
+                    }
+                }
+            }
+            return service;
+        }
+
+        private static String getKey(String type, String algorithm) {
+            return type + "." + algorithm.toUpperCase(Locale.ENGLISH);
+        }
+    }
+
 }
\ No newline at end of file
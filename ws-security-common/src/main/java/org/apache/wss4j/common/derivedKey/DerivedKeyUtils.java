@@ -18,9 +18,14 @@
  */
 package org.apache.wss4j.common.derivedKey;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
+import org.apache.wss4j.common.cache.DerivedKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.JCAEnginePool;
 
 public final class DerivedKeyUtils {
 
@@ -39,13 +44,7 @@ public final class DerivedKeyUtils {
     public static byte[] deriveKey(String algorithm, String label, int length, byte[] secret, byte[] nonce, int offset)
         throws WSSecurityException {
         DerivationAlgorithm algo = AlgoFactory.getInstance(algorithm);
-        byte[] labelBytes;
-        if (label == null || label.length() == 0) {
-            String defaultLabel = ConversationConstants.DEFAULT_LABEL + ConversationConstants.DEFAULT_LABEL;
-            labelBytes = defaultLabel.getBytes(StandardCharsets.UTF_8);
-        } else {
-            labelBytes = label.getBytes(StandardCharsets.UTF_8);
-        }
+        byte[] labelBytes = getLabelBytes(label);
 
         byte[] seed = new byte[labelBytes.length + nonce.length];
         System.arraycopy(labelBytes, 0, seed, 0, labelBytes.length);
@@ -57,4 +56,61 @@ public final class DerivedKeyUtils {
         }
         return algo.createKey(secret, seed, offset, keyLength);
     }
+
+    /**
+     * Derive a key, returning a previously derived key from the given cache if the same
+     * derivation parameters have been seen before. The cache may be null.
+     */
+    public static byte[] deriveKey(
+        String algorithm, String label, int length, byte[] secret, byte[] nonce, int offset,
+        DerivedKeyCache derivedKeyCache
+    ) throws WSSecurityException {
+        if (derivedKeyCache == null) {
+            return deriveKey(algorithm, label, length, secret, nonce, offset);
+        }
+
+        String identifier = getDerivedKeyIdentifier(algorithm, label, length, secret, nonce, offset);
+        byte[] derivedKey = derivedKeyCache.get(identifier);
+        if (derivedKey == null) {
+            derivedKey = deriveKey(algorithm, label, length, secret, nonce, offset);
+            derivedKeyCache.add(identifier, derivedKey);
+        }
+        return derivedKey;
+    }
+
+    /**
+     * Get an identifier for the given derivation parameters, suitable for use as the key of a
+     * DerivedKeyCache. The identifier is a digest, and so does not reveal the secret.
+     */
+    public static String getDerivedKeyIdentifier(
+        String algorithm, String label, int length, byte[] secret, byte[] nonce, int offset
+    ) throws WSSecurityException {
+        try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-256")) {
+            MessageDigest digest = sha.get();
+            byte[] algorithmBytes = algorithm == null ? new byte[0] : algorithm.getBytes(StandardCharsets.UTF_8);
+            // Prefix each variable length parameter with its length, so that different
+            // parameters can't produce the same input
+            updateWithLength(digest, algorithmBytes);
+            updateWithLength(digest, getLabelBytes(label));
+            updateWithLength(digest, secret);
+            updateWithLength(digest, nonce);
+            digest.update(ByteBuffer.allocate(8).putInt(offset).putInt(length).array());
+            return org.apache.xml.security.utils.XMLUtils.encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "errorInKeyDerivation");
+        }
+    }
+
+    private static void updateWithLength(MessageDigest digest, byte[] bytes) {
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    private static byte[] getLabelBytes(String label) {
+        if (label == null || label.length() == 0) {
+            String defaultLabel = ConversationConstants.DEFAULT_LABEL + ConversationConstants.DEFAULT_LABEL;
+            return defaultLabel.getBytes(StandardCharsets.UTF_8);
+        }
+        return label.getBytes(StandardCharsets.UTF_8);
+    }
 }
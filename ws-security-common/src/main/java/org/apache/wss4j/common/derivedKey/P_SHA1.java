@@ -44,9 +44,11 @@ import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.DestroyFailedException;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.JCAEnginePool;
 
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
 
 public class P_SHA1 implements DerivationAlgorithm {
 
@@ -57,17 +59,15 @@ public class P_SHA1 implements DerivationAlgorithm {
     public byte[] createKey(byte[] secret, byte[] seed, int offset, long length)
             throws WSSecurityException {
 
-        try {
-            Mac mac = Mac.getInstance("HmacSHA1");
-
-            byte[] tempBytes = pHash(secret, seed, mac, offset + (int) length);
+        try (JCAEnginePool.Engine<Mac> mac = JCAEnginePool.getMac("HmacSHA1", null)) {
+            byte[] tempBytes = pHash(secret, seed, mac.get(), offset + (int) length);
 
             byte[] key = new byte[(int) length];
 
             System.arraycopy(tempBytes, offset, key, 0, key.length);
 
             return key;
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeyException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "errorInKeyDerivation");
         }
     }
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.jfr;
+
+/**
+ * Guards the creation of the WSS4J JFR events. The jdk.jfr module is optional: it may be left out
+ * of a custom runtime image, and it is only an optional import of the OSGi bundles. The events
+ * must therefore only be created (and so their classes only be loaded) if isAvailable() returns
+ * true, e.g.:
+ *
+ * <pre>
+ * SecurityHeaderEvent event = JFRSupport.isAvailable() ? new SecurityHeaderEvent() : null;
+ * </pre>
+ *
+ * This class itself does not refer to any jdk.jfr type.
+ */
+public final class JFRSupport {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(JFRSupport.class);
+
+    private static final boolean AVAILABLE = isJFRAvailable();
+
+    private JFRSupport() {
+        // complete
+    }
+
+    /**
+     * @return true if the jdk.jfr module is available, so that the WSS4J JFR events can be created
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    private static boolean isJFRAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JFRSupport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            LOG.debug("JFR is not available, so no WSS4J JFR events are recorded: {}", ex.getMessage());
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for unwrapping (decrypting) the session key of an EncryptedKey.
+ */
+@Name("org.apache.wss4j.KeyUnwrap")
+@Label("Key Unwrap")
+@Category({"Apache WSS4J", "Security"})
+@Description("Unwrapping of the session key of an EncryptedKey")
+@StackTrace(false)
+public class KeyUnwrapEvent extends Event {
+
+    @Label("Key Transport Algorithm")
+    public String algorithm;
+
+    @Label("Cached")
+    @Description("Whether the session key was taken from the EncryptedKeyCache")
+    public boolean cached;
+
+    @Label("Success")
+    public boolean success;
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for the validation of a SAML Assertion.
+ */
+@Name("org.apache.wss4j.SamlValidation")
+@Label("SAML Validation")
+@Category({"Apache WSS4J", "Security"})
+@Description("Validation of a SAML Assertion")
+@StackTrace(false)
+public class SamlValidationEvent extends Event {
+
+    @Label("SAML Version")
+    public String samlVersion;
+
+    @Label("Signed")
+    public boolean signed;
+
+    @Label("Success")
+    public boolean success;
+
+}
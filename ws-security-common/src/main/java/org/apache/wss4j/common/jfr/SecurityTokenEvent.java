@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for the processing of a single element (token) of an inbound WS-Security header.
+ */
+@Name("org.apache.wss4j.SecurityToken")
+@Label("WS-Security Token")
+@Category({"Apache WSS4J", "Security"})
+@Description("Processing of a single element of an inbound WS-Security header")
+@StackTrace(false)
+public class SecurityTokenEvent extends Event {
+
+    @Label("Token")
+    @Description("The local name of the security header element")
+    public String token;
+
+    @Label("Streaming")
+    @Description("Whether the token was processed by the StAX (streaming) implementation")
+    public boolean streaming;
+
+    @Label("Success")
+    public boolean success;
+
+}
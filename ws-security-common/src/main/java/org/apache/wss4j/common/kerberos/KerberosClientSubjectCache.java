@@ -0,0 +1,338 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A client-side cache of JAAS-authenticated Kerberos Subjects, keyed by the JAAS login context name
+ * and the client principal name. A cached Subject holds the TGT obtained at login, and the JDK
+ * Kerberos mechanism stores the service tickets it obtains in the Subject's private credentials and
+ * reuses them while they are current. So a client that repeatedly calls the same service only
+ * contacts the KDC once per ticket lifetime, rather than for every message. Note that a fresh GSS
+ * context (and so a fresh AP-REQ) is still created for every message, as the service rejects
+ * replayed authenticators.
+ *
+ * Tickets that are no longer current are removed from a cached Subject, and a Subject is logged in
+ * again once its TGT is within the refresh window of its end time (or once it holds no current
+ * ticket at all).
+ *
+ * The client principal is the name the CallbackHandler returns for a NameCallback, which is how
+ * the Kerberos login module asks for it. If the CallbackHandler doesn't supply a name (e.g. as the
+ * principal is configured for the JAAS login context), the Subject is cached for the JAAS login
+ * context name alone.
+ */
+public class KerberosClientSubjectCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KerberosClientSubjectCache.class);
+
+    public static final long DEFAULT_REFRESH_WINDOW = 60L;
+
+    private final Map<SubjectKey, CacheEntry> subjects = new ConcurrentHashMap<>();
+    private final long refreshWindow;
+
+    public KerberosClientSubjectCache() {
+        this(DEFAULT_REFRESH_WINDOW);
+    }
+
+    /**
+     * @param refreshWindow The time in seconds before the end time of the TGT at which the
+     *                      Subject is logged in again
+     */
+    public KerberosClientSubjectCache(long refreshWindow) {
+        if (refreshWindow < 0) {
+            throw new IllegalArgumentException("The refreshWindow parameter must not be negative");
+        }
+        this.refreshWindow = refreshWindow;
+    }
+
+    /**
+     * Get a logged-in Subject for the given JAAS login context name and the client principal
+     * selected by the CallbackHandler, logging in if there is no cached Subject, if its TGT is
+     * about to expire or if it holds no current ticket.
+     * @param jaasLoginModuleName the JAAS Login Module name to use
+     * @param callbackHandler a CallbackHandler instance to retrieve a principal name and password (optional)
+     * @return a Subject containing at least one client principal
+     * @throws WSSecurityException if the login fails
+     */
+    public Subject getSubject(String jaasLoginModuleName, CallbackHandler callbackHandler)
+        throws WSSecurityException {
+        SubjectKey key = new SubjectKey(jaasLoginModuleName, getPrincipalName(callbackHandler));
+        CacheEntry entry = subjects.computeIfAbsent(key, k -> new CacheEntry());
+
+        Subject subject = entry.subject;
+        if (subject != null && isFresh(subject)) {
+            return subject;
+        }
+
+        entry.lock.lock();
+        try {
+            // Another thread may have logged in while we were waiting
+            subject = entry.subject;
+            if (subject == null || !isFresh(subject)) {
+                // Don't keep a stale Subject if the login fails
+                entry.subject = null;
+                LOG.debug("Logging in to obtain a TGT for JAAS context {} and principal {}",
+                          jaasLoginModuleName, key.principalName);
+                subject = login(jaasLoginModuleName, callbackHandler);
+                entry.subject = subject;
+            }
+            return subject;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the cached Subjects for the given JAAS login context name, e.g. after the service
+     * rejected a ticket.
+     * @param jaasLoginModuleName the JAAS Login Module name
+     */
+    public void remove(String jaasLoginModuleName) {
+        subjects.keySet().removeIf(key -> key.contextName.equals(jaasLoginModuleName));
+    }
+
+    /**
+     * Login using the given JAAS login context name, without caching the resulting Subject.
+     * @param jaasLoginModuleName the JAAS Login Module name to use
+     * @param callbackHandler a CallbackHandler instance to retrieve a password (optional)
+     * @return a Subject containing at least one client principal
+     * @throws WSSecurityException if the login fails
+     */
+    public static Subject login(String jaasLoginModuleName, CallbackHandler callbackHandler)
+        throws WSSecurityException {
+        LoginContext loginContext = null;
+        try {
+            if (callbackHandler == null) {
+                loginContext = new LoginContext(jaasLoginModuleName);
+            } else {
+                loginContext = new LoginContext(jaasLoginModuleName, callbackHandler);
+            }
+            loginContext.login();
+        } catch (LoginException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, ex,
+                "kerberosLoginError",
+                new Object[] {ex.getMessage()}
+            );
+        }
+        LOG.debug("Successfully authenticated to the TGT");
+
+        Subject clientSubject = loginContext.getSubject();
+        Set<Principal> clientPrincipals = clientSubject.getPrincipals();
+        if (clientPrincipals.isEmpty()) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE,
+                "kerberosLoginError",
+                new Object[] {"No Client principals found after login"});
+        }
+        return clientSubject;
+    }
+
+    /**
+     * Get the client principal name from the CallbackHandler, in the same way as the Kerberos login
+     * module does
+     * @return the principal name, or null if the CallbackHandler doesn't supply one
+     */
+    private static String getPrincipalName(CallbackHandler callbackHandler) {
+        if (callbackHandler == null) {
+            return null;
+        }
+        NameCallback nameCallback = new NameCallback("Kerberos username: ");
+        try {
+            callbackHandler.handle(new Callback[] {nameCallback});
+        } catch (IOException | UnsupportedCallbackException | ClassCastException ex) {
+            // CallbackHandlers often cast the callback to the PasswordCallback they expect
+            LOG.debug("The CallbackHandler doesn't supply a Kerberos principal name: {}", ex.getMessage());
+            return null;
+        }
+        return nameCallback.getName();
+    }
+
+    private boolean isFresh(Subject subject) {
+        if (!removeExpiredTickets(subject)) {
+            return false;
+        }
+        KerberosTicket tgt = getTGT(subject);
+        if (tgt == null || !tgt.isCurrent() || tgt.getEndTime() == null) {
+            return false;
+        }
+        Date refreshTime = new Date(System.currentTimeMillis() + refreshWindow * 1000L);
+        return tgt.getEndTime().after(refreshTime);
+    }
+
+    /**
+     * Remove the tickets that are no longer current from the given Subject. The credentials are
+     * locked while doing so, as the JDK does when it removes expired tickets itself.
+     * @return whether the Subject still holds a current ticket
+     */
+    private static boolean removeExpiredTickets(Subject subject) {
+        boolean current = false;
+        Set<Object> credentials = subject.getPrivateCredentials();
+        synchronized (credentials) {
+            Iterator<Object> iterator = credentials.iterator();
+            while (iterator.hasNext()) {
+                Object credential = iterator.next();
+                if (credential instanceof KerberosTicket) {
+                    if (((KerberosTicket) credential).isCurrent()) {
+                        current = true;
+                    } else {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Get the TGT from the given Subject, i.e. the ticket of the krbtgt/REALM@REALM principal
+     * @param subject a logged-in Subject
+     * @return the TGT, or null if the Subject doesn't hold one
+     */
+    public static KerberosTicket getTGT(Subject subject) {
+        for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            KerberosPrincipal server = ticket.getServer();
+            if (server != null && isTicketGrantingTicket(server)) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the service ticket for the given service from the clientSubject parameter. A cached client
+     * Subject holds the TGT, and the service tickets for every service it has been used with, so the
+     * ticket is selected by its server principal. Tickets that are no longer current are skipped.
+     * @param clientSubject a logged-in Subject
+     * @param serviceName the service name the ticket was requested for
+     * @param isUsernameServiceNameForm whether the service name is a principal name rather than a
+     *                                  host-based service name
+     * @return the service ticket, or null if the Subject doesn't hold a current one for the service
+     */
+    public static KerberosTicket getServiceTicket(
+        Subject clientSubject, String serviceName, boolean isUsernameServiceNameForm
+    ) {
+        Set<KerberosTicket> privateCredentials = clientSubject.getPrivateCredentials(KerberosTicket.class);
+        if (privateCredentials == null || privateCredentials.isEmpty()) {
+            LOG.debug("Kerberos client subject private credentials are null");
+            return null;
+        }
+
+        for (KerberosTicket privateCredential : privateCredentials) {
+            KerberosPrincipal server = privateCredential.getServer();
+            if (server != null && privateCredential.isCurrent() && !isTicketGrantingTicket(server)
+                && isServicePrincipal(server, serviceName, isUsernameServiceNameForm)) {
+                return privateCredential;
+            }
+        }
+        LOG.debug("No service ticket for {} was found in the Kerberos client subject", serviceName);
+        return null;
+    }
+
+    /**
+     * Return whether the given server principal is that of a TGT, i.e. krbtgt/REALM@REALM
+     */
+    private static boolean isTicketGrantingTicket(KerberosPrincipal server) {
+        String realm = server.getRealm();
+        return ("krbtgt/" + realm + "@" + realm).equals(server.getName());
+    }
+
+    /**
+     * Return whether the given server principal is that of the requested service. The service name
+     * is either a principal name ("service/host", optionally with a realm), or a host-based
+     * service name ("service@host").
+     */
+    private static boolean isServicePrincipal(
+        KerberosPrincipal server, String serviceName, boolean isUsernameServiceNameForm
+    ) {
+        String serverName = server.getName();
+        if (isUsernameServiceNameForm) {
+            if (serviceName.indexOf('@') != -1) {
+                return serverName.equals(serviceName);
+            }
+            return serverName.equals(serviceName + "@" + server.getRealm());
+        }
+
+        int index = serviceName.indexOf('@');
+        String expectedName = index == -1
+            ? serviceName : serviceName.substring(0, index) + "/" + serviceName.substring(index + 1);
+        String realmSuffix = "@" + server.getRealm();
+        if (serverName.endsWith(realmSuffix)) {
+            serverName = serverName.substring(0, serverName.length() - realmSuffix.length());
+        }
+        // Host names are case insensitive
+        return serverName.equalsIgnoreCase(expectedName);
+    }
+
+    private static final class SubjectKey {
+        private final String contextName;
+        private final String principalName;
+
+        SubjectKey(String contextName, String principalName) {
+            this.contextName = contextName;
+            this.principalName = principalName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SubjectKey)) {
+                return false;
+            }
+            SubjectKey key = (SubjectKey) o;
+            return contextName.equals(key.contextName) && Objects.equals(principalName, key.principalName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * contextName.hashCode() + Objects.hashCode(principalName);
+        }
+    }
+
+    private static final class CacheEntry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Subject subject;
+    }
+}
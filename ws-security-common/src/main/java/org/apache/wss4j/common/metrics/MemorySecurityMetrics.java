@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A simple in-memory SecurityMetrics implementation, that keeps counts, the total and maximum
+ * duration, a latency histogram and the number of bytes for each stage and name. It is intended
+ * for tests and benchmarks, and as a reference for implementations that report to a metrics system.
+ */
+public class MemorySecurityMetrics implements SecurityMetrics {
+
+    private final ConcurrentMap<String, Statistics> statistics = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordDuration(Stage stage, String name, long durationNanos, boolean success) {
+        getOrCreate(stage, name).recordDuration(durationNanos, success);
+    }
+
+    @Override
+    public void recordBytes(Stage stage, String name, long bytes) {
+        getOrCreate(stage, name).bytes.add(bytes);
+    }
+
+    /**
+     * Return the Statistics recorded for the given stage and name, or null if nothing has been recorded
+     */
+    public Statistics getStatistics(Stage stage, String name) {
+        return statistics.get(createKey(stage, name));
+    }
+
+    /**
+     * @return all Statistics recorded so far, keyed by "stage/name"
+     */
+    public Map<String, Statistics> getStatistics() {
+        return new TreeMap<>(statistics);
+    }
+
+    public void clear() {
+        statistics.clear();
+    }
+
+    private Statistics getOrCreate(Stage stage, String name) {
+        String key = createKey(stage, name);
+        Statistics stats = statistics.get(key);
+        if (stats == null) {
+            stats = statistics.computeIfAbsent(key, k -> new Statistics());
+        }
+        return stats;
+    }
+
+    private static String createKey(Stage stage, String name) {
+        return stage.name() + "/" + name;
+    }
+
+    /**
+     * The statistics recorded for a single stage and name. The latency histogram has a bucket
+     * for each power of two nanoseconds, i.e. bucket n counts the durations in [2^(n-1), 2^n).
+     */
+    public static final class Statistics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(Long.SIZE);
+
+        private void recordDuration(long durationNanos, boolean success) {
+            long nanos = Math.max(durationNanos, 0L);
+            count.increment();
+            if (!success) {
+                failures.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.incrementAndGet(Math.min(Long.SIZE - Long.numberOfLeadingZeros(nanos), Long.SIZE - 1));
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return a copy of the latency histogram
+         */
+        public long[] getHistogram() {
+            long[] copy = new long[histogram.length()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = histogram.get(i);
+            }
+            return copy;
+        }
+
+        /**
+         * Return an upper bound of the given percentile (between 0 and 1) of the recorded
+         * durations in nanoseconds, as given by the histogram
+         */
+        public long getPercentileNanos(double percentile) {
+            long total = 0;
+            long[] buckets = getHistogram();
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            long threshold = (long)Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= threshold && seen > 0) {
+                    return i == 0 ? 0L : 1L << Math.min(i, Long.SIZE - 2);
+                }
+            }
+            return 0L;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount() + ", failures=" + getFailures() + ", totalNanos=" + getTotalNanos()
+                + ", maxNanos=" + getMaxNanos() + ", bytes=" + getBytes();
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.metrics;
+
+/**
+ * Measures the duration of a stage for a SecurityMetrics instance, e.g.:
+ *
+ * <pre>
+ * MetricsTimer timer = MetricsTimer.start(metrics, SecurityMetrics.Stage.TOKEN, name);
+ * boolean success = false;
+ * try {
+ *     ...
+ *     success = true;
+ * } finally {
+ *     timer.stop(success);
+ * }
+ * </pre>
+ *
+ * If no SecurityMetrics instance is configured then a shared timer that does nothing is returned,
+ * so that no measurement is taken.
+ */
+public final class MetricsTimer {
+
+    private static final MetricsTimer DISABLED = new MetricsTimer(null, null, null, 0L);
+
+    private final SecurityMetrics metrics;
+    private final SecurityMetrics.Stage stage;
+    private final String name;
+    private final long start;
+
+    private MetricsTimer(SecurityMetrics metrics, SecurityMetrics.Stage stage, String name, long start) {
+        this.metrics = metrics;
+        this.stage = stage;
+        this.name = name;
+        this.start = start;
+    }
+
+    /**
+     * Start measuring a stage
+     * @param metrics the SecurityMetrics instance to report to, or null if none is configured
+     * @param stage the stage that is measured
+     * @param name the token type, algorithm or action that is processed in the stage
+     * @return the timer, which must be stopped once the stage completes
+     */
+    public static MetricsTimer start(SecurityMetrics metrics, SecurityMetrics.Stage stage, String name) {
+        if (metrics == null) {
+            return DISABLED;
+        }
+        return new MetricsTimer(metrics, stage, name, System.nanoTime());
+    }
+
+    /**
+     * Report the duration of the stage
+     * @param success whether the stage completed successfully
+     */
+    public void stop(boolean success) {
+        if (metrics != null) {
+            metrics.recordDuration(stage, name, System.nanoTime() - start, success);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.metrics;
+
+/**
+ * An SPI to report how much time (and data) is spent in the different stages of processing a
+ * security header. No SecurityMetrics instance is configured by default, in which case the
+ * processing code does not take any measurements. Implementations must be thread-safe and
+ * should return quickly, as they are called on the processing thread.
+ */
+public interface SecurityMetrics {
+
+    /**
+     * The stages of security processing that are measured
+     */
+    enum Stage {
+        /** Processing of a complete security header */
+        SECURITY_HEADER,
+        /** Processing of a single element of the security header, named by its local name */
+        TOKEN,
+        /** Verifying trust in a certificate chain */
+        TRUST_VERIFICATION,
+        /** Decrypting an EncryptedData element, named by its encryption algorithm */
+        DECRYPTION,
+        /** A replay cache lookup, named by the kind of replay cache */
+        REPLAY_CACHE,
+        /** Validating a credential, named by the Validator */
+        VALIDATION
+    }
+
+    /**
+     * Record the duration of a stage
+     * @param stage the stage that was measured
+     * @param name the token type, algorithm or action that was processed in the stage
+     * @param durationNanos the duration in nanoseconds
+     * @param success whether the stage completed successfully
+     */
+    void recordDuration(Stage stage, String name, long durationNanos, boolean success);
+
+    /**
+     * Record the number of bytes processed in a stage
+     * @param stage the stage that processed the bytes
+     * @param name the token type, algorithm or action that was processed in the stage
+     * @param bytes the number of bytes
+     */
+    void recordBytes(Stage stage, String name, long bytes);
+
+}
@@ -21,6 +21,10 @@ package org.apache.wss4j.common.saml;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 import org.opensaml.core.config.Configuration;
 import org.opensaml.core.xml.config.XMLConfigurationException;
@@ -32,7 +36,48 @@ import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
  */
 public final class OpenSAMLBootstrap {
 
-    /** List of default configuration files. */
+    /**
+     * The groups of XMLObject provider configurations that can be loaded. CORE is always loaded.
+     * CORE, SAML1 and SAML2 are sufficient to create, sign, encrypt and validate SAML 1.1 and
+     * 2.0 Assertions, the others are only needed by applications that process the corresponding
+     * SAML extensions with OpenSAML.
+     */
+    public enum ConfigurationSet {
+        CORE("/default-config.xml", "/schema-config.xml", "/signature-config.xml",
+             "/wss4j-signature-config.xml", "/encryption-config.xml"),
+        SAML1("/saml1-assertion-config.xml", "/saml1-protocol-config.xml"),
+        SAML2("/saml2-assertion-config.xml", "/saml2-assertion-delegation-restriction-config.xml",
+              "/saml2-protocol-config.xml"),
+        METADATA("/saml1-metadata-config.xml", "/saml2-metadata-algorithm-config.xml",
+                 "/saml2-metadata-attr-config.xml", "/saml2-metadata-config.xml",
+                 "/saml2-metadata-idp-discovery-config.xml", "/saml2-metadata-query-config.xml",
+                 "/saml2-metadata-reqinit-config.xml", "/saml2-metadata-ui-config.xml",
+                 "/saml2-metadata-rpi-config.xml"),
+        SAML2_EXTENSIONS("/saml2-ecp-config.xml", "/saml2-protocol-thirdparty-config.xml",
+                         "/saml2-protocol-aslo-config.xml", "/saml2-channel-binding-config.xml",
+                         "/saml-ec-gss-config.xml"),
+        XACML("/xacml20-context-config.xml", "/xacml20-policy-config.xml",
+              "/xacml10-saml2-profile-config.xml", "/xacml11-saml2-profile-config.xml",
+              "/xacml2-saml2-profile-config.xml", "/xacml3-saml2-profile-config.xml",
+              "/saml2-xacml2-profile.xml");
+
+        private final List<String> configs;
+
+        ConfigurationSet(String... configs) {
+            this.configs = Arrays.asList(configs);
+        }
+
+        static ConfigurationSet forConfig(String config) {
+            for (ConfigurationSet configurationSet : values()) {
+                if (configurationSet.configs.contains(config)) {
+                    return configurationSet;
+                }
+            }
+            throw new IllegalArgumentException("The configuration " + config + " is not part of any configuration set");
+        }
+    }
+
+    /** List of default configuration files, in the order in which they are loaded. */
     private static final String[] XML_CONFIGS = {
         "/default-config.xml",
         "/schema-config.xml",
@@ -81,6 +126,22 @@ public final class OpenSAMLBootstrap {
     }
 
     public static synchronized void bootstrap(boolean includeXacml) throws XMLConfigurationException {
+        Set<ConfigurationSet> configurationSets = EnumSet.allOf(ConfigurationSet.class);
+        if (!includeXacml) {
+            configurationSets.remove(ConfigurationSet.XACML);
+        }
+        bootstrap(configurationSets);
+    }
+
+    /**
+     * Initializes the OpenSAML library, loading only the configurations of the given configuration
+     * sets. It may be called again to load further configuration sets.
+     *
+     * @param configurationSets the configuration sets to load
+     * @throws XMLConfigurationException thrown if there is a problem initializing the OpenSAML library
+     */
+    public static synchronized void bootstrap(Set<ConfigurationSet> configurationSets)
+        throws XMLConfigurationException {
         ClassLoader loader = Thread.currentThread().getContextClassLoader();
         try {
             XMLConfigurator configurator = new XMLConfigurator();
@@ -88,7 +149,7 @@ public final class OpenSAMLBootstrap {
             Thread.currentThread().setContextClassLoader(XMLObjectProviderRegistrySupport.class.getClassLoader());
 
             for (String config : XML_CONFIGS) {
-                if (includeXacml || !config.contains("xacml")) {
+                if (configurationSets.contains(ConfigurationSet.forConfig(config))) {
                     //most are found in the Configuration.class classloader
                     InputStream ins = Configuration.class.getResourceAsStream(config);  //NOPMD
                     if (ins == null) {
@@ -19,6 +19,12 @@
 
 package org.apache.wss4j.common.saml;
 
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.xml.namespace.QName;
 
 import net.shibboleth.shared.xml.impl.BasicParserPool;
@@ -26,6 +32,7 @@ import net.shibboleth.shared.xml.ParserPool;
 
 import org.apache.wss4j.common.crypto.WSProviderConfig;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.OpenSAMLBootstrap.ConfigurationSet;
 import org.opensaml.core.config.Configuration;
 import org.opensaml.core.config.ConfigurationService;
 import org.opensaml.core.config.provider.MapBasedConfiguration;
@@ -51,6 +58,7 @@ import org.opensaml.xmlsec.signature.support.SignerProvider;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 /**
  * Class OpenSAMLUtil provides static helper methods for the OpenSaml library
@@ -63,7 +71,13 @@ public final class OpenSAMLUtil {
     private static XMLObjectBuilderFactory builderFactory;
     private static MarshallerFactory marshallerFactory;
     private static UnmarshallerFactory unmarshallerFactory;
-    private static boolean samlEngineInitialized = false;
+    private static volatile boolean samlEngineInitialized = false;
+    private static final ReentrantLock INIT_LOCK = new ReentrantLock();
+    private static volatile Set<ConfigurationSet> configurationSets = EnumSet.allOf(ConfigurationSet.class);
+    private static volatile Set<ConfigurationSet> lazyConfigurationSets = EnumSet.noneOf(ConfigurationSet.class);
+    private static final Set<ConfigurationSet> LOADED_CONFIGURATION_SETS = EnumSet.noneOf(ConfigurationSet.class);
+    private static volatile boolean lazyConfigurationSetsLoaded = true;
+    private static volatile Duration bootstrapDuration;
 
     private OpenSAMLUtil() {
         // Complete
@@ -72,51 +86,219 @@ public final class OpenSAMLUtil {
     /**
      * Initialise the SAML library
      */
-    public static synchronized void initSamlEngine() {
+    public static void initSamlEngine() {
         initSamlEngine(true);
     }
 
-    public static synchronized void initSamlEngine(boolean includeXacml) {
-        if (!samlEngineInitialized) {
-            LOG.debug("Initializing the opensaml2 library...");
-            WSProviderConfig.init();
+    public static void initSamlEngine(boolean includeXacml) {
+        // This is called for every SamlAssertionWrapper, so avoid any locking once initialized
+        if (samlEngineInitialized) {
+            return;
+        }
+        INIT_LOCK.lock();
+        try {
+            if (!samlEngineInitialized) {
+                LOG.debug("Initializing the opensaml2 library...");
+                long start = System.nanoTime();
+                Set<ConfigurationSet> bootstrapSets = EnumSet.copyOf(configurationSets);
+                Set<ConfigurationSet> lazySets = EnumSet.noneOf(ConfigurationSet.class);
+                lazySets.addAll(lazyConfigurationSets);
+                lazySets.removeAll(bootstrapSets);
+                if (!includeXacml) {
+                    bootstrapSets.remove(ConfigurationSet.XACML);
+                    lazySets.remove(ConfigurationSet.XACML);
+                }
+                WSProviderConfig.init();
 
-            Configuration configuration = new MapBasedConfiguration();
-            ConfigurationService.setConfiguration(configuration);
+                Configuration configuration = new MapBasedConfiguration();
+                ConfigurationService.setConfiguration(configuration);
 
-            providerRegistry = new XMLObjectProviderRegistry();
-            configuration.register(XMLObjectProviderRegistry.class, providerRegistry,
-                                   ConfigurationService.DEFAULT_PARTITION_NAME);
+                providerRegistry = new XMLObjectProviderRegistry();
+                configuration.register(XMLObjectProviderRegistry.class, providerRegistry,
+                                       ConfigurationService.DEFAULT_PARTITION_NAME);
+
+                try {
+                    OpenSAMLBootstrap.bootstrap(bootstrapSets);
+                    LOADED_CONFIGURATION_SETS.addAll(bootstrapSets);
+                    lazyConfigurationSets = lazySets;
+                    lazyConfigurationSetsLoaded = lazySets.isEmpty();
+
+                    SAMLConfiguration samlConfiguration = new SAMLConfiguration();
+
+                    configuration.register(SAMLConfiguration.class, samlConfiguration,
+                                           ConfigurationService.DEFAULT_PARTITION_NAME);
+
+                    builderFactory = XMLObjectProviderRegistrySupport.getBuilderFactory();
+                    marshallerFactory = XMLObjectProviderRegistrySupport.getMarshallerFactory();
+                    unmarshallerFactory = XMLObjectProviderRegistrySupport.getUnmarshallerFactory();
+
+                    try {
+                        configureParserPool();
+
+                        // used by org.opensaml.saml.saml2.encryption.Decrypter
+                        configuration.register(DecryptionParserPool.class, new DecryptionParserPool(getParserPool()),
+                            ConfigurationService.DEFAULT_PARTITION_NAME);
+                    } catch (Throwable t) {
+                        LOG.warn("Unable to bootstrap the parser pool part of the opensaml library "
+                                 + "- some SAML operations may fail", t);
+                    }
+
+                    samlEngineInitialized = true;
+                    bootstrapDuration = Duration.ofNanos(System.nanoTime() - start);
+                    LOG.debug("opensaml3 library bootstrap of {} complete in {} ms",
+                              bootstrapSets, bootstrapDuration.toMillis());
+                } catch (XMLConfigurationException ex) {
+                    LOG.error("Unable to bootstrap the opensaml3 library - all SAML operations will fail", ex);
+                }
+            }
+        } finally {
+            INIT_LOCK.unlock();
+        }
+    }
 
+    /**
+     * Initialise the SAML library on a background (daemon) thread, e.g. at application start, so that
+     * the first message containing a SAML token does not have to wait for it.
+     *
+     * @return a CompletableFuture that is completed once the SAML library is initialised
+     */
+    public static CompletableFuture<Void> initSamlEngineAsync() {
+        CompletableFuture<Void> initialized = new CompletableFuture<>();
+        if (samlEngineInitialized) {
+            initialized.complete(null);
+            return initialized;
+        }
+        Thread thread = new Thread(() -> {
             try {
-                OpenSAMLBootstrap.bootstrap(includeXacml);
+                initSamlEngine();
+                initialized.complete(null);
+            } catch (Throwable t) {
+                initialized.completeExceptionally(t);
+            }
+        }, "wss4j-opensaml-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+        return initialized;
+    }
 
-                SAMLConfiguration samlConfiguration = new SAMLConfiguration();
+    /**
+     * Set the OpenSAML configuration sets that are loaded when the SAML library is initialised.
+     * All of them are loaded by default, ConfigurationSet.CORE is always loaded. If the SAML library
+     * is already initialised, any of the given configuration sets that are not loaded yet are loaded
+     * immediately.
+     *
+     * @param newConfigurationSets the configuration sets to load
+     */
+    public static void setConfigurationSets(Set<ConfigurationSet> newConfigurationSets) {
+        setConfigurationSets(newConfigurationSets, EnumSet.noneOf(ConfigurationSet.class));
+    }
 
-                configuration.register(SAMLConfiguration.class, samlConfiguration,
-                                       ConfigurationService.DEFAULT_PARTITION_NAME);
+    /**
+     * Set the OpenSAML configuration sets that are loaded when the SAML library is initialised, and
+     * the configuration sets that are only loaded once an element is unmarshalled that has no
+     * registered unmarshaller, e.g. a metadata element in the Advice of an Assertion. Configuration
+     * sets that are in neither set are never loaded. Note that XMLObject builders and marshallers of
+     * a lazily loaded configuration set are not available before it has been loaded.
+     *
+     * @param newConfigurationSets the configuration sets to load at initialisation
+     * @param newLazyConfigurationSets the configuration sets to load on first use
+     */
+    public static void setConfigurationSets(
+        Set<ConfigurationSet> newConfigurationSets, Set<ConfigurationSet> newLazyConfigurationSets
+    ) {
+        Set<ConfigurationSet> sets = EnumSet.of(ConfigurationSet.CORE);
+        sets.addAll(newConfigurationSets);
+        Set<ConfigurationSet> lazySets = EnumSet.noneOf(ConfigurationSet.class);
+        lazySets.addAll(newLazyConfigurationSets);
+        lazySets.removeAll(sets);
+        INIT_LOCK.lock();
+        try {
+            configurationSets = sets;
+            lazyConfigurationSets = lazySets;
+            if (samlEngineInitialized) {
+                loadConfigurationSets(sets);
+                lazyConfigurationSetsLoaded = LOADED_CONFIGURATION_SETS.containsAll(lazySets);
+            }
+        } finally {
+            INIT_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Forget the initialisation of the SAML library, so that it is initialised again with the current
+     * configuration sets on next use. This is only intended for tests.
+     */
+    static void resetSamlEngine() {
+        INIT_LOCK.lock();
+        try {
+            samlEngineInitialized = false;
+            LOADED_CONFIGURATION_SETS.clear();
+            lazyConfigurationSetsLoaded = true;
+            bootstrapDuration = null;
+        } finally {
+            INIT_LOCK.unlock();
+        }
+    }
 
-                builderFactory = XMLObjectProviderRegistrySupport.getBuilderFactory();
-                marshallerFactory = XMLObjectProviderRegistrySupport.getMarshallerFactory();
-                unmarshallerFactory = XMLObjectProviderRegistrySupport.getUnmarshallerFactory();
+    /**
+     * Get the time it took to initialise the SAML library, or null if it is not initialised yet
+     *
+     * @return the time it took to initialise the SAML library
+     */
+    public static Duration getBootstrapDuration() {
+        return bootstrapDuration;
+    }
 
-                try {
-                    configureParserPool();
-
-                    // used by org.opensaml.saml.saml2.encryption.Decrypter
-                    configuration.register(DecryptionParserPool.class, new DecryptionParserPool(getParserPool()),
-                        ConfigurationService.DEFAULT_PARTITION_NAME);
-                } catch (Throwable t) {
-                    LOG.warn("Unable to bootstrap the parser pool part of the opensaml library "
-                             + "- some SAML operations may fail", t);
-                }
+    /**
+     * Load the lazy configuration sets if the given element, or any of its descendants, has no
+     * registered unmarshaller. OpenSAML would otherwise unmarshal a nested element as an XSAny.
+     */
+    private static void loadLazyConfigurationSets(Element root) {
+        if (lazyConfigurationSetsLoaded || !hasUnknownElement(root)) {
+            return;
+        }
+        INIT_LOCK.lock();
+        try {
+            if (!lazyConfigurationSetsLoaded) {
+                loadConfigurationSets(lazyConfigurationSets);
+                lazyConfigurationSetsLoaded = true;
+            }
+        } finally {
+            INIT_LOCK.unlock();
+        }
+    }
 
-                samlEngineInitialized = true;
-                LOG.debug("opensaml3 library bootstrap complete");
-            } catch (XMLConfigurationException ex) {
-                LOG.error("Unable to bootstrap the opensaml3 library - all SAML operations will fail", ex);
+    private static boolean hasUnknownElement(Element element) {
+        if (unmarshallerFactory.getUnmarshaller(element) == null) {
+            return true;
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && hasUnknownElement((Element)child)) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Load the given configuration sets that are not loaded yet
+     */
+    private static void loadConfigurationSets(Set<ConfigurationSet> sets) {
+        INIT_LOCK.lock();
+        try {
+            Set<ConfigurationSet> missingSets = EnumSet.noneOf(ConfigurationSet.class);
+            missingSets.addAll(sets);
+            missingSets.removeAll(LOADED_CONFIGURATION_SETS);
+            if (!missingSets.isEmpty()) {
+                LOG.debug("Loading the opensaml configuration sets {}", missingSets);
+                OpenSAMLBootstrap.bootstrap(missingSets);
+                LOADED_CONFIGURATION_SETS.addAll(missingSets);
+            }
+        } catch (XMLConfigurationException ex) {
+            LOG.warn("Unable to load the opensaml configuration sets {}", sets, ex);
+        } finally {
+            INIT_LOCK.unlock();
+        }
     }
 
     private static void configureParserPool() throws Throwable {
@@ -148,6 +330,8 @@ public final class OpenSAMLUtil {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"Error unmarshalling a SAML assertion"});
         }
+        // The element, or a nested element, may belong to a configuration set that is loaded lazily
+        loadLazyConfigurationSets(root);
         Unmarshaller unmarshaller = unmarshallerFactory.getUnmarshaller(root);
         if (unmarshaller == null) {
             LOG.debug("Unable to find an unmarshaller for element: " + root.getLocalName());
@@ -317,4 +501,16 @@ public final class OpenSAMLUtil {
                 && confirmMethod.endsWith(":cm:holder-of-key");
     }
 
+    /**
+     * Method isMethodBearer ...
+     *
+     * @param confirmMethod of type String
+     * @return boolean
+     */
+    public static boolean isMethodBearer(String confirmMethod) {
+        return
+            confirmMethod != null && confirmMethod.startsWith("urn:oasis:names:tc:SAML:")
+                && confirmMethod.endsWith(":cm:bearer");
+    }
+
 }
@@ -20,6 +20,10 @@
 package org.apache.wss4j.common.saml;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
@@ -37,9 +41,12 @@ import javax.xml.crypto.dsig.keyinfo.X509IssuerSerial;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.JCAEnginePool;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.opensaml.saml.saml2.core.SubjectConfirmationData;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 /**
  * Utility methods for SAML stuff
@@ -287,4 +294,75 @@ public final class SAMLUtil {
         }
     }
 
+    /**
+     * Get an identifier for the given signed Assertion, suitable for use as the key of a
+     * VerifiedSamlAssertionCache. The identifier is a SHA-256 digest of the issuer, the
+     * SignatureValue and the complete (namespace qualified) content of the Assertion, so that an
+     * Assertion that differs in any way from one that was verified does not match.
+     *
+     * @param samlAssertion The SAML Assertion
+     * @return the identifier, or null if the Assertion is not signed or was not parsed from DOM
+     * @throws WSSecurityException
+     */
+    public static String getVerifiedAssertionIdentifier(
+        SamlAssertionWrapper samlAssertion
+    ) throws WSSecurityException {
+        Element assertionElement = samlAssertion.getElement();
+        if (assertionElement == null || !samlAssertion.isSigned()) {
+            return null;
+        }
+
+        try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-256")) {
+            MessageDigest digest = sha.get();
+            updateWithLength(digest, samlAssertion.getIssuerString());
+            updateWithLength(digest, samlAssertion.getSignatureValue());
+            updateWithNode(digest, assertionElement);
+            return org.apache.xml.security.utils.XMLUtils.encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+    }
+
+    private static void updateWithNode(MessageDigest digest, Node node) {
+        // Tag each node with its type and prefix each value with its length, so that different
+        // trees can't produce the same input
+        digest.update((byte)node.getNodeType());
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            updateWithLength(digest, node.getNamespaceURI());
+            updateWithLength(digest, node.getLocalName() != null ? node.getLocalName() : node.getNodeName());
+
+            NamedNodeMap attributes = node.getAttributes();
+            digest.update(ByteBuffer.allocate(4).putInt(attributes.getLength()).array());
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                updateWithLength(digest, attribute.getNamespaceURI());
+                updateWithLength(digest, attribute.getLocalName() != null
+                    ? attribute.getLocalName() : attribute.getNodeName());
+                updateWithLength(digest, attribute.getNodeValue());
+            }
+
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                updateWithNode(digest, child);
+            }
+            // Mark the end of the element
+            digest.update((byte)0);
+        } else {
+            updateWithLength(digest, node.getNodeName());
+            updateWithLength(digest, node.getNodeValue());
+        }
+    }
+
+    private static void updateWithLength(MessageDigest digest, String value) {
+        updateWithLength(digest, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void updateWithLength(MessageDigest digest, byte[] value) {
+        // A length of -1 distinguishes a missing value from an empty one
+        int length = value == null ? -1 : value.length;
+        digest.update(ByteBuffer.allocate(4).putInt(length).array());
+        if (value != null) {
+            digest.update(value);
+        }
+    }
+
 }
@@ -99,6 +99,12 @@ public class SamlAssertionWrapper {
      */
     private SAMLKeyInfo signatureKeyInfo;
 
+    /**
+     * Whether the signature of the Assertion, and trust in its signing credential, was
+     * established by a previous verification of an identical Assertion
+     */
+    private boolean verifiedFromCache;
+
     /**
      * Default Canonicalization algorithm used for signing.
      */
@@ -266,10 +272,13 @@ public class SamlAssertionWrapper {
 
     public Instant getNotOnOrAfter() {
         if (getSamlVersion().equals(SAMLVersion.VERSION_20)) {
-            return getSaml2().getConditions().getNotOnOrAfter();
-        } else {
+            if (getSaml2().getConditions() != null) {
+                return getSaml2().getConditions().getNotOnOrAfter();
+            }
+        } else if (getSaml1().getConditions() != null) {
             return getSaml1().getConditions().getNotOnOrAfter();
         }
+        return null;
     }
 
     /**
@@ -725,6 +734,25 @@ public class SamlAssertionWrapper {
         return signatureKeyInfo;
     }
 
+    /**
+     * Record that the signature of this Assertion was established by a previous verification of
+     * an identical Assertion that is held in a VerifiedSamlAssertionCache. This is used instead of
+     * calling verifySignature. Trust in the signing credential must still be verified.
+     * @param samlKeyInfo the SAMLKeyInfo associated with the signature of the assertion
+     */
+    public void setVerifiedFromCache(SAMLKeyInfo samlKeyInfo) {
+        signatureKeyInfo = samlKeyInfo;
+        verifiedFromCache = true;
+    }
+
+    /**
+     * Return whether the signature of this Assertion was established by a previous verification
+     * of an identical Assertion
+     */
+    public boolean isVerifiedFromCache() {
+        return verifiedFromCache;
+    }
+
     /**
      * Get the SAMLKeyInfo associated with the Subject KeyInfo
      * @return the SAMLKeyInfo associated with the Subject KeyInfo
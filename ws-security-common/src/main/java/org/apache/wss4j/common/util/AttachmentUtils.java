@@ -495,9 +495,13 @@ public final class AttachmentUtils {
                 int ivLen = JCEMapper.getIVLengthFromURI(encAlgo) / 8;
                 byte[] ivBytes = new byte[ivLen];
 
-                int read = super.in.read(ivBytes, 0, ivLen);
+                int read = 0;
                 while (read != ivLen) {
-                    read += super.in.read(ivBytes, read, ivLen - read);
+                    int count = super.in.read(ivBytes, read, ivLen - read);
+                    if (count < 0) {
+                        throw new IOException("The cipher text is too short to contain an IV");
+                    }
+                    read += count;
                 }
 
                 AlgorithmParameterSpec paramSpec =
@@ -0,0 +1,252 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Provider;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+
+import org.apache.wss4j.common.crypto.ThreadLocalSecurityProvider;
+
+/**
+ * A pool of JCA MessageDigest and Mac instances, keyed by the type of the engine, the algorithm and
+ * the provider, so that the (relatively expensive) provider lookup of the getInstance methods is not
+ * done for each use of an engine. The pool does not lock: idle engines are held in a lock-free queue
+ * per key, and an engine is only ever used by the one thread that has acquired it. An engine is
+ * acquired via one of the static get methods, and returned to the pool by closing it:
+ *
+ * <pre>
+ * try (JCAEnginePool.Engine&lt;MessageDigest&gt; sha = JCAEnginePool.getMessageDigest("SHA-1")) {
+ *     return sha.get().digest(bytes);
+ * }
+ * </pre>
+ *
+ * Engines are reset when they are returned to the pool, a Mac must still be initialized by the
+ * caller each time it is acquired. Only the digest and HMAC algorithms that have an XML Security
+ * algorithm URI are pooled, engines of other algorithms are created per acquisition. If no provider
+ * is given, the Provider that the ThreadLocalSecurityProvider delegates to on the current thread is
+ * part of the key, so that engines are not shared between threads that select different providers.
+ */
+public final class JCAEnginePool {
+
+    /**
+     * The maximum number of idle engines that are kept per type, algorithm and provider
+     */
+    private static final int MAX_IDLE_ENGINES = 64;
+
+    /**
+     * The maximum number of type, algorithm and provider combinations that are pooled
+     */
+    private static final int MAX_POOLS = 256;
+
+    /**
+     * The JCE names of the digest and HMAC algorithms that have an XML Security algorithm URI,
+     * plus the "SHA1" alias that is used within WSS4J
+     */
+    private static final Set<String> POOLED_ALGORITHMS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "SHA1", "SHA-1", "SHA-224", "SHA-256", "SHA-384", "SHA-512",
+        "SHA3-224", "SHA3-256", "SHA3-384", "SHA3-512", "RIPEMD160", "WHIRLPOOL",
+        "HmacSHA1", "HmacSHA224", "HmacSHA256", "HmacSHA384", "HmacSHA512"
+    )));
+
+    private static final ConcurrentMap<PoolKey, Pool> POOLS = new ConcurrentHashMap<>();
+
+    private JCAEnginePool() {
+        // complete
+    }
+
+    /**
+     * A pooled JCA engine, which is returned to the pool when it is closed
+     */
+    public static final class Engine<T> implements AutoCloseable {
+        private final T engine;
+        private final Pool pool;
+        private final AtomicBoolean acquired = new AtomicBoolean();
+
+        private Engine(T engine, Pool pool) {
+            this.engine = engine;
+            this.pool = pool;
+        }
+
+        public T get() {
+            return engine;
+        }
+
+        /**
+         * Return the engine to the pool. Closing an engine more than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (acquired.compareAndSet(true, false) && pool != null) {
+                if (engine instanceof MessageDigest) {
+                    ((MessageDigest)engine).reset();
+                } else if (engine instanceof Mac) {
+                    ((Mac)engine).reset();
+                }
+                pool.release(this);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface EngineFactory<T> {
+        T create(String algorithm, String provider) throws GeneralSecurityException;
+    }
+
+    private static final class Pool {
+        private final Queue<Engine<?>> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        Engine<?> acquire() {
+            Engine<?> engine = idle.poll();
+            if (engine != null) {
+                idleCount.decrementAndGet();
+            }
+            return engine;
+        }
+
+        void release(Engine<?> engine) {
+            if (idleCount.incrementAndGet() <= MAX_IDLE_ENGINES) {
+                idle.offer(engine);
+            } else {
+                idleCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The key of a pool. The Provider of the current thread is compared by identity, as Provider
+     * inherits an (expensive) content based equals and hashCode.
+     */
+    private static final class PoolKey {
+        private final String type;
+        private final String algorithm;
+        private final String provider;
+        private final Provider threadProvider;
+
+        PoolKey(String type, String algorithm, String provider, Provider threadProvider) {
+            this.type = type;
+            this.algorithm = algorithm;
+            this.provider = provider;
+            this.threadProvider = threadProvider;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey)object;
+            return type.equals(other.type) && algorithm.equals(other.algorithm)
+                && Objects.equals(provider, other.provider) && threadProvider == other.threadProvider;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hash(type, algorithm, provider) + System.identityHashCode(threadProvider);
+        }
+    }
+
+    public static Engine<MessageDigest> getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        try {
+            return getMessageDigest(algorithm, null);
+        } catch (NoSuchProviderException ex) {
+            // Can't happen without a provider
+            throw new NoSuchAlgorithmException(ex);
+        }
+    }
+
+    public static Engine<MessageDigest> getMessageDigest(String algorithm, String provider)
+        throws NoSuchAlgorithmException, NoSuchProviderException {
+        try {
+            return acquire("MessageDigest", algorithm, provider,
+                (a, p) -> p == null ? MessageDigest.getInstance(a) : MessageDigest.getInstance(a, p));
+        } catch (NoSuchAlgorithmException | NoSuchProviderException ex) {
+            throw ex;
+        } catch (GeneralSecurityException ex) {
+            throw new NoSuchAlgorithmException(ex);
+        }
+    }
+
+    public static Engine<Mac> getMac(String algorithm, String provider)
+        throws NoSuchAlgorithmException, NoSuchProviderException {
+        try {
+            return acquire("Mac", algorithm, provider,
+                (a, p) -> p == null ? Mac.getInstance(a) : Mac.getInstance(a, p));
+        } catch (NoSuchAlgorithmException | NoSuchProviderException ex) {
+            throw ex;
+        } catch (GeneralSecurityException ex) {
+            throw new NoSuchAlgorithmException(ex);
+        }
+    }
+
+    /**
+     * Digest the given bytes with a pooled MessageDigest of the given algorithm
+     */
+    public static byte[] digest(String algorithm, byte[] input) throws NoSuchAlgorithmException {
+        try (Engine<MessageDigest> digest = getMessageDigest(algorithm)) {
+            return digest.get().digest(input);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Engine<T> acquire(
+        String type, String algorithm, String provider, EngineFactory<T> factory
+    ) throws GeneralSecurityException {
+        Pool pool = null;
+        PoolKey key = null;
+        if (POOLED_ALGORITHMS.contains(algorithm)) {
+            Provider threadProvider = provider == null ? ThreadLocalSecurityProvider.getCurrentProvider() : null;
+            key = new PoolKey(type, algorithm, provider, threadProvider);
+            pool = POOLS.get(key);
+        }
+
+        Engine<T> engine = pool == null ? null : (Engine<T>)pool.acquire();
+        if (engine == null) {
+            T instance = factory.create(algorithm, provider);
+            // The pool is only created once an engine could be created, i.e. for a valid provider
+            if (key != null && pool == null && POOLS.size() < MAX_POOLS) {
+                pool = POOLS.computeIfAbsent(key, k -> new Pool());
+            }
+            engine = new Engine<>(instance, pool);
+        }
+        engine.acquired.set(true);
+        return engine;
+    }
+
+}
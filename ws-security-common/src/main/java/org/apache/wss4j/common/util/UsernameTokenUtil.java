@@ -20,14 +20,18 @@
 package org.apache.wss4j.common.util;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.UnsupportedCallbackException;
 
+import org.apache.wss4j.common.cache.DerivedKeyCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
@@ -38,6 +42,8 @@ public final class UsernameTokenUtil {
     private static final org.slf4j.Logger LOG =
             org.slf4j.LoggerFactory.getLogger(UsernameTokenUtil.class);
 
+    private static final byte[] DERIVED_KEY_IDENTIFIER_MARKER = "UsernameToken".getBytes(StandardCharsets.UTF_8);
+
     private UsernameTokenUtil() {
         // complete
     }
@@ -62,30 +68,101 @@ public final class UsernameTokenUtil {
         System.arraycopy(password, 0, pwSalt, 0, password.length);
         System.arraycopy(salt, 0, pwSalt, password.length, salt.length);
 
-        MessageDigest sha = null;
-        try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
+        try (JCAEnginePool.Engine<MessageDigest> engine = JCAEnginePool.getMessageDigest("SHA1")) {
+            MessageDigest sha = engine.get();
+            //
+            // Make the first hash round with start value
+            //
+            byte[] k = sha.digest(pwSalt);
+            //
+            // Perform the 1st up to iteration-1 hash rounds, digesting into the same array
+            //
+            int iter = iteration;
+            if (iter <= 0) {
+                iter = DEFAULT_ITERATION;
+            }
+            for (int i = 1; i < iter; i++) {
+                sha.update(k);
+                sha.digest(k, 0, k.length);
+            }
+            return k;
+        } catch (NoSuchAlgorithmException | DigestException e) {
             LOG.debug(e.getMessage(), e);
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
             );
+        } finally {
+            Arrays.fill(pwSalt, (byte) 0);
         }
-        //
-        // Make the first hash round with start value
-        //
-        byte[] k = sha.digest(pwSalt);
-        //
-        // Perform the 1st up to iteration-1 hash rounds
-        //
-        int iter = iteration;
-        if (iter <= 0) {
-            iter = DEFAULT_ITERATION;
+    }
+
+    /**
+     * Generate a derived key as defined in WSS Username Token Profile, returning a previously
+     * derived key from the given cache if the same username, password, salt and iteration have
+     * been seen before. The cache may be null.
+     *
+     * @param username The username of the UsernameToken
+     * @param password The password to include in the key generation
+     * @param salt The Salt value
+     * @param iteration The Iteration value. If zero (0) is given the method uses the
+     *                  default value
+     * @param derivedKeyCache The cache of derived keys, or null
+     * @return Returns the derived key a byte array
+     * @throws WSSecurityException
+     */
+    public static byte[] generateDerivedKey(
+        String username,
+        byte[] password,
+        byte[] salt,
+        int iteration,
+        DerivedKeyCache derivedKeyCache
+    ) throws WSSecurityException {
+        if (derivedKeyCache == null) {
+            return generateDerivedKey(password, salt, iteration);
         }
-        for (int i = 1; i < iter; i++) {
-            k = sha.digest(k);
+
+        String identifier = getDerivedKeyIdentifier(username, password, salt, iteration);
+        byte[] derivedKey = derivedKeyCache.get(identifier);
+        if (derivedKey == null) {
+            derivedKey = generateDerivedKey(password, salt, iteration);
+            derivedKeyCache.add(identifier, derivedKey);
         }
-        return k;
+        return derivedKey;
+    }
+
+    /**
+     * Get an identifier for the given UsernameToken key derivation parameters, suitable for use as
+     * the key of a DerivedKeyCache. The identifier is a digest, and so does not reveal the password.
+     */
+    public static String getDerivedKeyIdentifier(
+        String username,
+        byte[] password,
+        byte[] salt,
+        int iteration
+    ) throws WSSecurityException {
+        int iter = iteration <= 0 ? DEFAULT_ITERATION : iteration;
+        try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-256")) {
+            MessageDigest digest = sha.get();
+            // Prefix each variable length parameter with its length, so that different
+            // parameters can't produce the same input. The leading marker keeps these identifiers
+            // apart from those of DerivedKeyTokens held in the same cache.
+            updateWithLength(digest, DERIVED_KEY_IDENTIFIER_MARKER);
+            updateWithLength(digest, username == null ? new byte[0] : username.getBytes(StandardCharsets.UTF_8));
+            updateWithLength(digest, password);
+            updateWithLength(digest, salt);
+            digest.update(ByteBuffer.allocate(4).putInt(iter).array());
+            return org.apache.xml.security.utils.XMLUtils.encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            LOG.debug(e.getMessage(), e);
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        }
+    }
+
+    private static void updateWithLength(MessageDigest digest, byte[] bytes) {
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
     }
 
     /**
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.cache;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Drives the in-memory caches from a large number of concurrent tasks, on a platform thread pool
+ * and (where the JDK supports them) on virtual threads, and logs how long each run takes.
+ */
+public class CacheConcurrencyTest {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CacheConcurrencyTest.class);
+
+    private static final int TASKS = 10000;
+    private static final int OPERATIONS_PER_TASK = 20;
+
+    @Test
+    public void testPlatformThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(200);
+        runCacheOperations("platform", executor);
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Method factory = null;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            // Virtual threads are not supported by this JDK
+        }
+        assumeTrue(factory != null);
+        runCacheOperations("virtual", (ExecutorService)factory.invoke(null));
+    }
+
+    private void runCacheOperations(String threadType, ExecutorService executor) throws Exception {
+        try (ReplayCache replayCache = new MemoryReplayCache();
+            EncryptedKeyCache encryptedKeyCache =
+                new MemoryEncryptedKeyCache(TASKS * OPERATIONS_PER_TASK, MemoryEncryptedKeyCache.DEFAULT_TTL)) {
+            long startTime = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(TASKS);
+            for (int i = 0; i < TASKS; i++) {
+                final int task = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < OPERATIONS_PER_TASK; j++) {
+                        String id = task + "-" + j;
+                        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+                        replayCache.add(id);
+                        assertTrue(replayCache.contains(id));
+                        encryptedKeyCache.add(id, key);
+                        assertArrayEquals(key, encryptedKeyCache.get(id));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            LOG.info("{} cache operations on {} threads took {} ms", TASKS * OPERATIONS_PER_TASK * 4, threadType,
+                     TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
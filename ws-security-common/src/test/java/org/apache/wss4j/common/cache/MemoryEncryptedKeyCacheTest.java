@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Some unit tests for the MemoryEncryptedKeyCache
+ */
+public class MemoryEncryptedKeyCacheTest {
+
+    @Test
+    public void testAddAndGet() throws IOException {
+        try (EncryptedKeyCache cache = new MemoryEncryptedKeyCache()) {
+            String id = UUID.randomUUID().toString();
+            byte[] secretKey = new byte[] {1, 2, 3, 4};
+            cache.add(id, secretKey);
+
+            assertArrayEquals(secretKey, cache.get(id));
+            assertNull(cache.get(UUID.randomUUID().toString()));
+            assertNull(cache.get(null));
+
+            // The cache must hold its own copy of the secret key
+            secretKey[0] = 0;
+            byte[] cached = cache.get(id);
+            assertArrayEquals(new byte[] {1, 2, 3, 4}, cached);
+            cached[1] = 0;
+            assertArrayEquals(new byte[] {1, 2, 3, 4}, cache.get(id));
+        }
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException, IOException {
+        try (EncryptedKeyCache cache = new MemoryEncryptedKeyCache()) {
+            String id = UUID.randomUUID().toString();
+            cache.add(id, new byte[] {1}, Instant.now().plus(1L, ChronoUnit.SECONDS));
+            assertNotNull(cache.get(id));
+
+            Thread.sleep(1250L);
+            assertNull(cache.get(id));
+        }
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        try (EncryptedKeyCache cache = new MemoryEncryptedKeyCache(2, MemoryEncryptedKeyCache.DEFAULT_TTL)) {
+            cache.add("a", new byte[] {1});
+            cache.add("b", new byte[] {2});
+            // Access "a" so that "b" is the least recently used entry
+            assertNotNull(cache.get("a"));
+            cache.add("c", new byte[] {3});
+
+            assertNotNull(cache.get("a"));
+            assertNull(cache.get("b"));
+            assertNotNull(cache.get("c"));
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        EncryptedKeyCache cache = new MemoryEncryptedKeyCache();
+        cache.add("a", new byte[] {1});
+        cache.close();
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testBadParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new MemoryEncryptedKeyCache(0, 60L));
+        assertThrows(IllegalArgumentException.class,
+            () -> new MemoryEncryptedKeyCache(10, MemoryEncryptedKeyCache.MAX_TTL + 1));
+    }
+}
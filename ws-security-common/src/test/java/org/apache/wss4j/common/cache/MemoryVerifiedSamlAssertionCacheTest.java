@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.cache;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some unit tests for the MemoryVerifiedSamlAssertionCache
+ */
+public class MemoryVerifiedSamlAssertionCacheTest {
+
+    @Test
+    public void testAddAndContains() throws IOException {
+        try (VerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            String id = UUID.randomUUID().toString();
+            cache.add(id);
+
+            assertTrue(cache.contains(id));
+            assertFalse(cache.contains(UUID.randomUUID().toString()));
+            assertFalse(cache.contains(null));
+        }
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException, IOException {
+        try (VerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            String id = UUID.randomUUID().toString();
+            cache.add(id, Instant.now().plus(1L, ChronoUnit.SECONDS));
+            assertTrue(cache.contains(id));
+
+            Thread.sleep(1250L);
+            assertFalse(cache.contains(id));
+
+            // An Assertion that has already expired is not cached
+            cache.add(id, Instant.now().minus(1L, ChronoUnit.SECONDS));
+            assertFalse(cache.contains(id));
+        }
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        try (VerifiedSamlAssertionCache cache =
+            new MemoryVerifiedSamlAssertionCache(2, MemoryVerifiedSamlAssertionCache.DEFAULT_TTL)) {
+            cache.add("a");
+            cache.add("b");
+            // Access "a" so that "b" is the least recently used entry
+            assertTrue(cache.contains("a"));
+            cache.add("c");
+
+            assertTrue(cache.contains("a"));
+            assertFalse(cache.contains("b"));
+            assertTrue(cache.contains("c"));
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        VerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache();
+        cache.add("a");
+        cache.close();
+        assertFalse(cache.contains("a"));
+    }
+
+    @Test
+    public void testBadParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new MemoryVerifiedSamlAssertionCache(0, 60L));
+        assertThrows(IllegalArgumentException.class,
+            () -> new MemoryVerifiedSamlAssertionCache(10, MemoryVerifiedSamlAssertionCache.MAX_TTL + 1));
+    }
+}
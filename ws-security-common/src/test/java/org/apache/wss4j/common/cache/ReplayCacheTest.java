@@ -23,8 +23,20 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.metrics.MemorySecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -180,6 +192,103 @@ public class ReplayCacheTest {
                 new EHCacheReplayCache("abc", tempDir, 10, 10, false));
     }
 
+    @Test
+    public void testBulkOperations() throws Exception {
+        try (ReplayCache memoryCache = new MemoryReplayCache();
+            ReplayCache ehCache = new EHCacheReplayCache("bulk", tempDir)) {
+            testBulkOperations(memoryCache);
+            testBulkOperations(ehCache);
+        }
+    }
+
+    private void testBulkOperations(ReplayCache replayCache) {
+        String id1 = UUID.randomUUID().toString();
+        String id2 = UUID.randomUUID().toString();
+        String id3 = UUID.randomUUID().toString();
+
+        Map<String, Instant> identifiers = new HashMap<>();
+        identifiers.put(id1, null);
+        identifiers.put(id2, Instant.now().plusSeconds(60L));
+        replayCache.addAll(identifiers);
+
+        assertTrue(replayCache.contains(id1));
+        assertTrue(replayCache.contains(id2));
+        assertEquals(Set.of(id1, id2), replayCache.getContained(List.of(id1, id2, id3)));
+        assertTrue(replayCache.getContained(List.of(id3)).isEmpty());
+    }
+
+    @Test
+    public void testAddAllIfAbsent() throws Exception {
+        try (ReplayCache memoryCache = new MemoryReplayCache();
+            ReplayCache ehCache = new EHCacheReplayCache("addIfAbsent", tempDir);
+            ReplayCache delegatingCache = new DelegatingReplayCache(new MemoryReplayCache())) {
+            testAddAllIfAbsent(memoryCache);
+            testAddAllIfAbsent(ehCache);
+            testAddAllIfAbsent(delegatingCache);
+        }
+    }
+
+    @Test
+    public void testReplayCacheUtils() throws Exception {
+        MemorySecurityMetrics metrics = new MemorySecurityMetrics();
+        try (ReplayCache replayCache = new MemoryReplayCache()) {
+            String id = UUID.randomUUID().toString();
+            assertFalse(ReplayCacheUtils.contains(replayCache, id, "Nonce", metrics));
+            replayCache.add(id);
+            assertTrue(ReplayCacheUtils.contains(replayCache, id, "Nonce", metrics));
+            assertTrue(ReplayCacheUtils.contains(replayCache, id, "Nonce", null));
+        }
+
+        MemorySecurityMetrics.Statistics stats = metrics.getStatistics(SecurityMetrics.Stage.REPLAY_CACHE, "Nonce");
+        assertEquals(2L, stats.getCount());
+        assertEquals(0L, stats.getFailures());
+    }
+
+    private void testAddAllIfAbsent(ReplayCache replayCache) throws Exception {
+        String id1 = UUID.randomUUID().toString();
+        replayCache.add(id1);
+
+        Map<String, Instant> identifiers = new HashMap<>();
+        identifiers.put(id1, null);
+        for (int i = 0; i < 10; i++) {
+            identifiers.put(UUID.randomUUID().toString(), Instant.now().plusSeconds(60L));
+        }
+
+        // Each identifier is only absent for one of the concurrent callers
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Set<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return replayCache.addAllIfAbsent(identifiers);
+                }));
+            }
+            start.countDown();
+
+            Map<String, Integer> added = new HashMap<>();
+            for (Future<Set<String>> future : futures) {
+                Set<String> contained = future.get(30, TimeUnit.SECONDS);
+                assertTrue(contained.contains(id1));
+                for (String identifier : identifiers.keySet()) {
+                    if (!contained.contains(identifier)) {
+                        added.merge(identifier, 1, Integer::sum);
+                    }
+                }
+            }
+            assertFalse(added.containsKey(id1));
+            assertEquals(identifiers.size() - 1, added.size());
+            for (int count : added.values()) {
+                assertEquals(1, count);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(identifiers.keySet(), replayCache.getContained(identifiers.keySet()));
+    }
+
     private void testReplayCacheInstance(ReplayCache replayCache) throws InterruptedException, IOException {
 
         // Test default TTL caches OK
@@ -199,4 +308,35 @@ public class ReplayCacheTest {
         assertFalse(replayCache.contains(id));
     }
 
-}
\ No newline at end of file
+    /**
+     * A ReplayCache that only implements the single identifier operations
+     */
+    private static final class DelegatingReplayCache implements ReplayCache {
+        private final ReplayCache delegate;
+
+        DelegatingReplayCache(ReplayCache delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void add(String identifier) {
+            delegate.add(identifier);
+        }
+
+        @Override
+        public void add(String identifier, Instant expiry) {
+            delegate.add(identifier, expiry);
+        }
+
+        @Override
+        public boolean contains(String identifier) {
+            return delegate.contains(identifier);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+}
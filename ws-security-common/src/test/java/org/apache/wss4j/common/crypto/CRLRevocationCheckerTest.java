@@ -0,0 +1,347 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PublicKey;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.IssuingDistributionPoint;
+import org.bouncycastle.asn1.x509.ReasonFlags;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for indexed CRL revocation checking
+ */
+public class CRLRevocationCheckerTest {
+
+    @Test
+    public void testIndexedRevocation() throws Exception {
+        Properties properties = new Properties();
+        ClassLoader loader = Loader.getClassLoader(CRLRevocationCheckerTest.class);
+        try (InputStream is = Merlin.loadInputStream(loader, "wss40CA.properties")) {
+            properties.load(is);
+        }
+        properties.put("org.apache.wss4j.crypto.merlin.x509crl.indexed", "true");
+        Merlin crypto = (Merlin)CryptoFactory.getInstance(properties);
+        assertNotNull(crypto.getCRLRevocationChecker());
+
+        X509Certificate revokedCert = getCertificate("keys/wss40rev.jks", "wss40rev");
+        X509Certificate cert = getCertificate("keys/wss40.jks", "wss40");
+
+        // Revocation is not enabled
+        crypto.verifyTrust(new X509Certificate[] {revokedCert}, false, null, null);
+
+        WSSecurityException ex = assertThrows(WSSecurityException.class,
+            () -> crypto.verifyTrust(new X509Certificate[] {revokedCert}, true, null, null));
+        assertTrue(ex.getCause() instanceof CertPathValidatorException);
+        assertEquals(CertPathValidatorException.BasicReason.REVOKED,
+                     ((CertPathValidatorException)ex.getCause()).getReason());
+
+        crypto.verifyTrust(new X509Certificate[] {cert}, true, null, null);
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        X509Certificate caCert = getCertificate("keys/wss40CA.jks", "wss40ca");
+        X509Certificate revokedCert = getCertificate("keys/wss40rev.jks", "wss40rev");
+
+        CRLRevocationChecker checker =
+            new CRLRevocationChecker(Collections.emptyList(), Collections.emptyList());
+        // No CRL for the issuer
+        CertPathValidatorException ex =
+            assertThrows(CertPathValidatorException.class, () -> checker.check(revokedCert, null));
+        assertEquals(CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS, ex.getReason());
+
+        X509CRL crl;
+        try (InputStream is = Merlin.loadInputStream(
+            Loader.getClassLoader(CRLRevocationCheckerTest.class), "keys/wss40CACRL.pem")) {
+            crl = (X509CRL)CertificateFactory.getInstance("X.509").generateCRL(is);
+        }
+
+        // The CRL can't be verified without the CA certificate, so the index is not updated
+        assertThrows(WSSecurityException.class,
+            () -> checker.update(Collections.singletonList(crl), Collections.emptyList()));
+        assertFalse(checker.isRevoked(revokedCert));
+
+        checker.update(Collections.singletonList(crl), Collections.singletonList(caCert));
+        assertTrue(checker.isRevoked(revokedCert));
+        ex = assertThrows(CertPathValidatorException.class, () -> checker.check(revokedCert, null));
+        assertEquals(CertPathValidatorException.BasicReason.REVOKED, ex.getReason());
+    }
+
+    @Test
+    public void testIndirectCRL() throws Exception {
+        KeyPair caAKeyPair = generateKeyPair();
+        KeyPair caBKeyPair = generateKeyPair();
+        X500Name caA = new X500Name("CN=CA-A,O=Apache,C=US");
+        X500Name caB = new X500Name("CN=CA-B,O=Apache,C=US");
+        X509Certificate caACert = createCertificate(caA, caA, BigInteger.ONE, caAKeyPair);
+        X509Certificate caBCert = createCertificate(caB, caB, BigInteger.ONE, caBKeyPair);
+        X509Certificate cert = createCertificate(caB, new X500Name("CN=Colm,O=Apache,C=US"),
+                                                 BigInteger.valueOf(42L), caBKeyPair);
+
+        // CA-A's indirect CRL revokes a certificate of CA-B, which has no CRL of its own
+        X509CRL indirectCRL = createCRL(caA, caAKeyPair, true, caB, cert.getSerialNumber());
+        CRLRevocationChecker checker =
+            new CRLRevocationChecker(Collections.singletonList(indirectCRL), Collections.singletonList(caACert));
+        CertPathValidatorException ex =
+            assertThrows(CertPathValidatorException.class, () -> checker.check(cert, null));
+        assertEquals(CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS, ex.getReason());
+
+        // Once CA-B has a CRL, the entry of the indirect CRL is honoured
+        X509CRL caBCRL = createCRL(caB, caBKeyPair, false, null, null);
+        checker.update(Arrays.asList(indirectCRL, caBCRL), Arrays.asList(caACert, caBCert));
+        ex = assertThrows(CertPathValidatorException.class, () -> checker.check(cert, null));
+        assertEquals(CertPathValidatorException.BasicReason.REVOKED, ex.getReason());
+
+        // The entries of a CRL which is not indirect can't name another issuer
+        X509CRL directCRL = createCRL(caA, caAKeyPair, false, caB, cert.getSerialNumber());
+        checker.update(Arrays.asList(directCRL, caBCRL), Arrays.asList(caACert, caBCert));
+        checker.check(cert, null);
+        assertFalse(checker.isRevoked(cert));
+
+        checker.update(Collections.singletonList(directCRL), Collections.singletonList(caACert));
+        ex = assertThrows(CertPathValidatorException.class, () -> checker.check(cert, null));
+        assertEquals(CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS, ex.getReason());
+    }
+
+    @Test
+    public void testUnsupportedCRL() throws Exception {
+        KeyPair caKeyPair = generateKeyPair();
+        X500Name ca = new X500Name("CN=CA,O=Apache,C=US");
+        X509Certificate caCert = createCertificate(ca, ca, BigInteger.ONE, caKeyPair);
+        X509CRL completeCRL = createCRL(ca, caKeyPair, new Date(), builder -> { });
+        assertTrue(CRLRevocationChecker.isIndexable(completeCRL));
+        assertTrue(CRLRevocationChecker.isIndexable(createCRL(ca, caKeyPair, false, null, null)));
+
+        List<X509CRL> unsupportedCRLs = Arrays.asList(
+            // A delta CRL
+            createCRL(ca, caKeyPair, new Date(), builder ->
+                builder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(BigInteger.ONE))),
+            // CRLs that only cover some of the certificates of the issuer
+            createCRL(ca, caKeyPair, new Date(), builder ->
+                builder.addExtension(Extension.issuingDistributionPoint, true,
+                                     new IssuingDistributionPoint(null, true, false, null, false, false))),
+            createCRL(ca, caKeyPair, new Date(), builder ->
+                builder.addExtension(Extension.issuingDistributionPoint, true,
+                                     new IssuingDistributionPoint(null, false, true, null, false, false))),
+            createCRL(ca, caKeyPair, new Date(), builder ->
+                builder.addExtension(Extension.issuingDistributionPoint, true,
+                                     new IssuingDistributionPoint(null, false, false,
+                                                                  new ReasonFlags(ReasonFlags.keyCompromise),
+                                                                  false, false))),
+            // Unknown critical extensions of the CRL and of a CRL entry
+            createCRL(ca, caKeyPair, new Date(), builder ->
+                builder.addExtension(new ASN1ObjectIdentifier("1.2.3.4"), true, DERNull.INSTANCE)),
+            createCRL(ca, caKeyPair, new Date(), builder -> {
+                ExtensionsGenerator extensions = new ExtensionsGenerator();
+                extensions.addExtension(new ASN1ObjectIdentifier("1.2.3.4"), true, DERNull.INSTANCE);
+                builder.addCRLEntry(BigInteger.TEN, new Date(), extensions.generate());
+            })
+        );
+
+        CRLRevocationChecker checker =
+            new CRLRevocationChecker(Collections.singletonList(completeCRL), Collections.singletonList(caCert));
+        for (X509CRL crl : unsupportedCRLs) {
+            assertFalse(CRLRevocationChecker.isIndexable(crl));
+            // The existing index is kept
+            assertThrows(WSSecurityException.class,
+                () -> checker.update(Arrays.asList(completeCRL, crl), Collections.singletonList(caCert)));
+            checker.check(caCert, null);
+        }
+    }
+
+    @Test
+    public void testThisUpdate() throws Exception {
+        KeyPair caKeyPair = generateKeyPair();
+        X500Name ca = new X500Name("CN=CA,O=Apache,C=US");
+        X509Certificate caCert = createCertificate(ca, ca, BigInteger.ONE, caKeyPair);
+        X509Certificate cert = createCertificate(ca, new X500Name("CN=Colm,O=Apache,C=US"),
+                                                 BigInteger.valueOf(42L), caKeyPair);
+
+        // A CRL that is not valid yet does not make the revocation status known
+        X509CRL futureCRL = createCRL(ca, caKeyPair, new Date(System.currentTimeMillis() + 600000L), builder -> { });
+        CRLRevocationChecker checker =
+            new CRLRevocationChecker(Collections.singletonList(futureCRL), Collections.singletonList(caCert));
+        CertPathValidatorException ex =
+            assertThrows(CertPathValidatorException.class, () -> checker.check(cert, null));
+        assertEquals(CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS, ex.getReason());
+
+        X509CRL crl = createCRL(ca, caKeyPair, new Date(), builder -> { });
+        checker.update(Collections.singletonList(crl), Collections.singletonList(caCert));
+        checker.check(cert, null);
+
+        // Nor does a CRL that has expired
+        X509CRL expiredCRL = createCRL(ca, caKeyPair, new Date(System.currentTimeMillis() - 7200000L), builder -> { });
+        checker.update(Collections.singletonList(expiredCRL), Collections.singletonList(caCert));
+        ex = assertThrows(CertPathValidatorException.class, () -> checker.check(cert, null));
+        assertEquals(CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS, ex.getReason());
+    }
+
+    @Test
+    public void testCloseStopsRefreshThread() throws Exception {
+        KeyPair caKeyPair = generateKeyPair();
+        X500Name ca = new X500Name("CN=CA,O=Apache,C=US");
+        X509Certificate caCert = createCertificate(ca, ca, BigInteger.ONE, caKeyPair);
+        X509CRL crl = createCRL(ca, caKeyPair, new Date(), builder -> { });
+        CRLRevocationChecker.CRLSource source = new CRLRevocationChecker.CRLSource() {
+            @Override
+            public Collection<X509CRL> loadCRLs() {
+                return Collections.singletonList(crl);
+            }
+
+            @Override
+            public Collection<X509Certificate> loadIssuerCertificates() {
+                return Collections.singletonList(caCert);
+            }
+        };
+
+        Set<Thread> threads = getThreads("wss4j-crl-refresh");
+        CRLRevocationChecker checker = new CRLRevocationChecker(source.loadCRLs(), source.loadIssuerCertificates());
+        checker.scheduleRefresh(source, 3600L);
+        Set<Thread> refreshThreads = getThreads("wss4j-crl-refresh");
+        refreshThreads.removeAll(threads);
+        assertEquals(1, refreshThreads.size());
+
+        checker.close();
+        Thread refreshThread = refreshThreads.iterator().next();
+        refreshThread.join(10000L);
+        assertFalse(refreshThread.isAlive());
+
+        // A given executor is not shut down when the checker is closed
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            checker.scheduleRefresh(source, 3600L, executor);
+            checker.close();
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static Set<Thread> getThreads(String name) {
+        Set<Thread> threads = new HashSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    private static X509Certificate createCertificate(X500Name issuer, X500Name subject, BigInteger serial,
+                                                     KeyPair issuerKeyPair) throws Exception {
+        Date notBefore = new Date(System.currentTimeMillis() - 60000L);
+        Date notAfter = new Date(System.currentTimeMillis() + 3600000L);
+        PublicKey publicKey = issuer.equals(subject) ? issuerKeyPair.getPublic() : generateKeyPair().getPublic();
+        X509v3CertificateBuilder builder =
+            new JcaX509v3CertificateBuilder(issuer, serial, notBefore, notAfter, subject, publicKey);
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(issuerKeyPair.getPrivate());
+        return new JcaX509CertificateConverter().getCertificate(builder.build(signer));
+    }
+
+    private static X509CRL createCRL(X500Name issuer, KeyPair issuerKeyPair, boolean indirect,
+                                     X500Name certificateIssuer, BigInteger revokedSerial) throws Exception {
+        Date now = new Date();
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(issuer, now);
+        builder.setNextUpdate(new Date(now.getTime() + 3600000L));
+        if (indirect) {
+            builder.addExtension(Extension.issuingDistributionPoint, true,
+                                 new IssuingDistributionPoint(null, false, false, null, true, false));
+        }
+        if (revokedSerial != null) {
+            ExtensionsGenerator extensions = new ExtensionsGenerator();
+            extensions.addExtension(Extension.certificateIssuer, true,
+                                    new GeneralNames(new GeneralName(certificateIssuer)));
+            builder.addCRLEntry(revokedSerial, now, extensions.generate());
+        }
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(issuerKeyPair.getPrivate());
+        return new JcaX509CRLConverter().getCRL(builder.build(signer));
+    }
+
+    private static X509CRL createCRL(X500Name issuer, KeyPair issuerKeyPair, Date thisUpdate,
+                                     CRLCustomizer customizer) throws Exception {
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(issuer, thisUpdate);
+        builder.setNextUpdate(new Date(thisUpdate.getTime() + 3600000L));
+        customizer.customize(builder);
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(issuerKeyPair.getPrivate());
+        return new JcaX509CRLConverter().getCRL(builder.build(signer));
+    }
+
+    private interface CRLCustomizer {
+        void customize(X509v2CRLBuilder builder) throws Exception;
+    }
+
+    private static X509Certificate getCertificate(String keystore, String alias) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream is = Merlin.loadInputStream(
+            Loader.getClassLoader(CRLRevocationCheckerTest.class), keystore)) {
+            keyStore.load(is, "security".toCharArray());
+        }
+        return (X509Certificate)keyStore.getCertificate(alias);
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the CryptoRegistry and for sharing stores between Merlin instances
+ */
+public class CryptoRegistryTest {
+
+    @Test
+    public void testBoundedRegistry() throws Exception {
+        CryptoRegistry registry = new CryptoRegistry(2);
+        Crypto crypto = registry.getCrypto("alice", () -> CryptoFactory.getInstance("alice.properties"));
+        assertSame(crypto, registry.getCrypto("alice", () -> CryptoFactory.getInstance("alice.properties")));
+
+        registry.putCrypto("wss40", new Merlin());
+        registry.putCrypto("wss86", new Merlin());
+        assertEquals(2, registry.size());
+        assertNull(registry.getCrypto("alice"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final CryptoRegistry registry = new CryptoRegistry(10);
+        final Crypto crypto = new Merlin();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final int thread = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        String key = "crypto-" + (thread * 1000 + j) % 50;
+                        assertSame(crypto, registry.getCrypto(key, () -> crypto));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // Eviction is skipped while another thread is evicting, so allow one extra entry per thread
+        assertTrue(registry.size() <= 10 + 4);
+    }
+
+    @Test
+    public void testPropertiesKey() throws Exception {
+        CryptoRegistry registry = new CryptoRegistry();
+        Crypto crypto = new Merlin();
+        registry.putCrypto(getProperties(true), crypto);
+        assertSame(crypto, registry.getCrypto(getProperties(true)));
+        assertNull(registry.getCrypto(getProperties(false)));
+    }
+
+    @Test
+    public void testCachedInstance() throws Exception {
+        Crypto crypto = CryptoFactory.getCachedInstance("wss40.properties");
+        assertSame(crypto, CryptoFactory.getCachedInstance("wss40.properties"));
+        assertSame(crypto, CryptoFactory.getCryptoRegistry().getCrypto("wss40.properties"));
+    }
+
+    @Test
+    public void testSharedStores() throws Exception {
+        Merlin crypto1 = (Merlin)CryptoFactory.getInstance(getProperties(true));
+        Merlin crypto2 = (Merlin)CryptoFactory.getInstance(getProperties(true));
+        assertSame(crypto1.getKeyStore(), crypto2.getKeyStore());
+        assertSame(crypto1.getTrustAnchors(crypto1.getSnapshot()), crypto2.getTrustAnchors(crypto2.getSnapshot()));
+
+        Merlin crypto3 = (Merlin)CryptoFactory.getInstance(getProperties(false));
+        assertNotSame(crypto1.getKeyStore(), crypto3.getKeyStore());
+    }
+
+    private static Properties getProperties(boolean shared) {
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", "keys/wss40.jks");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.type", "jks");
+        properties.put("org.apache.wss4j.crypto.merlin.stores.shared", Boolean.toString(shared));
+        return properties;
+    }
+
+}
@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for reloading the stores of the Merlin Crypto provider
+ */
+public class MerlinReloadTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSnapshot() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(loadKeyStore("keys/wss40.jks"));
+
+        Merlin.Snapshot snapshot = crypto.getSnapshot();
+        assertSame(snapshot, crypto.getSnapshot());
+        assertNotNull(crypto.getPrivateKey("wss40", "security"));
+
+        KeyStore keyStore = loadKeyStore("keys/wss40rev.jks");
+        crypto.setKeyStore(keyStore);
+        Merlin.Snapshot newSnapshot = crypto.getSnapshot();
+        assertNotSame(snapshot, newSnapshot);
+        assertSame(keyStore, newSnapshot.getKeyStore());
+        assertNotNull(crypto.getPrivateKey("wss40rev", "security"));
+    }
+
+    @Test
+    public void testSnapshotStoreModifiedInPlace() throws Exception {
+        KeyStore keyStore = loadKeyStore("keys/wss40.jks");
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(keyStore);
+        Merlin.Snapshot snapshot = crypto.getSnapshot();
+
+        keyStore.deleteEntry("wss40");
+        // A store modified in place is only seen once it is set again
+        assertSame(snapshot, crypto.getSnapshot());
+        crypto.setKeyStore(keyStore);
+        assertNotSame(snapshot, crypto.getSnapshot());
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        Path keyStoreFile = copy("keys/wss40.jks");
+        Merlin crypto = (Merlin)CryptoFactory.getInstance(getProperties(keyStoreFile));
+        assertTrue(crypto.getKeyStore().containsAlias("wss40"));
+        Merlin.Snapshot snapshot = crypto.getSnapshot();
+
+        copy("keys/wss40rev.jks", keyStoreFile);
+        // The stores are only replaced on a reload
+        assertSame(snapshot, crypto.getSnapshot());
+
+        crypto.reload();
+        assertNotSame(snapshot, crypto.getSnapshot());
+        assertTrue(crypto.getKeyStore().containsAlias("wss40rev"));
+        assertFalse(crypto.getKeyStore().containsAlias("wss40"));
+        assertNotNull(crypto.getPrivateKey("wss40rev", "security"));
+        // The previous snapshot is unchanged
+        assertTrue(snapshot.getKeyStore().containsAlias("wss40"));
+    }
+
+    @Test
+    public void testScheduledReload() throws Exception {
+        Path keyStoreFile = copy("keys/wss40.jks");
+        Properties properties = getProperties(keyStoreFile);
+        // The check for changes is triggered manually, rather than waiting for it
+        properties.put("org.apache.wss4j.crypto.merlin.reload.interval", "3600");
+        Merlin crypto = (Merlin)CryptoFactory.getInstance(properties);
+        try {
+            assertFalse(crypto.reloadIfModified());
+
+            copy("keys/wss40rev.jks", keyStoreFile);
+            Files.setLastModifiedTime(keyStoreFile, FileTime.fromMillis(System.currentTimeMillis() + 60000L));
+            assertTrue(crypto.reloadIfModified());
+            assertTrue(crypto.getKeyStore().containsAlias("wss40rev"));
+
+            assertFalse(crypto.reloadIfModified());
+        } finally {
+            crypto.cancelReload();
+        }
+        assertFalse(crypto.reloadIfModified());
+    }
+
+    @Test
+    public void testCloseStopsReloadThread() throws Exception {
+        Set<Thread> threads = CRLRevocationCheckerTest.getThreads("wss4j-crypto-reload");
+        Path keyStoreFile = copy("keys/wss40.jks");
+        Properties properties = getProperties(keyStoreFile);
+        properties.put("org.apache.wss4j.crypto.merlin.reload.interval", "3600");
+        Merlin crypto = (Merlin)CryptoFactory.getInstance(properties);
+
+        // Each instance checks for changes on a thread of its own
+        Set<Thread> reloadThreads = CRLRevocationCheckerTest.getThreads("wss4j-crypto-reload");
+        reloadThreads.removeAll(threads);
+        assertEquals(1, reloadThreads.size());
+
+        crypto.close();
+        Thread reloadThread = reloadThreads.iterator().next();
+        reloadThread.join(10000L);
+        assertFalse(reloadThread.isAlive());
+        assertFalse(crypto.reloadIfModified());
+    }
+
+    @Test
+    public void testReloadSharedExecutor() throws Exception {
+        Path keyStoreFile = copy("keys/wss40.jks");
+        Merlin crypto = (Merlin)CryptoFactory.getInstance(getProperties(keyStoreFile));
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            crypto.scheduleReload(Collections.singletonList(keyStoreFile.toString()), 3600L, executor);
+            copy("keys/wss40rev.jks", keyStoreFile);
+            Files.setLastModifiedTime(keyStoreFile, FileTime.fromMillis(System.currentTimeMillis() + 60000L));
+            assertTrue(crypto.reloadIfModified());
+
+            // A given executor is not shut down when the instance is closed
+            crypto.close();
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReloadSubclass() throws Exception {
+        Path keyStoreFile = copy("keys/wss40.jks");
+        CountingMerlin crypto = new CountingMerlin();
+        crypto.loadProperties(getProperties(keyStoreFile), Loader.getClassLoader(MerlinReloadTest.class), null);
+        assertEquals(1, CountingMerlin.LOAD_COUNT.get());
+
+        copy("keys/wss40rev.jks", keyStoreFile);
+        crypto.reload();
+        // The stores are reloaded by an instance of the subclass
+        assertEquals(2, CountingMerlin.LOAD_COUNT.get());
+        assertTrue(crypto.getKeyStore().containsAlias("wss40rev"));
+    }
+
+    public static class CountingMerlin extends Merlin {
+        static final AtomicInteger LOAD_COUNT = new AtomicInteger();
+
+        @Override
+        public void loadProperties(Properties properties, ClassLoader loader, PasswordEncryptor passwordEncryptor)
+            throws WSSecurityException, IOException {
+            LOAD_COUNT.incrementAndGet();
+            super.loadProperties(properties, loader, passwordEncryptor);
+        }
+    }
+
+    private Properties getProperties(Path keyStoreFile) {
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", keyStoreFile.toString());
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.type", "jks");
+        return properties;
+    }
+
+    private Path copy(String location) throws Exception {
+        return copy(location, tempDir.resolve("keystore.jks"));
+    }
+
+    private static Path copy(String location, Path target) throws Exception {
+        ClassLoader loader = Loader.getClassLoader(MerlinReloadTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, location)) {
+            Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    private static KeyStore loadKeyStore(String location) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        ClassLoader loader = Loader.getClassLoader(MerlinReloadTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, location)) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        return keyStore;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.Provider;
+import java.security.Security;
+import java.security.Signature;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+
+import org.apache.wss4j.common.util.ThreadBenchmark;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Measures how Cipher and Signature lookups via the ThreadLocalSecurityProvider scale from one
+ * thread up to "wss4j.benchmark.threads" threads (by default twice the number of processors),
+ * compared to a Provider that delegates to the Provider of the current thread under a lock, as
+ * the ThreadLocalSecurityProvider used to. It is run via the "benchmark" profile (see
+ * ThreadBenchmark):
+ *
+ * <pre>
+ * mvn test -Pbenchmark -pl ws-security-common -Dtest=ThreadLocalSecurityProviderBenchmark
+ * </pre>
+ */
+public class ThreadLocalSecurityProviderBenchmark {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ThreadLocalSecurityProviderBenchmark.class);
+
+    private static final int MAX_THREADS =
+        Integer.getInteger("wss4j.benchmark.threads", 2 * Runtime.getRuntime().availableProcessors());
+    private static final int TASKS = Integer.getInteger("wss4j.benchmark.tasks", 64);
+    private static final int LOOKUPS_PER_TASK = 2000;
+
+    private boolean installed;
+
+    @BeforeEach
+    public void install() {
+        installed = ThreadLocalSecurityProvider.isInstalled();
+        if (!installed) {
+            ThreadLocalSecurityProvider.install();
+        }
+    }
+
+    @AfterEach
+    public void uninstall() {
+        if (!installed) {
+            ThreadLocalSecurityProvider.uninstall();
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Provider tlsp = Security.getProvider("TLSP");
+        Provider synchronizedProvider = new SynchronizedProvider();
+
+        StringBuilder summary = new StringBuilder("Lookups per second (ThreadLocalSecurityProvider / synchronized):");
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            final int poolSize = threads;
+            double tlspThroughput =
+                ThreadBenchmark.run("ThreadLocalSecurityProvider, " + threads + " threads",
+                                    () -> Executors.newFixedThreadPool(poolSize), TASKS, lookups(tlsp))
+                    .getThroughput();
+            double synchronizedThroughput =
+                ThreadBenchmark.run("Synchronized Provider, " + threads + " threads",
+                                    () -> Executors.newFixedThreadPool(poolSize), TASKS,
+                                    lookups(synchronizedProvider))
+                    .getThroughput();
+            summary.append(String.format("%n  %3d threads: %,.0f / %,.0f (%.2fx)", threads,
+                                         tlspThroughput * LOOKUPS_PER_TASK,
+                                         synchronizedThroughput * LOOKUPS_PER_TASK,
+                                         tlspThroughput / synchronizedThroughput));
+        }
+        LOG.info("{}", summary);
+    }
+
+    private static Callable<Void> lookups(Provider provider) {
+        Provider sunJCE = Security.getProvider("SunJCE");
+        Provider sunRsaSign = Security.getProvider("SunRsaSign");
+        AtomicInteger taskCount = new AtomicInteger();
+        return () -> {
+            boolean useCipher = taskCount.getAndIncrement() % 2 == 0;
+            ThreadLocalSecurityProvider.setProvider(useCipher ? sunJCE : sunRsaSign);
+            try {
+                for (int i = 0; i < LOOKUPS_PER_TASK; i++) {
+                    if (useCipher) {
+                        assertSame(sunJCE, Cipher.getInstance("AES/CBC/PKCS5Padding", provider).getProvider());
+                    } else {
+                        assertSame(sunRsaSign, Signature.getInstance("SHA256withRSA", provider).getProvider());
+                    }
+                }
+            } finally {
+                ThreadLocalSecurityProvider.unsetProvider();
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Delegates service lookups to the Provider of the current thread under the monitor of this
+     * Provider, as the ThreadLocalSecurityProvider used to
+     */
+    private static final class SynchronizedProvider extends Provider {
+        private static final long serialVersionUID = 1L;
+
+        SynchronizedProvider() {
+            super("SynchronizedTLSP", "1.0", "A Provider that delegates under a lock");
+        }
+
+        @Override
+        public synchronized Service getService(String type, String algorithm) {
+            Provider p = ThreadLocalSecurityProvider.getCurrentProvider();
+            return p == null ? null : p.getService(type, algorithm);
+        }
+
+        @Override
+        public synchronized Set<Service> getServices() {
+            Provider p = ThreadLocalSecurityProvider.getCurrentProvider();
+            return p == null ? Set.of() : p.getServices();
+        }
+    }
+}
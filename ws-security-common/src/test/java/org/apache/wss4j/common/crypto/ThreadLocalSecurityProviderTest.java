@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.Provider;
+import java.security.Security;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the ThreadLocalSecurityProvider. See ThreadLocalSecurityProviderBenchmark for how
+ * service lookups via the provider scale across threads.
+ */
+public class ThreadLocalSecurityProviderTest {
+
+    private static final int THREADS = 64;
+    private static final int LOOKUPS_PER_THREAD = 2000;
+
+    private boolean installed;
+
+    @BeforeEach
+    public void install() {
+        installed = ThreadLocalSecurityProvider.isInstalled();
+        if (!installed) {
+            ThreadLocalSecurityProvider.install();
+        }
+    }
+
+    @AfterEach
+    public void uninstall() {
+        ThreadLocalSecurityProvider.unsetProvider();
+        if (!installed) {
+            ThreadLocalSecurityProvider.uninstall();
+        }
+    }
+
+    @Test
+    public void testServiceLookup() throws Exception {
+        Provider tlsp = Security.getProvider("TLSP");
+        assertNotNull(tlsp);
+        assertNull(tlsp.getService("Cipher", "AES"));
+        assertFalse(tlsp.getServices().iterator().hasNext());
+
+        Provider sunJCE = Security.getProvider("SunJCE");
+        ThreadLocalSecurityProvider.setProvider(sunJCE);
+
+        // Lookups are case insensitive and support aliases, just like the delegated Provider
+        assertSame(sunJCE.getService("Cipher", "AES"), tlsp.getService("Cipher", "aes"));
+        assertSame(sunJCE.getService("Cipher", "AES_128/GCM/NoPadding"),
+                   tlsp.getService("Cipher", "AES_128/GCM/NoPadding"));
+        assertSame(sunJCE.getService("Cipher", "Rijndael"), tlsp.getService("Cipher", "Rijndael"));
+        assertNull(tlsp.getService("Cipher", "UnknownAlgorithm"));
+        assertEquals(sunJCE.getServices(), tlsp.getServices());
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding", "TLSP");
+        assertSame(sunJCE, cipher.getProvider());
+    }
+
+    @Test
+    public void testServiceAddedToProvider() throws Exception {
+        Provider tlsp = Security.getProvider("TLSP");
+        TestProvider provider = new TestProvider();
+        ThreadLocalSecurityProvider.setProvider(provider);
+
+        assertNull(tlsp.getService("MessageDigest", "TestDigest"));
+        assertTrue(tlsp.getServices().isEmpty());
+
+        // A service added to the Provider directly is found by later lookups
+        provider.addService("MessageDigest", "TestDigest");
+        Provider.Service service = tlsp.getService("MessageDigest", "TestDigest");
+        assertNotNull(service);
+        assertTrue(tlsp.getServices().contains(service));
+        assertSame(service, tlsp.getService("MessageDigest", "TestDigest"));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        Provider sunJCE = Security.getProvider("SunJCE");
+        Provider sunRsaSign = Security.getProvider("SunRsaSign");
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                final boolean useCipher = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    ThreadLocalSecurityProvider.setProvider(useCipher ? sunJCE : sunRsaSign);
+                    try {
+                        start.await();
+                        for (int j = 0; j < LOOKUPS_PER_THREAD; j++) {
+                            if (useCipher) {
+                                Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding", "TLSP");
+                                assertSame(sunJCE, cipher.getProvider());
+                            } else {
+                                Signature signature = Signature.getInstance("SHA256withRSA", "TLSP");
+                                assertSame(sunRsaSign, signature.getProvider());
+                            }
+                        }
+                    } finally {
+                        ThreadLocalSecurityProvider.unsetProvider();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static final class TestProvider extends Provider {
+        private static final long serialVersionUID = 1L;
+
+        TestProvider() {
+            super("TestProvider", "1.0", "A Provider to which services are added directly");
+        }
+
+        void addService(String type, String algorithm) {
+            putService(new Service(this, type, algorithm, "org.example.TestEngine", null, null));
+        }
+    }
+}
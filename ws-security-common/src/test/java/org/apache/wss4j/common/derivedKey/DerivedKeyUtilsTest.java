@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.derivedKey;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.wss4j.common.cache.DerivedKeyCache;
+import org.apache.wss4j.common.cache.MemoryDerivedKeyCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some unit tests for DerivedKeyUtils
+ */
+public class DerivedKeyUtilsTest {
+
+    private static final byte[] SECRET = "secret-secret-secret".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NONCE = "nonce-nonce-nonce".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testDerivedKeyCache() throws Exception {
+        byte[] derivedKey =
+            DerivedKeyUtils.deriveKey(ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, SECRET, NONCE, 0);
+
+        try (DerivedKeyCache derivedKeyCache = new MemoryDerivedKeyCache()) {
+            String identifier = DerivedKeyUtils.getDerivedKeyIdentifier(
+                ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, SECRET, NONCE, 0);
+            assertNull(derivedKeyCache.get(identifier));
+
+            byte[] cachedKey = DerivedKeyUtils.deriveKey(
+                ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, SECRET, NONCE, 0, derivedKeyCache);
+            assertArrayEquals(derivedKey, cachedKey);
+            assertNotNull(derivedKeyCache.get(identifier));
+
+            // A hit must return the same key
+            cachedKey = DerivedKeyUtils.deriveKey(
+                ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, SECRET, NONCE, 0, derivedKeyCache);
+            assertArrayEquals(derivedKey, cachedKey);
+        }
+    }
+
+    @Test
+    public void testDerivedKeyIdentifier() throws Exception {
+        String algorithm = ConversationConstants.DerivationAlgorithm.P_SHA_1;
+        String identifier = DerivedKeyUtils.getDerivedKeyIdentifier(algorithm, "label", 16, SECRET, NONCE, 0);
+        assertEquals(identifier, DerivedKeyUtils.getDerivedKeyIdentifier(algorithm, "label", 16, SECRET, NONCE, 0));
+
+        assertNotEquals(identifier, DerivedKeyUtils.getDerivedKeyIdentifier(algorithm, "label2", 16, SECRET, NONCE, 0));
+        assertNotEquals(identifier, DerivedKeyUtils.getDerivedKeyIdentifier(algorithm, "label", 32, SECRET, NONCE, 0));
+        assertNotEquals(identifier, DerivedKeyUtils.getDerivedKeyIdentifier(algorithm, "label", 16, SECRET, NONCE, 16));
+        assertNotEquals(identifier, DerivedKeyUtils.getDerivedKeyIdentifier(algorithm, "label", 16, NONCE, SECRET, 0));
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.jfr;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that the WSS4J JFR events are recorded
+ */
+public class SecurityEventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testJFRSupport() throws Exception {
+        // The test JDK includes the jdk.jfr module
+        assertTrue(JFRSupport.isAvailable());
+    }
+
+    @Test
+    public void testCertificatePathValidationEvent() throws Exception {
+        Merlin crypto = (Merlin)CryptoFactory.getInstance("wss40CA.properties");
+        X509Certificate cert = getCertificate("keys/wss40.jks", "wss40");
+        X509Certificate revokedCert = getCertificate("keys/wss40rev.jks", "wss40rev");
+
+        Path output = tempDir.resolve("wss4j.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(CertificatePathValidationEvent.class).withoutThreshold();
+            recording.start();
+            crypto.verifyTrust(new X509Certificate[] {cert}, true, null, null);
+            assertThrows(WSSecurityException.class,
+                () -> crypto.verifyTrust(new X509Certificate[] {revokedCert}, true, null, null));
+            recording.stop();
+            recording.dump(output);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(output);
+        assertEquals(2, events.size());
+        assertEquals("org.apache.wss4j.CertificatePathValidation", events.get(0).getEventType().getName());
+        assertEquals(1, events.get(0).getInt("chainLength"));
+        assertTrue(events.get(0).getBoolean("success"));
+        assertFalse(events.get(1).getBoolean("success"));
+    }
+
+    private static X509Certificate getCertificate(String location, String alias) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        ClassLoader loader = Loader.getClassLoader(SecurityEventsTest.class);
+        try (InputStream is = Merlin.loadInputStream(loader, location)) {
+            keyStore.load(is, "security".toCharArray());
+        }
+        return (X509Certificate)keyStore.getCertificate(alias);
+    }
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some unit tests for the KerberosClientSubjectCache. A test LoginModule stands in for the
+ * Kerberos login module, so no KDC is needed.
+ */
+public class KerberosClientSubjectCacheTest {
+
+    private static final String REALM = "WS.APACHE.ORG";
+    private static final String SERVICE_NAME = "bob@service.ws.apache.org";
+    private static final KerberosPrincipal SERVICE_PRINCIPAL =
+        new KerberosPrincipal("bob/service.ws.apache.org@" + REALM);
+
+    private Configuration configuration;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = Configuration.getConfiguration();
+        Configuration.setConfiguration(new TestConfiguration());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Configuration.setConfiguration(configuration);
+    }
+
+    @Test
+    public void testServiceTicketNotCurrent() {
+        long now = System.currentTimeMillis();
+        Subject subject = new Subject();
+        KerberosTicket expired = createTicket("alice", SERVICE_PRINCIPAL, now - 120000L, now - 60000L);
+        subject.getPrivateCredentials().add(expired);
+        assertNull(KerberosClientSubjectCache.getServiceTicket(subject, SERVICE_NAME, false));
+
+        KerberosTicket current = createTicket("alice", SERVICE_PRINCIPAL, now, now + 60000L);
+        subject.getPrivateCredentials().add(current);
+        assertSame(current, KerberosClientSubjectCache.getServiceTicket(subject, SERVICE_NAME, false));
+    }
+
+    @Test
+    public void testSubjectPerPrincipal() throws Exception {
+        KerberosClientSubjectCache cache = new KerberosClientSubjectCache();
+        Subject alice = cache.getSubject("test", new NameCallbackHandler("alice"));
+        assertSame(alice, cache.getSubject("test", new NameCallbackHandler("alice")));
+        assertEquals(Collections.singleton(new KerberosPrincipal("alice@" + REALM)), alice.getPrincipals());
+
+        Subject bob = cache.getSubject("test", new NameCallbackHandler("bob"));
+        assertNotSame(alice, bob);
+        assertEquals(Collections.singleton(new KerberosPrincipal("bob@" + REALM)), bob.getPrincipals());
+
+        cache.remove("test");
+        assertNotSame(alice, cache.getSubject("test", new NameCallbackHandler("alice")));
+        assertNotSame(bob, cache.getSubject("test", new NameCallbackHandler("bob")));
+    }
+
+    @Test
+    public void testExpiredTickets() throws Exception {
+        KerberosClientSubjectCache cache = new KerberosClientSubjectCache(0L);
+        Subject subject = cache.getSubject("test", new NameCallbackHandler("alice"));
+
+        long now = System.currentTimeMillis();
+        KerberosTicket expired = createTicket("alice", SERVICE_PRINCIPAL, now - 120000L, now - 60000L);
+        subject.getPrivateCredentials().add(expired);
+
+        // The expired service ticket is removed from the cached Subject
+        assertSame(subject, cache.getSubject("test", new NameCallbackHandler("alice")));
+        assertFalse(subject.getPrivateCredentials().contains(expired));
+
+        // The Subject is evicted once it holds no current ticket
+        KerberosTicket tgt = KerberosClientSubjectCache.getTGT(subject);
+        subject.getPrivateCredentials().remove(tgt);
+        subject.getPrivateCredentials().add(
+            createTicket("alice", tgt.getServer(), now - 120000L, now - 60000L));
+        Subject newSubject = cache.getSubject("test", new NameCallbackHandler("alice"));
+        assertNotSame(subject, newSubject);
+        assertTrue(KerberosClientSubjectCache.getTGT(newSubject).isCurrent());
+    }
+
+    private static KerberosTicket createTicket(String client, KerberosPrincipal server, long start, long end) {
+        return new KerberosTicket(new byte[] {1}, new KerberosPrincipal(client + "@" + REALM), server,
+                                  new byte[16], 17, null, new Date(start), new Date(start),
+                                  new Date(end), null, null);
+    }
+
+    private static final class NameCallbackHandler implements CallbackHandler {
+        private final String name;
+
+        NameCallbackHandler(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void handle(Callback[] callbacks) throws UnsupportedCallbackException {
+            for (Callback callback : callbacks) {
+                if (callback instanceof NameCallback) {
+                    ((NameCallback) callback).setName(name);
+                } else {
+                    throw new UnsupportedCallbackException(callback);
+                }
+            }
+        }
+    }
+
+    private static final class TestConfiguration extends Configuration {
+        @Override
+        public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+            return new AppConfigurationEntry[] {
+                new AppConfigurationEntry(TestLoginModule.class.getName(),
+                                          AppConfigurationEntry.LoginModuleControlFlag.REQUIRED,
+                                          Collections.emptyMap())
+            };
+        }
+    }
+
+    /**
+     * Logs in the principal supplied for a NameCallback, with a TGT that is valid for an hour
+     */
+    public static final class TestLoginModule implements LoginModule {
+        private Subject subject;
+        private CallbackHandler callbackHandler;
+        private String name;
+
+        @Override
+        public void initialize(Subject subject, CallbackHandler callbackHandler,
+                               Map<String, ?> sharedState, Map<String, ?> options) {
+            this.subject = subject;
+            this.callbackHandler = callbackHandler;
+        }
+
+        @Override
+        public boolean login() throws LoginException {
+            NameCallback nameCallback = new NameCallback("Kerberos username: ");
+            try {
+                callbackHandler.handle(new Callback[] {nameCallback});
+            } catch (Exception ex) {
+                throw new LoginException(ex.getMessage());
+            }
+            name = nameCallback.getName();
+            return true;
+        }
+
+        @Override
+        public boolean commit() {
+            long now = System.currentTimeMillis();
+            KerberosPrincipal tgtPrincipal = new KerberosPrincipal("krbtgt/" + REALM + "@" + REALM);
+            subject.getPrincipals().add(new KerberosPrincipal(name + "@" + REALM));
+            subject.getPrivateCredentials().add(createTicket(name, tgtPrincipal, now, now + 3600000L));
+            return true;
+        }
+
+        @Override
+        public boolean abort() {
+            return true;
+        }
+
+        @Override
+        public boolean logout() {
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some tests for the MemorySecurityMetrics implementation
+ */
+public class MemorySecurityMetricsTest {
+
+    @Test
+    public void testStatistics() throws Exception {
+        MemorySecurityMetrics metrics = new MemorySecurityMetrics();
+        assertNull(metrics.getStatistics(SecurityMetrics.Stage.TOKEN, "Signature"));
+
+        metrics.recordDuration(SecurityMetrics.Stage.TOKEN, "Signature", 1000L, true);
+        metrics.recordDuration(SecurityMetrics.Stage.TOKEN, "Signature", 3000L, false);
+        metrics.recordBytes(SecurityMetrics.Stage.TOKEN, "Signature", 512L);
+
+        MemorySecurityMetrics.Statistics stats = metrics.getStatistics(SecurityMetrics.Stage.TOKEN, "Signature");
+        assertEquals(2L, stats.getCount());
+        assertEquals(1L, stats.getFailures());
+        assertEquals(4000L, stats.getTotalNanos());
+        assertEquals(3000L, stats.getMaxNanos());
+        assertEquals(512L, stats.getBytes());
+        assertEquals(1024L, stats.getPercentileNanos(0.5));
+        assertEquals(4096L, stats.getPercentileNanos(1.0));
+        assertEquals(1, metrics.getStatistics().size());
+
+        metrics.clear();
+        assertEquals(0, metrics.getStatistics().size());
+    }
+
+    @Test
+    public void testMetricsTimer() throws Exception {
+        MemorySecurityMetrics metrics = new MemorySecurityMetrics();
+        MetricsTimer.start(metrics, SecurityMetrics.Stage.VALIDATION, "UsernameTokenValidator").stop(true);
+        MetricsTimer.start(metrics, SecurityMetrics.Stage.VALIDATION, "UsernameTokenValidator").stop(false);
+        MetricsTimer.start(null, SecurityMetrics.Stage.VALIDATION, "UsernameTokenValidator").stop(true);
+
+        MemorySecurityMetrics.Statistics stats =
+            metrics.getStatistics(SecurityMetrics.Stage.VALIDATION, "UsernameTokenValidator");
+        assertEquals(2L, stats.getCount());
+        assertEquals(1L, stats.getFailures());
+        assertEquals(1, metrics.getStatistics().size());
+    }
+
+}
@@ -19,13 +19,53 @@
 
 package org.apache.wss4j.common.saml;
 
+import java.io.StringReader;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.OpenSAMLBootstrap.ConfigurationSet;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.XMLObjectBuilderFactory;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Some tests for the Merlin Crypto provider
  */
 public class OpenSAMLUtilTest {
 
+    private static final String ENTITY_DESCRIPTOR =
+        "<md:EntityDescriptor xmlns:md=\"urn:oasis:names:tc:SAML:2.0:metadata\" "
+        + "entityID=\"https://idp.example.com\"/>";
+
+    private static final String ASSERTION_WITH_ADVICE =
+        "<saml2:Assertion xmlns:saml2=\"urn:oasis:names:tc:SAML:2.0:assertion\" ID=\"_a75adf55\" "
+        + "IssueInstant=\"2024-01-01T00:00:00.000Z\" Version=\"2.0\">"
+        + "<saml2:Issuer>www.example.com</saml2:Issuer>"
+        + "<saml2:Advice>" + ENTITY_DESCRIPTOR + "</saml2:Advice>"
+        + "</saml2:Assertion>";
+
+    @AfterEach
+    public void restoreConfigurationSets() {
+        OpenSAMLUtil.resetSamlEngine();
+        OpenSAMLUtil.setConfigurationSets(EnumSet.allOf(ConfigurationSet.class));
+    }
+
     @Test
     public void testInitSamlEngine() throws Exception {
         OpenSAMLUtil.initSamlEngine();
@@ -34,4 +74,57 @@ public class OpenSAMLUtilTest {
         new org.opensaml.saml.saml2.encryption.Decrypter(null, null, null);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testInitSamlEngineAsync() throws Exception {
+        OpenSAMLUtil.initSamlEngineAsync().get(60, TimeUnit.SECONDS);
+        assertNotNull(OpenSAMLUtil.getBootstrapDuration());
+    }
+
+    @Test
+    public void testRestrictedConfigurationSets() throws Exception {
+        OpenSAMLUtil.resetSamlEngine();
+        OpenSAMLUtil.setConfigurationSets(EnumSet.of(ConfigurationSet.SAML2));
+        OpenSAMLUtil.initSamlEngine();
+
+        XMLObjectBuilderFactory builderFactory = XMLObjectProviderRegistrySupport.getBuilderFactory();
+        assertNotNull(builderFactory.getBuilder(Assertion.DEFAULT_ELEMENT_NAME));
+        assertNull(builderFactory.getBuilder(EntityDescriptor.DEFAULT_ELEMENT_NAME));
+
+        // A configuration set that is not configured is not loaded on demand
+        Element entityDescriptor = parse(ENTITY_DESCRIPTOR);
+        assertThrows(WSSecurityException.class, () -> OpenSAMLUtil.fromDom(entityDescriptor));
+        assertNull(builderFactory.getBuilder(EntityDescriptor.DEFAULT_ELEMENT_NAME));
+    }
+
+    @Test
+    public void testLazyConfigurationSetForNestedElement() throws Exception {
+        OpenSAMLUtil.resetSamlEngine();
+        OpenSAMLUtil.setConfigurationSets(
+            EnumSet.of(ConfigurationSet.SAML2), EnumSet.of(ConfigurationSet.METADATA));
+        OpenSAMLUtil.initSamlEngine();
+        XMLObjectBuilderFactory builderFactory = XMLObjectProviderRegistrySupport.getBuilderFactory();
+        assertNull(builderFactory.getBuilder(EntityDescriptor.DEFAULT_ELEMENT_NAME));
+
+        // The metadata element in the Advice is not unmarshalled as an XSAny
+        Assertion assertion = (Assertion) OpenSAMLUtil.fromDom(parse(ASSERTION_WITH_ADVICE));
+        assertEquals(1, assertion.getAdvice().getUnknownXMLObjects().size());
+        XMLObject adviceContent = assertion.getAdvice().getUnknownXMLObjects().get(0);
+        assertTrue(adviceContent instanceof EntityDescriptor);
+        assertEquals("https://idp.example.com", ((EntityDescriptor) adviceContent).getEntityID());
+        assertNotNull(builderFactory.getBuilder(EntityDescriptor.DEFAULT_ELEMENT_NAME));
+    }
+
+    @Test
+    public void testConfigurationWithoutSet() throws Exception {
+        assertEquals(ConfigurationSet.SAML2, ConfigurationSet.forConfig("/saml2-assertion-config.xml"));
+        assertThrows(IllegalArgumentException.class, () -> ConfigurationSet.forConfig("/unknown-config.xml"));
+    }
+
+    private static Element parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document doc = factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+        return doc.getDocumentElement();
+    }
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.wss4j.common.crypto.ThreadLocalSecurityProvider;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Some tests for the JCAEnginePool
+ */
+public class JCAEnginePoolTest {
+
+    @Test
+    public void testReuse() throws Exception {
+        MessageDigest digest;
+        try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-512")) {
+            digest = sha.get();
+            // Leave some state behind, which must be reset when the engine is returned to the pool
+            digest.update((byte)1);
+        }
+
+        try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-512");
+            JCAEnginePool.Engine<MessageDigest> otherSha = JCAEnginePool.getMessageDigest("SHA-512")) {
+            assertSame(digest, sha.get());
+            // An engine is only given out once at a time
+            assertNotSame(sha.get(), otherSha.get());
+
+            byte[] bytes = "abc".getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(MessageDigest.getInstance("SHA-512").digest(bytes), sha.get().digest(bytes));
+        }
+    }
+
+    @Test
+    public void testCloseTwice() throws Exception {
+        JCAEnginePool.Engine<Mac> mac = JCAEnginePool.getMac("HmacSHA384", null);
+        mac.close();
+        mac.close();
+
+        try (JCAEnginePool.Engine<Mac> mac1 = JCAEnginePool.getMac("HmacSHA384", null);
+            JCAEnginePool.Engine<Mac> mac2 = JCAEnginePool.getMac("HmacSHA384", null)) {
+            assertNotSame(mac1.get(), mac2.get());
+        }
+    }
+
+    @Test
+    public void testUnknownAlgorithmNotPooled() throws Exception {
+        MessageDigest digest;
+        try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-512/256")) {
+            digest = sha.get();
+        }
+        try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-512/256")) {
+            assertNotSame(digest, sha.get());
+        }
+    }
+
+    @Test
+    public void testThreadLocalProvider() throws Exception {
+        boolean installed = ThreadLocalSecurityProvider.isInstalled();
+        if (!installed) {
+            ThreadLocalSecurityProvider.install();
+        }
+        try {
+            Provider provider = new BouncyCastleProvider();
+            ThreadLocalSecurityProvider.setProvider(provider);
+            MessageDigest digest;
+            try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-384")) {
+                digest = sha.get();
+            }
+
+            // An engine acquired for another Provider of the current thread is not shared
+            ThreadLocalSecurityProvider.setProvider(new BouncyCastleProvider());
+            try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-384")) {
+                assertNotSame(digest, sha.get());
+            }
+            ThreadLocalSecurityProvider.unsetProvider();
+            try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-384")) {
+                assertNotSame(digest, sha.get());
+            }
+
+            ThreadLocalSecurityProvider.setProvider(provider);
+            try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-384")) {
+                assertSame(digest, sha.get());
+            }
+        } finally {
+            ThreadLocalSecurityProvider.unsetProvider();
+            if (!installed) {
+                ThreadLocalSecurityProvider.uninstall();
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        byte[] key = "secret".getBytes(StandardCharsets.UTF_8);
+        Mac reference = Mac.getInstance("HmacSHA256");
+        reference.init(new SecretKeySpec(key, "HmacSHA256"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        byte[] data = Integer.toString(j).getBytes(StandardCharsets.UTF_8);
+                        byte[] expected;
+                        synchronized (reference) {
+                            expected = reference.doFinal(data);
+                        }
+                        try (JCAEnginePool.Engine<Mac> mac = JCAEnginePool.getMac("HmacSHA256", null)) {
+                            mac.get().init(new SecretKeySpec(key, "HmacSHA256"));
+                            assertArrayEquals(expected, mac.get().doFinal(data));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
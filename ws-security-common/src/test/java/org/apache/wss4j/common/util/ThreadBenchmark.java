@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * A simple harness for the *Benchmark classes, which are not run as part of the unit tests, but via
+ * the "benchmark" profile:
+ *
+ * <pre>
+ * mvn test -Pbenchmark -pl ws-security-dom -Dtest=EngineConcurrencyBenchmark
+ * </pre>
+ *
+ * A task is run a number of times on an ExecutorService, for a number of warm-up rounds and then
+ * for the measured rounds ("wss4j.benchmark.warmupRounds" and "wss4j.benchmark.rounds"). Where the
+ * JDK supports virtual threads, the jdk.VirtualThreadPinned JFR events of the measured rounds are
+ * recorded, and the stack traces of the places where a virtual thread was pinned to its carrier
+ * thread are logged. On JDK 21 the same information is printed by -Djdk.tracePinnedThreads=full,
+ * which can be passed via -Dwss4j.benchmark.argLine.
+ */
+public final class ThreadBenchmark {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ThreadBenchmark.class);
+
+    public static final int WARMUP_ROUNDS = Integer.getInteger("wss4j.benchmark.warmupRounds", 2);
+    public static final int ROUNDS = Integer.getInteger("wss4j.benchmark.rounds", 5);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_LOGGED_FRAMES = 12;
+
+    private ThreadBenchmark() {
+        // complete
+    }
+
+    /**
+     * @return a new virtual-thread-per-task ExecutorService, or null if the JDK doesn't support
+     *         virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the JDK supports virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            return false;
+        }
+        executor.shutdown();
+        return true;
+    }
+
+    /**
+     * Run the given task the given number of times per round, on a new ExecutorService from the
+     * given Supplier for each round, and log the result.
+     *
+     * @param name the name of the run to log
+     * @param executors supplies the ExecutorService for each round
+     * @param tasks the number of times the task is run per round
+     * @param task the task
+     * @return the result of the measured rounds
+     */
+    public static Result run(
+        String name, Supplier<ExecutorService> executors, int tasks, Callable<?> task
+    ) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runRound(executors.get(), tasks, task);
+        }
+
+        long[] roundNanos = new long[ROUNDS];
+        Map<String, Integer> pinnedStackTraces = new LinkedHashMap<>();
+        int pinnedEvents = 0;
+        Path file = Files.createTempFile("wss4j-benchmark", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            for (int i = 0; i < ROUNDS; i++) {
+                roundNanos[i] = runRound(executors.get(), tasks, task);
+            }
+            recording.stop();
+            recording.dump(file);
+
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (PINNED_EVENT.equals(event.getEventType().getName())) {
+                    pinnedEvents++;
+                    pinnedStackTraces.merge(toString(event), 1, Integer::sum);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        Result result = new Result(name, tasks, roundNanos, pinnedEvents);
+        LOG.info("{}", result);
+        for (Map.Entry<String, Integer> stackTrace : pinnedStackTraces.entrySet()) {
+            LOG.info("Virtual thread pinned {} times at:{}", stackTrace.getValue(), stackTrace.getKey());
+        }
+        return result;
+    }
+
+    private static long runRound(ExecutorService executor, int tasks, Callable<?> task) throws Exception {
+        try {
+            long startTime = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - startTime;
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1L, TimeUnit.MINUTES);
+        }
+    }
+
+    private static String toString(RecordedEvent event) {
+        StringBuilder stackTrace = new StringBuilder();
+        if (event.getStackTrace() != null) {
+            List<RecordedFrame> frames = event.getStackTrace().getFrames();
+            for (int i = 0; i < Math.min(frames.size(), MAX_LOGGED_FRAMES); i++) {
+                RecordedFrame frame = frames.get(i);
+                stackTrace.append("\n    ").append(frame.getMethod().getType().getName())
+                    .append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber());
+            }
+        }
+        return stackTrace.toString();
+    }
+
+    /**
+     * The result of the measured rounds of a run
+     */
+    public static final class Result {
+        private final String name;
+        private final int tasks;
+        private final long[] roundNanos;
+        private final int pinnedEvents;
+
+        Result(String name, int tasks, long[] roundNanos, int pinnedEvents) {
+            this.name = name;
+            this.tasks = tasks;
+            this.roundNanos = roundNanos.clone();
+            Arrays.sort(this.roundNanos);
+            this.pinnedEvents = pinnedEvents;
+        }
+
+        /**
+         * @return the number of tasks per second in the median round
+         */
+        public double getThroughput() {
+            long median = roundNanos[roundNanos.length / 2];
+            return tasks * (double)TimeUnit.SECONDS.toNanos(1L) / median;
+        }
+
+        /**
+         * @return the number of times a virtual thread was pinned to its carrier thread
+         */
+        public int getPinnedEvents() {
+            return pinnedEvents;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%s: %d tasks per round, %.1f tasks/s (median of %d rounds, %d-%d ms), %d pinned virtual threads",
+                name, tasks, getThroughput(), roundNanos.length,
+                TimeUnit.NANOSECONDS.toMillis(roundNanos[0]),
+                TimeUnit.NANOSECONDS.toMillis(roundNanos[roundNanos.length - 1]), pinnedEvents
+            );
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.apache.wss4j.common.cache.MemoryDerivedKeyCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Some tests for the UsernameTokenUtil derived key generation
+ */
+public class UsernameTokenUtilTest {
+
+    @Test
+    public void testDerivedKey() throws Exception {
+        byte[] password = "verySecret".getBytes(StandardCharsets.UTF_8);
+        byte[] salt = UsernameTokenUtil.generateSalt(true);
+
+        // Compute the key as defined in the UsernameToken Profile
+        MessageDigest sha = MessageDigest.getInstance("SHA-1");
+        sha.update(password);
+        byte[] expected = sha.digest(salt);
+        for (int i = 1; i < UsernameTokenUtil.DEFAULT_ITERATION; i++) {
+            expected = sha.digest(expected);
+        }
+
+        assertArrayEquals(expected, UsernameTokenUtil.generateDerivedKey(password, salt, 0));
+        assertArrayEquals(expected, UsernameTokenUtil.generateDerivedKey(password, salt, 1000));
+    }
+
+    @Test
+    public void testDerivedKeyCache() throws Exception {
+        byte[] password = "verySecret".getBytes(StandardCharsets.UTF_8);
+        byte[] salt = UsernameTokenUtil.generateSalt(false);
+        byte[] expected = UsernameTokenUtil.generateDerivedKey(password, salt, 1000);
+
+        try (MemoryDerivedKeyCache cache = new MemoryDerivedKeyCache()) {
+            assertArrayEquals(expected, UsernameTokenUtil.generateDerivedKey("wernerd", password, salt, 1000, cache));
+
+            String identifier = UsernameTokenUtil.getDerivedKeyIdentifier("wernerd", password, salt, 1000);
+            assertArrayEquals(expected, cache.get(identifier));
+            // The identifier does not reveal the password
+            assertFalse(identifier.contains("verySecret"));
+
+            // Different parameters do not share an entry
+            assertNotEquals(identifier, UsernameTokenUtil.getDerivedKeyIdentifier("alice", password, salt, 1000));
+            assertNotEquals(identifier, UsernameTokenUtil.getDerivedKeyIdentifier("wernerd", password, salt, 1001));
+            assertNotEquals(identifier, UsernameTokenUtil.getDerivedKeyIdentifier(
+                "wernerd", "otherSecret".getBytes(StandardCharsets.UTF_8), salt, 1000));
+            // A zero iteration means the default iteration
+            assertEquals(identifier, UsernameTokenUtil.getDerivedKeyIdentifier("wernerd", password, salt, 0));
+
+            // A cached key is returned as is
+            byte[] cachedKey = new byte[20];
+            cache.add(identifier, cachedKey);
+            assertArrayEquals(cachedKey, UsernameTokenUtil.generateDerivedKey("wernerd", password, salt, 1000, cache));
+        }
+    }
+
+}
@@ -33,7 +33,6 @@ package org.apache.wss4j.dom;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -57,7 +56,7 @@ public class WSDocInfo {
     // creation or validation
     private final Map<String, TokenValue> tokens = new HashMap<>();
 
-    private final List<WSSecurityEngineResult> results = new LinkedList<>();
+    private final List<WSSecurityEngineResult> results = new ArrayList<>();
     private final Map<Integer, List<WSSecurityEngineResult>> actionResults = new HashMap<>();
     private CallbackLookup callbackLookup;
     private Element securityHeader;
@@ -212,14 +211,9 @@ public class WSDocInfo {
      */
     public void addResult(WSSecurityEngineResult result) {
         results.add(result);
-        Integer resultTag = (Integer)result.get(WSSecurityEngineResult.TAG_ACTION);
+        Integer resultTag = result.getAction();
         if (resultTag != null) {
-            List<WSSecurityEngineResult> storedResults = actionResults.get(resultTag);
-            if (storedResults == null) {
-                storedResults = new ArrayList<>();
-            }
-            storedResults.add(result);
-            actionResults.put(resultTag, storedResults);
+            actionResults.computeIfAbsent(resultTag, k -> new ArrayList<>()).add(result);
         }
     }
 
@@ -254,7 +248,7 @@ public class WSDocInfo {
         String id = XMLUtils.getIDFromReference(uri);
         if (id != null && !results.isEmpty()) {
             for (WSSecurityEngineResult result : results) {
-                String cId = (String)result.get(WSSecurityEngineResult.TAG_ID);
+                String cId = result.getId();
                 if (id.equals(cId)) {
                     return result;
                 }
@@ -267,11 +261,12 @@ public class WSDocInfo {
      * Get a unmodifiable list of WSSecurityEngineResults of the given Integer tag
      */
     public List<WSSecurityEngineResult> getResultsByTag(Integer tag) {
-        if (actionResults.isEmpty() || !actionResults.containsKey(tag)) {
+        List<WSSecurityEngineResult> storedResults = actionResults.get(tag);
+        if (storedResults == null) {
             return Collections.emptyList();
         }
 
-        return Collections.unmodifiableList(actionResults.get(tag));
+        return Collections.unmodifiableList(storedResults);
     }
 
     /**
@@ -283,9 +278,10 @@ public class WSDocInfo {
             return false;
         }
 
-        if (!actionResults.isEmpty() && actionResults.containsKey(tag)) {
-            for (WSSecurityEngineResult result : actionResults.get(tag)) {
-                String cId = (String)result.get(WSSecurityEngineResult.TAG_ID);
+        List<WSSecurityEngineResult> storedResults = actionResults.get(tag);
+        if (storedResults != null) {
+            for (WSSecurityEngineResult result : storedResults) {
+                String cId = result.getId();
                 if (id.equals(cId)) {
                     return true;
                 }
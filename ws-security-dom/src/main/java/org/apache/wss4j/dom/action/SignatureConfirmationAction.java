@@ -71,7 +71,7 @@ public class SignatureConfirmationAction implements Action {
             List<WSSecurityEngineResult> resultList = wshResult.getResults();
 
             for (WSSecurityEngineResult result : resultList) {
-                Integer resultAction = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+                Integer resultAction = result.getAction();
 
                 // See if it's a signature action
                 if (resultAction != null
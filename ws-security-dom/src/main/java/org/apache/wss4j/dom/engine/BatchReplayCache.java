@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.engine;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.wss4j.common.cache.ReplayCache;
+
+/**
+ * Defers the replay checks of a batch of messages against a ReplayCache, so that the ReplayCache
+ * is consulted once for the whole batch rather than once per identifier. While the batch is being
+ * processed, each message sees a view of the identifiers that have been added by the messages of
+ * the batch, which catches replays within the batch. Once the batch has been processed, commit
+ * adds all of the identifiers to the ReplayCache with one call of ReplayCache.addAllIfAbsent.
+ * Detecting a replay across batches that are committed concurrently relies on that call being
+ * atomic per identifier, which is the case for the ReplayCache implementations of WSS4J.
+ */
+final class BatchReplayCache {
+
+    private final ReplayCache replayCache;
+    private final String msgId;
+    private final Map<String, PendingIdentifier> pending = new ConcurrentHashMap<>();
+    private final Set<Integer> replayed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param replayCache the ReplayCache that is checked and updated on commit
+     * @param msgId the message id of the WSSecurityException for a replay
+     */
+    BatchReplayCache(ReplayCache replayCache, String msgId) {
+        this.replayCache = replayCache;
+        this.msgId = msgId;
+    }
+
+    String getMsgId() {
+        return msgId;
+    }
+
+    /**
+     * Get the view of the batch to set on the RequestData of the message with the given index
+     */
+    ReplayCache forMessage(int index) {
+        return new MessageReplayCache(index);
+    }
+
+    /**
+     * Add the identifiers of the batch to the ReplayCache, unless they are already contained in it.
+     * @return the indices of the messages that are a replay
+     */
+    Set<Integer> commit() {
+        Set<Integer> replays = new HashSet<>(replayed);
+        if (pending.isEmpty()) {
+            return replays;
+        }
+        Map<String, Instant> identifiers = new HashMap<>();
+        for (Map.Entry<String, PendingIdentifier> entry : pending.entrySet()) {
+            identifiers.put(entry.getKey(), entry.getValue().expiry);
+        }
+        for (String identifier : replayCache.addAllIfAbsent(identifiers)) {
+            replays.add(pending.get(identifier).index);
+        }
+        return replays;
+    }
+
+    private static final class PendingIdentifier {
+        private final int index;
+        private final Instant expiry;
+
+        PendingIdentifier(int index, Instant expiry) {
+            this.index = index;
+            this.expiry = expiry;
+        }
+    }
+
+    private final class MessageReplayCache implements ReplayCache {
+        private final int index;
+
+        MessageReplayCache(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void add(String identifier) {
+            add(identifier, null);
+        }
+
+        @Override
+        public void add(String identifier, Instant expiry) {
+            if (identifier == null || identifier.length() == 0) {
+                return;
+            }
+            PendingIdentifier existing = pending.putIfAbsent(identifier, new PendingIdentifier(index, expiry));
+            if (existing != null && existing.index != index) {
+                // Another message of the batch raced us to it after we checked contains
+                replayed.add(index);
+            }
+        }
+
+        @Override
+        public boolean contains(String identifier) {
+            return identifier != null && pending.containsKey(identifier);
+        }
+
+        @Override
+        public void close() {
+            // The underlying ReplayCache is owned by the caller
+        }
+    }
+
+}
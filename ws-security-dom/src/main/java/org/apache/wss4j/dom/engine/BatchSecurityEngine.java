@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.validate.TrustVerificationCache;
+import org.w3c.dom.Document;
+
+/**
+ * Processes the security headers of a batch of messages, e.g. the messages that a consumer has
+ * received from a message queue, with some work shared across the batch:
+ *
+ * - The messages are processed in parallel on the Executor that is supplied, which should be
+ *   bounded. If none is supplied then they are processed in turn on the calling thread.
+ * - A certificate chain that is used by several messages of the batch is only validated once
+ *   (see TrustVerificationCache).
+ * - The ReplayCaches of the RequestData are checked and updated once for the whole batch, after
+ *   all of the messages have been processed, rather than once per message. Replays within the
+ *   batch are detected as each message is processed. Replays across batches that are processed
+ *   concurrently are detected as long as ReplayCache.addAllIfAbsent is atomic per identifier.
+ *
+ * Each message is processed with its own RequestData, which is obtained from the Supplier that is
+ * passed to processSecurityHeaders, and which should return a new but identically configured
+ * instance on each call. A failure to process one message does not affect the others, and is
+ * returned in the BatchVerificationResult of that message. This includes a message that the Executor
+ * rejects, e.g. because its queue is full.
+ */
+public class BatchSecurityEngine {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(BatchSecurityEngine.class);
+
+    private final WSSecurityEngine secEngine;
+    private final Executor executor;
+
+    /**
+     * Process the messages of a batch in turn on the calling thread
+     */
+    public BatchSecurityEngine() {
+        this(new WSSecurityEngine(), null);
+    }
+
+    /**
+     * @param executor the (bounded) Executor to process the messages of a batch on in parallel
+     */
+    public BatchSecurityEngine(Executor executor) {
+        this(new WSSecurityEngine(), executor);
+    }
+
+    /**
+     * @param secEngine the WSSecurityEngine to process each message with
+     * @param executor the (bounded) Executor to process the messages of a batch on in parallel, or
+     *                 null to process them in turn on the calling thread
+     */
+    public BatchSecurityEngine(WSSecurityEngine secEngine, Executor executor) {
+        this.secEngine = secEngine;
+        this.executor = executor;
+        // Initialise the WSSConfig up front, as the WSSecurityEngine is shared across threads
+        secEngine.getWssConfig();
+    }
+
+    /**
+     * Process the security headers of the given batch of messages.
+     *
+     * @param documents the SOAP envelopes of the messages
+     * @param requestDataFactory supplies the RequestData to process each message with
+     * @return the result of processing each message, in the order of the documents
+     */
+    public List<BatchVerificationResult> processSecurityHeaders(
+        List<Document> documents, Supplier<RequestData> requestDataFactory
+    ) {
+        int size = documents.size();
+        WSHandlerResult[] handlerResults = new WSHandlerResult[size];
+        WSSecurityException[] exceptions = new WSSecurityException[size];
+        TrustVerificationCache trustVerificationCache = new TrustVerificationCache();
+        Map<ReplayCache, BatchReplayCache> replayCaches = new ConcurrentHashMap<>();
+
+        if (executor == null) {
+            for (int i = 0; i < size; i++) {
+                processMessage(
+                    i, documents.get(i), requestDataFactory, trustVerificationCache,
+                    replayCaches, handlerResults, exceptions
+                );
+            }
+        } else {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                final int index = i;
+                try {
+                    futures.add(CompletableFuture.runAsync(() ->
+                        processMessage(
+                            index, documents.get(index), requestDataFactory, trustVerificationCache,
+                            replayCaches, handlerResults, exceptions
+                        ), executor)
+                    );
+                } catch (RejectedExecutionException ex) {
+                    LOG.debug("Message {} of the batch was rejected by the Executor: {}", index, ex.getMessage());
+                    exceptions[index] = new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+
+        for (BatchReplayCache replayCache : replayCaches.values()) {
+            for (int index : replayCache.commit()) {
+                if (exceptions[index] == null) {
+                    LOG.debug("Message {} of the batch is a replay", index);
+                    handlerResults[index] = null;
+                    exceptions[index] =
+                        new WSSecurityException(
+                            WSSecurityException.ErrorCode.INVALID_SECURITY,
+                            replayCache.getMsgId(),
+                            new Object[] {"A replay attack has been detected"}
+                        );
+                }
+            }
+        }
+
+        List<BatchVerificationResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(new BatchVerificationResult(i, documents.get(i), handlerResults[i], exceptions[i]));
+        }
+        return results;
+    }
+
+    private void processMessage(
+        int index,
+        Document document,
+        Supplier<RequestData> requestDataFactory,
+        TrustVerificationCache trustVerificationCache,
+        Map<ReplayCache, BatchReplayCache> replayCaches,
+        WSHandlerResult[] handlerResults,
+        WSSecurityException[] exceptions
+    ) {
+        try {
+            RequestData requestData = requestDataFactory.get();
+            requestData.setTrustVerificationCache(trustVerificationCache);
+            requestData.setTimestampReplayCache(
+                forMessage(requestData.getTimestampReplayCache(), "invalidTimestamp", replayCaches, index)
+            );
+            requestData.setNonceReplayCache(
+                forMessage(requestData.getNonceReplayCache(), "badUsernameToken", replayCaches, index)
+            );
+            requestData.setSamlOneTimeUseReplayCache(
+                forMessage(requestData.getSamlOneTimeUseReplayCache(), "badSamlToken", replayCaches, index)
+            );
+            handlerResults[index] = secEngine.processSecurityHeader(document, requestData);
+        } catch (WSSecurityException ex) {
+            LOG.debug("Message {} of the batch failed: {}", index, ex.getMessage());
+            exceptions[index] = ex;
+        } catch (RuntimeException ex) {
+            LOG.debug("Message {} of the batch failed: {}", index, ex.getMessage());
+            exceptions[index] = new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+        }
+    }
+
+    private static ReplayCache forMessage(
+        ReplayCache replayCache, String msgId, Map<ReplayCache, BatchReplayCache> replayCaches, int index
+    ) {
+        if (replayCache == null) {
+            return null;
+        }
+        return replayCaches.computeIfAbsent(replayCache, r -> new BatchReplayCache(r, msgId)).forMessage(index);
+    }
+
+}
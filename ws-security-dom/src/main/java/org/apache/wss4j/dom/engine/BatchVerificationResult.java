@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.engine;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.w3c.dom.Document;
+
+/**
+ * The outcome of processing the security header of one message of a batch (see
+ * BatchSecurityEngine). Exactly one of the WSHandlerResult and the WSSecurityException is set,
+ * except that the WSHandlerResult is also null if the message has no security header for the actor.
+ */
+public final class BatchVerificationResult {
+
+    private final int index;
+    private final Document document;
+    private final WSHandlerResult handlerResult;
+    private final WSSecurityException exception;
+
+    BatchVerificationResult(
+        int index, Document document, WSHandlerResult handlerResult, WSSecurityException exception
+    ) {
+        this.index = index;
+        this.document = document;
+        this.handlerResult = handlerResult;
+        this.exception = exception;
+    }
+
+    /**
+     * Get the position of the message in the batch
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * Whether the security header of the message was processed successfully
+     */
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    /**
+     * Get the result of processing the security header, or null if it failed or if there is no
+     * security header for the actor
+     */
+    public WSHandlerResult getHandlerResult() {
+        return handlerResult;
+    }
+
+    /**
+     * Get the reason that processing the security header failed, or null if it succeeded
+     */
+    public WSSecurityException getException() {
+        return exception;
+    }
+
+}
@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.engine;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.util.XMLStreamUtils;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A hybrid of the DOM and streaming approaches to processing an inbound message. A DOM is only
+ * built for the SOAP Envelope and Header (including the security header), which is processed by the
+ * WSSecurityEngine as usual, giving the same results and using the same Validators. The SOAP Body
+ * is never built as a DOM. Instead, it is streamed from the XMLStreamReader to an OutputStream,
+ * and Signature References to it are verified, and it is decrypted, as it is streamed. See
+ * StreamedBody for the restrictions that apply to signed and encrypted Bodies.
+ *
+ * The results that are returned are only valid once the whole Body has been streamed, i.e. if
+ * processSecurityHeader does not throw an exception. The DOM of the SOAP Header is available from
+ * the WSDocInfo of the RequestData.
+ */
+public class HybridSecurityEngine {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(HybridSecurityEngine.class);
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+
+    static {
+        DOCUMENT_BUILDER_FACTORY.setNamespaceAware(true);
+        try {
+            DOCUMENT_BUILDER_FACTORY.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (ParserConfigurationException e) {
+            LOG.debug(e.getMessage(), e);
+        }
+    }
+
+    private final WSSecurityEngine securityEngine;
+
+    public HybridSecurityEngine() {
+        this(new WSSecurityEngine());
+    }
+
+    public HybridSecurityEngine(WSSecurityEngine securityEngine) {
+        this.securityEngine = securityEngine;
+    }
+
+    /**
+     * Process the security header of the SOAP Envelope that is read from the given
+     * XMLStreamReader, and stream the (decrypted) SOAP Body element to the given OutputStream.
+     * The reader is left positioned on the end element of the SOAP Body.
+     *
+     * @param reader the XMLStreamReader positioned at (or before) the SOAP Envelope
+     * @param requestData the RequestData associated with the request
+     * @param bodyOutput the OutputStream to write the SOAP Body to, encoded in UTF-8
+     * @return a WSHandlerResult Object containing the results of processing the security header,
+     *         or null if there is no security header for the actor
+     * @throws WSSecurityException
+     */
+    public WSHandlerResult processSecurityHeader(
+        XMLStreamReader reader,
+        RequestData requestData,
+        OutputStream bodyOutput
+    ) throws WSSecurityException {
+        StreamedBody streamedBody;
+        try {
+            streamedBody = readEnvelope(reader);
+        } catch (XMLStreamException | ParserConfigurationException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+        }
+
+        requestData.setStreamedBody(streamedBody);
+        try {
+            WSHandlerResult result =
+                securityEngine.processSecurityHeader(streamedBody.getBodyElement().getOwnerDocument(), requestData);
+            streamedBody.process(reader, bodyOutput);
+            return result;
+        } finally {
+            requestData.setStreamedBody(null);
+        }
+    }
+
+    /**
+     * Read the SOAP Envelope up to the start of the SOAP Body into a DOM, along with the leading
+     * part of an EncryptedData child of the Body. The events of the Body that have been read are
+     * buffered in the returned StreamedBody.
+     */
+    private static StreamedBody readEnvelope(
+        XMLStreamReader reader
+    ) throws XMLStreamException, ParserConfigurationException, WSSecurityException {
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY);
+            }
+            reader.next();
+        }
+        String soapNamespace = reader.getNamespaceURI();
+        if (!WSConstants.ELEM_ENVELOPE.equals(reader.getLocalName())
+            || !(WSConstants.URI_SOAP11_ENV.equals(soapNamespace) || WSConstants.URI_SOAP12_ENV.equals(soapNamespace))) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.INVALID_SECURITY, "empty",
+                new Object[] {"The message is not a SOAP Envelope"}
+            );
+        }
+
+        Document doc = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+        XMLSecStartElement envelopeEvent = XMLSecEventFactory.allocate(reader, null).asStartElement();
+        Element envelope = XMLStreamUtils.createElement(doc, reader);
+        doc.appendChild(envelope);
+
+        while (reader.hasNext()) {
+            int eventType = reader.next();
+            if (eventType == XMLStreamConstants.END_ELEMENT) {
+                break;
+            } else if (eventType != XMLStreamConstants.START_ELEMENT) {
+                XMLStreamUtils.appendNode(doc, envelope, reader);
+            } else if (WSConstants.ELEM_BODY.equals(reader.getLocalName())
+                && soapNamespace.equals(reader.getNamespaceURI())) {
+                return readBody(reader, doc, envelope, envelopeEvent);
+            } else {
+                readElement(reader, doc, envelope);
+            }
+        }
+        throw new WSSecurityException(
+            WSSecurityException.ErrorCode.INVALID_SECURITY, "empty",
+            new Object[] {"The SOAP Envelope has no Body"}
+        );
+    }
+
+    private static StreamedBody readBody(
+        XMLStreamReader reader, Document doc, Element envelope, XMLSecStartElement envelopeEvent
+    ) throws XMLStreamException, WSSecurityException {
+        XMLSecStartElement bodyEvent = XMLSecEventFactory.allocate(reader, envelopeEvent).asStartElement();
+        Element body = XMLStreamUtils.createElement(doc, reader);
+        envelope.appendChild(body);
+
+        List<XMLSecEvent> bufferedEvents = new ArrayList<>();
+        bufferedEvents.add(bodyEvent);
+
+        // Look ahead to the first child element of the Body
+        XMLSecEvent event;
+        do {
+            reader.next();
+            event = XMLSecEventFactory.allocate(reader, bodyEvent);
+            bufferedEvents.add(event);
+        } while (!event.isStartElement() && !event.isEndElement());
+
+        if (!event.isStartElement() || !WSConstants.ENC_NS.equals(reader.getNamespaceURI())
+            || !WSConstants.ENC_DATA_LN.equals(reader.getLocalName())) {
+            return new StreamedBody(body, bodyEvent, null, null, bufferedEvents);
+        }
+
+        // Build the EncryptedData up to the CipherValue, which is left empty
+        XMLSecStartElement encryptedDataEvent = event.asStartElement();
+        Element encryptedData = XMLStreamUtils.createElement(doc, reader);
+        body.appendChild(encryptedData);
+        Node current = encryptedData;
+        XMLSecStartElement parent = encryptedDataEvent;
+        while (current != body) {
+            reader.next();
+            event = XMLSecEventFactory.allocate(reader, parent);
+            bufferedEvents.add(event);
+            if (event.isStartElement()) {
+                Element element = XMLStreamUtils.createElement(doc, reader);
+                current.appendChild(element);
+                if ("CipherValue".equals(reader.getLocalName())
+                    && WSConstants.ENC_NS.equals(reader.getNamespaceURI())
+                    && "CipherData".equals(current.getLocalName())
+                    && current.getParentNode() == encryptedData) {
+                    return new StreamedBody(body, bodyEvent, encryptedData, encryptedDataEvent, bufferedEvents);
+                }
+                current = element;
+                parent = event.asStartElement();
+            } else if (event.isEndElement()) {
+                current = current.getParentNode();
+                parent = parent.getParentXMLSecStartElement();
+            } else {
+                XMLStreamUtils.appendNode(doc, current, reader);
+            }
+        }
+
+        // The EncryptedData has no CipherValue, and so is just streamed as part of the Body
+        body.removeChild(encryptedData);
+        return new StreamedBody(body, bodyEvent, null, null, bufferedEvents);
+    }
+
+    /**
+     * Read the element the reader is positioned on, including its descendants, into the DOM
+     */
+    private static void readElement(
+        XMLStreamReader reader, Document doc, Node parent
+    ) throws XMLStreamException, WSSecurityException {
+        Element element = XMLStreamUtils.createElement(doc, reader);
+        parent.appendChild(element);
+        XMLStreamUtils.readContent(reader, doc, element);
+    }
+
+}
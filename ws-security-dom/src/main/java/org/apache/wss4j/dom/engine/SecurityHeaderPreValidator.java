@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.crypto.AlgorithmSuite;
+import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.message.token.Timestamp;
+import org.apache.wss4j.dom.message.token.UsernameToken;
+import org.apache.wss4j.dom.processor.EncryptedKeyProcessor;
+import org.apache.wss4j.dom.processor.Processor;
+import org.apache.wss4j.dom.processor.SignatureProcessor;
+import org.apache.wss4j.dom.processor.TimestampProcessor;
+import org.apache.wss4j.dom.processor.UsernameTokenProcessor;
+import org.apache.wss4j.dom.util.X509Util;
+import org.apache.wss4j.dom.validate.Credential;
+import org.apache.wss4j.dom.validate.TimestampValidator;
+import org.apache.wss4j.dom.validate.Validator;
+import org.apache.wss4j.dom.validate.ValidatorUtils;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * This class performs the cheap checks of security header processing over the whole security
+ * header, before any child element of it is processed. These are (in order) the Timestamp count,
+ * the Timestamp freshness, the UsernameToken Created freshness and nonce replay lookup, and the
+ * compliance of the Signature and EncryptedKey algorithms with the AlgorithmSuite. A message that
+ * fails any of them is rejected before a private key or signature operation is performed for it.
+ *
+ * The child elements are still processed, and checked, in document order afterwards. Elements are
+ * only checked here if they are handled by the default Processor (and for a Timestamp, the default
+ * Validator), so that the outcome of processing a message is not changed.
+ */
+final class SecurityHeaderPreValidator {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SecurityHeaderPreValidator.class);
+
+    private SecurityHeaderPreValidator() {
+        // complete
+    }
+
+    static void preValidate(Element securityHeader, RequestData data, WSSConfig cfg) throws WSSecurityException {
+        List<Element> timestamps = new ArrayList<>(1);
+        List<Element> usernameTokens = new ArrayList<>(1);
+        List<Element> signatures = new ArrayList<>(1);
+        List<Element> encryptedKeys = new ArrayList<>(1);
+        int timestampCount = 0;
+
+        for (Node node = securityHeader.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (Node.ELEMENT_NODE != node.getNodeType()) {
+                continue;
+            }
+            QName el = new QName(node.getNamespaceURI(), node.getLocalName());
+            Processor processor = cfg.getProcessor(el);
+            if (WSConstants.TIMESTAMP.equals(el)) {
+                timestampCount++;
+                if (processor instanceof TimestampProcessor) {
+                    timestamps.add((Element)node);
+                }
+            } else if (WSConstants.USERNAME_TOKEN.equals(el) && processor instanceof UsernameTokenProcessor) {
+                usernameTokens.add((Element)node);
+            } else if (WSConstants.SIGNATURE.equals(el) && processor instanceof SignatureProcessor) {
+                signatures.add((Element)node);
+            } else if (WSConstants.ENCRYPTED_KEY.equals(el) && processor instanceof EncryptedKeyProcessor) {
+                encryptedKeys.add((Element)node);
+            }
+        }
+
+        if (timestampCount > 1) {
+            data.getBSPEnforcer().handleBSPRule(BSPRule.R3227);
+        }
+
+        Validator timestampValidator = data.getValidator(WSConstants.TIMESTAMP);
+        if (timestampValidator instanceof TimestampValidator) {
+            for (Element timestampElement : timestamps) {
+                Credential credential = new Credential();
+                credential.setTimestamp(new Timestamp(timestampElement, data.getBSPEnforcer()));
+                ValidatorUtils.validate(timestampValidator, credential, data);
+            }
+        }
+
+        for (Element usernameTokenElement : usernameTokens) {
+            checkUsernameToken(usernameTokenElement, data);
+        }
+
+        checkAlgorithms(signatures, encryptedKeys, data);
+
+        LOG.debug("Pre-validation of the security header succeeded");
+    }
+
+    private static void checkUsernameToken(Element usernameTokenElement, RequestData data) throws WSSecurityException {
+        UsernameToken usernameToken =
+            new UsernameToken(usernameTokenElement, data.isAllowNamespaceQualifiedPasswordTypes(),
+                              data.getBSPEnforcer());
+        if (!usernameToken.verifyCreated(data.getUtTTL(), data.getUtFutureTTL())) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
+        }
+
+        ReplayCache replayCache = data.getNonceReplayCache();   //NOPMD
+        if (replayCache != null && usernameToken.getNonce() != null
+            && replayCache.contains(usernameToken.getNonce())) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.INVALID_SECURITY,
+                "badUsernameToken",
+                new Object[] {"A replay attack has been detected"}
+            );
+        }
+    }
+
+    private static void checkAlgorithms(
+        List<Element> signatures, List<Element> encryptedKeys, RequestData data
+    ) throws WSSecurityException {
+        AlgorithmSuite algorithmSuite = data.getAlgorithmSuite();
+        AlgorithmSuiteValidator algorithmSuiteValidator = null;
+        if (algorithmSuite != null) {
+            algorithmSuiteValidator = new AlgorithmSuiteValidator(algorithmSuite);
+        }
+
+        for (Element encryptedKey : encryptedKeys) {
+            String keyTransportMethod = X509Util.getEncAlgo(encryptedKey);
+            if (keyTransportMethod == null) {
+                continue;
+            }
+            if (WSConstants.KEYTRANSPORT_RSA15.equals(keyTransportMethod)
+                && !data.isAllowRSA15KeyTransportAlgorithm()
+                && (algorithmSuite == null
+                  || !algorithmSuite.getKeyWrapAlgorithms().contains(WSConstants.KEYTRANSPORT_RSA15))) {
+                LOG.debug("The Key transport method does not match the requirement");
+                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY);
+            }
+            if (algorithmSuiteValidator != null) {
+                algorithmSuiteValidator.checkEncryptionKeyWrapAlgorithm(keyTransportMethod);
+            }
+        }
+
+        if (algorithmSuiteValidator == null) {
+            return;
+        }
+        for (Element signature : signatures) {
+            Element signedInfo =
+                XMLUtils.getDirectChildElement(signature, WSConstants.SIG_INFO_LN, WSConstants.SIG_NS);
+            if (signedInfo == null) {
+                continue;
+            }
+            for (Node node = signedInfo.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (!(node instanceof Element) || !WSConstants.SIG_NS.equals(node.getNamespaceURI())) {
+                    continue;
+                }
+                Element child = (Element)node;
+                String localName = child.getLocalName();
+                if ("CanonicalizationMethod".equals(localName)) {
+                    algorithmSuiteValidator.checkC14nAlgorithm(child.getAttributeNS(null, "Algorithm"));
+                } else if ("SignatureMethod".equals(localName)) {
+                    algorithmSuiteValidator.checkSignatureMethod(child.getAttributeNS(null, "Algorithm"));
+                } else if (WSConstants.REF_LN.equals(localName)) {
+                    checkReference(child, algorithmSuiteValidator);
+                }
+            }
+        }
+    }
+
+    private static void checkReference(
+        Element reference, AlgorithmSuiteValidator algorithmSuiteValidator
+    ) throws WSSecurityException {
+        Element digestMethod = XMLUtils.getDirectChildElement(reference, "DigestMethod", WSConstants.SIG_NS);
+        if (digestMethod != null) {
+            algorithmSuiteValidator.checkDigestAlgorithm(digestMethod.getAttributeNS(null, "Algorithm"));
+        }
+        Element transforms = XMLUtils.getDirectChildElement(reference, "Transforms", WSConstants.SIG_NS);
+        if (transforms != null) {
+            for (Node node = transforms.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node instanceof Element && "Transform".equals(node.getLocalName())
+                    && WSConstants.SIG_NS.equals(node.getNamespaceURI())) {
+                    algorithmSuiteValidator.checkTransformAlgorithm(((Element)node).getAttributeNS(null, "Algorithm"));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,628 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.crypto.dsig.XMLValidateContext;
+import javax.xml.crypto.dsig.spec.ExcC14NParameterSpec;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.JCAEnginePool;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.util.EncryptionUtils;
+import org.apache.wss4j.dom.util.X509Util;
+import org.apache.wss4j.dom.util.XMLStreamUtils;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.Transformer;
+import org.apache.xml.security.stax.ext.stax.XMLSecAttribute;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecNamespace;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.stax.impl.transformer.canonicalizer.Canonicalizer11_OmitCommentsTransformer;
+import org.apache.xml.security.stax.impl.transformer.canonicalizer.Canonicalizer11_WithCommentsTransformer;
+import org.apache.xml.security.stax.impl.transformer.canonicalizer.Canonicalizer20010315_Excl;
+import org.apache.xml.security.stax.impl.transformer.canonicalizer.Canonicalizer20010315_ExclOmitCommentsTransformer;
+import org.apache.xml.security.stax.impl.transformer.canonicalizer.Canonicalizer20010315_ExclWithCommentsTransformer;
+import org.apache.xml.security.stax.impl.transformer.canonicalizer.Canonicalizer20010315_OmitCommentsTransformer;
+import org.apache.xml.security.stax.impl.transformer.canonicalizer.Canonicalizer20010315_WithCommentsTransformer;
+import org.apache.xml.security.stax.impl.util.DigestOutputStream;
+import org.w3c.dom.Element;
+
+/**
+ * The SOAP Body of a message that is processed by the HybridSecurityEngine. Only the Body element
+ * itself, and the leading part of an xenc:EncryptedData child of it (up to the empty
+ * xenc:CipherValue), are built as DOM placeholders and made available to the processors. Signature
+ * References to these elements, and the decryption of the EncryptedData, are deferred by the
+ * processors, and carried out when the Body is subsequently streamed to the application.
+ *
+ * The References must use a single canonicalization Transform (or none), and the EncryptedData must
+ * be "Content" encrypted with an inline CipherValue. The outcome of deferred Signature Reference
+ * validation is only known once the Body has been streamed, as for the StAX implementation.
+ */
+public final class StreamedBody {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(StreamedBody.class);
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Which part of an EncryptedData region of the Body an event belongs to
+     */
+    private enum Content {
+        CLEAR, CIPHERTEXT, PLAINTEXT
+    }
+
+    private final Element bodyElement;
+    private final XMLSecStartElement bodyEvent;
+    private final String bodyId;
+    private final Element encryptedDataElement;
+    private final XMLSecStartElement encryptedDataEvent;
+    private final String encryptedDataId;
+    private final List<XMLSecEvent> bufferedEvents;
+    private final List<DeferredReference> references = new ArrayList<>();
+    private SecretKey decryptionKey;
+    private String decryptionAlgorithm;
+
+    private Writer writer;
+    private XMLSecStartElement parent;
+    private int level;
+    private int encryptedDataLevel;
+    private boolean decrypted;
+
+    StreamedBody(
+        Element bodyElement,
+        XMLSecStartElement bodyEvent,
+        Element encryptedDataElement,
+        XMLSecStartElement encryptedDataEvent,
+        List<XMLSecEvent> bufferedEvents
+    ) {
+        this.bodyElement = bodyElement;
+        this.bodyEvent = bodyEvent;
+        this.encryptedDataElement = encryptedDataElement;
+        this.encryptedDataEvent = encryptedDataEvent;
+        this.bufferedEvents = bufferedEvents;
+
+        String id = bodyElement.getAttributeNS(WSConstants.WSU_NS, "Id");
+        if (id.isEmpty()) {
+            id = bodyElement.getAttributeNS(null, "Id");
+        }
+        bodyId = id.isEmpty() ? null : id;
+        if (encryptedDataElement != null && encryptedDataElement.hasAttributeNS(null, "Id")) {
+            encryptedDataId = encryptedDataElement.getAttributeNS(null, "Id");
+        } else {
+            encryptedDataId = null;
+        }
+    }
+
+    /**
+     * Get the DOM placeholder of the SOAP Body
+     */
+    public Element getBodyElement() {
+        return bodyElement;
+    }
+
+    /**
+     * Return whether the given element is the placeholder of the SOAP Body, or of the
+     * EncryptedData child of it, i.e. whether its content is only available when streaming
+     */
+    public boolean isStreamed(Element element) {
+        return element != null && (element == bodyElement || element == encryptedDataElement);
+    }
+
+    /**
+     * Get the placeholder element referred to by the given (same-document) URI, or null if the
+     * URI does not refer to a streamed element
+     */
+    public Element getStreamedElement(String uri) {
+        if (uri == null || !uri.startsWith("#")) {
+            return null;
+        }
+        String id = XMLUtils.getIDFromReference(uri);
+        if (id.equals(bodyId)) {
+            return bodyElement;
+        } else if (id.equals(encryptedDataId) && encryptedDataElement.getParentNode() != null) {
+            return encryptedDataElement;
+        }
+        return null;
+    }
+
+    /**
+     * Validate the given XMLSignature. The SignatureValue, and any Reference that does not refer
+     * to a streamed element, are validated immediately. The validation of the remaining
+     * References is deferred until the Body is streamed.
+     * @return whether the SignatureValue and the References that could be validated are valid
+     */
+    public boolean validate(
+        XMLSignature xmlSignature, XMLValidateContext context
+    ) throws XMLSignatureException, WSSecurityException {
+        List<Reference> deferred = new ArrayList<>(1);
+        for (Object reference : xmlSignature.getSignedInfo().getReferences()) {
+            Reference siRef = (Reference)reference;
+            if (getStreamedElement(siRef.getURI()) != null) {
+                deferred.add(siRef);
+            } else if (!siRef.validate(context)) {
+                return false;
+            }
+        }
+        if (!xmlSignature.getSignatureValue().validate(context)) {
+            return false;
+        }
+        for (Reference siRef : deferred) {
+            deferReference(siRef);
+        }
+        return true;
+    }
+
+    private void deferReference(Reference reference) throws WSSecurityException {
+        Element element = getStreamedElement(reference.getURI());
+        XMLSecStartElement target = element == bodyElement ? bodyEvent : encryptedDataEvent;
+
+        String c14nAlgorithm = null;
+        List<String> prefixList = null;
+        for (Object transformObject : reference.getTransforms()) {
+            Transform transform = (Transform)transformObject;
+            if (c14nAlgorithm != null || newCanonicalizer(transform.getAlgorithm()) == null) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILED_CHECK, "empty",
+                    new Object[] {"Unsupported Transform for a streamed element: " + transform.getAlgorithm()}
+                );
+            }
+            c14nAlgorithm = transform.getAlgorithm();
+            if (transform.getParameterSpec() instanceof ExcC14NParameterSpec) {
+                @SuppressWarnings("unchecked")
+                List<String> prefixes = ((ExcC14NParameterSpec)transform.getParameterSpec()).getPrefixList();
+                prefixList = prefixes;
+            }
+        }
+        if (c14nAlgorithm == null) {
+            c14nAlgorithm = Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS;
+        }
+
+        LOG.debug("Deferring the validation of Reference {} until the Body is streamed", reference.getURI());
+        references.add(
+            new DeferredReference(
+                target, reference.getURI(), reference.getDigestMethod().getAlgorithm(),
+                reference.getDigestValue(), c14nAlgorithm, prefixList, decryptionKey != null
+            )
+        );
+    }
+
+    /**
+     * Defer the decryption of the (streamed) EncryptedData child of the SOAP Body until the Body
+     * is streamed. The EncryptedData placeholder is removed from the Body placeholder.
+     * @return a WSDataRef for the EncryptedData, of which the protected element is the Body
+     */
+    public WSDataRef deferDecryption(
+        String dataRefURI, Element encData, SecretKey symmetricKey, String symEncAlgo
+    ) throws WSSecurityException {
+        if (encData != encryptedDataElement || decryptionKey != null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
+        }
+        if (!X509Util.isContent(encData)) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILED_CHECK, "empty",
+                new Object[] {"Only Content encryption of a streamed SOAP Body is supported"}
+            );
+        }
+        for (DeferredReference reference : references) {
+            if (reference.target == encryptedDataEvent) {
+                // Decrypting the EncryptedData would invalidate the signed element
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
+            }
+        }
+        decryptionKey = symmetricKey;
+        decryptionAlgorithm = symEncAlgo;
+
+        WSDataRef dataRef = new WSDataRef();
+        dataRef.setEncryptedElement(encData);
+        dataRef.setWsuId(dataRefURI);
+        dataRef.setAlgorithm(symEncAlgo);
+        dataRef.setContent(true);
+        dataRef.setProtectedElement(bodyElement);
+        dataRef.setXpath(EncryptionUtils.getXPath(bodyElement));
+
+        bodyElement.removeChild(encData);
+        return dataRef;
+    }
+
+    /**
+     * Stream the SOAP Body from the given reader to the given OutputStream, decrypting it and
+     * validating the deferred Signature References as it goes. The reader must be positioned on the
+     * last of the buffered events of the Body, and is left positioned on the Body end element.
+     */
+    void process(XMLStreamReader reader, OutputStream output) throws WSSecurityException {
+        writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        parent = bodyEvent.getParentXMLSecStartElement();
+        try {
+            boolean positioned = false;
+            for (XMLSecEvent event : bufferedEvents) {
+                positioned = handleEvent(reader, event);
+            }
+            while (level > 0) {
+                if (!positioned) {
+                    reader.next();
+                }
+                positioned = handleEvent(reader, XMLSecEventFactory.allocate(reader, parent));
+            }
+            writer.flush();
+
+            if (decryptionKey != null && !decrypted) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
+            }
+            for (DeferredReference reference : references) {
+                if (!reference.verified) {
+                    LOG.debug("Reference {} was not found in the streamed Body", reference.uri);
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
+                }
+            }
+        } catch (XMLStreamException | IOException ex) {
+            for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof WSSecurityException) {
+                    throw (WSSecurityException)cause;
+                }
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
+        } finally {
+            for (DeferredReference reference : references) {
+                reference.release();
+            }
+        }
+    }
+
+    /**
+     * Handle the given event of the Body.
+     * @return true if the reader is already positioned on the next (unhandled) event
+     */
+    private boolean handleEvent(
+        XMLStreamReader reader, XMLSecEvent event
+    ) throws XMLStreamException, IOException, WSSecurityException {
+        boolean encrypted = decryptionKey != null && (encryptedDataLevel > 0 || event == encryptedDataEvent);
+        Content content = encrypted ? Content.CIPHERTEXT : Content.CLEAR;
+        for (DeferredReference reference : references) {
+            reference.handle(event, content);
+        }
+
+        boolean positioned = false;
+        if (event.isStartElement()) {
+            level++;
+            if (event == encryptedDataEvent) {
+                encryptedDataLevel = level;
+            }
+            if (!encrypted) {
+                writeStartElement(event.asStartElement());
+            } else if (level == encryptedDataLevel + 2 && isCipherValue(event.asStartElement())) {
+                decrypt(reader, event.asStartElement());
+                positioned = true;
+            }
+            parent = event.asStartElement();
+        } else {
+            if (!encrypted) {
+                event.writeAsEncodedUnicode(writer);
+            }
+            if (event.isEndElement()) {
+                if (level == encryptedDataLevel) {
+                    encryptedDataLevel = 0;
+                }
+                level--;
+                parent = parent.getParentXMLSecStartElement();
+            }
+        }
+        return positioned;
+    }
+
+    private void writeStartElement(XMLSecStartElement startElement) throws IOException {
+        List<XMLSecNamespace> namespaces = startElement.getOnElementDeclaredNamespaces();
+        if (startElement == bodyEvent) {
+            // Declare all of the namespaces in scope on the Body element, as the ancestors of it
+            // are not written out
+            namespaces = new ArrayList<>();
+            bodyEvent.getNamespacesFromCurrentScope(namespaces);
+            namespaces = getDistinctNamespaces(namespaces);
+        }
+
+        StringBuilder builder = new StringBuilder("<");
+        appendName(builder, startElement.getName());
+        appendNamespaces(builder, namespaces);
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            builder.append(' ');
+            appendName(builder, attribute.getName());
+            builder.append("=\"");
+            XMLStreamUtils.appendEscaped(builder, attribute.getValue()).append('"');
+        }
+        writer.write(builder.append('>').toString());
+    }
+
+    private static void appendName(StringBuilder builder, QName name) {
+        if (!name.getPrefix().isEmpty()) {
+            builder.append(name.getPrefix()).append(':');
+        }
+        builder.append(name.getLocalPart());
+    }
+
+    private static void appendNamespaces(StringBuilder builder, List<XMLSecNamespace> namespaces) {
+        for (XMLSecNamespace namespace : namespaces) {
+            String prefix = namespace.getPrefix();
+            builder.append(prefix == null || prefix.isEmpty() ? " xmlns" : " xmlns:" + prefix).append("=\"");
+            XMLStreamUtils.appendEscaped(builder, namespace.getNamespaceURI()).append('"');
+        }
+    }
+
+    private static boolean isCipherValue(XMLSecStartElement startElement) {
+        return "CipherValue".equals(startElement.getName().getLocalPart())
+            && WSConstants.ENC_NS.equals(startElement.getName().getNamespaceURI());
+    }
+
+    /**
+     * Decrypt the content of the CipherValue element the reader is positioned on, passing the
+     * decrypted events on to the output and the deferred References. The reader is left positioned
+     * on the CipherValue end element.
+     */
+    private void decrypt(
+        XMLStreamReader reader, XMLSecStartElement cipherValue
+    ) throws XMLStreamException, IOException, WSSecurityException {
+        Cipher cipher = KeyUtils.getCipherInstance(decryptionAlgorithm);
+        CipherValueInputStream cipherValueStream = new CipherValueInputStream(reader, cipherValue);
+
+        // Parse the decrypted content in the namespace context of the Body
+        List<XMLSecNamespace> scope = new ArrayList<>();
+        bodyEvent.getNamespacesFromCurrentScope(scope);
+        Map<String, String> namespaces = new HashMap<>();
+        for (XMLSecNamespace namespace : getDistinctNamespaces(scope)) {
+            namespaces.put(namespace.getPrefix() == null ? "" : namespace.getPrefix(), namespace.getNamespaceURI());
+        }
+        InputStream wrappedStream =
+            XMLStreamUtils.getDecryptedWrappedStream(
+                decryptionAlgorithm, cipher, decryptionKey, cipherValueStream, namespaces
+            );
+
+        XMLStreamReader plaintextReader =
+            XML_INPUT_FACTORY.createXMLStreamReader(wrappedStream, StandardCharsets.UTF_8.name());
+        try {
+            XMLSecStartElement plaintextParent = bodyEvent;
+            int plaintextLevel = 0;
+            while (plaintextReader.hasNext()) {
+                int eventType = plaintextReader.next();
+                if (eventType == XMLStreamConstants.START_ELEMENT && plaintextLevel++ == 0
+                    || eventType == XMLStreamConstants.END_ELEMENT && --plaintextLevel == 0
+                    || eventType == XMLStreamConstants.END_DOCUMENT) {
+                    continue;
+                }
+                XMLSecEvent event = XMLSecEventFactory.allocate(plaintextReader, plaintextParent);
+                for (DeferredReference reference : references) {
+                    reference.handle(event, Content.PLAINTEXT);
+                }
+                if (event.isStartElement()) {
+                    writeStartElement(event.asStartElement());
+                    plaintextParent = event.asStartElement();
+                } else {
+                    event.writeAsEncodedUnicode(writer);
+                    if (event.isEndElement()) {
+                        plaintextParent = plaintextParent.getParentXMLSecStartElement();
+                    }
+                }
+            }
+        } finally {
+            plaintextReader.close();
+        }
+
+        // Make sure that the whole of the CipherValue has been consumed
+        byte[] buffer = new byte[256];
+        while (cipherValueStream.read(buffer, 0, buffer.length) != -1) { //NOPMD
+            // discard
+        }
+        decrypted = true;
+    }
+
+    private static List<XMLSecNamespace> getDistinctNamespaces(List<XMLSecNamespace> namespaces) {
+        // The namespaces are ordered from the innermost scope, so the first declaration of a prefix wins
+        Map<String, XMLSecNamespace> distinct = new HashMap<>();
+        for (XMLSecNamespace namespace : namespaces) {
+            String prefix = namespace.getPrefix() == null ? "" : namespace.getPrefix();
+            distinct.putIfAbsent(prefix, namespace);
+        }
+        return new ArrayList<>(distinct.values());
+    }
+
+    private static Transformer newCanonicalizer(String algorithm) {
+        switch (algorithm) {
+        case Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS:
+            return new Canonicalizer20010315_ExclOmitCommentsTransformer();
+        case Canonicalizer.ALGO_ID_C14N_EXCL_WITH_COMMENTS:
+            return new Canonicalizer20010315_ExclWithCommentsTransformer();
+        case Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS:
+            return new Canonicalizer20010315_OmitCommentsTransformer();
+        case Canonicalizer.ALGO_ID_C14N_WITH_COMMENTS:
+            return new Canonicalizer20010315_WithCommentsTransformer();
+        case Canonicalizer.ALGO_ID_C14N11_OMIT_COMMENTS:
+            return new Canonicalizer11_OmitCommentsTransformer();
+        case Canonicalizer.ALGO_ID_C14N11_WITH_COMMENTS:
+            return new Canonicalizer11_WithCommentsTransformer();
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * A Signature Reference to a streamed element, which is validated by canonicalizing and
+     * digesting the events of the element as they are streamed
+     */
+    private static final class DeferredReference {
+        private final XMLSecStartElement target;
+        private final String uri;
+        private final String digestAlgorithm;
+        private final byte[] digestValue;
+        private final String c14nAlgorithm;
+        private final List<String> prefixList;
+        private final boolean plaintext;
+
+        private JCAEnginePool.Engine<MessageDigest> digest;
+        private DigestOutputStream digestOutputStream;
+        private Transformer canonicalizer;
+        private int depth;
+        private boolean verified;
+
+        DeferredReference(
+            XMLSecStartElement target, String uri, String digestAlgorithm, byte[] digestValue,
+            String c14nAlgorithm, List<String> prefixList, boolean plaintext
+        ) {
+            this.target = target;
+            this.uri = uri;
+            this.digestAlgorithm = digestAlgorithm;
+            this.digestValue = digestValue;
+            this.c14nAlgorithm = c14nAlgorithm;
+            this.prefixList = prefixList;
+            this.plaintext = plaintext;
+        }
+
+        void handle(XMLSecEvent event, Content content) throws XMLStreamException, WSSecurityException {
+            if (verified || (content == Content.CIPHERTEXT && plaintext) || (content == Content.PLAINTEXT && !plaintext)) {
+                return;
+            }
+            if (canonicalizer == null) {
+                if (event != target) {
+                    return;
+                }
+                start();
+            }
+
+            canonicalizer.transform(event);
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement() && --depth == 0) {
+                canonicalizer.doFinal();
+                if (!MessageDigest.isEqual(digestValue, digestOutputStream.getDigestValue())) {
+                    LOG.debug("Digest of the streamed Reference {} does not match", uri);
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
+                }
+                verified = true;
+                release();
+            }
+        }
+
+        private void start() throws WSSecurityException {
+            try {
+                digest = JCAEnginePool.getMessageDigest(JCEMapper.translateURItoJCEID(digestAlgorithm));
+                digestOutputStream = new DigestOutputStream(digest.get());
+
+                canonicalizer = newCanonicalizer(c14nAlgorithm);
+                if (canonicalizer instanceof Canonicalizer20010315_Excl) {
+                    Map<String, Object> properties = new HashMap<>();
+                    properties.put(Canonicalizer20010315_Excl.INCLUSIVE_NAMESPACES_PREFIX_LIST, prefixList);
+                    properties.put(Canonicalizer20010315_Excl.PROPAGATE_DEFAULT_NAMESPACE, Boolean.FALSE);
+                    canonicalizer.setProperties(properties);
+                }
+                canonicalizer.setOutputStream(digestOutputStream);
+            } catch (NoSuchAlgorithmException | XMLSecurityException e) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, e);
+            }
+        }
+
+        void release() {
+            if (digest != null) {
+                digest.close();
+                digest = null;
+            }
+        }
+    }
+
+    /**
+     * An InputStream over the (base64) text content of a CipherValue element, that is read from the
+     * XMLStreamReader on demand. The text events are also passed on to the deferred References that
+     * cover the ciphertext.
+     */
+    private final class CipherValueInputStream extends XMLStreamUtils.TextInputStream {
+        private final XMLStreamReader reader;
+        private final XMLSecStartElement cipherValue;
+        private boolean finished;
+
+        CipherValueInputStream(XMLStreamReader reader, XMLSecStartElement cipherValue) {
+            this.reader = reader;
+            this.cipherValue = cipherValue;
+        }
+
+        @Override
+        protected String nextText() throws IOException {
+            try {
+                while (!finished) {
+                    int eventType = reader.next();
+                    if (eventType == XMLStreamConstants.END_ELEMENT) {
+                        finished = true;
+                    } else if (eventType == XMLStreamConstants.CHARACTERS
+                        || eventType == XMLStreamConstants.CDATA
+                        || eventType == XMLStreamConstants.SPACE
+                        || eventType == XMLStreamConstants.COMMENT) {
+                        XMLSecEvent event = XMLSecEventFactory.allocate(reader, cipherValue);
+                        for (DeferredReference reference : references) {
+                            reference.handle(event, Content.CIPHERTEXT);
+                        }
+                        if (eventType != XMLStreamConstants.COMMENT) {
+                            return reader.getText();
+                        }
+                    } else {
+                        throw new WSSecurityException(
+                            WSSecurityException.ErrorCode.FAILED_CHECK, "empty",
+                            new Object[] {"Unexpected content in a streamed CipherValue"}
+                        );
+                    }
+                }
+                return null;
+            } catch (XMLStreamException | WSSecurityException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+}
@@ -22,8 +22,12 @@ package org.apache.wss4j.dom.engine;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.Security;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
@@ -237,6 +241,37 @@ public final class WSSConfig {
         DEFAULT_VALIDATORS = java.util.Collections.unmodifiableMap(tmp);
     }
 
+    /**
+     * The built-in processor and validator classes that are instantiated once and shared by all
+     * WSSConfig instances, as they hold no per-message state and have no configuration of their
+     * own. The SamlAssertionValidator is configured via setters, and so is not shared. The
+     * SignatureProcessor and SAMLTokenProcessor hold an XMLSignatureFactory, which is not
+     * guaranteed to be thread-safe, and so are not shared either. Classes registered via
+     * setProcessor or setValidator are instantiated per invocation.
+     */
+    private static final Set<Class<?>> SHARED_CLASSES;
+    static {
+        Set<Class<?>> tmp = new HashSet<>(DEFAULT_PROCESSORS.values());
+        tmp.addAll(DEFAULT_VALIDATORS.values());
+        tmp.remove(org.apache.wss4j.dom.validate.SamlAssertionValidator.class);
+        tmp.remove(org.apache.wss4j.dom.processor.SignatureProcessor.class);
+        tmp.remove(org.apache.wss4j.dom.processor.SAMLTokenProcessor.class);
+        SHARED_CLASSES = Collections.unmodifiableSet(tmp);
+    }
+
+    /**
+     * The shared instances of the SHARED_CLASSES, which are created the first time a class is
+     * looked up, and reused for every message processed with any WSSConfig
+     */
+    private static final Map<Class<?>, Object> SHARED_INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * The lookup tables of the default processors and validators, which are shared by all
+     * WSSConfig instances that do not register any processors or validators of their own
+     */
+    private static volatile Map<QName, Processor> defaultProcessorTable;
+    private static volatile Map<QName, Validator> defaultValidatorTable;
+
     /**
      * a static boolean flag that determines whether default JCE providers
      * should be added at the time of construction.
@@ -290,6 +325,12 @@ public final class WSSConfig {
      */
     private final Map<QName, Object> processorMap = new HashMap<>(DEFAULT_PROCESSORS);
 
+    /**
+     * The immutable lookup table of the processor instances, built from the processorMap when
+     * the first processor is looked up, and discarded when a processor is registered.
+     */
+    private volatile Map<QName, Processor> processorTable;
+
     /**
      * The known validators. This map is of the form <QName, Class<?>> or
      * <QName, Validator>.
@@ -298,6 +339,12 @@ public final class WSSConfig {
      */
     private final Map<QName, Object> validatorMap = new HashMap<>(DEFAULT_VALIDATORS);
 
+    /**
+     * The immutable lookup table of the validator instances, built from the validatorMap when
+     * the first validator is looked up, and discarded when a validator is registered.
+     */
+    private volatile Map<QName, Validator> validatorTable;
+
     static {
         try {
             Transform.register(WSConstants.SWA_ATTACHMENT_CIPHERTEXT_TRANS,
@@ -446,6 +493,7 @@ public final class WSSConfig {
      */
     public Class<?> setProcessor(QName el, Processor processor) {
         Object result = processorMap.put(el, processor);
+        processorTable = null;
         if (result instanceof Class<?>) {
             return (Class<?>)result;
         } else if (result instanceof Processor) {
@@ -461,6 +509,7 @@ public final class WSSConfig {
      */
     public Class<?> setProcessor(QName el, Class<?> clazz) {
         Object result = processorMap.put(el, clazz);
+        processorTable = null;
         if (result instanceof Class<?>) {
             return (Class<?>)result;
         } else if (result instanceof Processor) {
@@ -479,6 +528,7 @@ public final class WSSConfig {
      */
     public Class<?> setValidator(QName el, Validator validator) {
         Object result = validatorMap.put(el, validator);
+        validatorTable = null;
         if (result instanceof Class<?>) {
             return (Class<?>)result;
         } else if (result instanceof Validator) {
@@ -494,6 +544,7 @@ public final class WSSConfig {
      */
     public Class<?> setValidator(QName el, Class<?> clazz) {
         Object result = validatorMap.put(el, clazz);
+        validatorTable = null;
         if (result instanceof Class<?>) {
             return (Class<?>)result;
         } else if (result instanceof Validator) {
@@ -510,6 +561,11 @@ public final class WSSConfig {
      *              specified QName.
      */
     public Validator getValidator(QName el) throws WSSecurityException {
+        Validator validator = getValidatorTable().get(el);
+        if (validator != null) {
+            return validator;
+        }
+
         final Object validatorObject = validatorMap.get(el);
 
         if (validatorObject instanceof Class<?>) {
@@ -534,6 +590,11 @@ public final class WSSConfig {
      *              specified QName.
      */
     public Processor getProcessor(QName el) throws WSSecurityException {
+        Processor processor = getProcessorTable().get(el);
+        if (processor != null) {
+            return processor;
+        }
+
         final Object processorObject = processorMap.get(el);
 
         if (processorObject instanceof Class<?>) {
@@ -550,6 +611,80 @@ public final class WSSConfig {
         return null;
     }
 
+    private Map<QName, Processor> getProcessorTable() throws WSSecurityException {
+        Map<QName, Processor> table = processorTable;
+        if (table == null) {
+            if (processorMap.equals(DEFAULT_PROCESSORS)) {
+                table = defaultProcessorTable;
+                if (table == null) {
+                    table = createLookupTable(DEFAULT_PROCESSORS, Processor.class);
+                    defaultProcessorTable = table;
+                }
+            } else {
+                table = createLookupTable(processorMap, Processor.class);
+            }
+            processorTable = table;
+        }
+        return table;
+    }
+
+    private Map<QName, Validator> getValidatorTable() throws WSSecurityException {
+        Map<QName, Validator> table = validatorTable;
+        if (table == null) {
+            if (validatorMap.equals(DEFAULT_VALIDATORS)) {
+                table = defaultValidatorTable;
+                if (table == null) {
+                    table = createLookupTable(DEFAULT_VALIDATORS, Validator.class);
+                    defaultValidatorTable = table;
+                }
+            } else {
+                table = createLookupTable(validatorMap, Validator.class);
+            }
+            validatorTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * Create an immutable lookup table of the given registrations, mapping each QName to either
+     * the registered instance, or to the shared instance of a built-in class. QNames registered
+     * with any other class are left out of the table, so that a new instance of the class is
+     * created per invocation.
+     */
+    private static <T> Map<QName, T> createLookupTable(
+        Map<QName, ?> registrations, Class<T> type
+    ) throws WSSecurityException {
+        Map<QName, T> table = new HashMap<>();
+        for (Map.Entry<QName, ?> entry : registrations.entrySet()) {
+            Object registration = entry.getValue();
+            if (registration instanceof Class<?> && SHARED_CLASSES.contains(registration)) {
+                registration = getSharedInstance((Class<?>)registration);
+            }
+            if (type.isInstance(registration)) {
+                table.put(entry.getKey(), type.cast(registration));
+            }
+        }
+        return Collections.unmodifiableMap(table);
+    }
+
+    private static Object getSharedInstance(Class<?> clazz) throws WSSecurityException {
+        Object instance = SHARED_INSTANCES.get(clazz);
+        if (instance == null) {
+            try {
+                instance = clazz.getDeclaredConstructor().newInstance();
+            } catch (Exception ex) {
+                LOG.debug(ex.getMessage(), ex);
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
+                        "unableToLoadClass", new Object[] {clazz.getName()});
+            }
+            Object existing = SHARED_INSTANCES.putIfAbsent(clazz, instance);
+            if (existing != null) {
+                instance = existing;
+            }
+        }
+        return instance;
+    }
+
     public WSTimeSource getCurrentTime() {
         if (currentTime != null) {
             return currentTime;
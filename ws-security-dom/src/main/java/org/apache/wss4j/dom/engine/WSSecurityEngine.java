@@ -30,6 +30,11 @@ import javax.xml.namespace.QName;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.jfr.JFRSupport;
+import org.apache.wss4j.common.jfr.SecurityHeaderEvent;
+import org.apache.wss4j.common.jfr.SecurityTokenEvent;
+import org.apache.wss4j.common.metrics.MetricsTimer;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.callback.CallbackLookup;
@@ -299,6 +304,33 @@ public class WSSecurityEngine {
             requestData.setWssConfig(getWssConfig());
         }
 
+        SecurityHeaderEvent event = JFRSupport.isAvailable() ? new SecurityHeaderEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        MetricsTimer timer =
+            MetricsTimer.start(
+                requestData.getSecurityMetrics(), SecurityMetrics.Stage.SECURITY_HEADER, securityHeader.getLocalName()
+            );
+        boolean success = false;
+        try {
+            WSHandlerResult handlerResult = processSecurityHeaderElement(securityHeader, requestData);
+            success = true;
+            return handlerResult;
+        } finally {
+            timer.stop(success);
+            if (event != null && event.shouldCommit()) {
+                event.actor = requestData.getActor();
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+    private WSHandlerResult processSecurityHeaderElement(
+        Element securityHeader,
+        RequestData requestData
+    ) throws WSSecurityException {
         //
         // Gather some info about the document to process and store
         // it for retrieval. Store the implementation of signature crypto
@@ -315,6 +347,9 @@ public class WSSecurityEngine {
         requestData.setWsDocInfo(wsDocInfo);
 
         final WSSConfig cfg = getWssConfig();
+        if (requestData.isPreValidateSecurityHeader()) {
+            SecurityHeaderPreValidator.preValidate(securityHeader, requestData, cfg);
+        }
         Node node = securityHeader.getFirstChild();
 
         List<WSSecurityEngineResult> returnResults = new LinkedList<>();
@@ -337,7 +372,7 @@ public class WSSecurityEngine {
                 //
                 Processor p = cfg.getProcessor(el);
                 if (p != null) {
-                    List<WSSecurityEngineResult> results = p.handleToken((Element) node, requestData);
+                    List<WSSecurityEngineResult> results = handleToken(p, (Element) node, requestData);
                     if (!results.isEmpty()) {
                         returnResults.addAll(0, results);
                     }
@@ -376,4 +411,30 @@ public class WSSecurityEngine {
 
         return handlerResult;
     }
+
+    private static List<WSSecurityEngineResult> handleToken(
+        Processor processor,
+        Element element,
+        RequestData requestData
+    ) throws WSSecurityException {
+        SecurityTokenEvent event = JFRSupport.isAvailable() ? new SecurityTokenEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        MetricsTimer timer =
+            MetricsTimer.start(requestData.getSecurityMetrics(), SecurityMetrics.Stage.TOKEN, element.getLocalName());
+        boolean success = false;
+        try {
+            List<WSSecurityEngineResult> results = processor.handleToken(element, requestData);
+            success = true;
+            return results;
+        } finally {
+            timer.stop(success);
+            if (event != null && event.shouldCommit()) {
+                event.token = element.getLocalName();
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
 }
@@ -27,12 +27,31 @@ import org.apache.wss4j.dom.message.token.SignatureConfirmation;
 import org.apache.wss4j.dom.message.token.Timestamp;
 import org.apache.wss4j.dom.message.token.UsernameToken;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.security.Principal;
 import java.security.cert.X509Certificate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
-
-public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
+/**
+ * The result of processing a single security token or element in the security header. The
+ * result is exposed as a Map keyed by the TAG_* constants for backwards compatibility. The
+ * values of the TAG_* keys are held in a fixed array of slots rather than in hashed entries,
+ * and other keys in a HashMap that is only created when such a key is put. The Map view (the
+ * entry set) is built lazily on top of the slots. The action and id, which are looked up for
+ * every result by WSDocInfo, WSHandler and the SecurityTokenReference parsers, can also be read
+ * via typed accessors.
+ */
+public class WSSecurityEngineResult extends AbstractMap<String, Object> implements Cloneable, Serializable {
 
     //
     // Tokens
@@ -41,7 +60,7 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
     /**
      *
      */
-    private static final long serialVersionUID = 8877354445092724300L;
+    private static final long serialVersionUID = -3529064813409731278L;
 
     /**
      * Tag denoting the SAML Assertion found, if applicable.
@@ -235,6 +254,38 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
      */
     public static final String TAG_ID = "id";
 
+    /**
+     * The keys that have a slot of their own, in slot order
+     */
+    private static final String[] SLOT_KEYS = {
+        TAG_ACTION, TAG_ID, TAG_VALIDATED_TOKEN, TAG_TOKEN_ELEMENT, TAG_PRINCIPAL, TAG_SUBJECT,
+        TAG_SECRET, TAG_PUBLIC_KEY, TAG_X509_CERTIFICATE, TAG_X509_CERTIFICATES, TAG_X509_REFERENCE_TYPE,
+        TAG_SIGNATURE_VALUE, TAG_ENCRYPTED_EPHEMERAL_KEY, TAG_DATA_REF_URIS, TAG_ENCRYPTED_KEY_TRANSPORT_METHOD,
+        TAG_SIGNATURE_METHOD, TAG_CANONICALIZATION_METHOD, TAG_DELEGATION_CREDENTIAL, TAG_SAML_ASSERTION,
+        TAG_TIMESTAMP, TAG_SECURITY_CONTEXT_TOKEN, TAG_USERNAME_TOKEN, TAG_DERIVED_KEY_TOKEN,
+        TAG_SIGNATURE_CONFIRMATION, TAG_BINARY_SECURITY_TOKEN, TAG_TRANSFORMED_TOKEN,
+    };
+
+    private static final int ACTION_SLOT = 0;
+    private static final int ID_SLOT = 1;
+
+    private static final Map<String, Integer> SLOTS = new HashMap<>();
+    static {
+        for (int i = 0; i < SLOT_KEYS.length; i++) {
+            SLOTS.put(SLOT_KEYS[i], i);
+        }
+    }
+
+    /**
+     * Marks a slot that holds a null value, as opposed to an empty slot
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    private transient Object[] slots = new Object[SLOT_KEYS.length];
+    private transient int slotCount;
+    private transient Map<String, Object> otherValues;
+    private transient Set<Map.Entry<String, Object>> entrySet;
+
     public WSSecurityEngineResult(int act) {
         put(TAG_ACTION, act);
     }
@@ -358,5 +409,257 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
         put(TAG_TOKEN_ELEMENT, token.getElement());
     }
 
+    /**
+     * @return the action (WSConstants) of this result, or null if none is set
+     */
+    public Integer getAction() {
+        return (Integer)getSlot(ACTION_SLOT);
+    }
+
+    /**
+     * @return the wsu:Id (or other identifier) of the processed element, or null if none is set
+     */
+    public String getId() {
+        return (String)getSlot(ID_SLOT);
+    }
+
+    @Override
+    public int size() {
+        return slotCount + (otherValues == null ? 0 : otherValues.size());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Integer slot = getSlotIndex(key);
+        if (slot != null) {
+            return slots[slot] != null;
+        }
+        return otherValues != null && otherValues.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Integer slot = getSlotIndex(key);
+        if (slot != null) {
+            return getSlot(slot);
+        }
+        return otherValues == null ? null : otherValues.get(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Integer slot = getSlotIndex(key);
+        if (slot != null) {
+            return setSlot(slot, value);
+        }
+        if (otherValues == null) {
+            otherValues = new HashMap<>();
+        }
+        return otherValues.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Integer slot = getSlotIndex(key);
+        if (slot != null) {
+            return clearSlot(slot);
+        }
+        return otherValues == null ? null : otherValues.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        slots = new Object[SLOT_KEYS.length];
+        slotCount = 0;
+        otherValues = null;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @Override
+    public WSSecurityEngineResult clone() {
+        try {
+            WSSecurityEngineResult result = (WSSecurityEngineResult)super.clone();
+            result.slots = slots.clone();
+            result.otherValues = otherValues == null ? null : new HashMap<>(otherValues);
+            result.entrySet = null;
+            return result;
+        } catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Integer getSlotIndex(Object key) {
+        return key instanceof String ? SLOTS.get(key) : null;
+    }
+
+    private Object getSlot(int slot) {
+        Object value = slots[slot];
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private Object setSlot(int slot, Object value) {
+        Object previous = slots[slot];
+        slots[slot] = value == null ? NULL_VALUE : value;
+        if (previous == null) {
+            slotCount++;
+            return null;
+        }
+        return previous == NULL_VALUE ? null : previous;
+    }
+
+    private Object clearSlot(int slot) {
+        Object previous = slots[slot];
+        if (previous == null) {
+            return null;
+        }
+        slots[slot] = null;
+        slotCount--;
+        return previous == NULL_VALUE ? null : previous;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        for (Map.Entry<String, Object> entry : entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        slots = new Object[SLOT_KEYS.length];
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            put((String)in.readObject(), in.readObject());
+        }
+    }
+
+    /**
+     * The entries of the filled slots, followed by those of the other values
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return WSSecurityEngineResult.this.size();
+        }
+
+        @Override
+        public void clear() {
+            WSSecurityEngineResult.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new Iterator<Map.Entry<String, Object>>() {
+                private int nextSlot = findSlot(0);
+                private int currentSlot = -1;
+                private Iterator<Map.Entry<String, Object>> otherIterator;
+
+                @Override
+                public boolean hasNext() {
+                    if (nextSlot < SLOT_KEYS.length) {
+                        return true;
+                    }
+                    if (otherIterator == null) {
+                        if (otherValues == null) {
+                            return false;
+                        }
+                        otherIterator = otherValues.entrySet().iterator();
+                    }
+                    return otherIterator.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, Object> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    if (nextSlot < SLOT_KEYS.length) {
+                        currentSlot = nextSlot;
+                        nextSlot = findSlot(nextSlot + 1);
+                        return new SlotEntry(currentSlot);
+                    }
+                    currentSlot = -1;
+                    return otherIterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    if (currentSlot >= 0) {
+                        if (slots[currentSlot] == null) {
+                            throw new IllegalStateException();
+                        }
+                        clearSlot(currentSlot);
+                    } else if (otherIterator != null) {
+                        otherIterator.remove();
+                    } else {
+                        throw new IllegalStateException();
+                    }
+                }
+            };
+        }
+
+        private int findSlot(int from) {
+            int slot = from;
+            while (slot < SLOT_KEYS.length && slots[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+    }
+
+    private final class SlotEntry implements Map.Entry<String, Object> {
+        private final int slot;
+
+        SlotEntry(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public String getKey() {
+            return SLOT_KEYS[slot];
+        }
+
+        @Override
+        public Object getValue() {
+            return getSlot(slot);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return setSlot(slot, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>)o;
+            Object value = getValue();
+            return getKey().equals(entry.getKey())
+                && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
 
 }
@@ -23,6 +23,7 @@ import java.security.Provider;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -36,16 +37,25 @@ import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSamlAssertionCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextTokenStore;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosClientSubjectCache;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.dom.SOAPConstants;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.engine.StreamedBody;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.validate.TrustVerificationCache;
 import org.apache.wss4j.dom.validate.Validator;
 import org.apache.xml.security.encryption.Serializer;
 
@@ -75,6 +85,7 @@ public class RequestData {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private final Map<Class<?>, Object> instances = new HashMap<>();
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
     private final List<BSPRule> ignoredBSPRules = new LinkedList<>();
@@ -92,9 +103,12 @@ public class RequestData {
     private boolean use200512Namespace = true;
     private final List<String> audienceRestrictions = new ArrayList<>();
     private boolean requireTimestampExpires;
+    private boolean preValidateSecurityHeader;
     private boolean storeBytesInAttachment;
     private Serializer encryptionSerializer;
     private WSDocInfo wsDocInfo;
+    private StreamedBody streamedBody;
+    private TrustVerificationCache trustVerificationCache;
     private Provider signatureProvider;
 
     /**
@@ -446,6 +460,133 @@ public class RequestData {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the instance of the given type that is shared between requests, e.g. a cache. The
+     * typed setters, such as setEncryptedKeyCache, are shorthands for this method.
+     * @param type the type of the instance
+     * @param instance the instance, or null to remove the instance of the given type
+     */
+    public <T> void setInstance(Class<T> type, T instance) {
+        if (instance == null) {
+            instances.remove(type);
+        } else {
+            instances.put(type, instance);
+        }
+    }
+
+    /**
+     * Get the instance of the given type that is shared between requests, e.g. a cache
+     * @param type the type of the instance
+     * @return the instance of the given type, or null if none has been set
+     */
+    public <T> T getInstance(Class<T> type) {
+        return type.cast(instances.get(type));
+    }
+
+    /**
+     * Set the cache for unwrapped EncryptedKey session keys
+     */
+    public void setEncryptedKeyCache(EncryptedKeyCache newCache) {
+        setInstance(EncryptedKeyCache.class, newCache);
+    }
+
+    /**
+     * Get the cache for unwrapped EncryptedKey session keys. This is null (disabled) by default.
+     */
+    public EncryptedKeyCache getEncryptedKeyCache() {
+        return getInstance(EncryptedKeyCache.class);
+    }
+
+    /**
+     * Set the store for SecurityContextToken secrets
+     */
+    public void setSecurityContextTokenStore(SecurityContextTokenStore newStore) {
+        setInstance(SecurityContextTokenStore.class, newStore);
+    }
+
+    /**
+     * Get the store for SecurityContextToken secrets. This is null (disabled) by default.
+     */
+    public SecurityContextTokenStore getSecurityContextTokenStore() {
+        return getInstance(SecurityContextTokenStore.class);
+    }
+
+    /**
+     * Set the cache for keys derived from DerivedKeyTokens
+     */
+    public void setDerivedKeyCache(DerivedKeyCache newCache) {
+        setInstance(DerivedKeyCache.class, newCache);
+    }
+
+    /**
+     * Get the cache for keys derived from DerivedKeyTokens. This is null (disabled) by default.
+     */
+    public DerivedKeyCache getDerivedKeyCache() {
+        return getInstance(DerivedKeyCache.class);
+    }
+
+    /**
+     * Set the cache of signed SAML Assertions that have already been verified
+     */
+    public void setVerifiedSamlAssertionCache(VerifiedSamlAssertionCache newCache) {
+        setInstance(VerifiedSamlAssertionCache.class, newCache);
+    }
+
+    /**
+     * Get the cache of signed SAML Assertions that have already been verified. This is null
+     * (disabled) by default.
+     */
+    public VerifiedSamlAssertionCache getVerifiedSamlAssertionCache() {
+        return getInstance(VerifiedSamlAssertionCache.class);
+    }
+
+    /**
+     * Set the cache used to reuse signed SAML Assertions on the outbound side
+     */
+    public void setOutboundSamlAssertionCache(OutboundSamlAssertionCache newCache) {
+        setInstance(OutboundSamlAssertionCache.class, newCache);
+    }
+
+    /**
+     * Get the cache used to reuse signed SAML Assertions on the outbound side. This is null
+     * (disabled) by default.
+     */
+    public OutboundSamlAssertionCache getOutboundSamlAssertionCache() {
+        return getInstance(OutboundSamlAssertionCache.class);
+    }
+
+    /**
+     * Set the cache of logged-in client Subjects used to reuse the TGT and service tickets for
+     * outbound Kerberos tokens. It must be passed on to each KerberosSecurity instance via
+     * KerberosSecurity#setKerberosClientSubjectCache.
+     */
+    public void setKerberosClientSubjectCache(KerberosClientSubjectCache newCache) {
+        setInstance(KerberosClientSubjectCache.class, newCache);
+    }
+
+    /**
+     * Get the cache of logged-in client Subjects used for outbound Kerberos tokens. This is null
+     * (disabled) by default.
+     */
+    public KerberosClientSubjectCache getKerberosClientSubjectCache() {
+        return getInstance(KerberosClientSubjectCache.class);
+    }
+
+    /**
+     * Set the SecurityMetrics instance to report processing times to
+     */
+    public void setSecurityMetrics(SecurityMetrics securityMetrics) {
+        setInstance(SecurityMetrics.class, securityMetrics);
+    }
+
+    /**
+     * Get the SecurityMetrics instance to report processing times to. This is null (disabled)
+     * by default.
+     */
+    public SecurityMetrics getSecurityMetrics() {
+        return getInstance(SecurityMetrics.class);
+    }
+
     /**
      * Set the Signature Subject Cert Constraints
      */
@@ -609,6 +750,19 @@ public class RequestData {
         this.requireTimestampExpires = requireTimestampExpires;
     }
 
+    public boolean isPreValidateSecurityHeader() {
+        return preValidateSecurityHeader;
+    }
+
+    /**
+     * Set whether to check the Timestamps, UsernameTokens and Signature/EncryptedKey algorithms of
+     * the whole security header before any of it is processed, so that invalid messages are
+     * rejected before any private key or signature operation. The default is false.
+     */
+    public void setPreValidateSecurityHeader(boolean preValidateSecurityHeader) {
+        this.preValidateSecurityHeader = preValidateSecurityHeader;
+    }
+
     public boolean isValidateSamlSubjectConfirmation() {
         return validateSamlSubjectConfirmation;
     }
@@ -769,6 +923,30 @@ public class RequestData {
         this.wsDocInfo = wsDocInfo;
     }
 
+    /**
+     * Get the SOAP Body that is streamed rather than held in the DOM, if the request is being
+     * processed by the HybridSecurityEngine. This is null otherwise.
+     */
+    public StreamedBody getStreamedBody() {
+        return streamedBody;
+    }
+
+    public void setStreamedBody(StreamedBody streamedBody) {
+        this.streamedBody = streamedBody;
+    }
+
+    /**
+     * Get the record of certificate path validations that is shared with the other messages of a
+     * batch, if the request is being processed by the BatchSecurityEngine. This is null otherwise.
+     */
+    public TrustVerificationCache getTrustVerificationCache() {
+        return trustVerificationCache;
+    }
+
+    public void setTrustVerificationCache(TrustVerificationCache trustVerificationCache) {
+        this.trustVerificationCache = trustVerificationCache;
+    }
+
     public Provider getSignatureProvider() {
         return signatureProvider;
     }
@@ -36,13 +36,21 @@ import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.SignatureEncryptionActionToken;
 import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSamlAssertionCache;
+import org.apache.wss4j.common.cache.SecurityContextTokenStore;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoRegistry;
 import org.apache.wss4j.common.crypto.JasyptPasswordEncryptor;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosClientSubjectCache;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.common.util.Loader;
 import org.apache.wss4j.dom.message.WSSecHeader;
 import org.apache.wss4j.dom.message.token.SignatureConfirmation;
@@ -56,8 +64,17 @@ import org.w3c.dom.Document;
 public abstract class WSHandler {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(WSHandler.class);
+
+    /**
+     * Crypto instances that a subclass has stored by properties file or reference id. These are
+     * consulted before the CryptoRegistry, but loadCrypto no longer stores Crypto instances here.
+     * @deprecated Override getCryptoRegistry(RequestData) instead
+     */
+    @Deprecated
     protected Map<String, Crypto> cryptos = new ConcurrentHashMap<>();
 
+    private final CryptoRegistry cryptoRegistry = new CryptoRegistry();
+
     /**
      * Performs all defined security actions to set-up the SOAP request.
      *
@@ -122,6 +139,13 @@ public abstract class WSHandler {
             reqData.setStoreBytesInAttachment(storeBytesInAttachment);
         }
 
+        if (reqData.getOutboundSamlAssertionCache() == null) {
+            reqData.setOutboundSamlAssertionCache(getOutboundSamlAssertionCache(reqData));
+        }
+        if (reqData.getKerberosClientSubjectCache() == null) {
+            reqData.setKerberosClientSubjectCache(getKerberosClientSubjectCache(reqData));
+        }
+
         // Perform configuration
         boolean encryptionFound = false;
         for (HandlerAction actionToDo : actions) {
@@ -347,6 +371,19 @@ public abstract class WSHandler {
             reqData.setCallbackHandler(passwordCallbackHandler);
         }
 
+        if (reqData.getSecurityContextTokenStore() == null) {
+            reqData.setSecurityContextTokenStore(getSecurityContextTokenStore(reqData));
+        }
+        if (reqData.getDerivedKeyCache() == null) {
+            reqData.setDerivedKeyCache(getDerivedKeyCache(reqData));
+        }
+        if (reqData.getVerifiedSamlAssertionCache() == null) {
+            reqData.setVerifiedSamlAssertionCache(getVerifiedSamlAssertionCache(reqData));
+        }
+        if (reqData.getSecurityMetrics() == null) {
+            reqData.setSecurityMetrics(getSecurityMetrics(reqData));
+        }
+
         if (actions.contains(WSConstants.SIGN) || actions.contains(WSConstants.ST_SIGNED)
             || actions.contains(WSConstants.ST_UNSIGNED)) {
             decodeSignatureParameter2(reqData);
@@ -363,6 +400,9 @@ public abstract class WSHandler {
         reqData.setRequireTimestampExpires(
             decodeBooleanConfigValue(mc, WSHandlerConstants.REQUIRE_TIMESTAMP_EXPIRES, false)
         );
+        reqData.setPreValidateSecurityHeader(
+            decodeBooleanConfigValue(mc, WSHandlerConstants.PRE_VALIDATE_SECURITY_HEADER, false)
+        );
     }
 
     protected boolean checkReceiverResults(
@@ -371,7 +411,7 @@ public abstract class WSHandler {
         int size = actions.size();
         int ai = 0;
         for (WSSecurityEngineResult result : wsResult) {
-            final Integer actInt = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+            final Integer actInt = result.getAction();
             if (actInt != null) {
                 int act = actInt;
                 if (act == WSConstants.SC || act == WSConstants.BST) {
@@ -396,15 +436,16 @@ public abstract class WSHandler {
         }
 
         for (WSSecurityEngineResult result : wsResult) {
-            final Integer actInt = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+            final Integer actInt = result.getAction();
             if (actInt != null) {
                 int act = actInt;
                 if (act == WSConstants.SC || act == WSConstants.BST) {
                     continue;
-                } else if (act == WSConstants.ENCR
-                    && (result.get(WSSecurityEngineResult.TAG_DATA_REF_URIS) == null
-                        || ((List<?>)result.get(WSSecurityEngineResult.TAG_DATA_REF_URIS)).isEmpty())) {
-                    continue;
+                } else if (act == WSConstants.ENCR) {
+                    List<?> dataRefs = (List<?>)result.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+                    if (dataRefs == null || dataRefs.isEmpty()) {
+                        continue;
+                    }
                 }
 
 
@@ -956,19 +997,26 @@ public abstract class WSHandler {
         // Try the Property Ref Id first
         //
         String refId = getString(cryptoPropertyRefId, mc);
+        CryptoRegistry registry = getCryptoRegistry(requestData);
         if (refId != null) {
             crypto = cryptos.get(refId);
-            if (crypto == null) {
-                Object obj = getProperty(mc, refId);
-                if (obj instanceof Properties) {
-                    crypto = CryptoFactory.getInstance((Properties)obj,
+            Object obj = crypto == null ? getProperty(mc, refId) : null;
+            if (obj instanceof Properties) {
+                // The reference id is only unique within a message context, so the Crypto is
+                // registered under (a copy of) the Properties it is loaded from
+                Properties properties = (Properties)obj;
+                crypto = registry.getCrypto(properties);
+                if (crypto == null) {
+                    crypto = CryptoFactory.getInstance(properties,
                                                        Loader.getClassLoader(CryptoFactory.class),
                                                        getPasswordEncryptor(requestData));
-                    cryptos.put(refId, crypto);
-                } else if (obj instanceof Crypto) {
-                    // No need to cache this as it's already loaded
-                    crypto = (Crypto)obj;
+                    Properties key = new Properties();
+                    key.putAll(properties);
+                    registry.putCrypto(key, crypto);
                 }
+            } else if (obj instanceof Crypto) {
+                // No need to cache this as it's already loaded
+                crypto = (Crypto)obj;
             }
             if (crypto == null) {
                 LOG.warn("The Crypto reference " + refId + " specified by "
@@ -984,9 +1032,14 @@ public abstract class WSHandler {
             String propFile = getString(cryptoPropertyFile, mc);
             if (propFile != null) {
                 crypto = cryptos.get(propFile);
+                if (crypto == null) {
+                    crypto = registry.getCrypto(propFile);
+                }
                 if (crypto == null) {
                     crypto = loadCryptoFromPropertiesFile(propFile, requestData);
-                    cryptos.put(propFile, crypto);
+                    if (crypto != null) {
+                        registry.putCrypto(propFile, crypto);
+                    }
                 }
                 if (crypto == null) {
                     LOG.warn(
@@ -1000,6 +1053,20 @@ public abstract class WSHandler {
         return crypto;
     }
 
+    /**
+     * The registry of the Crypto instances loaded by this handler, keyed by properties file or by
+     * the referenced Properties. This is a registry of this handler, unless SHARED_CRYPTO_REGISTRY
+     * is enabled, in which case it is the registry that is shared by the whole JVM (see
+     * {@link CryptoFactory#getCachedInstance(String)}).
+     */
+    protected CryptoRegistry getCryptoRegistry(RequestData requestData) throws WSSecurityException {
+        if (decodeBooleanConfigValue(
+                requestData.getMsgContext(), WSHandlerConstants.SHARED_CRYPTO_REGISTRY, false)) {
+            return CryptoFactory.getCryptoRegistry();
+        }
+        return cryptoRegistry;
+    }
+
     /**
      * A hook to allow subclass to load Crypto instances from property files in a different
      * way.
@@ -1105,17 +1172,8 @@ public abstract class WSHandler {
     protected PasswordEncryptor getPasswordEncryptor(RequestData requestData) {
         PasswordEncryptor passwordEncryptor = requestData.getPasswordEncryptor();
         if (passwordEncryptor == null) {
-            Object o = getOption(WSHandlerConstants.PASSWORD_ENCRYPTOR_INSTANCE);
-            if (o instanceof PasswordEncryptor) {
-                passwordEncryptor = (PasswordEncryptor) o;
-            }
-        }
-        if (passwordEncryptor == null) {
-            Object mc = requestData.getMsgContext();
-            Object o = getProperty(mc, WSHandlerConstants.PASSWORD_ENCRYPTOR_INSTANCE);
-            if (o instanceof PasswordEncryptor) {
-                passwordEncryptor = (PasswordEncryptor) o;
-            }
+            passwordEncryptor = getInstance(WSHandlerConstants.PASSWORD_ENCRYPTOR_INSTANCE,
+                                            PasswordEncryptor.class, requestData.getMsgContext());
         }
         if (passwordEncryptor == null) {
             CallbackHandler callbackHandler = requestData.getCallbackHandler();
@@ -1312,7 +1370,7 @@ public abstract class WSHandler {
              * encryption action :-).
              */
             for (WSSecurityEngineResult wser : wsSecEngineResults) {
-                Integer wserAction = (Integer) wser.get(WSSecurityEngineResult.TAG_ACTION);
+                Integer wserAction = wser.getAction();
                 if (wserAction != null && wserAction.intValue() == WSConstants.SIGN) {
                     X509Certificate cert =
                         (X509Certificate)wser.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE);
@@ -1413,6 +1471,45 @@ public abstract class WSHandler {
                 false
             );
         reqData.setAllowRSA15KeyTransportAlgorithm(allowRsa15);
+
+        if (reqData.getEncryptedKeyCache() == null) {
+            reqData.setEncryptedKeyCache(getEncryptedKeyCache(reqData));
+        }
+    }
+
+    protected EncryptedKeyCache getEncryptedKeyCache(RequestData requestData) {
+        return getInstance(WSHandlerConstants.ENCRYPTED_KEY_CACHE_INSTANCE,
+                           EncryptedKeyCache.class, requestData.getMsgContext());
+    }
+
+    protected SecurityContextTokenStore getSecurityContextTokenStore(RequestData requestData) {
+        return getInstance(WSHandlerConstants.SECURITY_CONTEXT_TOKEN_STORE_INSTANCE,
+                           SecurityContextTokenStore.class, requestData.getMsgContext());
+    }
+
+    protected DerivedKeyCache getDerivedKeyCache(RequestData requestData) {
+        return getInstance(WSHandlerConstants.DERIVED_KEY_CACHE_INSTANCE,
+                           DerivedKeyCache.class, requestData.getMsgContext());
+    }
+
+    protected VerifiedSamlAssertionCache getVerifiedSamlAssertionCache(RequestData requestData) {
+        return getInstance(WSHandlerConstants.VERIFIED_SAML_ASSERTION_CACHE_INSTANCE,
+                           VerifiedSamlAssertionCache.class, requestData.getMsgContext());
+    }
+
+    protected SecurityMetrics getSecurityMetrics(RequestData requestData) {
+        return getInstance(WSHandlerConstants.SECURITY_METRICS_INSTANCE,
+                           SecurityMetrics.class, requestData.getMsgContext());
+    }
+
+    protected OutboundSamlAssertionCache getOutboundSamlAssertionCache(RequestData requestData) {
+        return getInstance(WSHandlerConstants.OUTBOUND_SAML_ASSERTION_CACHE_INSTANCE,
+                           OutboundSamlAssertionCache.class, requestData.getMsgContext());
+    }
+
+    protected KerberosClientSubjectCache getKerberosClientSubjectCache(RequestData requestData) {
+        return getInstance(WSHandlerConstants.KERBEROS_CLIENT_SUBJECT_CACHE_INSTANCE,
+                           KerberosClientSubjectCache.class, requestData.getMsgContext());
     }
 
     /**
@@ -1439,6 +1536,27 @@ public abstract class WSHandler {
     }
 
 
+    /**
+     * Looks up an instance of the given type first via {@link #getOption(String)} and if not
+     * found there, via {@link #getProperty(Object, String)}
+     *
+     * @param key the key to search for
+     * @param type the type of the instance
+     * @param mc the message context to search
+     * @return the instance found, or null if no instance of the given type was found
+     */
+    protected <T> T getInstance(String key, Class<T> type, Object mc) {
+        Object o = getOption(key);
+        if (type.isInstance(o)) {
+            return type.cast(o);
+        }
+        o = getProperty(mc, key);
+        if (type.isInstance(o)) {
+            return type.cast(o);
+        }
+        return null;
+    }
+
     /**
      * Returns the option on <code>name</code>.
      *
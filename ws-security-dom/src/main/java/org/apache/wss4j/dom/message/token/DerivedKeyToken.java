@@ -30,6 +30,7 @@ import javax.xml.namespace.QName;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
 import org.apache.wss4j.common.derivedKey.DerivedKeyUtils;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
@@ -566,9 +567,23 @@ public class DerivedKeyToken {
      * @throws WSSecurityException
      */
     public byte[] deriveKey(int length, byte[] secret) throws WSSecurityException {
+        return deriveKey(length, secret, null);
+    }
+
+    /**
+     * Derive a key from this DerivedKeyToken instance, using the given cache (which may be null)
+     * to avoid repeating a derivation with the same parameters
+     * @param length
+     * @param secret
+     * @param derivedKeyCache
+     * @throws WSSecurityException
+     */
+    public byte[] deriveKey(int length, byte[] secret, DerivedKeyCache derivedKeyCache) throws WSSecurityException {
         try {
             byte[] nonce = org.apache.xml.security.utils.XMLUtils.decode(getNonce());
-            return DerivedKeyUtils.deriveKey(getAlgorithm(), getLabel(), length, secret, nonce, getOffset());
+            return DerivedKeyUtils.deriveKey(
+                getAlgorithm(), getLabel(), length, secret, nonce, getOffset(), derivedKeyCache
+            );
         } catch (Exception e) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, e
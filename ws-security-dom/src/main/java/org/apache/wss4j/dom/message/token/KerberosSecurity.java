@@ -32,14 +32,13 @@ import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.auth.kerberos.KerberosTicket;
-import javax.security.auth.login.LoginContext;
-import javax.security.auth.login.LoginException;
 
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosClientExceptionAction;
+import org.apache.wss4j.common.kerberos.KerberosClientSubjectCache;
 import org.apache.wss4j.common.kerberos.KerberosContext;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.common.token.BinarySecurity;
@@ -56,6 +55,7 @@ public class KerberosSecurity extends BinarySecurity {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(KerberosSecurity.class);
     private SecretKey secretKey;
+    private KerberosClientSubjectCache kerberosClientSubjectCache;
 
     /**
      * This constructor creates a new Kerberos token object and initializes
@@ -180,34 +180,13 @@ public class KerberosSecurity extends BinarySecurity {
         GSSCredential delegatedCredential
     ) throws WSSecurityException {
         // Get a TGT from the KDC using JAAS
-        LoginContext loginContext = null;
-        try {
-            if (callbackHandler == null) {
-                loginContext = new LoginContext(jaasLoginModuleName);
-            } else {
-                loginContext = new LoginContext(jaasLoginModuleName, callbackHandler);
-            }
-            loginContext.login();
-        } catch (LoginException ex) {
-            LOG.debug(ex.getMessage(), ex);
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, ex,
-                "kerberosLoginError",
-                new Object[] {ex.getMessage()}
-            );
+        Subject clientSubject;
+        if (kerberosClientSubjectCache != null) {
+            clientSubject = kerberosClientSubjectCache.getSubject(jaasLoginModuleName, callbackHandler);
+        } else {
+            clientSubject = KerberosClientSubjectCache.login(jaasLoginModuleName, callbackHandler);
         }
-        LOG.debug("Successfully authenticated to the TGT");
-
-        Subject clientSubject = loginContext.getSubject();
         Set<Principal> clientPrincipals = clientSubject.getPrincipals();
-        if (clientPrincipals.isEmpty()) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE,
-                "kerberosLoginError",
-                new Object[] {"No Client principals found after login"});
-        }
-        // Store the TGT
-        KerberosTicket tgt = getKerberosTicket(clientSubject, null);
 
         decorateSubject(clientSubject);
 
@@ -225,7 +204,8 @@ public class KerberosSecurity extends BinarySecurity {
             if (sessionKey != null) {
                 secretKey = new SecretKeySpec(sessionKey.getEncoded(), sessionKey.getAlgorithm());
             } else {
-                KerberosTicket serviceTicket = getKerberosTicket(clientSubject, tgt);
+                KerberosTicket serviceTicket =
+                    KerberosClientSubjectCache.getServiceTicket(clientSubject, serviceName, isUsernameServiceNameForm);
                 if (serviceTicket != null) {
                     secretKey = serviceTicket.getSessionKey();
                 }
@@ -265,22 +245,17 @@ public class KerberosSecurity extends BinarySecurity {
     }
 
     /**
-     * Get a KerberosTicket from the clientSubject parameter, that is not equal to the supplied KerberosTicket
-     * parameter (can be null)
+     * Set a cache of logged-in client Subjects, so that a TGT (and service tickets obtained with it)
+     * can be reused when retrieving a service ticket. The default is null, i.e. a JAAS login is
+     * performed for every service ticket retrieval.
+     * @param kerberosClientSubjectCache the cache of logged-in client Subjects
      */
-    private KerberosTicket getKerberosTicket(Subject clientSubject, KerberosTicket previousTicket) {
-        Set<KerberosTicket> privateCredentials = clientSubject.getPrivateCredentials(KerberosTicket.class);
-        if (privateCredentials == null || privateCredentials.isEmpty()) {
-            LOG.debug("Kerberos client subject private credentials are null");
-            return null;
-        }
+    public void setKerberosClientSubjectCache(KerberosClientSubjectCache kerberosClientSubjectCache) {
+        this.kerberosClientSubjectCache = kerberosClientSubjectCache;
+    }
 
-        for (KerberosTicket privateCredential : privateCredentials) {
-            if (!privateCredential.equals(previousTicket)) {
-                return privateCredential;
-            }
-        }
-        return null;
+    public KerberosClientSubjectCache getKerberosClientSubjectCache() {
+        return kerberosClientSubjectCache;
     }
 
     /**
@@ -19,6 +19,7 @@
 
 package org.apache.wss4j.dom.message.token;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.time.Instant;
 import java.time.ZoneOffset;
@@ -32,6 +33,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.principal.WSUsernameTokenPrincipalImpl;
 import org.apache.wss4j.common.util.DOM2Writer;
@@ -579,6 +581,22 @@ public class UsernameToken {
      * @throws WSSecurityException
      */
     public byte[] getDerivedKey(BSPEnforcer bspEnforcer, String rawPassword) throws WSSecurityException {
+        return getDerivedKey(bspEnforcer, rawPassword, null);
+    }
+
+    /**
+     * This method gets a derived key as defined in WSS Username Token Profile. If a DerivedKeyCache
+     * is given, a key previously derived for the same username, password, salt and iteration is
+     * returned from it instead of being derived again.
+     *
+     * @param rawPassword The raw password to use to derive the key
+     * @param derivedKeyCache The cache of derived keys, or null
+     * @return Returns the derived key as a byte array
+     * @throws WSSecurityException
+     */
+    public byte[] getDerivedKey(
+        BSPEnforcer bspEnforcer, String rawPassword, DerivedKeyCache derivedKeyCache
+    ) throws WSSecurityException {
         if (rawPassword == null) {
             LOG.warn("The raw password was null");
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
@@ -606,12 +624,13 @@ public class UsernameToken {
 
         int iteration = getIteration();
         byte[] salt = getSalt();
+        byte[] password;
         if (passwordsAreEncoded) {
-            return UsernameTokenUtil.generateDerivedKey(org.apache.xml.security.utils.XMLUtils.decode(rawPassword),
-                                                        salt, iteration);
+            password = org.apache.xml.security.utils.XMLUtils.decode(rawPassword);
         } else {
-            return UsernameTokenUtil.generateDerivedKey(rawPassword, salt, iteration);
+            password = rawPassword.getBytes(StandardCharsets.UTF_8);
         }
+        return UsernameTokenUtil.generateDerivedKey(getName(), password, salt, iteration, derivedKeyCache);
     }
 
     /**
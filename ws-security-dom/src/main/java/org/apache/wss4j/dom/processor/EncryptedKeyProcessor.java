@@ -20,6 +20,8 @@
 package org.apache.wss4j.dom.processor;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.*;
@@ -34,6 +36,7 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.OAEPParameterSpec;
 import javax.xml.crypto.dsig.XMLSignatureFactory;
 
+import org.apache.xml.security.c14n.Canonicalizer;
 import org.apache.xml.security.encryption.AgreementMethod;
 import org.apache.xml.security.encryption.XMLCipherUtil;
 import org.apache.xml.security.encryption.keys.RecipientKeyInfo;
@@ -46,10 +49,13 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.jfr.JFRSupport;
+import org.apache.wss4j.common.jfr.KeyUnwrapEvent;
 import org.apache.wss4j.common.token.DOMX509IssuerSerial;
 import org.apache.wss4j.common.token.SecurityTokenReference;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -103,7 +109,7 @@ public class EncryptedKeyProcessor implements Processor {
         if (!id.isEmpty()) {
              WSSecurityEngineResult result = data.getWsDocInfo().getResult(id);
              if (result != null
-                 && WSConstants.ENCR == (Integer)result.get(WSSecurityEngineResult.TAG_ACTION)
+                 && Integer.valueOf(WSConstants.ENCR).equals(result.getAction())
              ) {
                  return Collections.singletonList(result);
              }
@@ -150,8 +156,10 @@ public class EncryptedKeyProcessor implements Processor {
         PublicKey publicKey = null;
         boolean symmetricKeyWrap = isSymmetricKeyWrap(encryptedKeyTransportMethod);
         AgreementMethod agreementMethod = null;
+        Element agreementMethodElement = null;
         if (isDHKeyWrap) {
             // get key agreement method value
+            agreementMethodElement = keyInfoChildElement;
             agreementMethod = getAgreementMethodFromElement(keyInfoChildElement);
             //  get the recipient key info element
             keyInfoChildElement = getRecipientKeyInfoChildElement(agreementMethod);
@@ -199,17 +207,52 @@ public class EncryptedKeyProcessor implements Processor {
             encryptedEphemeralKey = EncryptionUtils.getDecodedBase64EncodedData(xencCipherValue);
         }
 
-        if (isDHKeyWrap) {
-            PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
-            decryptedBytes = getDiffieHellmanDecryptedBytes(data, agreementMethod,
-                    encryptedKeyTransportMethod, encryptedEphemeralKey, privateKey);
-        } else if (symmetricKeyWrap) {
-            decryptedBytes = getSymmetricDecryptedBytes(data, data.getWsDocInfo(), keyInfoChildElement, refList);
-        } else {
-            PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
-            decryptedBytes = getAsymmetricDecryptedBytes(data, data.getWsDocInfo(), encryptedKeyTransportMethod,
-                                                         encryptedEphemeralKey, refList,
-                                                         elem, privateKey);
+        KeyUnwrapEvent unwrapEvent = JFRSupport.isAvailable() ? new KeyUnwrapEvent() : null;
+        if (unwrapEvent != null) {
+            unwrapEvent.begin();
+        }
+
+        // See if the session key has already been unwrapped for a previous message. A key that is
+        // wrapped with a key agreement is only cached together with the AgreementMethod, as the same
+        // CipherValue must not be accepted with a different originator key
+        EncryptedKeyCache encryptedKeyCache = data.getEncryptedKeyCache();
+        String encryptedKeySHA1 = null;
+        if (encryptedKeyCache != null && isDHKeyWrap) {
+            encryptedKeySHA1 = getKeyAgreementCacheIdentifier(
+                encryptedEphemeralKey, encryptedKeyTransportMethod, agreementMethodElement);
+            decryptedBytes = encryptedKeyCache.get(encryptedKeySHA1);
+        } else if (encryptedKeyCache != null && !symmetricKeyWrap) {
+            encryptedKeySHA1 = org.apache.xml.security.utils.XMLUtils.encodeToString(
+                KeyUtils.generateDigest(encryptedEphemeralKey));
+            decryptedBytes = encryptedKeyCache.get(encryptedKeySHA1);
+        }
+
+        boolean cached = decryptedBytes != null;
+        try {
+            if (cached) {
+                LOG.debug("Using the cached session key for EncryptedKey {}", encryptedKeySHA1);
+            } else if (isDHKeyWrap) {
+                PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
+                decryptedBytes = getDiffieHellmanDecryptedBytes(data, agreementMethod,
+                        encryptedKeyTransportMethod, encryptedEphemeralKey, privateKey);
+                if (encryptedKeySHA1 != null) {
+                    encryptedKeyCache.add(encryptedKeySHA1, decryptedBytes);
+                }
+            } else if (symmetricKeyWrap) {
+                decryptedBytes = getSymmetricDecryptedBytes(data, data.getWsDocInfo(), keyInfoChildElement, refList);
+            } else {
+                PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
+                decryptedBytes = getAsymmetricDecryptedBytes(data, data.getWsDocInfo(), encryptedKeyTransportMethod,
+                                                             encryptedEphemeralKey, refList,
+                                                             elem, privateKey, encryptedKeyCache, encryptedKeySHA1);
+            }
+        } finally {
+            if (unwrapEvent != null && unwrapEvent.shouldCommit()) {
+                unwrapEvent.algorithm = encryptedKeyTransportMethod;
+                unwrapEvent.cached = cached;
+                unwrapEvent.success = decryptedBytes != null;
+                unwrapEvent.commit();
+            }
         }
 
         List<WSDataRef> dataRefs = decryptDataRefs(refList, data.getWsDocInfo(), decryptedBytes, data);
@@ -326,7 +369,9 @@ public class EncryptedKeyProcessor implements Processor {
         byte[] encryptedEphemeralKey,
         Element refList,
         Element encryptedKeyElement,
-        PrivateKey privateKey
+        PrivateKey privateKey,
+        EncryptedKeyCache encryptedKeyCache,
+        String encryptedKeySHA1
     ) throws WSSecurityException {
         if (data.getDecCrypto() == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noDecCryptoFile");
@@ -356,7 +401,13 @@ public class EncryptedKeyProcessor implements Processor {
 
         try {
             String keyAlgorithm = JCEMapper.translateURItoJCEID(encryptedKeyTransportMethod);
-            return cipher.unwrap(encryptedEphemeralKey, keyAlgorithm, Cipher.SECRET_KEY).getEncoded();
+            byte[] decryptedBytes =
+                cipher.unwrap(encryptedEphemeralKey, keyAlgorithm, Cipher.SECRET_KEY).getEncoded();
+            // Only a successfully unwrapped key is cached, never the random fallback key below
+            if (encryptedKeyCache != null && encryptedKeySHA1 != null) {
+                encryptedKeyCache.add(encryptedKeySHA1, decryptedBytes);
+            }
+            return decryptedBytes;
         } catch (IllegalStateException ex) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
         } catch (Exception ex) {
@@ -364,6 +415,32 @@ public class EncryptedKeyProcessor implements Processor {
         }
     }
 
+    /**
+     * Get the identifier under which a key that is wrapped with a key agreement is cached. It is
+     * the Base64 encoded SHA-1 digest of the CipherValue octets, the key wrap algorithm and the
+     * exclusive canonical form of the AgreementMethod element (including the originator key, the
+     * KA-Nonce and the key derivation parameters). So it never matches an EncryptedKeySHA1
+     * identifier, and an EncryptedKeySHA1 reference doesn't resolve such a key from the cache.
+     */
+    private static String getKeyAgreementCacheIdentifier(
+        byte[] encryptedEphemeralKey,
+        String encryptedKeyTransportMethod,
+        Element agreementMethodElement
+    ) throws WSSecurityException {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.writeInt(encryptedEphemeralKey.length);
+            dos.write(encryptedEphemeralKey);
+            dos.writeUTF(encryptedKeyTransportMethod);
+            dos.flush();
+            Canonicalizer.getInstance(WSConstants.C14N_EXCL_OMIT_COMMENTS)
+                .canonicalizeSubtree(agreementMethodElement, bos);
+            return org.apache.xml.security.utils.XMLUtils.encodeToString(KeyUtils.generateDigest(bos.toByteArray()));
+        } catch (IOException | XMLSecurityException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
+        }
+    }
+
     /**
      * Method decrypts encryptedEphemeralKey using Key Agreement algorithm to derive symmetric key
      * for decryption of the key.
@@ -707,8 +784,7 @@ public class EncryptedKeyProcessor implements Processor {
         }
 
         return EncryptionUtils.decryptEncryptedData(
-            doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
-            data.getEncryptionSerializer()
+            doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data
         );
     }
 
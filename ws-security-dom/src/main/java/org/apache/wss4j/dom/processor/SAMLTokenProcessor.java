@@ -35,6 +35,7 @@ import javax.xml.crypto.dsig.XMLValidateContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
 import javax.xml.namespace.QName;
 
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -51,6 +52,7 @@ import org.apache.wss4j.dom.saml.WSSSAMLKeyInfoProcessor;
 import org.apache.wss4j.dom.util.EncryptionUtils;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
+import org.apache.wss4j.dom.validate.ValidatorUtils;
 import org.opensaml.xmlsec.signature.KeyInfo;
 import org.opensaml.xmlsec.signature.Signature;
 import org.w3c.dom.Element;
@@ -92,10 +94,24 @@ public class SAMLTokenProcessor implements Processor {
             data.getValidator(new QName(elem.getNamespaceURI(), elem.getLocalName()));
 
         SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(elem);
-        XMLSignature xmlSignature = verifySignatureKeysAndAlgorithms(samlAssertion, data);
+
+        // See if an identical Assertion has been verified before
+        VerifiedSamlAssertionCache verifiedAssertionCache = data.getVerifiedSamlAssertionCache();
+        String verifiedAssertionId = null;
+        boolean verified = false;
+        if (verifiedAssertionCache != null) {
+            verifiedAssertionId = SAMLUtil.getVerifiedAssertionIdentifier(samlAssertion);
+            verified = verifiedAssertionId != null && verifiedAssertionCache.contains(verifiedAssertionId);
+        }
+
+        XMLSignature xmlSignature = verifySignatureKeysAndAlgorithms(samlAssertion, data, verified);
         List<WSDataRef> dataRefs = createDataRefs(elem, samlAssertion, xmlSignature);
 
         Credential credential = handleSAMLToken(samlAssertion, data, validator);
+        if (verifiedAssertionId != null && !verified && validator != null) {
+            // The signature and trust in the signing credential have been verified successfully
+            verifiedAssertionCache.add(verifiedAssertionId, samlAssertion.getNotOnOrAfter());
+        }
         samlAssertion = credential.getSamlAssertion();
         if (LOG.isDebugEnabled()) {
             LOG.debug("SAML Assertion issuer " + samlAssertion.getIssuerString());
@@ -166,14 +182,15 @@ public class SAMLTokenProcessor implements Processor {
         Credential credential = new Credential();
         credential.setSamlAssertion(samlAssertion);
         if (validator != null) {
-            return validator.validate(credential, data);
+            return ValidatorUtils.validate(validator, credential, data);
         }
         return credential;
     }
 
     private XMLSignature verifySignatureKeysAndAlgorithms(
         SamlAssertionWrapper samlAssertion,
-        RequestData data
+        RequestData data,
+        boolean verified
     ) throws WSSecurityException {
         if (samlAssertion.isSigned()) {
             Signature sig = samlAssertion.getSignature();
@@ -234,7 +251,12 @@ public class SAMLTokenProcessor implements Processor {
                 }
             }
 
-            samlAssertion.verifySignature(samlKeyInfo);
+            if (verified) {
+                LOG.debug("The signature of the SAML Assertion has been verified previously");
+                samlAssertion.setVerifiedFromCache(samlKeyInfo);
+            } else {
+                samlAssertion.verifySignature(samlKeyInfo);
+            }
 
             return xmlSignature;
         }
@@ -21,6 +21,7 @@ package org.apache.wss4j.dom.processor;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.common.cache.SecurityContextTokenStore;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
@@ -28,6 +29,7 @@ import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.SecurityContextToken;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
+import org.apache.wss4j.dom.validate.ValidatorUtils;
 import org.w3c.dom.Element;
 
 import javax.security.auth.callback.Callback;
@@ -59,7 +61,7 @@ public class SecurityContextTokenProcessor implements Processor {
             Credential credential = new Credential();
             credential.setSecurityContextToken(sct);
 
-            Credential returnedCredential = validator.validate(credential, data);
+            Credential returnedCredential = ValidatorUtils.validate(validator, credential, data);
             result.put(WSSecurityEngineResult.TAG_VALIDATED_TOKEN, Boolean.TRUE);
             String tokenId = sct.getID();
             if (tokenId.length() != 0) {
@@ -71,13 +73,24 @@ public class SecurityContextTokenProcessor implements Processor {
             id = XMLUtils.getIDFromReference(id);
 
             byte[] secret = null;
-            try {
-                secret = getSecret(data.getCallbackHandler(), sct.getIdentifier());
-            } catch (WSSecurityException ex) {
-                secret = getSecret(data.getCallbackHandler(), id);
+            SecurityContextTokenStore securityContextTokenStore = data.getSecurityContextTokenStore();
+            if (securityContextTokenStore != null) {
+                secret = securityContextTokenStore.get(sct.getIdentifier());
             }
-            if (secret == null || secret.length == 0) {
-                secret = getSecret(data.getCallbackHandler(), id);
+            if (secret == null) {
+                try {
+                    secret = getSecret(data.getCallbackHandler(), sct.getIdentifier());
+                } catch (WSSecurityException ex) {
+                    secret = null;
+                }
+                if (secret != null && secret.length != 0) {
+                    if (securityContextTokenStore != null) {
+                        securityContextTokenStore.add(sct.getIdentifier(), secret);
+                    }
+                } else {
+                    // A secret resolved by the wsu:Id is not stored, as it may not belong to the Identifier
+                    secret = getSecret(data.getCallbackHandler(), id);
+                }
             }
             result.put(WSSecurityEngineResult.TAG_ID, sct.getID());
             result.put(WSSecurityEngineResult.TAG_SECRET, secret);
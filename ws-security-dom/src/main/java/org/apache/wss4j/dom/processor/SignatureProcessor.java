@@ -49,11 +49,14 @@ import javax.xml.crypto.dsig.spec.HMACParameterSpec;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.ReplayCacheUtils;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.jfr.JFRSupport;
+import org.apache.wss4j.common.jfr.SignatureVerificationEvent;
 import org.apache.wss4j.common.principal.PublicKeyPrincipalImpl;
 import org.apache.wss4j.common.principal.UsernameTokenPrincipal;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
@@ -65,6 +68,7 @@ import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.callback.CallbackLookup;
+import org.apache.wss4j.dom.engine.StreamedBody;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.Timestamp;
@@ -81,6 +85,7 @@ import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.wss4j.dom.util.X509Util;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
+import org.apache.wss4j.dom.validate.ValidatorUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -160,7 +165,7 @@ public class SignatureProcessor implements Processor {
                     credential.setPublicKey(publicKey);
                     principal = new PublicKeyPrincipalImpl(publicKey);
                     credential.setPrincipal(principal);
-                    credential = validator.validate(credential, data);
+                    credential = ValidatorUtils.validate(validator, credential, data);
                 }
             } else {
                 STRParserParameters parameters = new STRParserParameters();
@@ -186,7 +191,7 @@ public class SignatureProcessor implements Processor {
                     credential.setPublicKey(publicKey);
                     credential.setCertificates(certs);
                     credential.setPrincipal(principal);
-                    credential = validator.validate(credential, data);
+                    credential = ValidatorUtils.validate(validator, credential, data);
                 }
             }
         }
@@ -378,7 +383,20 @@ public class SignatureProcessor implements Processor {
 
             setElementsOnContext(xmlSignature, (DOMValidateContext)context, data, wsDocInfo);
 
-            boolean signatureOk = xmlSignature.validate(context);
+            SignatureVerificationEvent event = JFRSupport.isAvailable() ? new SignatureVerificationEvent() : null;
+            if (event != null) {
+                event.begin();
+            }
+            // References to a streamed SOAP Body are only validated when the Body is streamed
+            StreamedBody streamedBody = data.getStreamedBody();
+            boolean signatureOk = streamedBody == null
+                ? xmlSignature.validate(context) : streamedBody.validate(xmlSignature, context);
+            if (event != null && event.shouldCommit()) {
+                event.algorithm = xmlSignature.getSignedInfo().getSignatureMethod().getAlgorithm();
+                event.referenceCount = xmlSignature.getSignedInfo().getReferences().size();
+                event.valid = signatureOk;
+                event.commit();
+            }
             if (signatureOk) {
                 return xmlSignature;
             }
@@ -550,6 +568,9 @@ public class SignatureProcessor implements Processor {
                         attachment = true;
                     }
                 }
+                if (se == null && requestData.getStreamedBody() != null) {
+                    se = requestData.getStreamedBody().getStreamedElement(uri);
+                }
                 if (se == null) {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
                 }
@@ -672,7 +693,7 @@ public class SignatureProcessor implements Processor {
         String identifier = timeStamp.getCreatedString() + "" + Arrays.hashCode(signatureValue)
             + "" + Arrays.hashCode(key.getEncoded());
 
-        if (replayCache.contains(identifier)) {
+        if (ReplayCacheUtils.contains(replayCache, identifier, "Timestamp", requestData.getSecurityMetrics())) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.INVALID_SECURITY,
                 "invalidTimestamp",
@@ -28,6 +28,7 @@ import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.Timestamp;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
+import org.apache.wss4j.dom.validate.ValidatorUtils;
 import org.w3c.dom.Element;
 
 public class TimestampProcessor implements Processor {
@@ -55,7 +56,7 @@ public class TimestampProcessor implements Processor {
 
         Validator validator = data.getValidator(WSConstants.TIMESTAMP);
         if (validator != null) {
-            validator.validate(credential, data);
+            ValidatorUtils.validate(validator, credential, data);
 
             result.put(WSSecurityEngineResult.TAG_VALIDATED_TOKEN, Boolean.TRUE);
         }
@@ -27,6 +27,7 @@ import org.apache.wss4j.common.principal.WSUsernameTokenPrincipalImpl;
 import org.apache.wss4j.common.util.UsernameTokenUtil;
 import org.w3c.dom.Element;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.ReplayCacheUtils;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
@@ -34,6 +35,7 @@ import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
+import org.apache.wss4j.dom.validate.ValidatorUtils;
 import org.apache.xml.security.utils.XMLUtils;
 
 public class UsernameTokenProcessor implements Processor {
@@ -71,7 +73,7 @@ public class UsernameTokenProcessor implements Processor {
                 String rawPassword =
                     UsernameTokenUtil.getRawPassword(data.getCallbackHandler(), token.getName(),
                                                      token.getPassword(), token.getPasswordType());
-                secretKey = token.getDerivedKey(data.getBSPEnforcer(), rawPassword);
+                secretKey = token.getDerivedKey(data.getBSPEnforcer(), rawPassword, data.getDerivedKeyCache());
             }
         }
         WSSecurityEngineResult result = new WSSecurityEngineResult(action, token);
@@ -147,7 +149,7 @@ public class UsernameTokenProcessor implements Processor {
         // Test for replay attacks
         ReplayCache replayCache = data.getNonceReplayCache();   //NOPMD
         if (replayCache != null && ut.getNonce() != null) {
-            if (replayCache.contains(ut.getNonce())) {
+            if (ReplayCacheUtils.contains(replayCache, ut.getNonce(), "Nonce", data.getSecurityMetrics())) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badUsernameToken",
@@ -169,9 +171,8 @@ public class UsernameTokenProcessor implements Processor {
         Credential credential = new Credential();
         credential.setUsernametoken(ut);
         if (validator != null) {
-            return validator.validate(credential, data);
+            return ValidatorUtils.validate(validator, credential, data);
         }
         return credential;
     }
-
 }
@@ -91,7 +91,7 @@ public class EncryptedKeySTRParser implements STRParser {
         STRParserResult parserResult = new STRParserResult();
         RequestData data = parameters.getData();
 
-        Integer action = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+        Integer action = result.getAction();
         if (action != null && WSConstants.BST == action.intValue()) {
             BinarySecurity token =
                 (BinarySecurity)result.get(
@@ -23,9 +23,11 @@ import java.util.List;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
+import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.SecurityContextTokenStore;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -41,6 +43,7 @@ import org.apache.wss4j.dom.callback.DOMCallbackLookup;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.KerberosSecurity;
+import org.apache.wss4j.dom.message.token.SecurityContextToken;
 import org.apache.wss4j.dom.processor.Processor;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -268,12 +271,34 @@ public final class STRParserUtil {
         RequestData data
     ) throws WSSecurityException {
         String uri = XMLUtils.getIDFromReference(id);
+        if (data.getEncryptedKeyCache() != null && SecurityTokenReference.ENC_KEY_SHA1_URI.equals(type)) {
+            byte[] secretKey = data.getEncryptedKeyCache().get(uri);
+            if (secretKey != null) {
+                return secretKey;
+            }
+        }
+        SecurityContextTokenStore securityContextTokenStore = null;
+        String sctIdentifier = null;
+        if (identifier == WSPasswordCallback.SECURITY_CONTEXT_TOKEN) {
+            securityContextTokenStore = data.getSecurityContextTokenStore();
+            if (securityContextTokenStore != null) {
+                // The store is keyed on the wsc:Identifier, as in the SecurityContextTokenProcessor
+                sctIdentifier = getSecurityContextTokenIdentifier(uri, data.getWsDocInfo());
+                byte[] secretKey = securityContextTokenStore.get(sctIdentifier);
+                if (secretKey != null) {
+                    return secretKey;
+                }
+            }
+        }
         WSPasswordCallback pwcb =
             new WSPasswordCallback(uri, null, type, identifier);
         try {
             Callback[] callbacks = new Callback[]{pwcb};
             if (data.getCallbackHandler() != null) {
                 data.getCallbackHandler().handle(callbacks);
+                if (securityContextTokenStore != null) {
+                    securityContextTokenStore.add(sctIdentifier, pwcb.getKey());
+                }
                 return pwcb.getKey();
             }
         } catch (Exception e) {
@@ -285,6 +310,36 @@ public final class STRParserUtil {
         return new byte[0];
     }
 
+    /**
+     * Get the wsc:Identifier of the SecurityContextToken referred to by the given reference. If the
+     * reference is to a SecurityContextToken in the message (by wsu:Id), then its Identifier is
+     * returned, otherwise the reference is taken to be the Identifier itself.
+     */
+    private static String getSecurityContextTokenIdentifier(
+        String uri, WSDocInfo docInfo
+    ) throws WSSecurityException {
+        if (docInfo == null || uri == null) {
+            return uri;
+        }
+        Element token = docInfo.getTokenElement(uri);
+        // A wsu:Id is an NCName, whereas an Identifier is an absolute URI. Only search the message
+        // for a SecurityContextToken that has not been processed yet if the reference can be a wsu:Id
+        if (token == null && uri.indexOf(':') == -1 && docInfo.getDocument() != null) {
+            token = XMLUtils.findElementById(docInfo.getDocument().getDocumentElement(), uri, true);
+        }
+        if (token != null) {
+            QName el = new QName(token.getNamespaceURI(), token.getLocalName());
+            if (WSConstants.SECURITY_CONTEXT_TOKEN_05_02.equals(el)
+                || WSConstants.SECURITY_CONTEXT_TOKEN_05_12.equals(el)) {
+                String sctIdentifier = new SecurityContextToken(token).getIdentifier();
+                if (sctIdentifier != null) {
+                    return sctIdentifier;
+                }
+            }
+        }
+        return uri;
+    }
+
     public static Element getTokenElement(
         Document doc, WSDocInfo docInfo, CallbackHandler cb,
         String uri, String valueType
@@ -117,7 +117,7 @@ public class SecurityTokenRefSTRParser implements STRParser {
         STRParserResult parserResult = new STRParserResult();
         RequestData data = parameters.getData();
 
-        Integer action = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+        Integer action = result.getAction();
         if (action != null && WSConstants.ENCR == action.intValue()) {
             STRParserUtil.checkEncryptedKeyBSPCompliance(secRef, data.getBSPEnforcer());
             byte[] secretKey = (byte[])result.get(WSSecurityEngineResult.TAG_SECRET);
@@ -152,7 +152,7 @@ public class SecurityTokenRefSTRParser implements STRParser {
             String rawPassword =
                 UsernameTokenUtil.getRawPassword(data.getCallbackHandler(), usernameToken.getName(),
                                                  usernameToken.getPassword(), usernameToken.getPasswordType());
-            byte[] secretKey = usernameToken.getDerivedKey(data.getBSPEnforcer(), rawPassword);
+            byte[] secretKey = usernameToken.getDerivedKey(data.getBSPEnforcer(), rawPassword, data.getDerivedKeyCache());
             parserResult.setSecretKey(secretKey);
         }
 
@@ -244,7 +244,7 @@ public class SignatureSTRParser implements STRParser {
         STRParserResult parserResult = new STRParserResult();
         RequestData data = parameters.getData();
 
-        Integer action = (Integer) result.get(WSSecurityEngineResult.TAG_ACTION);
+        Integer action = result.getAction();
         if (action != null
             && (WSConstants.UT_NOPASSWORD == action.intValue() || WSConstants.UT == action.intValue())) {
             STRParserUtil.checkUsernameTokenBSPCompliance(secRef, data.getBSPEnforcer());
@@ -274,7 +274,7 @@ public class SignatureSTRParser implements STRParser {
             STRParserUtil.checkEncryptedKeyBSPCompliance(secRef, data.getBSPEnforcer());
 
             parserResult.setSecretKey((byte[])result.get(WSSecurityEngineResult.TAG_SECRET));
-            String id = (String)result.get(WSSecurityEngineResult.TAG_ID);
+            String id = result.getId();
             parserResult.setPrincipal(new CustomTokenPrincipal(id));
         } else if (action != null && WSConstants.SCT == action.intValue()) {
             parserResult.setSecretKey((byte[])result.get(WSSecurityEngineResult.TAG_SECRET));
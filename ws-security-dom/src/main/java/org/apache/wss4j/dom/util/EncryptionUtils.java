@@ -23,12 +23,17 @@ import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.MetricsTimer;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.callback.CallbackLookup;
+import org.apache.wss4j.dom.engine.StreamedBody;
+import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.encryption.Serializer;
 import org.apache.xml.security.encryption.XMLCipher;
@@ -37,9 +42,11 @@ import org.apache.xml.security.parser.XMLParserException;
 import org.apache.xml.security.utils.JavaUtils;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
+import org.w3c.dom.Text;
 import org.xml.sax.SAXException;
 
 import javax.crypto.Cipher;
@@ -48,15 +55,29 @@ import javax.crypto.SecretKey;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public final class EncryptionUtils {
 
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
     private EncryptionUtils() {
         // complete
     }
@@ -118,6 +139,63 @@ public final class EncryptionUtils {
                                     symEncAlgo, attachmentCallbackHandler, null);
 
     }
+    /**
+     * Decrypt the EncryptedData argument using a SecretKey, using the attachment CallbackHandler
+     * and encryption Serializer of the RequestData, and reporting the time taken and the size of
+     * the CipherValue to its SecurityMetrics (if any). The decryption of the EncryptedData child
+     * of a streamed SOAP Body is deferred until the Body is streamed.
+     * @param doc The (document) owner of EncryptedData
+     * @param dataRefURI The URI of EncryptedData
+     * @param encData The EncryptedData element
+     * @param symmetricKey The SecretKey with which to decrypt EncryptedData
+     * @param symEncAlgo The symmetric encryption algorithm to use
+     * @param data The RequestData
+     * @throws WSSecurityException
+     */
+    public static WSDataRef
+    decryptEncryptedData(
+        Document doc,
+        String dataRefURI,
+        Element encData,
+        SecretKey symmetricKey,
+        String symEncAlgo,
+        RequestData data
+    ) throws WSSecurityException {
+        StreamedBody streamedBody = data.getStreamedBody();
+        if (streamedBody != null && streamedBody.isStreamed(encData)) {
+            return streamedBody.deferDecryption(dataRefURI, encData, symmetricKey, symEncAlgo);
+        }
+
+        SecurityMetrics metrics = data.getSecurityMetrics();
+        if (metrics != null) {
+            metrics.recordBytes(SecurityMetrics.Stage.DECRYPTION, symEncAlgo, getCipherValueLength(encData));
+        }
+        MetricsTimer timer = MetricsTimer.start(metrics, SecurityMetrics.Stage.DECRYPTION, symEncAlgo);
+        boolean success = false;
+        try {
+            WSDataRef dataRef =
+                decryptEncryptedData(doc, dataRefURI, encData, symmetricKey, symEncAlgo,
+                                     data.getAttachmentCallbackHandler(), data.getEncryptionSerializer());
+            success = true;
+            return dataRef;
+        } finally {
+            timer.stop(success);
+        }
+    }
+
+    private static long getCipherValueLength(Element encData) {
+        long length = 0;
+        Element cipherValue = getCipherValueFromEncryptedData(encData);
+        if (cipherValue != null) {
+            for (Node node = cipherValue.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (Node.TEXT_NODE == node.getNodeType()) {
+                    length += ((Text)node).getLength();
+                }
+            }
+        }
+        return length;
+    }
+
     /**
      * Decrypt the EncryptedData argument using a SecretKey.
      * @param doc The (document) owner of EncryptedData
@@ -175,19 +253,30 @@ public final class EncryptionUtils {
             parent = encData.getParentNode();
         }
 
+        // An inline CipherValue is decrypted as a stream, unless a custom Serializer is configured
+        Element cipherValue = getCipherValueFromEncryptedData(encDataOrig);
+        Node encDataParent = encDataOrig.getParentNode();
+        boolean streamCipherValue = xopURI == null && encryptionSerializer == null && cipherValue != null
+            && encDataParent != null && Node.ELEMENT_NODE == encDataParent.getNodeType();
+
         XMLCipher xmlCipher = null;
-        try {
-            if (encryptionSerializer != null) {
-                xmlCipher = XMLCipher.getInstance(encryptionSerializer, symEncAlgo);
-            } else {
-                xmlCipher = XMLCipher.getInstance(symEncAlgo);
+        Cipher cipher = null;
+        if (streamCipherValue) {
+            cipher = KeyUtils.getCipherInstance(symEncAlgo);
+        } else {
+            try {
+                if (encryptionSerializer != null) {
+                    xmlCipher = XMLCipher.getInstance(encryptionSerializer, symEncAlgo);
+                } else {
+                    xmlCipher = XMLCipher.getInstance(symEncAlgo);
+                }
+                xmlCipher.setSecureValidation(true);
+                xmlCipher.init(XMLCipher.DECRYPT_MODE, symmetricKey);
+            } catch (XMLEncryptionException ex) {
+                throw new WSSecurityException(
+                        WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, ex
+                );
             }
-            xmlCipher.setSecureValidation(true);
-            xmlCipher.init(XMLCipher.DECRYPT_MODE, symmetricKey);
-        } catch (XMLEncryptionException ex) {
-            throw new WSSecurityException(
-                    WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, ex
-            );
         }
 
         Node decryptedNode = null;
@@ -204,6 +293,8 @@ public final class EncryptionUtils {
                 }
                 decryptedNode = decryptXopAttachment(symmetricKey, symEncAlgo, attachmentCallbackHandler,
                                                      xopURI, tempEncData);
+            } else if (streamCipherValue) {
+                decryptCipherValue(doc, encDataOrig, cipherValue, cipher, symmetricKey, symEncAlgo);
             } else {
                 //in this case, the XMLCipher knows how to handle encData when it's the parent node
                 // (i.e., when content == true)
@@ -244,6 +335,59 @@ public final class EncryptionUtils {
         return dataRef;
     }
 
+    /**
+     * Decrypt an inline CipherValue, and replace the EncryptedData element with the decrypted nodes.
+     * The base64 text of the CipherValue is decoded, decrypted and parsed as a stream, so that
+     * neither the encoded text, nor the cipher text, nor the serialized plain text is held in memory
+     * as a whole. The decrypted nodes are built directly in the target document.
+     */
+    private static void decryptCipherValue(
+        Document doc, Element encData, Element cipherValue, Cipher cipher, SecretKey symmetricKey, String symEncAlgo
+    ) throws WSSecurityException, XMLStreamException {
+        // Parse the decrypted content in the namespace context of the parent
+        Node parent = encData.getParentNode();
+        InputStream wrappedStream =
+            XMLStreamUtils.getDecryptedWrappedStream(
+                symEncAlgo, cipher, symmetricKey, new TextNodeInputStream(cipherValue), getNamespaces(parent)
+            );
+
+        DocumentFragment fragment = doc.createDocumentFragment();
+        XMLStreamReader reader =
+            XML_INPUT_FACTORY.createXMLStreamReader(wrappedStream, StandardCharsets.UTF_8.name());
+        try {
+            reader.nextTag();
+            XMLStreamUtils.readContent(reader, doc, fragment);
+        } finally {
+            reader.close();
+        }
+
+        parent.replaceChild(fragment, encData);
+    }
+
+    /**
+     * Get the namespace declarations in scope on the given node, keyed by prefix ("" for the
+     * default namespace), the innermost declaration of a prefix taking precedence
+     */
+    private static Map<String, String> getNamespaces(Node node) {
+        Map<String, String> namespaces = new HashMap<>();
+        for (Node current = node; current != null; current = current.getParentNode()) {
+            NamedNodeMap attributes = current.getAttributes();
+            if (attributes == null) {
+                continue;
+            }
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                String name = attribute.getNodeName();
+                if ("xmlns".equals(name)) {
+                    namespaces.putIfAbsent("", attribute.getNodeValue());
+                } else if (name.startsWith("xmlns:")) {
+                    namespaces.putIfAbsent(name.substring("xmlns:".length()), attribute.getNodeValue());
+                }
+            }
+        }
+        return namespaces;
+    }
+
     private static String getXOPURIFromEncryptedData(Element encData) {
         Element cipherValue = getCipherValueFromEncryptedData(encData);
         if (cipherValue != null) {
@@ -553,4 +697,29 @@ public final class EncryptionUtils {
         }
         return org.apache.xml.security.utils.XMLUtils.decode(text);
     }
+
+    /**
+     * Reads the base64 text held in the Text children of a CipherValue element, one text node at a
+     * time
+     */
+    private static final class TextNodeInputStream extends XMLStreamUtils.TextInputStream {
+        private Node next;
+
+        TextNodeInputStream(Element cipherValue) {
+            this.next = cipherValue.getFirstChild();
+        }
+
+        @Override
+        protected String nextText() {
+            while (next != null) {
+                Node node = next;
+                next = node.getNextSibling();
+                if (Node.TEXT_NODE == node.getNodeType() || Node.CDATA_SECTION_NODE == node.getNodeType()) {
+                    return ((Text)node).getData();
+                }
+            }
+            return null;
+        }
+    }
+
 }
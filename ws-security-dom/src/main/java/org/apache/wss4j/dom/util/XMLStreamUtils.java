@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.util;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Utility methods for building DOM nodes from an XMLStreamReader, and for decrypting an inline
+ * CipherValue as a stream. They are shared by the streamed decryption of an EncryptedData in a
+ * DOM (see EncryptionUtils) and of the SOAP Body in the HybridSecurityEngine.
+ */
+public final class XMLStreamUtils {
+
+    private XMLStreamUtils() {
+        // complete
+    }
+
+    /**
+     * Create an element in the given document for the START_ELEMENT event the reader is positioned
+     * on, including the namespace declarations and attributes of the element
+     */
+    public static Element createElement(Document doc, XMLStreamReader reader) {
+        Element element =
+            doc.createElementNS(getNamespace(reader.getNamespaceURI()),
+                                getQualifiedName(reader.getPrefix(), reader.getLocalName()));
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            String uri = reader.getNamespaceURI(i);
+            element.setAttributeNS(WSConstants.XMLNS_NS,
+                                   prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix,
+                                   uri == null ? "" : uri);
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttributeNS(getNamespace(reader.getAttributeNamespace(i)),
+                                   getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                                   reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    /**
+     * Append a node for the (non element) event the reader is positioned on to the given parent.
+     * Events that have no DOM equivalent in element content are ignored.
+     * @throws WSSecurityException if the event is a DTD or an entity reference
+     */
+    public static void appendNode(Document doc, Node parent, XMLStreamReader reader) throws WSSecurityException {
+        switch (reader.getEventType()) {
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.SPACE:
+            parent.appendChild(doc.createTextNode(reader.getText()));
+            break;
+        case XMLStreamConstants.CDATA:
+            parent.appendChild(doc.createCDATASection(reader.getText()));
+            break;
+        case XMLStreamConstants.COMMENT:
+            parent.appendChild(doc.createComment(reader.getText()));
+            break;
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+            parent.appendChild(doc.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+            break;
+        case XMLStreamConstants.DTD:
+        case XMLStreamConstants.ENTITY_REFERENCE:
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Read the content of the element the reader is positioned on into the given parent node. The
+     * reader is left positioned on the end element.
+     */
+    public static void readContent(
+        XMLStreamReader reader, Document doc, Node parent
+    ) throws XMLStreamException, WSSecurityException {
+        Node current = parent;
+        while (true) {
+            int eventType = reader.next();
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                Element element = createElement(doc, reader);
+                current.appendChild(element);
+                current = element;
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                if (current == parent) {
+                    return;
+                }
+                current = current.getParentNode();
+            } else {
+                appendNode(doc, current, reader);
+            }
+        }
+    }
+
+    /**
+     * Decode and decrypt the given base64 text of a CipherValue as a stream. The decrypted content is
+     * wrapped in a "wrapper" element that declares the given namespaces, so that it can be parsed in
+     * the namespace context it was encrypted in. The caller must skip the wrapper element.
+     *
+     * @param symEncAlgo the symmetric encryption algorithm
+     * @param cipher a Cipher instance for the algorithm
+     * @param symmetricKey the symmetric key
+     * @param cipherValue the base64 text of the CipherValue
+     * @param namespaces the namespace URIs in scope, keyed by prefix ("" for the default namespace)
+     * @return the wrapped plain text, encoded in UTF-8
+     */
+    public static InputStream getDecryptedWrappedStream(
+        String symEncAlgo, Cipher cipher, SecretKey symmetricKey, InputStream cipherValue,
+        Map<String, String> namespaces
+    ) throws WSSecurityException {
+        InputStream plaintextStream =
+            AttachmentUtils.setupAttachmentDecryptionStream(
+                symEncAlgo, cipher, symmetricKey, Base64.getMimeDecoder().wrap(cipherValue)
+            );
+
+        StringBuilder wrapper = new StringBuilder("<wrapper");
+        for (Map.Entry<String, String> namespace : namespaces.entrySet()) {
+            String prefix = namespace.getKey();
+            String uri = namespace.getValue() == null ? "" : namespace.getValue();
+            if (prefix == null || prefix.isEmpty()) {
+                wrapper.append(" xmlns=\"");
+            } else if (uri.isEmpty()) {
+                // A prefix can't be undeclared in XML 1.0
+                continue;
+            } else {
+                wrapper.append(" xmlns:").append(prefix).append("=\"");
+            }
+            appendEscaped(wrapper, uri).append('"');
+        }
+        wrapper.append('>');
+
+        return new SequenceInputStream(
+            new SequenceInputStream(
+                new ByteArrayInputStream(wrapper.toString().getBytes(StandardCharsets.UTF_8)), plaintextStream
+            ),
+            new ByteArrayInputStream("</wrapper>".getBytes(StandardCharsets.UTF_8))
+        );
+    }
+
+    /**
+     * Append the given value to the builder, escaped for use in a (double quoted) attribute value
+     */
+    public static StringBuilder appendEscaped(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '&':
+                builder.append("&amp;");
+                break;
+            case '<':
+                builder.append("&lt;");
+                break;
+            case '"':
+                builder.append("&quot;");
+                break;
+            case '\t':
+                builder.append("&#9;");
+                break;
+            case '\n':
+                builder.append("&#10;");
+                break;
+            case '\r':
+                builder.append("&#13;");
+                break;
+            default:
+                builder.append(c);
+            }
+        }
+        return builder;
+    }
+
+    private static String getNamespace(String namespace) {
+        return namespace == null || namespace.isEmpty() ? null : namespace;
+    }
+
+    private static String getQualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * An InputStream over (base64) text that is obtained in chunks from a subclass. Characters that
+     * can't appear in base64 text are read as '?', which the (MIME) decoder skips.
+     */
+    public abstract static class TextInputStream extends InputStream {
+        private String text = "";
+        private int position;
+
+        /**
+         * @return the next chunk of text, or null if there is no more text
+         */
+        protected abstract String nextText() throws IOException;
+
+        @Override
+        public int read() throws IOException {
+            if (position == text.length() && !advance()) {
+                return -1;
+            }
+            return toByte(text.charAt(position++)) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position == text.length() && !advance()) {
+                return -1;
+            }
+            int count = Math.min(length, text.length() - position);
+            for (int i = 0; i < count; i++) {
+                bytes[offset + i] = toByte(text.charAt(position++));
+            }
+            return count;
+        }
+
+        private boolean advance() throws IOException {
+            String next;
+            do {
+                next = nextText();
+                if (next == null) {
+                    return false;
+                }
+            } while (next.isEmpty());
+            text = next;
+            position = 0;
+            return true;
+        }
+
+        private static byte toByte(char c) {
+            return c > 0xFF ? (byte)'?' : (byte)c;
+        }
+    }
+
+}
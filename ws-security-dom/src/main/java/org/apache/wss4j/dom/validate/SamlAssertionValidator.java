@@ -23,7 +23,10 @@ import java.time.Instant;
 import java.util.List;
 
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.ReplayCacheUtils;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.jfr.JFRSupport;
+import org.apache.wss4j.common.jfr.SamlValidationEvent;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
 import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -101,24 +104,39 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
         }
         SamlAssertionWrapper samlAssertion = credential.getSamlAssertion();
 
-        // Check the Subject Confirmation requirements
-        verifySubjectConfirmationMethod(samlAssertion);
+        SamlValidationEvent event = JFRSupport.isAvailable() ? new SamlValidationEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        boolean success = false;
+        try {
+            // Check the Subject Confirmation requirements
+            verifySubjectConfirmationMethod(samlAssertion);
 
-        // Check conditions
-        checkConditions(samlAssertion, data.getAudienceRestrictions());
+            // Check conditions
+            checkConditions(samlAssertion, data.getAudienceRestrictions());
 
-        // Check the AuthnStatements of the assertion (if any)
-        checkAuthnStatements(samlAssertion);
+            // Check the AuthnStatements of the assertion (if any)
+            checkAuthnStatements(samlAssertion);
 
-        // Check OneTimeUse Condition
-        checkOneTimeUse(samlAssertion, data);
+            // Check OneTimeUse Condition
+            checkOneTimeUse(samlAssertion, data);
 
-        // Validate the assertion against schemas/profiles
-        validateAssertion(samlAssertion);
+            // Validate the assertion against schemas/profiles
+            validateAssertion(samlAssertion);
 
-        // Verify trust on the signature
-        if (samlAssertion.isSigned()) {
-            verifySignedAssertion(samlAssertion, data);
+            // Verify trust on the signature
+            if (samlAssertion.isSigned()) {
+                verifySignedAssertion(samlAssertion, data);
+            }
+            success = true;
+        } finally {
+            if (event != null && event.shouldCommit()) {
+                event.samlVersion = String.valueOf(samlAssertion.getSamlVersion());
+                event.signed = samlAssertion.isSigned();
+                event.success = success;
+                event.commit();
+            }
         }
         return credential;
     }
@@ -253,7 +271,7 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
             String identifier = samlAssertion.getId();
 
             ReplayCache replayCache = data.getSamlOneTimeUseReplayCache();  //NOPMD
-            if (replayCache.contains(identifier)) {
+            if (ReplayCacheUtils.contains(replayCache, identifier, "SAMLOneTimeUse", data.getSecurityMetrics())) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
@@ -275,7 +293,8 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
      * Validate the samlAssertion against schemas/profiles
      */
     protected void validateAssertion(SamlAssertionWrapper samlAssertion) throws WSSecurityException {
-        if (validateSignatureAgainstProfile) {
+        // An Assertion verified from the cache has already been validated against the profile
+        if (validateSignatureAgainstProfile && !samlAssertion.isVerifiedFromCache()) {
             samlAssertion.validateSignatureAgainstProfile();
         }
     }
@@ -26,6 +26,8 @@ import java.util.regex.Pattern;
 
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.MetricsTimer;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.dom.handler.RequestData;
 
 /**
@@ -109,13 +111,39 @@ public class SignatureTrustValidator implements Validator {
         //
         Collection<Pattern> subjectCertConstraints = data.getSubjectCertConstraints();
         Collection<Pattern> issuerCertConstraints = data.getIssuerDNPatterns();
-        crypto.verifyTrust(certificates, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+        MetricsTimer timer =
+            MetricsTimer.start(data.getSecurityMetrics(), SecurityMetrics.Stage.TRUST_VERIFICATION, "X509Certificate");
+        boolean success = false;
+        try {
+            verifyTrust(certificates, crypto, data, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+            success = true;
+        } finally {
+            timer.stop(success);
+        }
         String subjectString = certificates[0].getSubjectX500Principal().getName();
         LOG.debug(
             "Certificate path has been verified for certificate with subject {}", subjectString
         );
     }
 
+    private static void verifyTrust(
+        X509Certificate[] certificates,
+        Crypto crypto,
+        RequestData data,
+        boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints,
+        Collection<Pattern> issuerCertConstraints
+    ) throws WSSecurityException {
+        TrustVerificationCache trustVerificationCache = data.getTrustVerificationCache();
+        if (trustVerificationCache == null) {
+            crypto.verifyTrust(certificates, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+        } else {
+            trustVerificationCache.verifyTrust(
+                certificates, crypto, enableRevocation, subjectCertConstraints, issuerCertConstraints
+            );
+        }
+    }
+
     /**
      * Validate a public key
      * @throws WSSecurityException
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.validate;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A record of the outcome of certificate path validations, which is shared by the messages of a
+ * batch (see BatchSecurityEngine) so that a certificate chain that is used by several messages is
+ * only validated once. A validation that is in progress on another thread is waited for rather
+ * than repeated, and a failed validation fails every message that uses the same chain.
+ *
+ * The outcome is not retained beyond the lifetime of the instance, which should therefore be scoped
+ * to a batch of messages that are processed at the same point in time.
+ */
+public final class TrustVerificationCache {
+
+    private final Map<TrustKey, CompletableFuture<Void>> verifications = new ConcurrentHashMap<>();
+
+    /**
+     * Evaluate whether the given certificate chain should be trusted, using the outcome of a
+     * previous evaluation of the same chain with the same Crypto and constraints if there is one.
+     *
+     * @param certificates the certificate chain that should be validated against the keystore
+     * @param crypto A Crypto instance
+     * @param enableRevocation Whether revocation is enabled or not
+     * @param subjectCertConstraints The subject cert constraints
+     * @param issuerCertConstraints The issuer cert constraints
+     * @throws WSSecurityException if the certificate chain is not trusted
+     */
+    public void verifyTrust(
+        X509Certificate[] certificates,
+        Crypto crypto,
+        boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints,
+        Collection<Pattern> issuerCertConstraints
+    ) throws WSSecurityException {
+        TrustKey key =
+            new TrustKey(
+                crypto, List.of(certificates), enableRevocation,
+                toStrings(subjectCertConstraints), toStrings(issuerCertConstraints)
+            );
+        CompletableFuture<Void> verification = new CompletableFuture<>();
+        CompletableFuture<Void> existing = verifications.putIfAbsent(key, verification);
+        if (existing == null) {
+            try {
+                crypto.verifyTrust(certificates, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+                verification.complete(null);
+            } catch (Throwable ex) {
+                // Always complete the verification, as other threads may be waiting for it
+                verification.completeExceptionally(ex);
+                throw ex;
+            }
+            return;
+        }
+
+        try {
+            existing.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof WSSecurityException) {
+                throw (WSSecurityException)ex.getCause();
+            } else if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)ex.getCause();
+            } else if (ex.getCause() instanceof Error) {
+                throw (Error)ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * @return the number of distinct certificate chains that have been evaluated
+     */
+    public int size() {
+        return verifications.size();
+    }
+
+    private static List<String> toStrings(Collection<Pattern> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return List.of();
+        }
+        List<String> strings = new ArrayList<>(patterns.size());
+        for (Pattern pattern : patterns) {
+            strings.add(pattern.pattern());
+        }
+        return strings;
+    }
+
+    private static final class TrustKey {
+        private final Crypto crypto;
+        private final List<X509Certificate> certificates;
+        private final boolean enableRevocation;
+        private final List<String> subjectCertConstraints;
+        private final List<String> issuerCertConstraints;
+
+        TrustKey(
+            Crypto crypto,
+            List<X509Certificate> certificates,
+            boolean enableRevocation,
+            List<String> subjectCertConstraints,
+            List<String> issuerCertConstraints
+        ) {
+            this.crypto = crypto;
+            this.certificates = certificates;
+            this.enableRevocation = enableRevocation;
+            this.subjectCertConstraints = subjectCertConstraints;
+            this.issuerCertConstraints = issuerCertConstraints;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof TrustKey)) {
+                return false;
+            }
+            TrustKey other = (TrustKey)object;
+            return crypto == other.crypto
+                && enableRevocation == other.enableRevocation
+                && certificates.equals(other.certificates)
+                && subjectCertConstraints.equals(other.subjectCertConstraints)
+                && issuerCertConstraints.equals(other.issuerCertConstraints);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                System.identityHashCode(crypto), certificates, enableRevocation,
+                subjectCertConstraints, issuerCertConstraints
+            );
+        }
+    }
+
+}
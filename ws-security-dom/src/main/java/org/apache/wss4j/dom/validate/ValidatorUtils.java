@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.validate;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.MetricsTimer;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.dom.handler.RequestData;
+
+/**
+ * Calls a Validator on behalf of the processors, and reports the validation to the SecurityMetrics
+ * instance of the RequestData (if any).
+ */
+public final class ValidatorUtils {
+
+    private ValidatorUtils() {
+        // complete
+    }
+
+    /**
+     * Validate the credential with the given Validator
+     * @param validator the Validator
+     * @param credential the Credential to be validated
+     * @param data the RequestData associated with the request
+     * @return the validated Credential returned by the Validator
+     * @throws WSSecurityException on a failed validation
+     */
+    public static Credential validate(
+        Validator validator, Credential credential, RequestData data
+    ) throws WSSecurityException {
+        SecurityMetrics metrics = data.getSecurityMetrics();
+        if (metrics == null) {
+            return validator.validate(credential, data);
+        }
+
+        String name = validator.getClass().getSimpleName();
+        if (name.isEmpty()) {
+            name = validator.getClass().getName();
+        }
+        MetricsTimer timer = MetricsTimer.start(metrics, SecurityMetrics.Stage.VALIDATION, name);
+        boolean success = false;
+        try {
+            Credential validatedCredential = validator.validate(credential, data);
+            success = true;
+            return validatedCredential;
+        } finally {
+            timer.stop(success);
+        }
+    }
+
+}
@@ -22,11 +22,17 @@ package org.apache.wss4j.dom.components.crypto;
 import java.security.Security;
 
 import org.apache.wss4j.common.crypto.WSProviderConfig;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.CustomProcessor;
 import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.processor.Processor;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test loading and removing security providers via WSSConfig
@@ -78,4 +84,34 @@ public class WSSConfigTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSharedProcessorsAndValidators() throws Exception {
+        WSSConfig config = WSSConfig.getNewInstance();
+        WSSConfig otherConfig = WSSConfig.getNewInstance();
+
+        // The default processors and validators are shared
+        assertNotNull(config.getProcessor(WSConstants.TIMESTAMP));
+        assertSame(config.getProcessor(WSConstants.TIMESTAMP), otherConfig.getProcessor(WSConstants.TIMESTAMP));
+        assertSame(config.getValidator(WSConstants.SIGNATURE), otherConfig.getValidator(WSConstants.SIGNATURE));
+        assertNull(config.getValidator(WSConstants.REFERENCE_LIST));
+
+        // The SamlAssertionValidator is configurable, and so is not shared
+        assertNotSame(config.getValidator(WSConstants.SAML_TOKEN), otherConfig.getValidator(WSConstants.SAML_TOKEN));
+
+        // The processors that hold an XMLSignatureFactory are not shared
+        assertNotSame(config.getProcessor(WSConstants.SIGNATURE), otherConfig.getProcessor(WSConstants.SIGNATURE));
+        assertNotSame(config.getProcessor(WSConstants.SAML_TOKEN), otherConfig.getProcessor(WSConstants.SAML_TOKEN));
+
+        // A custom class is instantiated per invocation, while the built-in classes are still shared
+        config.setProcessor(WSConstants.SIGNATURE, CustomProcessor.class);
+        assertTrue(config.getProcessor(WSConstants.SIGNATURE) instanceof CustomProcessor);
+        assertNotSame(config.getProcessor(WSConstants.SIGNATURE), config.getProcessor(WSConstants.SIGNATURE));
+        assertSame(config.getProcessor(WSConstants.TIMESTAMP), otherConfig.getProcessor(WSConstants.TIMESTAMP));
+
+        // A registered instance is used as is
+        Processor processor = new CustomProcessor();
+        config.setProcessor(WSConstants.SIGNATURE, processor);
+        assertSame(processor, config.getProcessor(WSConstants.SIGNATURE));
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.dom.common.CustomHandler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Some tests for how a WSHandler loads and registers Crypto instances.
+ */
+public class WSHandlerCryptoTest {
+
+    @Test
+    public void testCryptoRegistryPerHandler() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        CustomHandler otherHandler = new CustomHandler();
+        RequestData requestData = createRequestData();
+
+        Crypto crypto = loadCrypto(handler, requestData);
+        assertNotNull(crypto);
+        assertSame(crypto, loadCrypto(handler, requestData));
+        // Another handler loads its own Crypto for the same properties file
+        assertNotSame(crypto, loadCrypto(otherHandler, requestData));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSharedCryptoRegistry() throws Exception {
+        RequestData requestData = createRequestData();
+        ((Map<String, Object>)requestData.getMsgContext()).put(WSHandlerConstants.SHARED_CRYPTO_REGISTRY, "true");
+        try {
+            Crypto crypto = loadCrypto(new CustomHandler(), requestData);
+            assertSame(crypto, loadCrypto(new CustomHandler(), requestData));
+            assertSame(crypto, CryptoFactory.getCryptoRegistry().getCrypto("crypto.properties"));
+        } finally {
+            CryptoFactory.getCryptoRegistry().removeCrypto("crypto.properties");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testCryptosOfSubclass() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        RequestData requestData = createRequestData();
+        Crypto crypto = loadCrypto(new CustomHandler(), requestData);
+
+        handler.cryptos.put("crypto.properties", crypto);
+        assertSame(crypto, loadCrypto(handler, requestData));
+    }
+
+    private static RequestData createRequestData() {
+        Map<String, Object> msgContext = new TreeMap<>();
+        msgContext.put(WSHandlerConstants.SIG_PROP_FILE, "crypto.properties");
+        RequestData requestData = new RequestData();
+        requestData.setMsgContext(msgContext);
+        return requestData;
+    }
+
+    private static Crypto loadCrypto(WSHandler handler, RequestData requestData) throws Exception {
+        return handler.loadCrypto(WSHandlerConstants.SIG_PROP_FILE, WSHandlerConstants.SIG_PROP_REF_ID, requestData);
+    }
+
+}
@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.MemoryReplayCache;
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.engine.BatchSecurityEngine;
+import org.apache.wss4j.dom.engine.BatchVerificationResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.validate.TrustVerificationCache;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some test-cases for processing a batch of messages with the BatchSecurityEngine.
+ */
+public class BatchSecurityEngineTest {
+
+    private final AtomicInteger trustVerifications = new AtomicInteger();
+    private final Crypto crypto;
+
+    public BatchSecurityEngineTest() throws Exception {
+        ClassLoader loader = getClass().getClassLoader();
+        crypto = new Merlin(CryptoFactory.getProperties("crypto.properties", loader), loader, null) {
+            @Override
+            public void verifyTrust(
+                X509Certificate[] certs, boolean enableRevocation,
+                Collection<Pattern> subjectCertConstraints, Collection<Pattern> issuerCertConstraints
+            ) throws WSSecurityException {
+                trustVerifications.incrementAndGet();
+                super.verifyTrust(certs, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+            }
+        };
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            documents.add(createSignedMessage());
+        }
+        // A modified message
+        Element value = (Element)documents.get(1).getElementsByTagName("value").item(0);
+        value.setTextContent("16");
+        // A replay of a message within the batch
+        documents.add((Document)documents.get(2).cloneNode(true));
+
+        ReplayCache replayCache = new MemoryReplayCache();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            BatchSecurityEngine batchEngine = new BatchSecurityEngine(executor);
+            List<BatchVerificationResult> results =
+                batchEngine.processSecurityHeaders(documents, () -> createRequestData(replayCache));
+
+            assertEquals(5, results.size());
+            assertTrue(results.get(0).isSuccess());
+            assertNotNull(results.get(0).getHandlerResult());
+            assertFalse(results.get(1).isSuccess());
+            assertTrue(results.get(3).isSuccess());
+
+            // Only one of the message and its replay is accepted
+            assertTrue(results.get(2).isSuccess() ^ results.get(4).isSuccess());
+            WSSecurityException replay =
+                results.get(2).isSuccess() ? results.get(4).getException() : results.get(2).getException();
+            assertEquals(WSSecurityException.ErrorCode.INVALID_SECURITY, replay.getErrorCode());
+
+            // The signing certificate is shared by the messages, so it is only validated once
+            assertEquals(1, trustVerifications.get());
+        } finally {
+            executor.shutdown();
+        }
+
+        // The accepted messages are now in the ReplayCache, so they fail in the next batch
+        List<BatchVerificationResult> results =
+            new BatchSecurityEngine().processSecurityHeaders(
+                List.of(documents.get(0), createSignedMessage()), () -> createRequestData(replayCache)
+            );
+        assertFalse(results.get(0).isSuccess());
+        assertEquals(
+            WSSecurityException.ErrorCode.INVALID_SECURITY, results.get(0).getException().getErrorCode()
+        );
+        assertTrue(results.get(1).isSuccess());
+    }
+
+    @Test
+    public void testReplayAcrossConcurrentBatches() throws Exception {
+        Document doc = createSignedMessage();
+        ReplayCache replayCache = new MemoryReplayCache();
+
+        // The same message in two batches that are processed at the same time
+        int batches = 2;
+        ExecutorService executor = Executors.newFixedThreadPool(batches);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<BatchVerificationResult>>> futures = new ArrayList<>();
+            for (int i = 0; i < batches; i++) {
+                Document copy = (Document)doc.cloneNode(true);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return new BatchSecurityEngine().processSecurityHeaders(
+                        List.of(copy), () -> createRequestData(replayCache)
+                    );
+                }));
+            }
+            start.countDown();
+
+            int accepted = 0;
+            for (Future<List<BatchVerificationResult>> future : futures) {
+                if (future.get(30, TimeUnit.SECONDS).get(0).isSuccess()) {
+                    accepted++;
+                }
+            }
+            assertEquals(1, accepted);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectedMessage() throws Exception {
+        List<Document> documents = List.of(createSignedMessage(), createSignedMessage(), createSignedMessage());
+
+        // An Executor that rejects the second message
+        AtomicInteger submitted = new AtomicInteger();
+        Executor executor = command -> {
+            if (submitted.incrementAndGet() == 2) {
+                throw new RejectedExecutionException("Queue full");
+            }
+            command.run();
+        };
+        List<BatchVerificationResult> results =
+            new BatchSecurityEngine(executor).processSecurityHeaders(
+                documents, () -> createRequestData(new MemoryReplayCache())
+            );
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getException().getCause() instanceof RejectedExecutionException);
+        assertTrue(results.get(2).isSuccess());
+    }
+
+    @Test
+    public void testTrustVerificationError() throws Exception {
+        AtomicInteger verifications = new AtomicInteger();
+        ClassLoader loader = getClass().getClassLoader();
+        Crypto failingCrypto =
+            new Merlin(CryptoFactory.getProperties("crypto.properties", loader), loader, null) {
+                @Override
+                public void verifyTrust(
+                    X509Certificate[] certs, boolean enableRevocation,
+                    Collection<Pattern> subjectCertConstraints, Collection<Pattern> issuerCertConstraints
+                ) {
+                    verifications.incrementAndGet();
+                    throw new AssertionError("Trust verification failed");
+                }
+            };
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("16c73ab6-b892-458f-abf5-2f875f74882e");
+        X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
+
+        // An Error fails every verification of the same chain, rather than leaving it pending
+        TrustVerificationCache trustVerificationCache = new TrustVerificationCache();
+        for (int i = 0; i < 2; i++) {
+            assertThrows(AssertionError.class,
+                () -> trustVerificationCache.verifyTrust(certs, failingCrypto, false, null, null));
+        }
+        assertEquals(1, verifications.get());
+    }
+
+    private RequestData createRequestData(ReplayCache replayCache) {
+        RequestData data = new RequestData();
+        data.setCallbackHandler(new KeystoreCallbackHandler());
+        data.setSigVerCrypto(crypto);
+        data.setTimestampReplayCache(replayCache);
+        return data;
+    }
+
+    private Document createSignedMessage() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecTimestamp timestamp = new WSSecTimestamp(secHeader);
+        timestamp.setTimeToLive(300);
+        timestamp.build();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        builder.getParts().add(new WSEncryptionPart("Timestamp", WSConstants.WSU_NS, ""));
+        builder.getParts().add(
+            new WSEncryptionPart(WSConstants.ELEM_BODY, WSConstants.URI_SOAP11_ENV, "")
+        );
+        builder.build(crypto);
+        return doc;
+    }
+
+}
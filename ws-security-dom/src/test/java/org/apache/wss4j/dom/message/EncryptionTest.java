@@ -27,14 +27,19 @@ import java.util.Collections;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
 
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.WSS4JConstants;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.MemoryEncryptedKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.MemorySecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.common.util.*;
 import org.apache.wss4j.dom.SOAPConstants;
 import org.apache.wss4j.dom.WSConstants;
@@ -60,6 +65,8 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -236,6 +243,61 @@ public class EncryptionTest {
         assertTrue(referenceType == REFERENCE_TYPE.KEY_IDENTIFIER);
     }
 
+    /**
+     * Test that an inline CipherValue whose base64 text is split over several text nodes, with
+     * line breaks, is decrypted, for a CBC and a GCM algorithm and for Content and Element encryption
+     */
+    @ParameterizedTest
+    @CsvSource({
+        WSConstants.AES_128 + ", Content",
+        WSConstants.AES_128 + ", Element",
+        WSConstants.AES_128_GCM + ", Content",
+        WSConstants.AES_128_GCM + ", Element",
+    })
+    public void testEncryptionDecryptionSplitCipherValue(String algorithm, String modifier) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        builder.setSymmetricEncAlgorithm(algorithm);
+        javax.xml.namespace.QName expectedEncryptedElement = SOAP_BODY;
+        if ("Element".equals(modifier)) {
+            expectedEncryptedElement =
+                new javax.xml.namespace.QName("http://ws.apache.org/counter/counter_port_type", "add");
+            builder.getParts().add(
+                new WSEncryptionPart(
+                    expectedEncryptedElement.getLocalPart(), expectedEncryptedElement.getNamespaceURI(), modifier
+                )
+            );
+        }
+
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(algorithm);
+        SecretKey symmetricKey = keyGen.generateKey();
+        Document encryptedDoc = builder.build(crypto, symmetricKey);
+
+        // The last CipherValue is the one of the EncryptedData in the SOAP Body
+        NodeList cipherValues = encryptedDoc.getElementsByTagNameNS(WSConstants.ENC_NS, "CipherValue");
+        Element cipherValue = (Element)cipherValues.item(cipherValues.getLength() - 1);
+        Text text = (Text)cipherValue.getFirstChild();
+        Text remainder = text.splitText(5).splitText(31);
+        cipherValue.insertBefore(encryptedDoc.createTextNode("\n"), remainder);
+
+        String outputString = XMLUtils.prettyDocumentToString(encryptedDoc);
+        assertFalse(outputString.contains("counter_port_type"));
+        verify(encryptedDoc, keystoreCallbackHandler, expectedEncryptedElement);
+
+        // The decrypted content has replaced the EncryptedData in the SOAP Body
+        Element add =
+            XMLUtils.findElement(
+                encryptedDoc.getDocumentElement(), "add", "http://ws.apache.org/counter/counter_port_type"
+            );
+        assertNotNull(add);
+        assertEquals(WSConstants.ELEM_BODY, add.getParentNode().getLocalName());
+    }
+
     @Test
     public void testEncryptionDecryptionPublicKey() throws Exception {
         Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
@@ -685,6 +747,152 @@ public class EncryptionTest {
         newEngine.processSecurityHeader(encryptedDoc, data);
     }
 
+    /**
+     * Test that an unwrapped EncryptedKey session key is cached, so that a second message
+     * carrying the same EncryptedKey is decrypted without a private key operation.
+     */
+    @Test
+    public void testEncryptedKeyCache() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        builder.setKeyEncAlgo(WSConstants.KEYTRANSPORT_RSAOAEP);
+
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        Document encryptedDoc = builder.build(crypto, symmetricKey);
+        String encryptedMessage = XMLUtils.prettyDocumentToString(encryptedDoc);
+
+        EncryptedKeyCache encryptedKeyCache = new MemoryEncryptedKeyCache();
+
+        RequestData data = new RequestData();
+        data.setCallbackHandler(keystoreCallbackHandler);
+        data.setDecCrypto(crypto);
+        data.setEncryptedKeyCache(encryptedKeyCache);
+        secEngine.processSecurityHeader(SOAPUtil.toSOAPPart(encryptedMessage), data);
+
+        // The private key password is not available any more, so the session key
+        // must come from the cache
+        data = new RequestData();
+        data.setCallbackHandler(callbacks -> {
+            throw new UnsupportedCallbackException(callbacks[0]);
+        });
+        data.setDecCrypto(crypto);
+        data.setEncryptedKeyCache(encryptedKeyCache);
+        Document decryptedDoc = SOAPUtil.toSOAPPart(encryptedMessage);
+        secEngine.processSecurityHeader(decryptedDoc, data);
+        assertTrue(XMLUtils.prettyDocumentToString(decryptedDoc).contains("counter_port_type"));
+
+        // Without the cache the same message can't be processed
+        data.setEncryptedKeyCache(null);
+        try {
+            secEngine.processSecurityHeader(SOAPUtil.toSOAPPart(encryptedMessage), data);
+            fail("Failure expected on no private key password");
+        } catch (WSSecurityException ex) {
+            // expected
+        }
+        encryptedKeyCache.close();
+    }
+
+    /**
+     * Test that a session key that is wrapped with a key agreement is only taken from the cache
+     * for the same AgreementMethod, and not for the same CipherValue with another originator key.
+     */
+    @Test
+    public void testEncryptedKeyCacheKeyAgreement() throws Exception {
+        Crypto encCrypto = CryptoFactory.getInstance("wss-ecdh.properties");
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128_GCM);
+        SecretKey symmetricKey = keyGen.generateKey();
+
+        Document[] encryptedDocs = new Document[2];
+        for (int i = 0; i < encryptedDocs.length; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+            builder.setUserInfo("secp256r1");
+            builder.setKeyEncAlgo(WSConstants.KEYWRAP_AES128);
+            builder.setKeyAgreementMethod(WSConstants.AGREEMENT_METHOD_ECDH_ES);
+            builder.setDigestAlgorithm(WSS4JConstants.SHA256);
+            builder.setKeyIdentifierType(WSConstants.SKI_KEY_IDENTIFIER);
+            encryptedDocs[i] = builder.build(encCrypto, symmetricKey);
+        }
+        String encryptedMessage = XMLUtils.prettyDocumentToString(encryptedDocs[0]);
+
+        // The second message carries the CipherValue of the first one, with its own originator key
+        Element cipherValue = (Element)encryptedDocs[0].getElementsByTagNameNS(
+            WSConstants.ENC_NS, "CipherValue").item(0);
+        Element otherCipherValue = (Element)encryptedDocs[1].getElementsByTagNameNS(
+            WSConstants.ENC_NS, "CipherValue").item(0);
+        otherCipherValue.setTextContent(cipherValue.getTextContent());
+        String otherMessage = XMLUtils.prettyDocumentToString(encryptedDocs[1]);
+
+        EncryptedKeyCache encryptedKeyCache = new MemoryEncryptedKeyCache();
+
+        RequestData data = new RequestData();
+        data.setCallbackHandler(keystoreCallbackHandler);
+        data.setDecCrypto(encCrypto);
+        data.setEncryptedKeyCache(encryptedKeyCache);
+        secEngine.processSecurityHeader(SOAPUtil.toSOAPPart(encryptedMessage), data);
+
+        data = new RequestData();
+        data.setCallbackHandler(callbacks -> {
+            throw new UnsupportedCallbackException(callbacks[0]);
+        });
+        data.setDecCrypto(encCrypto);
+        data.setEncryptedKeyCache(encryptedKeyCache);
+        Document decryptedDoc = SOAPUtil.toSOAPPart(encryptedMessage);
+        secEngine.processSecurityHeader(decryptedDoc, data);
+        assertTrue(XMLUtils.prettyDocumentToString(decryptedDoc).contains("counter_port_type"));
+
+        try {
+            secEngine.processSecurityHeader(SOAPUtil.toSOAPPart(otherMessage), data);
+            fail("Failure expected on a different originator key");
+        } catch (WSSecurityException ex) {
+            // expected
+        }
+        encryptedKeyCache.close();
+    }
+
+    /**
+     * Test that the processing of the security header is reported to a SecurityMetrics instance
+     */
+    @Test
+    public void testSecurityMetrics() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        builder.setKeyEncAlgo(WSConstants.KEYTRANSPORT_RSAOAEP);
+
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        Document encryptedDoc = builder.build(crypto, symmetricKey);
+
+        MemorySecurityMetrics metrics = new MemorySecurityMetrics();
+        RequestData data = new RequestData();
+        data.setCallbackHandler(keystoreCallbackHandler);
+        data.setDecCrypto(crypto);
+        data.setSecurityMetrics(metrics);
+        secEngine.processSecurityHeader(encryptedDoc, data);
+
+        assertEquals(1L, metrics.getStatistics(SecurityMetrics.Stage.SECURITY_HEADER, "Security").getCount());
+        assertEquals(1L, metrics.getStatistics(SecurityMetrics.Stage.TOKEN, "EncryptedKey").getCount());
+        MemorySecurityMetrics.Statistics decryption =
+            metrics.getStatistics(SecurityMetrics.Stage.DECRYPTION, WSConstants.AES_128);
+        assertEquals(1L, decryption.getCount());
+        assertEquals(0L, decryption.getFailures());
+        assertTrue(decryption.getBytes() > 0);
+    }
+
     /**
      * In this test an EncryptedKey structure is embedded in the EncryptedData structure.
      * The EncryptedKey structure refers to a certificate via the SKI_KEY_IDENTIFIER.
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.common.util.ThreadBenchmark;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Compares the throughput of processing a signed and timestamped message with the WSSecurityEngine
+ * on a platform thread pool and on virtual threads, and reports where the virtual threads are pinned
+ * to their carrier threads. It is run via the "benchmark" profile (see ThreadBenchmark), e.g. on
+ * JDK 21:
+ *
+ * <pre>
+ * mvn test -Pbenchmark -pl ws-security-dom -Dtest=EngineConcurrencyBenchmark
+ *     -Dwss4j.benchmark.argLine=-Djdk.tracePinnedThreads=full
+ * </pre>
+ */
+public class EngineConcurrencyBenchmark {
+
+    private static final int TASKS = Integer.getInteger("wss4j.benchmark.tasks", 2000);
+    private static final int PLATFORM_THREADS = Integer.getInteger("wss4j.benchmark.threads", 50);
+
+    private final Crypto crypto;
+
+    public EngineConcurrencyBenchmark() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        String message = createSignedMessage();
+        Callable<Void> task = () -> {
+            Document doc = SOAPUtil.toSOAPPart(message);
+            WSHandlerResult results =
+                new WSSecurityEngine().processSecurityHeader(doc, null, null, crypto);
+            assertNotNull(results.getActionResults().get(WSConstants.SIGN));
+            assertEquals(1, results.getActionResults().get(WSConstants.TS).size());
+            return null;
+        };
+
+        ThreadBenchmark.run("DOM, " + PLATFORM_THREADS + " platform threads",
+                            () -> Executors.newFixedThreadPool(PLATFORM_THREADS), TASKS, task);
+        if (ThreadBenchmark.isVirtualThreadSupported()) {
+            ThreadBenchmark.run("DOM, virtual threads",
+                                ThreadBenchmark::newVirtualThreadPerTaskExecutor, TASKS, task);
+        }
+    }
+
+    private String createSignedMessage() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecTimestamp timestamp = new WSSecTimestamp(secHeader);
+        timestamp.build();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        return XMLUtils.prettyDocumentToString(builder.build(crypto));
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Processes a signed and timestamped message with the WSSecurityEngine from a large number of
+ * concurrent tasks, on a platform thread pool and (where the JDK supports them) on virtual threads,
+ * and logs how long each run takes.
+ */
+public class EngineConcurrencyTest {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(EngineConcurrencyTest.class);
+
+    private static final int TASKS = 500;
+
+    private final Crypto crypto;
+
+    public EngineConcurrencyTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance();
+    }
+
+    @Test
+    public void testPlatformThreads() throws Exception {
+        processMessages("platform", Executors.newFixedThreadPool(50));
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Method factory = null;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            // Virtual threads are not supported by this JDK
+        }
+        assumeTrue(factory != null);
+        processMessages("virtual", (ExecutorService)factory.invoke(null));
+    }
+
+    private void processMessages(String threadType, ExecutorService executor) throws Exception {
+        String message = createSignedMessage();
+        try {
+            long startTime = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(TASKS);
+            for (int i = 0; i < TASKS; i++) {
+                futures.add(executor.submit(() -> {
+                    Document doc = SOAPUtil.toSOAPPart(message);
+                    WSHandlerResult results =
+                        new WSSecurityEngine().processSecurityHeader(doc, null, null, crypto);
+                    assertNotNull(results.getActionResults().get(WSConstants.SIGN));
+                    assertEquals(1, results.getActionResults().get(WSConstants.TS).size());
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            LOG.info("{} messages on {} threads took {} ms", TASKS, threadType,
+                     TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private String createSignedMessage() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecTimestamp timestamp = new WSSecTimestamp(secHeader);
+        timestamp.build();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        return XMLUtils.prettyDocumentToString(builder.build(crypto));
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.DOM2Writer;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.engine.HybridSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A set of tests for processing a message with a DOM security header and a streamed SOAP Body.
+ */
+public class HybridSecurityEngineTest {
+
+    private final HybridSecurityEngine secEngine = new HybridSecurityEngine();
+    private final Crypto crypto;
+
+    public HybridSecurityEngineTest() throws Exception {
+        crypto = CryptoFactory.getInstance("wss40.properties");
+        WSSConfig.init();
+    }
+
+    @Test
+    public void testSignedBody() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature sign = new WSSecSignature(secHeader);
+        sign.setUserInfo("wss40", "security");
+        sign.build(crypto);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        WSHandlerResult results = verify(DOM2Writer.nodeToString(doc), body);
+
+        WSSecurityEngineResult actionResult = results.getActionResults().get(WSConstants.SIGN).get(0);
+        @SuppressWarnings("unchecked")
+        List<WSDataRef> refs = (List<WSDataRef>)actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+        assertEquals(1, refs.size());
+        assertEquals(WSConstants.ELEM_BODY, refs.get(0).getProtectedElement().getLocalName());
+
+        String output = body.toString(StandardCharsets.UTF_8.name());
+        assertTrue(output.contains("<value xmlns=\"\">15</value>"));
+    }
+
+    @Test
+    public void testModifiedSignedBody() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature sign = new WSSecSignature(secHeader);
+        sign.setUserInfo("wss40", "security");
+        sign.build(crypto);
+
+        String message = DOM2Writer.nodeToString(doc).replace(">15<", ">16<");
+        assertThrows(WSSecurityException.class, () -> verify(message, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void testEncryptedBody() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("wss40");
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        encrypt.build(crypto, symmetricKey);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        WSHandlerResult results = verify(DOM2Writer.nodeToString(doc), body);
+        assertEquals(1, results.getActionResults().get(WSConstants.ENCR).size());
+
+        String output = body.toString(StandardCharsets.UTF_8.name());
+        assertTrue(output.contains("<value xmlns=\"\">15</value>"));
+        assertFalse(output.contains("EncryptedData"));
+    }
+
+    @Test
+    public void testSigningEncryption() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature sign = new WSSecSignature(secHeader);
+        sign.setUserInfo("wss40", "security");
+        sign.build(crypto);
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("wss40");
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        encrypt.build(crypto, symmetricKey);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        WSHandlerResult results = verify(DOM2Writer.nodeToString(doc), body);
+        assertEquals(1, results.getActionResults().get(WSConstants.SIGN).size());
+        assertEquals(1, results.getActionResults().get(WSConstants.ENCR).size());
+        assertTrue(body.toString(StandardCharsets.UTF_8.name()).contains("<value xmlns=\"\">15</value>"));
+    }
+
+    @Test
+    public void testEncryptionSigning() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("wss40");
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        encrypt.build(crypto, symmetricKey);
+
+        WSSecSignature sign = new WSSecSignature(secHeader);
+        sign.setUserInfo("wss40", "security");
+        sign.build(crypto);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        WSHandlerResult results = verify(DOM2Writer.nodeToString(doc), body);
+        assertEquals(1, results.getActionResults().get(WSConstants.SIGN).size());
+        assertEquals(1, results.getActionResults().get(WSConstants.ENCR).size());
+        assertTrue(body.toString(StandardCharsets.UTF_8.name()).contains("<value xmlns=\"\">15</value>"));
+    }
+
+    private WSHandlerResult verify(String message, ByteArrayOutputStream body) throws Exception {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(message));
+
+        RequestData data = new RequestData();
+        data.setCallbackHandler(new KeystoreCallbackHandler());
+        data.setSigVerCrypto(crypto);
+        data.setDecCrypto(crypto);
+        return secEngine.processSecurityHeader(reader, data, body);
+    }
+
+}
@@ -21,12 +21,17 @@ package org.apache.wss4j.dom.message;
 
 import javax.xml.crypto.dsig.SignatureMethod;
 
+import org.apache.wss4j.common.cache.DerivedKeyCache;
+import org.apache.wss4j.common.cache.MemoryDerivedKeyCache;
+import org.apache.wss4j.common.cache.MemorySecurityContextTokenStore;
+import org.apache.wss4j.common.cache.SecurityContextTokenStore;
 import org.apache.wss4j.common.util.SOAPUtil;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.common.SecretKeyCallbackHandler;
 
 import org.apache.wss4j.dom.engine.WSSecurityEngine;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
@@ -39,8 +44,12 @@ import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -377,6 +386,107 @@ public class SecurityContextTokenTest {
         }
     }
 
+    /**
+     * Test that the secret of a security context token is retrieved from the
+     * SecurityContextTokenStore for subsequent messages, without invoking the CallbackHandler
+     */
+    @Test
+    public void testSCTStore() throws Exception {
+        SecurityContextTokenStore securityContextTokenStore = new MemorySecurityContextTokenStore();
+        DerivedKeyCache derivedKeyCache = new MemoryDerivedKeyCache();
+
+        Random random = new Random();
+        byte[] tempSecret = new byte[16];
+        random.nextBytes(tempSecret);
+
+        String identifier = null;
+        AtomicInteger callbackCount = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            WSSecSecurityContextToken sctBuilder = new WSSecSecurityContextToken(secHeader, null);
+            if (identifier != null) {
+                sctBuilder.setIdentifier(identifier);
+            }
+            sctBuilder.prepare(crypto);
+            identifier = sctBuilder.getIdentifier();
+
+            WSSecDKEncrypt encrBuilder = new WSSecDKEncrypt(secHeader);
+            encrBuilder.setSymmetricEncAlgorithm(WSConstants.AES_128);
+            if (i == 1) {
+                // The second message refers to the SecurityContextToken by its Identifier, and doesn't contain it
+                encrBuilder.setTokenIdentifier(identifier);
+                encrBuilder.setTokenIdDirectId(true);
+                encrBuilder.build(tempSecret);
+            } else {
+                encrBuilder.setTokenIdentifier(sctBuilder.getSctId());
+                encrBuilder.build(tempSecret);
+                sctBuilder.prependSCTElementToHeader();
+            }
+
+            callbackHandler.addSecretKey(identifier, tempSecret);
+            RequestData data = new RequestData();
+            data.setDecCrypto(crypto);
+            data.setSecurityContextTokenStore(securityContextTokenStore);
+            data.setDerivedKeyCache(derivedKeyCache);
+            data.setCallbackHandler(callbacks -> {
+                callbackCount.incrementAndGet();
+                callbackHandler.handle(callbacks);
+            });
+
+            secEngine.processSecurityHeader(doc, data);
+            String outputString = XMLUtils.prettyDocumentToString(doc);
+            assertTrue(outputString.contains("counter_port_type"));
+        }
+
+        // Only the first message needed the CallbackHandler, the secret then comes from the store
+        assertEquals(1, callbackCount.get());
+        assertArrayEquals(tempSecret, securityContextTokenStore.get(identifier));
+        securityContextTokenStore.close();
+        derivedKeyCache.close();
+    }
+
+    /**
+     * Test that a secret which the CallbackHandler only resolves by the wsu:Id of the security
+     * context token is not stored under its Identifier
+     */
+    @Test
+    public void testSCTStoreSecretById() throws Exception {
+        SecurityContextTokenStore securityContextTokenStore = new MemorySecurityContextTokenStore();
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSecurityContextToken sctBuilder = new WSSecSecurityContextToken(secHeader, null);
+        sctBuilder.prepare(crypto);
+
+        byte[] tempSecret = new byte[16];
+        new Random().nextBytes(tempSecret);
+
+        WSSecDKEncrypt encrBuilder = new WSSecDKEncrypt(secHeader);
+        encrBuilder.setSymmetricEncAlgorithm(WSConstants.AES_128);
+        encrBuilder.setTokenIdentifier(sctBuilder.getSctId());
+        encrBuilder.build(tempSecret);
+        sctBuilder.prependSCTElementToHeader();
+
+        SecretKeyCallbackHandler idCallbackHandler = new SecretKeyCallbackHandler();
+        idCallbackHandler.addSecretKey(sctBuilder.getSctId(), tempSecret);
+        RequestData data = new RequestData();
+        data.setDecCrypto(crypto);
+        data.setSecurityContextTokenStore(securityContextTokenStore);
+        data.setCallbackHandler(idCallbackHandler);
+
+        secEngine.processSecurityHeader(doc, data);
+        String outputString = XMLUtils.prettyDocumentToString(doc);
+        assertTrue(outputString.contains("counter_port_type"));
+
+        assertNull(securityContextTokenStore.get(sctBuilder.getIdentifier()));
+        securityContextTokenStore.close();
+    }
+
     /**
      * Verifies the soap envelope <p/>
      *
@@ -29,6 +29,7 @@ import java.util.Locale;
 
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.DateUtil;
 import org.apache.wss4j.common.util.SOAPUtil;
@@ -48,6 +49,7 @@ import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -202,6 +204,51 @@ public class TimestampTest {
         }
     }
 
+    /**
+     * This is a test for rejecting an expired Timestamp that follows a Signature in the security
+     * header, before the Signature is processed.
+     */
+    @Test
+    public void testExpiredTimestampPreValidation() throws Exception {
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecTimestamp timestamp = new WSSecTimestamp(secHeader);
+        timestamp.setTimeToLive(-1);
+        timestamp.build();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        Document signedDoc = builder.build(CryptoFactory.getInstance());
+
+        if (LOG.isDebugEnabled()) {
+            String outputString =
+                XMLUtils.prettyDocumentToString(signedDoc);
+            LOG.debug(outputString);
+        }
+
+        // No signature verification Crypto, so processing fails at the Signature first
+        RequestData requestData = new RequestData();
+        requestData.setWssConfig(WSSConfig.getNewInstance());
+        try {
+            verify(signedDoc, requestData);
+            fail("Expected failure on a missing signature verification Crypto");
+        } catch (WSSecurityException ex) {
+            assertNotEquals(WSSecurityException.ErrorCode.MESSAGE_EXPIRED, ex.getErrorCode());
+        }
+
+        requestData = new RequestData();
+        requestData.setWssConfig(WSSConfig.getNewInstance());
+        requestData.setPreValidateSecurityHeader(true);
+        try {
+            verify(signedDoc, requestData);
+            fail("Expected failure on an expired timestamp");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
+        }
+    }
 
     /**
      * This is a test for processing an "old" Timestamp, i.e. one with a "Created" element that is
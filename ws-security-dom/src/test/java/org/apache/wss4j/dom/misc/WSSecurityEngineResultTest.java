@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.misc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that the typed accessors of WSSecurityEngineResult reflect the Map view, and that the Map
+ * view behaves like the HashMap it replaces.
+ */
+public class WSSecurityEngineResultTest {
+
+    @Test
+    public void testTypedAccessors() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.SIGN);
+        assertEquals(Integer.valueOf(WSConstants.SIGN), result.getAction());
+        assertNull(result.getId());
+
+        result.put(WSSecurityEngineResult.TAG_ID, "SIG-1");
+        assertEquals("SIG-1", result.getId());
+
+        result.replace(WSSecurityEngineResult.TAG_ACTION, WSConstants.ST_SIGNED);
+        assertEquals(Integer.valueOf(WSConstants.ST_SIGNED), result.getAction());
+
+        result.remove(WSSecurityEngineResult.TAG_ID);
+        assertNull(result.getId());
+
+        Map<String, Object> values = new HashMap<>();
+        values.put(WSSecurityEngineResult.TAG_ID, "SIG-2");
+        values.put(WSSecurityEngineResult.TAG_ACTION, WSConstants.ENCR);
+        result.putAll(values);
+        assertEquals("SIG-2", result.getId());
+        assertEquals(Integer.valueOf(WSConstants.ENCR), result.getAction());
+
+        result.clear();
+        assertNull(result.getAction());
+        assertNull(result.getId());
+    }
+
+    @Test
+    public void testTypedAccessorsViaViews() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.SIGN);
+        result.put(WSSecurityEngineResult.TAG_ID, "SIG-1");
+
+        for (Map.Entry<String, Object> entry : result.entrySet()) {
+            if (WSSecurityEngineResult.TAG_ACTION.equals(entry.getKey())) {
+                entry.setValue(WSConstants.ENCR);
+            }
+        }
+        assertEquals(Integer.valueOf(WSConstants.ENCR), result.getAction());
+
+        result.replaceAll((key, value) -> WSSecurityEngineResult.TAG_ID.equals(key) ? "EK-1" : value);
+        assertEquals("EK-1", result.getId());
+
+        result.keySet().remove(WSSecurityEngineResult.TAG_ID);
+        assertNull(result.getId());
+
+        result.values().remove(WSConstants.ENCR);
+        assertNull(result.getAction());
+    }
+
+    @Test
+    public void testMapCompatibility() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.SIGN);
+        Map<String, Object> expected = new HashMap<>();
+        expected.put(WSSecurityEngineResult.TAG_ACTION, WSConstants.SIGN);
+
+        // Null values, and keys that are not TAG_* constants
+        result.put(WSSecurityEngineResult.TAG_PRINCIPAL, null);
+        expected.put(WSSecurityEngineResult.TAG_PRINCIPAL, null);
+        result.put("custom", "value");
+        expected.put("custom", "value");
+        assertTrue(result.containsKey(WSSecurityEngineResult.TAG_PRINCIPAL));
+        assertFalse(result.containsKey(WSSecurityEngineResult.TAG_SECRET));
+        assertEquals("value", result.get("custom"));
+        assertEquals(3, result.size());
+        assertEquals(expected, result);
+        assertEquals(result, expected);
+        assertEquals(expected.hashCode(), result.hashCode());
+
+        WSSecurityEngineResult copy = result.clone();
+        copy.put(WSSecurityEngineResult.TAG_ID, "SIG-1");
+        copy.remove("custom");
+        assertEquals(expected, result);
+        assertNull(result.getId());
+        assertEquals("SIG-1", copy.getId());
+        assertEquals(3, copy.size());
+
+        Iterator<Map.Entry<String, Object>> iterator = result.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (!WSSecurityEngineResult.TAG_ACTION.equals(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+        assertEquals(1, result.size());
+        assertEquals(Integer.valueOf(WSConstants.SIGN), result.getAction());
+        assertFalse(result.containsKey(WSSecurityEngineResult.TAG_PRINCIPAL));
+        assertNull(result.get("custom"));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.ENCR);
+        result.put(WSSecurityEngineResult.TAG_ID, "EK-1");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(result);
+        }
+        WSSecurityEngineResult deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (WSSecurityEngineResult) in.readObject();
+        }
+
+        assertEquals(Integer.valueOf(WSConstants.ENCR), deserialized.getAction());
+        assertEquals("EK-1", deserialized.getId());
+        assertEquals(result, deserialized);
+    }
+
+}
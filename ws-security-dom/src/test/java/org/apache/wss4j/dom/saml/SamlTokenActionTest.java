@@ -19,18 +19,22 @@
 
 package org.apache.wss4j.dom.saml;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import javax.security.auth.callback.CallbackHandler;
 
+import org.apache.wss4j.common.cache.MemoryOutboundSamlAssertionCache;
+import org.apache.wss4j.common.cache.OutboundSamlAssertionCache;
 import org.apache.wss4j.common.util.SOAPUtil;
 import org.w3c.dom.Document;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.saml.bean.ConditionsBean;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.common.CustomHandler;
@@ -51,6 +55,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -295,6 +300,98 @@ public class SamlTokenActionTest {
         assertTrue(receivedSamlAssertion.isSigned());
     }
 
+    @Test
+    public void testReusedSignedSAML2AssertionAction() throws Exception {
+        OutboundSamlAssertionCache assertionCache = new MemoryOutboundSamlAssertionCache();
+
+        SAML2CallbackHandler samlCallbackHandler = new SAML2CallbackHandler();
+        samlCallbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+        samlCallbackHandler.setIssuer("www.example.com");
+        samlCallbackHandler.setSignAssertion(true);
+        samlCallbackHandler.setIssuerCrypto(crypto);
+        samlCallbackHandler.setIssuerName("wss40");
+        samlCallbackHandler.setIssuerPassword("security");
+
+        SamlAssertionWrapper firstAssertion = sendAndVerify(samlCallbackHandler, assertionCache);
+        SamlAssertionWrapper secondAssertion = sendAndVerify(samlCallbackHandler, assertionCache);
+        assertTrue(firstAssertion.isSigned());
+        assertTrue(secondAssertion.isSigned());
+        assertEquals(firstAssertion.getId(), secondAssertion.getId());
+
+        // A different Subject gets a new Assertion
+        samlCallbackHandler.setSubjectName("uid=bob,ou=people,ou=saml-demo,o=example.com");
+        SamlAssertionWrapper thirdAssertion = sendAndVerify(samlCallbackHandler, assertionCache);
+        assertNotEquals(firstAssertion.getId(), thirdAssertion.getId());
+        assertEquals("uid=bob,ou=people,ou=saml-demo,o=example.com", thirdAssertion.getSubjectName());
+
+        assertionCache.close();
+    }
+
+    @Test
+    public void testReplacementSignedSAML2AssertionIssuedBeforeExpiry() throws Exception {
+        // Issue replacements synchronously, so that they are cached before the next message is sent
+        OutboundSamlAssertionCache assertionCache = new MemoryOutboundSamlAssertionCache(
+            MemoryOutboundSamlAssertionCache.DEFAULT_MAX_ENTRIES, 0.25, Runnable::run);
+
+        // A short-lived Assertion is reused for 3 seconds and renewed after 2 seconds
+        ConditionsBean conditions = new ConditionsBean();
+        conditions.setTokenPeriodSeconds(4L);
+
+        SAML2CallbackHandler samlCallbackHandler = new SAML2CallbackHandler();
+        samlCallbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+        samlCallbackHandler.setIssuer("www.example.com");
+        samlCallbackHandler.setSignAssertion(true);
+        samlCallbackHandler.setIssuerCrypto(crypto);
+        samlCallbackHandler.setIssuerName("wss40");
+        samlCallbackHandler.setIssuerPassword("security");
+        samlCallbackHandler.setConditions(conditions);
+
+        SamlAssertionWrapper firstAssertion = sendAndVerify(samlCallbackHandler, assertionCache);
+        Thread.sleep(2200L);
+
+        // This message still gets the first Assertion, and triggers the issue of a replacement
+        SamlAssertionWrapper secondAssertion = sendAndVerify(samlCallbackHandler, assertionCache);
+        assertEquals(firstAssertion.getId(), secondAssertion.getId());
+
+        SamlAssertionWrapper thirdAssertion = sendAndVerify(samlCallbackHandler, assertionCache);
+        assertTrue(Instant.now().isBefore(firstAssertion.getNotOnOrAfter()));
+        assertNotEquals(firstAssertion.getId(), thirdAssertion.getId());
+        assertTrue(thirdAssertion.getNotOnOrAfter().isAfter(firstAssertion.getNotOnOrAfter()));
+
+        assertionCache.close();
+    }
+
+    private SamlAssertionWrapper sendAndVerify(
+        CallbackHandler samlCallbackHandler, OutboundSamlAssertionCache assertionCache
+    ) throws Exception {
+        final RequestData reqData = new RequestData();
+        reqData.setWssConfig(WSSConfig.getNewInstance());
+        reqData.setUsername("wss40");
+
+        java.util.Map<String, Object> config = new java.util.TreeMap<>();
+        config.put(WSHandlerConstants.SAML_CALLBACK_REF, samlCallbackHandler);
+        config.put(WSHandlerConstants.OUTBOUND_SAML_ASSERTION_CACHE_INSTANCE, assertionCache);
+        reqData.setMsgContext(config);
+
+        final Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        CustomHandler handler = new CustomHandler();
+        HandlerAction action = new HandlerAction(WSConstants.ST_UNSIGNED);
+        handler.send(
+            doc,
+            reqData,
+            Collections.singletonList(action),
+            true
+        );
+
+        WSHandlerResult results = verify(doc, new KeystoreCallbackHandler());
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.ST_SIGNED).get(0);
+        SamlAssertionWrapper receivedSamlAssertion =
+            (SamlAssertionWrapper) actionResult.get(WSSecurityEngineResult.TAG_SAML_ASSERTION);
+        assertNotNull(receivedSamlAssertion);
+        return receivedSamlAssertion;
+    }
+
     private WSHandlerResult verify(
         Document doc, CallbackHandler callbackHandler
     ) throws Exception {
@@ -33,10 +33,13 @@ import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.MemoryVerifiedSamlAssertionCache;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.SAMLCallback;
 import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.bean.KeyInfoBean.CERT_IDENTIFIER;
@@ -76,6 +79,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
 /**
  * Test-case for sending and processing a signed (holder-of-key) SAML Assertion. These tests
@@ -863,6 +867,75 @@ public class SignedSamlTokenHOKTest {
         assertEquals(principal, receivedPrincipal.getName());
     }
 
+    /**
+     * Test that the signature and trust verification of a signed SAML Assertion is cached
+     * across messages, and that a modified Assertion is not matched by the cache.
+     */
+    @Test
+    public void testVerifiedAssertionCache() throws Exception {
+        SAML2CallbackHandler callbackHandler = new SAML2CallbackHandler();
+        callbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+        callbackHandler.setConfirmationMethod(SAML2Constants.CONF_HOLDER_KEY);
+        callbackHandler.setIssuer("www.example.com");
+
+        SAMLCallback samlCallback = new SAMLCallback();
+        SAMLUtil.doSAMLCallback(callbackHandler, samlCallback);
+        SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+
+        samlAssertion.signAssertion("wss40_server", "security", issuerCrypto, false);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignatureSAML wsSign = new WSSecSignatureSAML(secHeader);
+        wsSign.setUserInfo("wss40", "security");
+        wsSign.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+
+        Document signedDoc =
+            wsSign.build(userCrypto, samlAssertion, null, null, null);
+        String outputString = XMLUtils.prettyDocumentToString(signedDoc);
+
+        try (VerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            // The first message is verified in full, the second one is verified from the cache
+            SamlAssertionWrapper receivedSamlAssertion =
+                verifyWithCache(SOAPUtil.toSOAPPart(outputString), cache);
+            assertFalse(receivedSamlAssertion.isVerifiedFromCache());
+            assertNotNull(receivedSamlAssertion.getSignatureKeyInfo());
+
+            receivedSamlAssertion = verifyWithCache(SOAPUtil.toSOAPPart(outputString), cache);
+            assertTrue(receivedSamlAssertion.isVerifiedFromCache());
+            assertNotNull(receivedSamlAssertion.getSignatureKeyInfo());
+
+            // A modified Assertion with the same SignatureValue must be verified in full, and fail
+            String modifiedString = outputString.replace("uid=joe", "uid=bob");
+            try {
+                verifyWithCache(SOAPUtil.toSOAPPart(modifiedString), cache);
+                fail("Failure expected on a modified SAML Assertion");
+            } catch (WSSecurityException ex) {
+                // expected
+            }
+        }
+    }
+
+    private SamlAssertionWrapper verifyWithCache(
+        Document doc, VerifiedSamlAssertionCache cache
+    ) throws Exception {
+        RequestData data = new RequestData();
+        data.setSigVerCrypto(trustCrypto);
+        data.setDecCrypto(userCrypto);
+        data.setCallbackHandler(callbackHandler);
+        data.setVerifiedSamlAssertionCache(cache);
+
+        Element securityHeader = WSSecurityUtil.getSecurityHeader(doc, null);
+        WSHandlerResult results =
+            secEngine.processSecurityHeader(securityHeader, data);
+
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.ST_SIGNED).get(0);
+        return (SamlAssertionWrapper) actionResult.get(WSSecurityEngineResult.TAG_SAML_ASSERTION);
+    }
+
     /**
      * Verifies the soap envelope
      *
@@ -25,6 +25,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.xml.namespace.QName;
 
@@ -36,6 +37,8 @@ import org.apache.neethi.PolicyContainingAssertion;
 import org.apache.neethi.PolicyOperator;
 import org.apache.neethi.builders.PrimitiveAssertion;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.jfr.JFRSupport;
+import org.apache.wss4j.common.jfr.PolicyEnforcementEvent;
 import org.apache.wss4j.policy.SPConstants;
 import org.apache.wss4j.common.WSSPolicyException;
 import org.apache.wss4j.policy.SPConstants.IncludeTokenType;
@@ -136,6 +139,7 @@ public class PolicyEnforcer implements SecurityEventListener {
     private final List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> failedAssertionStateMap;
 
     private final Deque<SecurityEvent> securityEventQueue = new LinkedList<>();
+    private final ReentrantLock lock = new ReentrantLock();
     private boolean operationSecurityEventOccured = false;
     private boolean initiator;
     private String actorOrRole;
@@ -725,62 +729,67 @@ public class PolicyEnforcer implements SecurityEventListener {
         }
     }
 
-    //multiple threads can call this method concurrently -> synchronize access
+    //multiple threads can call this method concurrently -> synchronize access. A lock is used rather
+    //than a monitor, so that virtual threads are not pinned while the policy is verified
     @Override
-    public synchronized void registerSecurityEvent(SecurityEvent securityEvent) throws WSSecurityException {
-
-        if (!noSecurityHeader && securityEvent instanceof NoSecuritySecurityEvent) {
-            noSecurityHeader = true;
-        }
-
-        if (operationSecurityEventOccured) {
-            try {
-                verifyPolicy(securityEvent);
-            } catch (WSSPolicyException | XMLSecurityException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+    public void registerSecurityEvent(SecurityEvent securityEvent) throws WSSecurityException {
+        lock.lock();
+        try {
+            if (!noSecurityHeader && securityEvent instanceof NoSecuritySecurityEvent) {
+                noSecurityHeader = true;
             }
-        }
 
-        if (WSSecurityEventConstants.OPERATION.equals(securityEvent.getSecurityEventType())) {
-            operationSecurityEventOccured = true;
-            final OperationSecurityEvent operationSecurityEvent = (OperationSecurityEvent) securityEvent;
-            if (!faultOccurred && (SOAP11_FAULT.equals(operationSecurityEvent.getOperation())
-                || SOAP12_FAULT.equals(operationSecurityEvent.getOperation()))) {
-                faultOccurred = true;
+            if (operationSecurityEventOccured) {
+                try {
+                    verifyPolicy(securityEvent);
+                } catch (WSSPolicyException | XMLSecurityException e) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+                }
             }
 
-            if (effectivePolicy == null) {
-                effectivePolicy = findPolicyBySOAPOperationName(operationPolicies,
-                                                                operationSecurityEvent.getOperation());
+            if (WSSecurityEventConstants.OPERATION.equals(securityEvent.getSecurityEventType())) {
+                operationSecurityEventOccured = true;
+                final OperationSecurityEvent operationSecurityEvent = (OperationSecurityEvent) securityEvent;
+                if (!faultOccurred && (SOAP11_FAULT.equals(operationSecurityEvent.getOperation())
+                    || SOAP12_FAULT.equals(operationSecurityEvent.getOperation()))) {
+                    faultOccurred = true;
+                }
+
                 if (effectivePolicy == null) {
-                    //no policy to the operation given
-                    effectivePolicy = new OperationPolicy(new QName(null, "NoPolicyFoundForOperation"));
-                    effectivePolicy.setPolicy(new Policy());
+                    effectivePolicy = findPolicyBySOAPOperationName(operationPolicies,
+                                                                    operationSecurityEvent.getOperation());
+                    if (effectivePolicy == null) {
+                        //no policy to the operation given
+                        effectivePolicy = new OperationPolicy(new QName(null, "NoPolicyFoundForOperation"));
+                        effectivePolicy.setPolicy(new Policy());
+                    }
+                    try {
+                        buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
+                    } catch (WSSPolicyException e) {
+                        throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+                    }
                 }
                 try {
-                    buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
-                } catch (WSSPolicyException e) {
+                    Iterator<SecurityEvent> securityEventIterator = securityEventQueue.descendingIterator();
+                    while (securityEventIterator.hasNext()) {
+                        SecurityEvent prevSecurityEvent = securityEventIterator.next();
+                        verifyPolicy(prevSecurityEvent);
+                    }
+
+                    verifyPolicy(securityEvent);
+
+                    verifyPolicyAfterOperationSecurityEvent();
+                } catch (WSSPolicyException | XMLSecurityException e) {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
                 }
-            }
-            try {
-                Iterator<SecurityEvent> securityEventIterator = securityEventQueue.descendingIterator();
-                while (securityEventIterator.hasNext()) {
-                    SecurityEvent prevSecurityEvent = securityEventIterator.next();
-                    verifyPolicy(prevSecurityEvent);
-                }
-
-                verifyPolicy(securityEvent);
+                securityEventQueue.clear();
 
-                verifyPolicyAfterOperationSecurityEvent();
-            } catch (WSSPolicyException | XMLSecurityException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+                return;
+            } else {
+                securityEventQueue.push(securityEvent);
             }
-            securityEventQueue.clear();
-
-            return;
-        } else {
-            securityEventQueue.push(securityEvent);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -790,7 +799,23 @@ public class PolicyEnforcer implements SecurityEventListener {
      * @throws PolicyViolationException if no alternative could be satisfied
      */
     public void doFinal() throws WSSPolicyException {
-        verifyPolicy();
+        PolicyEnforcementEvent event = JFRSupport.isAvailable() ? new PolicyEnforcementEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        boolean success = false;
+        try {
+            verifyPolicy();
+            success = true;
+        } finally {
+            if (event != null && event.shouldCommit()) {
+                if (effectivePolicy != null && effectivePolicy.getOperationName() != null) {
+                    event.operation = effectivePolicy.getOperationName().toString();
+                }
+                event.success = success;
+                event.commit();
+            }
+        }
     }
 
 }
@@ -35,9 +35,12 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.MemoryVerifiedSamlAssertionCache;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.common.saml.bean.Version;
 import org.apache.wss4j.common.saml.builder.SAML2Constants;
 import org.apache.wss4j.policy.stax.enforcer.PolicyEnforcer;
@@ -45,14 +48,21 @@ import org.apache.wss4j.policy.stax.enforcer.PolicyInputProcessor;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSConstants.UsernameTokenPasswordType;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityEvent.SamlTokenSecurityEvent;
+import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.test.CallbackHandlerImpl;
 import org.apache.wss4j.stax.test.saml.SAMLCallbackHandlerImpl;
+import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.ext.SecurePart;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -2312,6 +2322,174 @@ public class AsymmetricBindingIntegrationTest extends AbstractPolicyTestBase {
         ));
     }
 
+    @Test
+    public void testTokenScenarioVerifiedSamlAssertionCache() throws Exception {
+
+        String policyString =
+                "<wsp:ExactlyOne xmlns:wsp=\"http://schemas.xmlsoap.org/ws/2004/09/policy\" " +
+                        "xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\">\n" +
+                        "            <wsp:All>\n" +
+                        "                <sp:AsymmetricBinding>\n" +
+                        "                    <wsp:Policy>\n" +
+                        "                        <sp:InitiatorToken>\n" +
+                        "                            <wsp:Policy>\n" +
+                        "                               <sp:SamlToken sp:IncludeToken=\" http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702/IncludeToken/Always\">\n" +
+                        "                                  <sp:IssuerName>www.example.com</sp:IssuerName>\n" +
+                        "                                    <wsp:Policy xmlns:wsp=\"http://schemas.xmlsoap.org/ws/2004/09/policy\">\n" +
+                        "                                        <sp:WssSamlV20Token11/>\n" +
+                        "                                    </wsp:Policy>\n" +
+                        "                                </sp:SamlToken>\n" +
+                        "                            </wsp:Policy>\n" +
+                        "                        </sp:InitiatorToken>\n" +
+                        "                        <sp:RecipientToken>\n" +
+                        "                            <wsp:Policy>\n" +
+                        "                              <sp:X509Token sp:IncludeToken=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702/IncludeToken/AlwaysToRecipient\">\n" +
+                        "                                  <sp:IssuerName>CN=receiver,OU=swssf,C=CH</sp:IssuerName>\n" +
+                        "                                  <wsp:Policy>\n" +
+                        "                                      <sp:RequireDerivedKeys/>\n" +
+                        "                                      <sp:WssX509V3Token11/>\n" +
+                        "                                  </wsp:Policy>\n" +
+                        "                              </sp:X509Token>\n" +
+                        "                            </wsp:Policy>\n" +
+                        "                         </sp:RecipientToken>\n" +
+                        "                        <sp:AlgorithmSuite>\n" +
+                        "                            <wsp:Policy>\n" +
+                        "                                <sp:Basic256/>\n" +
+                        "                            </wsp:Policy>\n" +
+                        "                        </sp:AlgorithmSuite>\n" +
+                        "                        <sp:IncludeTimestamp/>\n" +
+                        "                    </wsp:Policy>\n" +
+                        "                </sp:AsymmetricBinding>\n" +
+                        "                <sp:SignedSupportingTokens>\n" +
+                        "                   <wsp:Policy>\n" +
+                        "                     <sp:UsernameToken sp:IncludeToken=\" http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702/IncludeToken/AlwaysToRecipient\">\n" +
+                        "                       <wsp:Policy>\n" +
+                        "                       </wsp:Policy>\n" +
+                        "                     </sp:UsernameToken>\n" +
+                        "                   </wsp:Policy>\n" +
+                        "                </sp:SignedSupportingTokens>\n" +
+                        "                <sp:SignedParts>\n" +
+                        "                    <sp:Body/>\n" +
+                        "                    <sp:Header Name=\"Header1\" Namespace=\"...\"/>\n" +
+                        "                    <sp:Header Namespace=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd\"/>\n" +
+                        "                </sp:SignedParts>\n" +
+                        "                <sp:SignedElements>\n" +
+                        "                    <sp:XPath xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\" " +
+                        "                       xmlns:wsse=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd\" " +
+                        "                       xmlns:wsu=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd\">" +
+                        "                       /soap:Envelope/soap:Header/wsse:Security/wsu:Timestamp/wsu:Created" +
+                        "                    </sp:XPath>\n" +
+                        "                </sp:SignedElements>\n" +
+                        "                <sp:EncryptedParts>\n" +
+                        "                    <sp:Body/>\n" +
+                        "                    <sp:Header Name=\"Header2\" Namespace=\"...\"/>\n" +
+                        "                    <sp:Header Namespace=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd\"/>\n" +
+                        "                </sp:EncryptedParts>\n" +
+                        "                <sp:EncryptedElements>\n" +
+                        "                    <sp:XPath xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\" " +
+                        "                       xmlns:wsse=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd\" " +
+                        "                       xmlns:wsu=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd\">" +
+                        "                       /soap:Envelope/soap:Header/wsse:Security/wsu:Timestamp/wsu:Created" +
+                        "                    </sp:XPath>\n" +
+                        "                </sp:EncryptedElements>\n" +
+                        "                <sp:ContentEncryptedElements>\n" +
+                        "                    <sp:XPath xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\" " +
+                        "                       xmlns:wsse=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd\" " +
+                        "                       xmlns:wsu=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd\">" +
+                        "                       /soap:Envelope/soap:Header/wsse:Security/wsu:Timestamp/wsu:Expires" +
+                        "                    </sp:XPath>\n" +
+                        "                </sp:ContentEncryptedElements>\n" +
+                        "            </wsp:All>\n" +
+                        "        </wsp:ExactlyOne>";
+
+        WSSSecurityProperties outSecurityProperties = new WSSSecurityProperties();
+        List<WSSConstants.Action> actions = new ArrayList<>();
+        actions.add(WSSConstants.TIMESTAMP);
+        actions.add(WSSConstants.USERNAMETOKEN);
+        actions.add(WSSConstants.SAML_TOKEN_SIGNED);
+        actions.add(WSSConstants.ENCRYPTION_WITH_DERIVED_KEY);
+        outSecurityProperties.setActions(actions);
+        SAMLCallbackHandlerImpl samlCallbackHandler = new SAMLCallbackHandlerImpl();
+        samlCallbackHandler.setSamlVersion(Version.SAML_20);
+        samlCallbackHandler.setStatement(SAMLCallbackHandlerImpl.Statement.AUTHN);
+        samlCallbackHandler.setConfirmationMethod(SAML2Constants.CONF_HOLDER_KEY);
+        samlCallbackHandler.setIssuer("www.example.com");
+        byte[] secret = WSSConstants.generateBytes(128 / 8);
+        CallbackHandlerImpl callbackHandler = new CallbackHandlerImpl();
+        callbackHandler.setSecret(secret);
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        keyStore.load(this.getClass().getClassLoader().getResourceAsStream("transmitter.jks"), "default".toCharArray());
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(keyStore);
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("transmitter");
+        samlCallbackHandler.setCerts(crypto.getX509Certificates(cryptoType));
+        outSecurityProperties.setCallbackHandler(callbackHandler);
+        outSecurityProperties.setSamlCallbackHandler(samlCallbackHandler);
+        outSecurityProperties.setTokenUser("tester");
+        outSecurityProperties.setSignatureKeyIdentifier(WSSecurityTokenConstants.KEYIDENTIFIER_EMBEDDED_KEY_IDENTIFIER_REF);
+        outSecurityProperties.loadSignatureKeyStore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+        outSecurityProperties.setSignatureUser("transmitter");
+        outSecurityProperties.addSignaturePart(new SecurePart(WSSConstants.TAG_SOAP11_BODY, SecurePart.Modifier.Element));
+        outSecurityProperties.addSignaturePart(new SecurePart(WSSConstants.TAG_WSSE_USERNAME_TOKEN, SecurePart.Modifier.Element));
+        outSecurityProperties.addSignaturePart(new SecurePart(WSSConstants.TAG_WSU_TIMESTAMP, SecurePart.Modifier.Element));
+        outSecurityProperties.loadEncryptionKeystore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+        outSecurityProperties.setEncryptionUser("receiver");
+        outSecurityProperties.addEncryptionPart(new SecurePart(WSSConstants.TAG_SOAP11_BODY, SecurePart.Modifier.Content));
+        outSecurityProperties.addEncryptionPart(new SecurePart(WSSConstants.TAG_WSU_CREATED, SecurePart.Modifier.Element));
+        outSecurityProperties.addEncryptionPart(new SecurePart(WSSConstants.TAG_WSU_EXPIRES, SecurePart.Modifier.Content));
+        outSecurityProperties.setUsernameTokenPasswordType(UsernameTokenPasswordType.PASSWORD_TEXT);
+
+        InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+        ByteArrayOutputStream baos = doOutboundSecurity(outSecurityProperties, sourceDocument);
+
+        // send the same signed Assertion twice, the second time its signature is verified from the cache
+        try (VerifiedSamlAssertionCache verifiedSamlAssertionCache = new MemoryVerifiedSamlAssertionCache()) {
+            List<SecurityEventConstants.Event> firstEvents = null;
+            for (int i = 0; i < 2; i++) {
+                WSSSecurityProperties inSecurityProperties = new WSSSecurityProperties();
+                inSecurityProperties.setCallbackHandler(new CallbackHandlerImpl());
+                inSecurityProperties.loadSignatureVerificationKeystore(
+                    this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+                inSecurityProperties.loadDecryptionKeystore(
+                    this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+                inSecurityProperties.setVerifiedSamlAssertionCache(verifiedSamlAssertionCache);
+
+                final PolicyEnforcer policyEnforcer = buildAndStartPolicyEngine(policyString);
+                inSecurityProperties.addInputProcessor(new PolicyInputProcessor(policyEnforcer, inSecurityProperties));
+                final List<SecurityEvent> securityEvents = new ArrayList<>();
+                SecurityEventListener securityEventListener = new SecurityEventListener() {
+                    @Override
+                    public void registerSecurityEvent(SecurityEvent securityEvent) throws XMLSecurityException {
+                        securityEvents.add(securityEvent);
+                        policyEnforcer.registerSecurityEvent(securityEvent);
+                    }
+                };
+                Document document =
+                    doInboundSecurity(inSecurityProperties, new ByteArrayInputStream(baos.toByteArray()), securityEventListener);
+                assertNotNull(document);
+
+                List<SecurityEventConstants.Event> events = new ArrayList<>();
+                SamlAssertionWrapper samlAssertionWrapper = null;
+                for (SecurityEvent securityEvent : securityEvents) {
+                    events.add(securityEvent.getSecurityEventType());
+                    if (securityEvent instanceof SamlTokenSecurityEvent) {
+                        samlAssertionWrapper = ((SamlTokenSecurityEvent) securityEvent).getSamlAssertionWrapper();
+                    }
+                }
+                assertNotNull(samlAssertionWrapper);
+                assertEquals(i == 1, samlAssertionWrapper.isVerifiedFromCache());
+                assertTrue(events.contains(WSSecurityEventConstants.X509Token));
+
+                if (firstEvents == null) {
+                    firstEvents = events;
+                } else {
+                    assertEquals(firstEvents, events);
+                }
+            }
+        }
+    }
+
     @Test
     public void testTokenScenarioLateEncryption() throws Exception {
 
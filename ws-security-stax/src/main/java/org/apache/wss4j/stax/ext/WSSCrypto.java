@@ -22,6 +22,7 @@ import java.lang.reflect.Constructor;
 import java.security.KeyStore;
 import java.security.cert.CertStore;
 import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
@@ -38,20 +39,36 @@ class WSSCrypto {
     protected static final transient org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(WSSCrypto.class);
 
-    private Class<? extends Merlin> cryptoClass = Merlin.class;
-    private Properties cryptoProperties;
-    private Crypto cachedCrypto;
-    private KeyStore cachedKeyStore;
-    private KeyStore keyStore;
-    private CertStore crlCertStore;
-    private PasswordEncryptor passwordEncryptor;
+    private final ReentrantLock cryptoLock = new ReentrantLock();
+    private volatile Class<? extends Merlin> cryptoClass = Merlin.class;
+    private volatile Properties cryptoProperties;
+    private volatile Crypto cachedCrypto;
+    private volatile KeyStore cachedKeyStore;
+    private volatile KeyStore keyStore;
+    private volatile CertStore crlCertStore;
+    private volatile PasswordEncryptor passwordEncryptor;
 
     public Crypto getCrypto() throws WSSConfigurationException {
+        Crypto crypto = cachedCrypto;
+        if (crypto != null && keyStore == cachedKeyStore) {
+            return crypto;
+        }
 
-        if (keyStore == cachedKeyStore && cachedCrypto != null) {
-            return cachedCrypto;
+        // Make sure that concurrent callers only load the Crypto (and its keystore) once. Loading
+        // may involve I/O, so use a lock rather than a monitor to avoid pinning
+        cryptoLock.lock();
+        try {
+            crypto = cachedCrypto;
+            if (crypto != null && keyStore == cachedKeyStore) {
+                return crypto;
+            }
+            return loadCrypto();
+        } finally {
+            cryptoLock.unlock();
         }
+    }
 
+    private Crypto loadCrypto() throws WSSConfigurationException {
         Merlin crypto = null;
         if (cryptoProperties != null) {
             try {
@@ -77,16 +94,22 @@ class WSSCrypto {
             }
         }
 
-        cachedCrypto = crypto;
+        // Publish the KeyStore before the Crypto, as the unlocked check above reads them the other way round
         cachedKeyStore = crypto.getKeyStore();
+        cachedCrypto = crypto;
         return crypto;
     }
 
     public void setCrypto(Crypto crypto) {
-        cachedCrypto = crypto;
-        if (crypto instanceof Merlin) {
-            keyStore = ((Merlin)crypto).getKeyStore();
-            cachedKeyStore = keyStore;
+        cryptoLock.lock();
+        try {
+            if (crypto instanceof Merlin) {
+                keyStore = ((Merlin)crypto).getKeyStore();
+                cachedKeyStore = keyStore;
+            }
+            cachedCrypto = crypto;
+        } finally {
+            cryptoLock.unlock();
         }
     }
 
@@ -38,11 +38,18 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSamlAssertionCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextTokenStore;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosClientSubjectCache;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.validate.Validator;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
@@ -108,6 +115,7 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private final Map<Class<?>, Object> instances = new HashMap<>();
     private boolean validateSamlSubjectConfirmation = true;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
@@ -164,6 +172,7 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.timestampReplayCache = wssSecurityProperties.timestampReplayCache;
         this.nonceReplayCache = wssSecurityProperties.nonceReplayCache;
         this.samlOneTimeUseReplayCache = wssSecurityProperties.samlOneTimeUseReplayCache;
+        this.instances.putAll(wssSecurityProperties.instances);
         this.allowRSA15KeyTransportAlgorithm = wssSecurityProperties.allowRSA15KeyTransportAlgorithm;
         this.derivedKeyIterations = wssSecurityProperties.derivedKeyIterations;
         this.useDerivedKeyForMAC = wssSecurityProperties.useDerivedKeyForMAC;
@@ -764,6 +773,131 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the instance of the given type that is shared between requests, e.g. a cache. The
+     * typed setters, such as setEncryptedKeyCache, are shorthands for this method.
+     * @param type the type of the instance
+     * @param instance the instance, or null to remove the instance of the given type
+     */
+    public <T> void setInstance(Class<T> type, T instance) {
+        if (instance == null) {
+            instances.remove(type);
+        } else {
+            instances.put(type, instance);
+        }
+    }
+
+    /**
+     * Get the instance of the given type that is shared between requests, e.g. a cache
+     * @param type the type of the instance
+     * @return the instance of the given type, or null if none has been set
+     */
+    public <T> T getInstance(Class<T> type) {
+        return type.cast(instances.get(type));
+    }
+
+    /**
+     * Set the cache for unwrapped EncryptedKey session keys
+     */
+    public void setEncryptedKeyCache(EncryptedKeyCache newCache) {
+        setInstance(EncryptedKeyCache.class, newCache);
+    }
+
+    /**
+     * Get the cache for unwrapped EncryptedKey session keys. This is null (disabled) by default.
+     */
+    public EncryptedKeyCache getEncryptedKeyCache() {
+        return getInstance(EncryptedKeyCache.class);
+    }
+
+    /**
+     * Set the store for SecurityContextToken secrets
+     */
+    public void setSecurityContextTokenStore(SecurityContextTokenStore newStore) {
+        setInstance(SecurityContextTokenStore.class, newStore);
+    }
+
+    /**
+     * Get the store for SecurityContextToken secrets. This is null (disabled) by default.
+     */
+    public SecurityContextTokenStore getSecurityContextTokenStore() {
+        return getInstance(SecurityContextTokenStore.class);
+    }
+
+    /**
+     * Set the cache for keys derived from DerivedKeyTokens
+     */
+    public void setDerivedKeyCache(DerivedKeyCache newCache) {
+        setInstance(DerivedKeyCache.class, newCache);
+    }
+
+    /**
+     * Get the cache for keys derived from DerivedKeyTokens. This is null (disabled) by default.
+     */
+    public DerivedKeyCache getDerivedKeyCache() {
+        return getInstance(DerivedKeyCache.class);
+    }
+
+    /**
+     * Set the cache of signed SAML Assertions that have already been verified
+     */
+    public void setVerifiedSamlAssertionCache(VerifiedSamlAssertionCache newCache) {
+        setInstance(VerifiedSamlAssertionCache.class, newCache);
+    }
+
+    /**
+     * Get the cache of signed SAML Assertions that have already been verified. This is null
+     * (disabled) by default.
+     */
+    public VerifiedSamlAssertionCache getVerifiedSamlAssertionCache() {
+        return getInstance(VerifiedSamlAssertionCache.class);
+    }
+
+    /**
+     * Set the cache used to reuse signed SAML Assertions on the outbound side
+     */
+    public void setOutboundSamlAssertionCache(OutboundSamlAssertionCache newCache) {
+        setInstance(OutboundSamlAssertionCache.class, newCache);
+    }
+
+    /**
+     * Get the cache used to reuse signed SAML Assertions on the outbound side. This is null
+     * (disabled) by default.
+     */
+    public OutboundSamlAssertionCache getOutboundSamlAssertionCache() {
+        return getInstance(OutboundSamlAssertionCache.class);
+    }
+
+    /**
+     * Set the SecurityMetrics instance to report processing times to
+     */
+    public void setSecurityMetrics(SecurityMetrics securityMetrics) {
+        setInstance(SecurityMetrics.class, securityMetrics);
+    }
+
+    /**
+     * Get the SecurityMetrics instance to report processing times to. This is null (disabled)
+     * by default.
+     */
+    public SecurityMetrics getSecurityMetrics() {
+        return getInstance(SecurityMetrics.class);
+    }
+
+    /**
+     * Set the cache of logged-in Kerberos client Subjects
+     */
+    public void setKerberosClientSubjectCache(KerberosClientSubjectCache kerberosClientSubjectCache) {
+        setInstance(KerberosClientSubjectCache.class, kerberosClientSubjectCache);
+    }
+
+    /**
+     * Get the cache of logged-in Kerberos client Subjects. This is null (disabled) by default, i.e.
+     * a JAAS login is performed for every outbound Kerberos token.
+     */
+    public KerberosClientSubjectCache getKerberosClientSubjectCache() {
+        return getInstance(KerberosClientSubjectCache.class);
+    }
+
     public boolean isDisableBSPEnforcement() {
         return disableBSPEnforcement;
     }
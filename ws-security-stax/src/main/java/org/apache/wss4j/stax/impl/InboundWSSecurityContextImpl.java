@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.xml.namespace.QName;
 
@@ -57,6 +58,7 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
             org.slf4j.LoggerFactory.getLogger(InboundWSSecurityContextImpl.class);
 
     private final Deque<SecurityEvent> securityEventQueue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
     private boolean operationSecurityEventOccured = false;
     private boolean messageEncryptionTokenOccured = false;
     private boolean allowRSA15KeyTransportAlgorithm = false;
@@ -66,55 +68,60 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     private List<BSPRule> ignoredBSPRules = Collections.emptyList();
 
     @Override
-    public synchronized void registerSecurityEvent(SecurityEvent securityEvent) throws XMLSecurityException {
-
-        if (WSSecurityEventConstants.AlgorithmSuite.equals(securityEvent.getSecurityEventType())) {
-            //do not cache AlgorithmSuite securityEvents and forward them directly to allow
-            //the user to check them before they are used internally.
-            forwardSecurityEvent(securityEvent);
-            return;
-        }
-
-        if (operationSecurityEventOccured) {
-            if (!this.messageEncryptionTokenOccured
-                    && securityEvent instanceof TokenSecurityEvent) {
-                @SuppressWarnings("unchecked")
-                TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent =
-                        (TokenSecurityEvent<? extends InboundSecurityToken>) securityEvent;
-
-                if (tokenSecurityEvent.getSecurityToken().getTokenUsages().contains(WSSecurityTokenConstants.TokenUsage_Encryption)) {
-                    InboundSecurityToken securityToken = WSSUtils.getRootToken(tokenSecurityEvent.getSecurityToken());
+    public void registerSecurityEvent(SecurityEvent securityEvent) throws XMLSecurityException {
+        // a lock rather than a monitor, so that virtual threads are not pinned while forwarding events
+        lock.lock();
+        try {
+            if (WSSecurityEventConstants.AlgorithmSuite.equals(securityEvent.getSecurityEventType())) {
+                //do not cache AlgorithmSuite securityEvents and forward them directly to allow
+                //the user to check them before they are used internally.
+                forwardSecurityEvent(securityEvent);
+                return;
+            }
 
-                    TokenSecurityEvent<? extends InboundSecurityToken> newTokenSecurityEvent =
-                            WSSUtils.createTokenSecurityEvent(securityToken, tokenSecurityEvent.getCorrelationID());
-                    setTokenUsage(newTokenSecurityEvent, WSSecurityTokenConstants.TOKENUSAGE_MAIN_ENCRYPTION);
-                    securityEvent = newTokenSecurityEvent;
-                    this.messageEncryptionTokenOccured = true;
+            if (operationSecurityEventOccured) {
+                if (!this.messageEncryptionTokenOccured
+                        && securityEvent instanceof TokenSecurityEvent) {
+                    @SuppressWarnings("unchecked")
+                    TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent =
+                            (TokenSecurityEvent<? extends InboundSecurityToken>) securityEvent;
+
+                    if (tokenSecurityEvent.getSecurityToken().getTokenUsages().contains(WSSecurityTokenConstants.TokenUsage_Encryption)) {
+                        InboundSecurityToken securityToken = WSSUtils.getRootToken(tokenSecurityEvent.getSecurityToken());
+
+                        TokenSecurityEvent<? extends InboundSecurityToken> newTokenSecurityEvent =
+                                WSSUtils.createTokenSecurityEvent(securityToken, tokenSecurityEvent.getCorrelationID());
+                        setTokenUsage(newTokenSecurityEvent, WSSecurityTokenConstants.TOKENUSAGE_MAIN_ENCRYPTION);
+                        securityEvent = newTokenSecurityEvent;
+                        this.messageEncryptionTokenOccured = true;
+                    }
                 }
+
+                forwardSecurityEvent(securityEvent);
+                return;
             }
 
-            forwardSecurityEvent(securityEvent);
-            return;
-        }
+            if (WSSecurityEventConstants.OPERATION.equals(securityEvent.getSecurityEventType())) {
+                operationSecurityEventOccured = true;
 
-        if (WSSecurityEventConstants.OPERATION.equals(securityEvent.getSecurityEventType())) {
-            operationSecurityEventOccured = true;
+                identifySecurityTokenDependenciesAndUsage(securityEventQueue);
 
-            identifySecurityTokenDependenciesAndUsage(securityEventQueue);
+                Iterator<SecurityEvent> securityEventIterator = securityEventQueue.descendingIterator();
+                while (securityEventIterator.hasNext()) {
+                    SecurityEvent prevSecurityEvent = securityEventIterator.next();
+                    forwardSecurityEvent(prevSecurityEvent);
+                }
+                //forward operation security event
+                forwardSecurityEvent(securityEvent);
 
-            Iterator<SecurityEvent> securityEventIterator = securityEventQueue.descendingIterator();
-            while (securityEventIterator.hasNext()) {
-                SecurityEvent prevSecurityEvent = securityEventIterator.next();
-                forwardSecurityEvent(prevSecurityEvent);
+                securityEventQueue.clear();
+                return;
             }
-            //forward operation security event
-            forwardSecurityEvent(securityEvent);
 
-            securityEventQueue.clear();
-            return;
+            securityEventQueue.push(securityEvent);
+        } finally {
+            lock.unlock();
         }
-
-        securityEventQueue.push(securityEvent);
     }
 
     @Override
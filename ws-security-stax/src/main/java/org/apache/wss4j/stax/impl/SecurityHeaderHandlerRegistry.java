@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.xml.security.stax.config.SecurityHeaderHandlerMapper;
+import org.apache.xml.security.stax.ext.XMLSecurityHeaderHandler;
+
+/**
+ * Resolves the XMLSecurityHeaderHandler for a child element of the security header. The handler
+ * class that is configured for an element is only looked up once. The handlers of WSS4J and of
+ * Santuario are stateless, so a single instance of each is shared by all messages. Any other
+ * (custom) handler is instantiated for each element, as before, as it may hold state.
+ */
+public final class SecurityHeaderHandlerRegistry {
+
+    private static final SecurityHeaderHandlerRegistry DEFAULT = new SecurityHeaderHandlerRegistry();
+
+    private static final HandlerEntry NO_HANDLER = new HandlerEntry(null, null);
+
+    private final Map<QName, HandlerEntry> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * @return a registry that is shared by all users that have not got their own
+     */
+    public static SecurityHeaderHandlerRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Get the handler for the given element name
+     * @param elementName the name of the child element of the security header
+     * @return the handler, or null if no handler is configured for the element
+     * @throws WSSecurityException if the handler cannot be instantiated
+     */
+    public XMLSecurityHeaderHandler getHandler(QName elementName) throws WSSecurityException {
+        HandlerEntry entry = handlers.get(elementName);
+        if (entry == null) {
+            entry = createEntry(elementName);
+            HandlerEntry existing = handlers.putIfAbsent(elementName, entry);
+            if (existing != null) {
+                entry = existing;
+            }
+        }
+        if (entry.sharedHandler != null || entry.handlerClass == null) {
+            return entry.sharedHandler;
+        }
+        return newInstance(entry.handlerClass);
+    }
+
+    private static HandlerEntry createEntry(QName elementName) throws WSSecurityException {
+        Class<?> clazz = SecurityHeaderHandlerMapper.getSecurityHeaderHandler(elementName);
+        if (clazz == null) {
+            return NO_HANDLER;
+        }
+        String className = clazz.getName();
+        if (className.startsWith("org.apache.wss4j.") || className.startsWith("org.apache.xml.security.")) {
+            return new HandlerEntry(clazz, newInstance(clazz));
+        }
+        return new HandlerEntry(clazz, null);
+    }
+
+    private static XMLSecurityHeaderHandler newInstance(Class<?> clazz) throws WSSecurityException {
+        try {
+            return (XMLSecurityHeaderHandler)clazz.getDeclaredConstructor().newInstance();
+        } catch (NoSuchMethodException | InvocationTargetException | InstantiationException
+            | IllegalAccessException | ClassCastException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+        }
+    }
+
+    private static final class HandlerEntry {
+        private final Class<?> handlerClass;
+        private final XMLSecurityHeaderHandler sharedHandler;
+
+        HandlerEntry(Class<?> handlerClass, XMLSecurityHeaderHandler sharedHandler) {
+            this.handlerClass = handlerClass;
+            this.sharedHandler = sharedHandler;
+        }
+    }
+
+}
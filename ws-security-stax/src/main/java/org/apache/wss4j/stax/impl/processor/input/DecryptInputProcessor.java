@@ -24,11 +24,13 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.security.Key;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import jakarta.xml.bind.JAXBElement;
@@ -37,6 +39,7 @@ import javax.xml.stream.XMLStreamException;
 
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
@@ -49,6 +52,7 @@ import org.apache.wss4j.stax.securityEvent.EncryptedPartSecurityEvent;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.utils.LimitingInputStream;
 import org.apache.wss4j.stax.utils.WSSUtils;
+import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.binding.xmldsig.KeyInfoType;
 import org.apache.xml.security.binding.xmldsig.TransformType;
 import org.apache.xml.security.binding.xmldsig.TransformsType;
@@ -68,6 +72,7 @@ import org.apache.xml.security.stax.ext.XMLSecurityProperties;
 import org.apache.xml.security.stax.ext.XMLSecurityUtils;
 import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
 import org.apache.xml.security.stax.impl.processor.input.AbstractDecryptInputProcessor;
+import org.apache.xml.security.stax.impl.securityToken.AbstractSecurityToken;
 import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.EncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.TokenSecurityEvent;
@@ -86,6 +91,7 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
             Long.valueOf(ConfigurationProperties.getProperty("MaximumAllowedDecompressedBytes"));
 
     private List<DeferredAttachment> attachmentReferences = new ArrayList<>();
+    private Map<AbstractSecurityToken, String> uncachedEncryptedKeys;
 
     public DecryptInputProcessor(KeyInfoType keyInfoType, ReferenceList referenceList,
                                  WSSSecurityProperties securityProperties, WSInboundSecurityContext securityContext)
@@ -286,6 +292,43 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
         TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent =
             WSSUtils.createTokenSecurityEvent(inboundSecurityToken, encryptedDataType.getId());
         inboundSecurityContext.registerSecurityEvent(tokenSecurityEvent);
+
+        lookupEncryptedKeyCache(inboundSecurityToken, encryptedDataType);
+    }
+
+    /**
+     * If an EncryptedKeyCache is configured, seed the EncryptedKey token with a previously unwrapped
+     * session key, so that the token does not have to perform the private key operation again. Tokens
+     * that are not in the cache are remembered, and their session key is cached in doFinal once the
+     * referenced EncryptedData has been successfully decrypted.
+     */
+    private void lookupEncryptedKeyCache(InboundSecurityToken inboundSecurityToken,
+                                         EncryptedDataType encryptedDataType) throws XMLSecurityException {
+        EncryptedKeyCache encryptedKeyCache = ((WSSSecurityProperties) getSecurityProperties()).getEncryptedKeyCache();
+        if (encryptedKeyCache == null
+            || !(inboundSecurityToken instanceof AbstractSecurityToken)
+            || !WSSecurityTokenConstants.EncryptedKeyToken.equals(inboundSecurityToken.getTokenType())
+            || inboundSecurityToken.getSha1Identifier() == null
+            || encryptedDataType.getEncryptionMethod() == null) {
+            return;
+        }
+
+        AbstractSecurityToken securityToken = (AbstractSecurityToken) inboundSecurityToken;
+        String algorithmURI = encryptedDataType.getEncryptionMethod().getAlgorithm();
+        if (securityToken.getSecretKey().containsKey(algorithmURI)) {
+            return;
+        }
+
+        byte[] secretKey = encryptedKeyCache.get(securityToken.getSha1Identifier());
+        if (secretKey != null) {
+            String keyAlgorithm = JCEMapper.getJCEKeyAlgorithmFromURI(algorithmURI);
+            securityToken.setSecretKey(algorithmURI, new SecretKeySpec(secretKey, keyAlgorithm));
+        } else {
+            if (uncachedEncryptedKeys == null) {
+                uncachedEncryptedKeys = new HashMap<>();
+            }
+            uncachedEncryptedKeys.put(securityToken, algorithmURI);
+        }
     }
 
     @Override
@@ -314,6 +357,17 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
         }
         super.doFinal(inputProcessorChain);
 
+        if (uncachedEncryptedKeys != null) {
+            EncryptedKeyCache encryptedKeyCache =
+                ((WSSSecurityProperties) getSecurityProperties()).getEncryptedKeyCache();
+            for (Map.Entry<AbstractSecurityToken, String> entry : uncachedEncryptedKeys.entrySet()) {
+                Key secretKey = entry.getKey().getSecretKey().get(entry.getValue());
+                if (secretKey != null) {
+                    encryptedKeyCache.add(entry.getKey().getSha1Identifier(), secretKey.getEncoded());
+                }
+            }
+        }
+
         //now process the (deferred-) attachments:
         for (int i = 0; i < attachmentReferences.size(); i++) {
             DeferredAttachment deferredAttachment = attachmentReferences.get(i);
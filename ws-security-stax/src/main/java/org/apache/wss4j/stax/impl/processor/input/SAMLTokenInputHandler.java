@@ -42,8 +42,10 @@ import javax.xml.stream.events.ProcessingInstruction;
 
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -116,6 +118,15 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
             samlTokenValidator = new SamlTokenValidatorImpl();
         }
 
+        // See if an identical Assertion has been verified before
+        final VerifiedSamlAssertionCache verifiedAssertionCache = wssSecurityProperties.getVerifiedSamlAssertionCache();
+        String verifiedAssertionId = null;
+        boolean verified = false;
+        if (verifiedAssertionCache != null) {
+            verifiedAssertionId = SAMLUtil.getVerifiedAssertionIdentifier(samlAssertionWrapper);
+            verified = verifiedAssertionId != null && verifiedAssertionCache.contains(verifiedAssertionId);
+        }
+
         //important: check the signature before we do other processing...
         if (samlAssertionWrapper.isSigned()) {
             Signature signature = samlAssertionWrapper.getSignature();
@@ -136,22 +147,27 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
 
             samlTokenValidator.validate(sigSecurityToken, wssSecurityProperties);
 
-            BasicCredential credential = null;
-            if (sigSecurityToken.getX509Certificates() != null) {
-                credential = new BasicX509Credential(sigSecurityToken.getX509Certificates()[0]);
-            } else if (sigSecurityToken.getPublicKey() != null) {
-                credential = new BasicCredential(sigSecurityToken.getPublicKey());
+            if (verified) {
+                // only the cryptographic check of the signature is skipped for a cached Assertion
+                samlAssertionWrapper.setVerifiedFromCache(null);
             } else {
-                throw new WSSecurityException(
-                        WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity",
-                        new Object[] {"cannot get certificate or key"}
-                );
-            }
-            try {
-                SignatureValidator.validate(signature, credential);
-            } catch (SignatureException ex) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
-                        ex, "empty", new Object[] {"SAML signature validation failed"});
+                BasicCredential credential = null;
+                if (sigSecurityToken.getX509Certificates() != null) {
+                    credential = new BasicX509Credential(sigSecurityToken.getX509Certificates()[0]);
+                } else if (sigSecurityToken.getPublicKey() != null) {
+                    credential = new BasicCredential(sigSecurityToken.getPublicKey());
+                } else {
+                    throw new WSSecurityException(
+                            WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity",
+                            new Object[] {"cannot get certificate or key"}
+                    );
+                }
+                try {
+                    SignatureValidator.validate(signature, credential);
+                } catch (SignatureException ex) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                            ex, "empty", new Object[] {"SAML signature validation failed"});
+                }
             }
         }
 
@@ -189,6 +205,10 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
 
         final SamlSecurityToken samlSecurityToken =
                 samlTokenValidator.validate(samlAssertionWrapper, subjectSecurityToken, tokenContext);
+        if (verifiedAssertionId != null && !verified) {
+            // The signature and trust in the signing credential have been verified successfully
+            verifiedAssertionCache.add(verifiedAssertionId, samlAssertionWrapper.getNotOnOrAfter());
+        }
 
         SecurityTokenProvider<InboundSecurityToken> subjectSecurityTokenProvider =
                 new SecurityTokenProvider<InboundSecurityToken>() {
@@ -18,7 +18,6 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
@@ -28,13 +27,18 @@ import javax.xml.stream.XMLStreamException;
 
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.jfr.JFRSupport;
+import org.apache.wss4j.common.jfr.SecurityHeaderEvent;
+import org.apache.wss4j.common.jfr.SecurityTokenEvent;
+import org.apache.wss4j.common.metrics.MetricsTimer;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.impl.SecurityHeaderHandlerRegistry;
 import org.apache.wss4j.stax.securityEvent.NoSecuritySecurityEvent;
 import org.apache.wss4j.stax.utils.WSSUtils;
 import org.apache.xml.security.exceptions.XMLSecurityException;
-import org.apache.xml.security.stax.config.SecurityHeaderHandlerMapper;
 import org.apache.xml.security.stax.ext.AbstractInputProcessor;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
 import org.apache.xml.security.stax.ext.XMLSecurityHeaderHandler;
@@ -55,10 +59,17 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
         org.slf4j.LoggerFactory.getLogger(SecurityHeaderInputProcessor.class);
 
     private final ArrayDeque<XMLSecEvent> xmlSecEventList = new ArrayDeque<>();
+    private final SecurityHeaderHandlerRegistry handlerRegistry;
     private int startIndexForProcessor;
 
     public SecurityHeaderInputProcessor(WSSSecurityProperties securityProperties) {
+        this(securityProperties, SecurityHeaderHandlerRegistry.getDefault());
+    }
+
+    public SecurityHeaderInputProcessor(WSSSecurityProperties securityProperties,
+                                        SecurityHeaderHandlerRegistry handlerRegistry) {
         super(securityProperties);
+        this.handlerRegistry = handlerRegistry;
         setPhase(WSSConstants.Phase.POSTPROCESSING);
     }
 
@@ -71,6 +82,31 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
     @Override
     public XMLSecEvent processEvent(InputProcessorChain inputProcessorChain)
             throws XMLStreamException, XMLSecurityException {
+        SecurityHeaderEvent event = JFRSupport.isAvailable() ? new SecurityHeaderEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        MetricsTimer timer =
+            MetricsTimer.start(((WSSSecurityProperties) getSecurityProperties()).getSecurityMetrics(),
+                               SecurityMetrics.Stage.SECURITY_HEADER, WSSConstants.TAG_WSSE_SECURITY.getLocalPart());
+        boolean success = false;
+        try {
+            XMLSecEvent xmlSecEvent = processSecurityHeader(inputProcessorChain);
+            success = true;
+            return xmlSecEvent;
+        } finally {
+            timer.stop(success);
+            if (event != null && event.shouldCommit()) {
+                event.actor = ((WSSSecurityProperties) getSecurityProperties()).getActor();
+                event.streaming = true;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+    private XMLSecEvent processSecurityHeader(InputProcessorChain inputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
 
         //buffer all events until the end of the security header
         final InputProcessorChain subInputProcessorChain = inputProcessorChain.createSubChain(this);
@@ -200,7 +236,6 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
         return xmlSecEventList.pollLast();
     }
 
-    @SuppressWarnings("unchecked")
     private void engageSecurityHeaderHandler(InputProcessorChain inputProcessorChain,
                                              XMLSecurityProperties securityProperties,
                                              Deque<XMLSecEvent> eventQueue,
@@ -208,21 +243,34 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
                                              QName elementName)
             throws WSSecurityException, XMLStreamException {
 
-        Class<XMLSecurityHeaderHandler> clazz =
-            (Class<XMLSecurityHeaderHandler>)SecurityHeaderHandlerMapper.getSecurityHeaderHandler(elementName);
-        if (clazz == null) {
+        XMLSecurityHeaderHandler xmlSecurityHeaderHandler = handlerRegistry.getHandler(elementName);
+        if (xmlSecurityHeaderHandler == null) {
             LOG.warn("No matching handler found for " + elementName);
             return;
         }
+        SecurityTokenEvent event = JFRSupport.isAvailable() ? new SecurityTokenEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        MetricsTimer timer =
+            MetricsTimer.start(((WSSSecurityProperties) securityProperties).getSecurityMetrics(),
+                               SecurityMetrics.Stage.TOKEN, elementName.getLocalPart());
+        boolean success = false;
         try {
-            XMLSecurityHeaderHandler xmlSecurityHeaderHandler = clazz.getDeclaredConstructor().newInstance();
             xmlSecurityHeaderHandler.handle(inputProcessorChain, securityProperties, eventQueue, index);
-        } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+            success = true;
         } catch (WSSecurityException e) {
             throw e;
         } catch (XMLSecurityException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+        } finally {
+            timer.stop(success);
+            if (event != null && event.shouldCommit()) {
+                event.token = elementName.getLocalPart();
+                event.streaming = true;
+                event.success = success;
+                event.commit();
+            }
         }
     }
 
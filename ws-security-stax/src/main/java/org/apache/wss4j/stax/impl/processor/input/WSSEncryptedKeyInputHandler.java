@@ -18,12 +18,15 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
+import java.util.Base64;
+
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.ReferenceType;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.xml.security.binding.xmldsig.KeyInfoType;
 import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
@@ -33,6 +36,10 @@ import org.apache.xml.security.stax.ext.InputProcessorChain;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.processor.input.XMLEncryptedKeyInputHandler;
+import org.apache.xml.security.stax.impl.securityToken.AbstractSecurityToken;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
+import org.apache.xml.security.utils.XMLUtils;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 
@@ -64,6 +71,34 @@ public class WSSEncryptedKeyInputHandler extends XMLEncryptedKeyInputHandler {
         }
 
         super.handle(inputProcessorChain, encryptedKeyType, responsibleXMLSecStartXMLEvent, securityProperties);
+
+        // The EncryptedKeySHA1 identifier is needed up front to look up a cached session key, before the
+        // token would otherwise compute it when unwrapping the key
+        if (((WSSSecurityProperties) securityProperties).getEncryptedKeyCache() != null) {
+            String sha1Identifier = getEncryptedKeySHA1(encryptedKeyType);
+            SecurityTokenProvider<? extends InboundSecurityToken> securityTokenProvider =
+                inputProcessorChain.getSecurityContext().getSecurityTokenProvider(encryptedKeyType.getId());
+            if (sha1Identifier != null && securityTokenProvider != null
+                && securityTokenProvider.getSecurityToken() instanceof AbstractSecurityToken) {
+                ((AbstractSecurityToken) securityTokenProvider.getSecurityToken()).setSha1Identifier(sha1Identifier);
+            }
+        }
+    }
+
+    private static String getEncryptedKeySHA1(EncryptedKeyType encryptedKeyType) throws XMLSecurityException {
+        if (encryptedKeyType.getCipherData() == null || encryptedKeyType.getCipherData().getCipherValue() == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Object obj : encryptedKeyType.getCipherData().getCipherValue().getContent()) {
+            if (!(obj instanceof String)) {
+                // The key bytes are stored in an attachment
+                return null;
+            }
+            sb.append((String) obj);
+        }
+        byte[] encryptedKeyBytes = Base64.getMimeDecoder().decode(sb.toString());
+        return XMLUtils.encodeToString(KeyUtils.generateDigest(encryptedKeyBytes));
     }
 
     //if this EncryptedKey structure contains a reference list, instantiate a new DecryptInputProcessor
@@ -38,6 +38,7 @@ import javax.xml.stream.XMLStreamException;
 import org.apache.wss4j.binding.wss10.TransformationParametersType;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.ReplayCacheUtils;
 import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
@@ -307,13 +308,14 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
     private void detectReplayAttack(InputProcessorChain inputProcessorChain) throws WSSecurityException {
         TimestampSecurityEvent timestampSecurityEvent =
                 inputProcessorChain.getSecurityContext().get(WSSConstants.PROP_TIMESTAMP_SECURITYEVENT);
-        ReplayCache replayCache =   //NOPMD
-            ((WSSSecurityProperties)getSecurityProperties()).getTimestampReplayCache();
+        WSSSecurityProperties securityProperties = (WSSSecurityProperties)getSecurityProperties();
+        ReplayCache replayCache = securityProperties.getTimestampReplayCache();  //NOPMD
         if (timestampSecurityEvent != null && replayCache != null) {
             final String cacheKey =
                     timestampSecurityEvent.getCreated().get(ChronoField.MILLI_OF_SECOND)
                     + "" + Arrays.hashCode(getSignatureType().getSignatureValue().getValue());
-            if (replayCache.contains(cacheKey)) {
+            if (ReplayCacheUtils.contains(replayCache, cacheKey, "Timestamp",
+                                          securityProperties.getSecurityMetrics())) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
             }
 
@@ -30,6 +30,7 @@ import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamException;
 
+import org.apache.wss4j.common.cache.OutboundSamlAssertionCache;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -81,18 +82,25 @@ public class SAMLTokenOutputProcessor extends AbstractOutputProcessor {
         try {
             final SAMLCallback samlCallback = new SAMLCallback();
             SAMLUtil.doSAMLCallback(((WSSSecurityProperties) getSecurityProperties()).getSamlCallbackHandler(), samlCallback);
-            SamlAssertionWrapper samlAssertionWrapper = new SamlAssertionWrapper(samlCallback);
-
-            if (samlCallback.isSignAssertion()) {
-                samlAssertionWrapper.signAssertion(
-                        samlCallback.getIssuerKeyName(),
-                        samlCallback.getIssuerKeyPassword(),
-                        samlCallback.getIssuerCrypto(),
-                        samlCallback.isSendKeyValue(),
-                        samlCallback.getCanonicalizationAlgorithm(),
-                        samlCallback.getSignatureAlgorithm(),
-                        samlCallback.getSignatureDigestAlgorithm()
-                );
+
+            SamlAssertionWrapper samlAssertionWrapper;
+            OutboundSamlAssertionCache assertionCache =
+                ((WSSSecurityProperties) getSecurityProperties()).getOutboundSamlAssertionCache();
+            if (assertionCache != null) {
+                samlAssertionWrapper = assertionCache.getAssertion(samlCallback);
+            } else {
+                samlAssertionWrapper = new SamlAssertionWrapper(samlCallback);
+                if (samlCallback.isSignAssertion()) {
+                    samlAssertionWrapper.signAssertion(
+                            samlCallback.getIssuerKeyName(),
+                            samlCallback.getIssuerKeyPassword(),
+                            samlCallback.getIssuerCrypto(),
+                            samlCallback.isSendKeyValue(),
+                            samlCallback.getCanonicalizationAlgorithm(),
+                            samlCallback.getSignatureAlgorithm(),
+                            samlCallback.getSignatureDigestAlgorithm()
+                    );
+                }
             }
 
             boolean senderVouches = false;
@@ -18,14 +18,12 @@
  */
 package org.apache.wss4j.stax.impl.processor.output;
 
-import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Deque;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -53,11 +51,23 @@ import org.apache.xml.security.stax.impl.processor.output.FinalOutputProcessor;
  */
 public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
 
-    private final Map<XMLSecurityConstants.Action, Map<SecurityHeaderOrder, Deque<XMLSecEvent>>> actionEventMap =
-            new LinkedHashMap<>();
+    private static final Comparator<BufferedHeader> SIGNATURE_LAST = new Comparator<BufferedHeader>() {
+        @Override
+        public int compare(BufferedHeader o1, BufferedHeader o2) {
+            return Boolean.compare(o1.isSignature(), o2.isSignature());
+        }
+    };
+
+    /**
+     * The headers of each action, in reverse order of the actions. The events of all of the headers
+     * are buffered in a single array, and each header refers to its range of it.
+     */
+    private final Map<XMLSecurityConstants.Action, List<BufferedHeader>> actionHeaderMap = new LinkedHashMap<>();
 
+    private XMLSecEvent[] events = new XMLSecEvent[64];
+    private int eventCount;
     private int securityHeaderIndex;
-    private Deque<XMLSecEvent> currentDeque;
+    private BufferedHeader currentHeader;
 
     public SecurityHeaderReorderProcessor() throws XMLSecurityException {
         super();
@@ -71,18 +81,7 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
 
         List<XMLSecurityConstants.Action> outActions = getSecurityProperties().getActions();
         for (int i = outActions.size() - 1; i >= 0; i--) {
-            XMLSecurityConstants.Action outAction = outActions.get(i);
-            actionEventMap.put(outAction, new TreeMap<SecurityHeaderOrder, Deque<XMLSecEvent>>(new Comparator<SecurityHeaderOrder>() {
-                @Override
-                public int compare(SecurityHeaderOrder o1, SecurityHeaderOrder o2) {
-                    if (WSSConstants.TAG_dsig_Signature.equals(o1.getSecurityHeaderElementName())) {
-                        return 1;
-                    } else if (WSSConstants.TAG_dsig_Signature.equals(o2.getSecurityHeaderElementName())) {
-                        return -1;
-                    }
-                    return 1;
-                }
-            }));
+            actionHeaderMap.put(outActions.get(i), new ArrayList<>());
         }
     }
 
@@ -103,29 +102,21 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
             if (xmlSecEvent.isEndElement() && xmlSecEvent.asEndElement().getName().equals(WSSConstants.TAG_WSSE_SECURITY)) {
                 OutputProcessorChain subOutputProcessorChain = outputProcessorChain.createSubChain(this);
 
-                Iterator<Map.Entry<XMLSecurityConstants.Action, Map<SecurityHeaderOrder, Deque<XMLSecEvent>>>> iterator =
-                    actionEventMap.entrySet().iterator();
-                loop:
-                while (iterator.hasNext()) {
-                    Map.Entry<XMLSecurityConstants.Action, Map<SecurityHeaderOrder, Deque<XMLSecEvent>>> next = iterator.next();
+                // Within an action, the Signatures are output after the other headers
+                for (List<BufferedHeader> headers : actionHeaderMap.values()) {
+                    headers.sort(SIGNATURE_LAST);
+                }
 
+                loop:
+                for (List<BufferedHeader> headers : actionHeaderMap.values()) {
                     boolean encryptAction = false;
-                    Iterator<Map.Entry<SecurityHeaderOrder, Deque<XMLSecEvent>>> entryIterator = next.getValue().entrySet().iterator();
-                    while (entryIterator.hasNext()) {
-                        Map.Entry<SecurityHeaderOrder, Deque<XMLSecEvent>> entry = entryIterator.next();
+                    for (BufferedHeader header : headers) {
                         //output all non encrypted headers until...
-                        if (!entry.getKey().isEncrypted()) {
-                            Deque<XMLSecEvent> xmlSecEvents = entry.getValue();
-                            while (!xmlSecEvents.isEmpty()) {
-                                XMLSecEvent event = xmlSecEvents.pop();
-                                subOutputProcessorChain.reset();
-                                subOutputProcessorChain.processEvent(event);
-                            }
-                            //remove the actual header so that it won't be output twice in the loop below
-                            entryIterator.remove();
+                        if (!header.securityHeaderOrder.isEncrypted()) {
+                            outputHeader(header, subOutputProcessorChain);
                         }
                         //... the action is encryption and...
-                        if (entry.getKey().getAction().getName().contains("Encrypt")) {
+                        if (header.securityHeaderOrder.getAction().getName().contains("Encrypt")) {
                             encryptAction = true;
                         }
                     }
@@ -135,20 +126,12 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
                     }
                 }
                 //...loop again over the headers and output the leftover headers
-                iterator = actionEventMap.entrySet().iterator();
-                while (iterator.hasNext()) {
-                    Map.Entry<XMLSecurityConstants.Action, Map<SecurityHeaderOrder, Deque<XMLSecEvent>>> next = iterator.next();
-                    Iterator<Map.Entry<SecurityHeaderOrder, Deque<XMLSecEvent>>> entryIterator = next.getValue().entrySet().iterator();
-                    while (entryIterator.hasNext()) {
-                        Map.Entry<SecurityHeaderOrder, Deque<XMLSecEvent>> entry = entryIterator.next();
-                        Deque<XMLSecEvent> xmlSecEvents = entry.getValue();
-                        while (!xmlSecEvents.isEmpty()) {
-                            XMLSecEvent event = xmlSecEvents.pop();
-                            subOutputProcessorChain.reset();
-                            subOutputProcessorChain.processEvent(event);
-                        }
+                for (List<BufferedHeader> headers : actionHeaderMap.values()) {
+                    for (BufferedHeader header : headers) {
+                        outputHeader(header, subOutputProcessorChain);
                     }
                 }
+                events = null;
                 outputProcessorChain.removeProcessor(this);
             }
             outputProcessorChain.processEvent(xmlSecEvent);
@@ -168,12 +151,49 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
                                 + " but got " + xmlSecStartElement.getName()});
             }
 
-            Map<SecurityHeaderOrder, Deque<XMLSecEvent>> map = actionEventMap.get(securityHeaderOrder.getAction());
-            currentDeque = new ArrayDeque<>();
-            map.put(securityHeaderOrder, currentDeque);
+            currentHeader = new BufferedHeader(securityHeaderOrder, eventCount);
+            actionHeaderMap.get(securityHeaderOrder.getAction()).add(currentHeader);
 
             securityHeaderIndex++;
         }
-        currentDeque.offer(xmlSecEvent);
+        if (eventCount == events.length) {
+            events = Arrays.copyOf(events, eventCount * 2);
+        }
+        events[eventCount++] = xmlSecEvent;
+        currentHeader.end = eventCount;
+    }
+
+    private void outputHeader(BufferedHeader header, OutputProcessorChain subOutputProcessorChain)
+        throws XMLStreamException, XMLSecurityException {
+        if (header.output) {
+            return;
+        }
+        //mark the header as output so that it won't be output twice
+        header.output = true;
+        for (int i = header.start; i < header.end; i++) {
+            XMLSecEvent event = events[i];
+            events[i] = null;
+            subOutputProcessorChain.reset();
+            subOutputProcessorChain.processEvent(event);
+        }
+    }
+
+    /**
+     * A security header, whose events are buffered in the range [start, end) of the event array
+     */
+    private static final class BufferedHeader {
+        private final SecurityHeaderOrder securityHeaderOrder;
+        private final int start;
+        private int end;
+        private boolean output;
+
+        BufferedHeader(SecurityHeaderOrder securityHeaderOrder, int start) {
+            this.securityHeaderOrder = securityHeaderOrder;
+            this.start = start;
+        }
+
+        boolean isSignature() {
+            return WSSConstants.TAG_dsig_Signature.equals(securityHeaderOrder.getSecurityHeaderElementName());
+        }
     }
 }
@@ -36,6 +36,7 @@ import javax.security.auth.login.LoginException;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosClientExceptionAction;
+import org.apache.wss4j.common.kerberos.KerberosClientSubjectCache;
 import org.apache.wss4j.common.kerberos.KerberosContext;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -46,6 +47,7 @@ import org.apache.xml.security.stax.impl.securityToken.GenericOutboundSecurityTo
 public class KerberosClientSecurityToken extends GenericOutboundSecurityToken {
 
     private CallbackHandler callbackHandler;
+    private KerberosClientSubjectCache kerberosClientSubjectCache;
     private Key secretKey;
     private byte[] ticket;
 
@@ -56,8 +58,14 @@ public class KerberosClientSecurityToken extends GenericOutboundSecurityToken {
     }
 
     public KerberosClientSecurityToken(CallbackHandler callbackHandler, String id) {
+        this(callbackHandler, null, id);
+    }
+
+    public KerberosClientSecurityToken(CallbackHandler callbackHandler,
+                                       KerberosClientSubjectCache kerberosClientSubjectCache, String id) {
         super(id, WSSecurityTokenConstants.KERBEROS_TOKEN);
         this.callbackHandler = callbackHandler;
+        this.kerberosClientSubjectCache = kerberosClientSubjectCache;
     }
 
     private void getTGT() throws WSSecurityException {
@@ -72,10 +80,16 @@ public class KerberosClientSecurityToken extends GenericOutboundSecurityToken {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "kerberosCallbackServiceNameNotSupplied");
             }
 
-            LoginContext loginContext = new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
-            loginContext.login();
+            Subject clientSubject;
+            if (kerberosClientSubjectCache != null) {
+                clientSubject =
+                    kerberosClientSubjectCache.getSubject(contextAndServiceNameCallback.getContextName(), callbackHandler);
+            } else {
+                LoginContext loginContext = new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
+                loginContext.login();
+                clientSubject = loginContext.getSubject();
+            }
 
-            Subject clientSubject = loginContext.getSubject();
             Set<Principal> clientPrincipals = clientSubject.getPrincipals();
             if (clientPrincipals.isEmpty()) {
                 throw new WSSecurityException(
@@ -84,9 +98,6 @@ public class KerberosClientSecurityToken extends GenericOutboundSecurityToken {
                     new Object[] {"No Client principals found after login"}
                 );
             }
-            // Store the TGT
-            KerberosTicket tgt = getKerberosTicket(clientSubject, null);
-
             // Get the service ticket
             KerberosClientExceptionAction action =
                 new KerberosClientExceptionAction(clientPrincipals.iterator().next(),
@@ -102,7 +113,13 @@ public class KerberosClientSecurityToken extends GenericOutboundSecurityToken {
                 if (sessionKey != null) {
                     secretKey = new SecretKeySpec(sessionKey.getEncoded(), sessionKey.getAlgorithm());
                 } else {
-                    KerberosTicket serviceTicket = getKerberosTicket(clientSubject, tgt);
+                    KerberosTicket serviceTicket =
+                        KerberosClientSubjectCache.getServiceTicket(clientSubject,
+                                                                    contextAndServiceNameCallback.getServiceName(),
+                                                                    contextAndServiceNameCallback.isUsernameServiceNameForm());
+                    if (serviceTicket == null) {
+                        throw new WSSecurityException(ErrorCode.FAILURE, "kerberosServiceTicketError");
+                    }
                     secretKey = serviceTicket.getSessionKey();
                 }
 
@@ -122,24 +139,6 @@ public class KerberosClientSecurityToken extends GenericOutboundSecurityToken {
         }
     }
 
-    /**
-     * Get a KerberosTicket from the clientSubject parameter, that is not equal to the supplied KerberosTicket
-     * parameter (can be null)
-     */
-    private KerberosTicket getKerberosTicket(Subject clientSubject, KerberosTicket previousTicket) {
-        Set<KerberosTicket> privateCredentials = clientSubject.getPrivateCredentials(KerberosTicket.class);
-        if (privateCredentials == null || privateCredentials.isEmpty()) {
-            return null;
-        }
-
-        for (KerberosTicket privateCredential : privateCredentials) {
-            if (!privateCredential.equals(previousTicket)) {
-                return privateCredential;
-            }
-        }
-        return null;
-    }
-
     @Override
     public Key getSecretKey(String algorithmURI) throws XMLSecurityException {
         Key key = super.getSecretKey(algorithmURI);
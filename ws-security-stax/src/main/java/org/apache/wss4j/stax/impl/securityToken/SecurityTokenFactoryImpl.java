@@ -39,6 +39,7 @@ import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.JCAEnginePool;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -73,6 +74,10 @@ import org.apache.xml.security.utils.XMLUtils;
  */
 public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
 
+    // The recursion counter is kept per (message scoped) security context rather than per thread,
+    // so that it does not depend on the identity of the (possibly virtual) processing thread
+    private static final String INVOKE_COUNT_KEY = SecurityTokenFactoryImpl.class.getName() + ".invokeCount";
+
     public SecurityTokenFactoryImpl() {
     }
 
@@ -174,7 +179,7 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
             }
             throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, "noKeyinfo");
         } finally {
-            inboundSecurityContext.remove("" + Thread.currentThread().hashCode());
+            inboundSecurityContext.remove(INVOKE_COUNT_KEY);
         }
     }
 
@@ -274,8 +279,8 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                     (WSInboundSecurityContext) inboundSecurityContext, crypto, callbackHandler, binaryContent,
                     securityTokenReferenceId, securityProperties);
         } else if (WSSConstants.NS_THUMBPRINT.equals(valueType)) {
-            try {
-                MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-1")) {
+                MessageDigest messageDigest = sha.get();
                 //first look if the token is included in the message (necessary for TokenInclusion policy)...
                 List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
                         inboundSecurityContext.getRegisteredSecurityTokenProviders();
@@ -305,7 +310,7 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         } else if (WSSConstants.NS_ENCRYPTED_KEY_SHA1.equals(valueType)) {
             return new EncryptedKeySha1SecurityTokenImpl(
                     (WSInboundSecurityContext) inboundSecurityContext, callbackHandler, keyIdentifierType.getValue(),
-                    securityTokenReferenceId);
+                    securityTokenReferenceId, securityProperties.getEncryptedKeyCache());
         } else if (WSSConstants.NS_SAML10_TYPE.equals(valueType) || WSSConstants.NS_SAML20_TYPE.equals(valueType)) {
             if (WSSConstants.NS_SAML20_TYPE.equals(valueType) && !WSSConstants.NS_SAML20_TOKEN_PROFILE_TYPE.equals(tokenType)) {
                 ((WSInboundSecurityContext) inboundSecurityContext).handleBSPRule(BSPRule.R6617);
@@ -333,9 +338,9 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                         WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE);
             }
 
-            try {
+            try (JCAEnginePool.Engine<MessageDigest> sha = JCAEnginePool.getMessageDigest("SHA-1")) {
                 //ok we have to find the token via digesting...
-                MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+                MessageDigest messageDigest = sha.get();
                 List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
                         inboundSecurityContext.getRegisteredSecurityTokenProviders();
                 for (int i = 0; i < securityTokenProviders.size(); i++) {
@@ -398,7 +403,7 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         //stored in the context. Otherwise we will abort now.
 
         //prevent recursive key reference DOS:
-        Integer invokeCount = inboundSecurityContext.<Integer>get("" + Thread.currentThread().hashCode());
+        Integer invokeCount = inboundSecurityContext.<Integer>get(INVOKE_COUNT_KEY);
         if (invokeCount == null) {
             invokeCount = 0;
         }
@@ -406,7 +411,7 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         if (invokeCount == 10) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN);
         }
-        inboundSecurityContext.put("" + Thread.currentThread().hashCode(), invokeCount);
+        inboundSecurityContext.put(INVOKE_COUNT_KEY, invokeCount);
 
         SecurityTokenProvider<? extends InboundSecurityToken> securityTokenProvider =
                 inboundSecurityContext.getSecurityTokenProvider(uri);
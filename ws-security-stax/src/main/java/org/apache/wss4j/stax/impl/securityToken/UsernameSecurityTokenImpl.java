@@ -18,6 +18,7 @@
  */
 package org.apache.wss4j.stax.impl.securityToken;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.security.Principal;
 
@@ -25,6 +26,7 @@ import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.Subject;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.principal.UsernameTokenPrincipal;
 import org.apache.wss4j.common.util.UsernameTokenUtil;
@@ -51,6 +53,7 @@ public class UsernameSecurityTokenImpl extends AbstractInboundSecurityToken impl
     private final WSInboundSecurityContext wsInboundSecurityContext;
     private Subject subject;
     private Principal principal;
+    private DerivedKeyCache derivedKeyCache;
 
     public UsernameSecurityTokenImpl(WSSConstants.UsernameTokenPasswordType usernameTokenPasswordType,  //NOPMD
                                      String username, String password, String createdTime, byte[] nonce,
@@ -125,7 +128,8 @@ public class UsernameSecurityTokenImpl extends AbstractInboundSecurityToken impl
         }
 
         int iterationCount = iteration != null ? iteration.intValue() : (int)DEFAULT_ITERATION;
-        return UsernameTokenUtil.generateDerivedKey(password, salt, iterationCount);
+        return UsernameTokenUtil.generateDerivedKey(username, password.getBytes(StandardCharsets.UTF_8), salt,
+                                                    iterationCount, derivedKeyCache);
     }
 
     @Override
@@ -200,6 +204,14 @@ public class UsernameSecurityTokenImpl extends AbstractInboundSecurityToken impl
         this.subject = subject;
     }
 
+    /**
+     * Set the cache used to look up a previously derived key for the same username, password,
+     * salt and iteration. The cache may be null.
+     */
+    public void setDerivedKeyCache(DerivedKeyCache derivedKeyCache) {
+        this.derivedKeyCache = derivedKeyCache;
+    }
+
     @Override
     public Subject getSubject() throws WSSecurityException {
         return subject;
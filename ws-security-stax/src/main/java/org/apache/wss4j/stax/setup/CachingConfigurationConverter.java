@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.setup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A bounded, thread-safe cache of the security engines created from a configuration Map. Creating
+ * a security engine converts the Map with the {@link ConfigurationConverter}, which loads
+ * CallbackHandlers and Crypto instances, compiles certificate constraint patterns and parses the
+ * secure parts, and then validates the result and applies the defaults to it with {@link WSSec}.
+ * Endpoints that are configured with the same Map for every message can use this class to do that
+ * work once per distinct configuration, instead of once per message.
+ *
+ * The configuration Map is copied and compared by value, so a Map that is modified after it was
+ * first passed in is treated as a new configuration. Values that are themselves mutable (for
+ * example a Properties object) are compared using their own equals method, and modifying them in
+ * place is not detected. Once the maximum number of entries is exceeded, the least recently used
+ * engines are evicted. The time of last use is only tracked to the nearest second, so eviction is
+ * approximate, but lookups do not contend on a lock.
+ */
+public class CachingConfigurationConverter {
+
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+
+    private static final long ACCESS_RESOLUTION = TimeUnit.SECONDS.toNanos(1L);
+
+    private final BoundedCache<Map<String, Object>, OutboundWSSec> outbound;
+    private final BoundedCache<InboundKey, InboundWSSec> inbound;
+
+    public CachingConfigurationConverter() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries The maximum number of configurations to hold for each kind of engine
+     */
+    public CachingConfigurationConverter(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+        }
+        outbound = new BoundedCache<>(maxEntries);
+        inbound = new BoundedCache<>(maxEntries);
+    }
+
+    /**
+     * Return an outbound security engine for the given configuration. The configuration is only
+     * converted and validated the first time it is seen.
+     *
+     * @throws WSSecurityException if the initialisation failed
+     * @throws org.apache.wss4j.stax.ext.WSSConfigurationException if the configuration is invalid
+     */
+    public OutboundWSSec getOutboundWSSec(Map<String, Object> config) throws WSSecurityException {
+        Map<String, Object> key = snapshot(config);
+        return outbound.get(key, () -> WSSec.getOutboundWSSec(ConfigurationConverter.convert(key)));
+    }
+
+    /**
+     * Return an inbound security engine for the given configuration. The configuration is only
+     * converted and validated, and the inbound pipeline only prepared, the first time it is seen.
+     *
+     * @throws WSSecurityException if the initialisation failed
+     * @throws org.apache.wss4j.stax.ext.WSSConfigurationException if the configuration is invalid
+     */
+    public InboundWSSec getInboundWSSec(Map<String, Object> config) throws WSSecurityException {
+        return getInboundWSSec(config, false, false);
+    }
+
+    /**
+     * Return an inbound security engine for the given configuration. The configuration is only
+     * converted and validated, and the inbound pipeline only prepared, the first time it is seen.
+     *
+     * @param config The configuration Map
+     * @param initiator Whether we are the message initiator or not
+     * @param returnSecurityError Whether to return the underlying security error or not
+     * @throws WSSecurityException if the initialisation failed
+     * @throws org.apache.wss4j.stax.ext.WSSConfigurationException if the configuration is invalid
+     */
+    public InboundWSSec getInboundWSSec(Map<String, Object> config, boolean initiator,
+                                        boolean returnSecurityError) throws WSSecurityException {
+        InboundKey key = new InboundKey(snapshot(config), initiator, returnSecurityError);
+        return inbound.get(key, () ->
+            WSSec.getInboundWSSec(ConfigurationConverter.convert(key.config), initiator, returnSecurityError));
+    }
+
+    public void clear() {
+        outbound.clear();
+        inbound.clear();
+    }
+
+    private static Map<String, Object> snapshot(Map<String, Object> config) {
+        if (config == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(new HashMap<>(config));
+    }
+
+    @FunctionalInterface
+    private interface Loader<V> {
+        V load() throws WSSecurityException;
+    }
+
+    /**
+     * A ConcurrentHashMap that evicts the least recently used entries once it holds more than the
+     * maximum number of entries. A value is created without holding a lock, so concurrent callers
+     * may create it more than once, but they all get the same instance.
+     */
+    private static final class BoundedCache<K, V> {
+        private final ConcurrentMap<K, CachedValue<V>> values = new ConcurrentHashMap<>();
+        private final ReentrantLock evictionLock = new ReentrantLock();
+        private final int maxEntries;
+
+        BoundedCache(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        V get(K key, Loader<V> loader) throws WSSecurityException {
+            CachedValue<V> cachedValue = values.get(key);
+            if (cachedValue != null) {
+                cachedValue.touch();
+                return cachedValue.value;
+            }
+            CachedValue<V> newValue = new CachedValue<>(loader.load());
+            cachedValue = values.putIfAbsent(key, newValue);
+            if (cachedValue != null) {
+                return cachedValue.value;
+            }
+            evict();
+            return newValue.value;
+        }
+
+        void clear() {
+            values.clear();
+        }
+
+        private void evict() {
+            if (values.size() <= maxEntries || !evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                while (values.size() > maxEntries) {
+                    // Take the access times first, as they may change while sorting
+                    List<EvictionCandidate<K, V>> candidates = new ArrayList<>(values.size());
+                    for (Map.Entry<K, CachedValue<V>> entry : values.entrySet()) {
+                        candidates.add(new EvictionCandidate<>(entry.getKey(), entry.getValue()));
+                    }
+                    candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+                    int excess = candidates.size() - maxEntries;
+                    for (int i = 0; i < excess; i++) {
+                        EvictionCandidate<K, V> candidate = candidates.get(i);
+                        values.remove(candidate.key, candidate.cachedValue);
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private static final class CachedValue<V> {
+        private final V value;
+        private volatile long lastAccess = System.nanoTime();
+
+        CachedValue(V value) {
+            this.value = value;
+        }
+
+        void touch() {
+            long now = System.nanoTime();
+            // Only write the shared field once per second, to keep lookups cheap
+            if (now - lastAccess > ACCESS_RESOLUTION) {
+                lastAccess = now;
+            }
+        }
+    }
+
+    private static final class EvictionCandidate<K, V> {
+        private final K key;
+        private final CachedValue<V> cachedValue;
+        private final long lastAccess;
+
+        EvictionCandidate(K key, CachedValue<V> cachedValue) {
+            this.key = key;
+            this.cachedValue = cachedValue;
+            this.lastAccess = cachedValue.lastAccess;
+        }
+    }
+
+    private static final class InboundKey {
+        private final Map<String, Object> config;
+        private final boolean initiator;
+        private final boolean returnSecurityError;
+
+        InboundKey(Map<String, Object> config, boolean initiator, boolean returnSecurityError) {
+            this.config = config;
+            this.initiator = initiator;
+            this.returnSecurityError = returnSecurityError;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof InboundKey)) {
+                return false;
+            }
+            InboundKey other = (InboundKey) obj;
+            return initiator == other.initiator && returnSecurityError == other.returnSecurityError
+                && config.equals(other.config);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(config, initiator, returnSecurityError);
+        }
+    }
+
+}
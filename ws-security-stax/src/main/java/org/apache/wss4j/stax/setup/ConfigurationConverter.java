@@ -31,12 +31,19 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSamlAssertionCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextTokenStore;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.JasyptPasswordEncryptor;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosClientSubjectCache;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.common.util.Loader;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSConstants.UsernameTokenPasswordType;
@@ -594,6 +601,21 @@ public final class ConfigurationConverter {
             properties.setSamlOneTimeUseReplayCache(samlOneTimeUseCache);
         }
 
+        parseInstance(config, ConfigurationConstants.ENCRYPTED_KEY_CACHE_INSTANCE,
+                      EncryptedKeyCache.class, properties);
+        parseInstance(config, ConfigurationConstants.VERIFIED_SAML_ASSERTION_CACHE_INSTANCE,
+                      VerifiedSamlAssertionCache.class, properties);
+        parseInstance(config, ConfigurationConstants.OUTBOUND_SAML_ASSERTION_CACHE_INSTANCE,
+                      OutboundSamlAssertionCache.class, properties);
+        parseInstance(config, ConfigurationConstants.SECURITY_METRICS_INSTANCE,
+                      SecurityMetrics.class, properties);
+        parseInstance(config, ConfigurationConstants.SECURITY_CONTEXT_TOKEN_STORE_INSTANCE,
+                      SecurityContextTokenStore.class, properties);
+        parseInstance(config, ConfigurationConstants.DERIVED_KEY_CACHE_INSTANCE,
+                      DerivedKeyCache.class, properties);
+        parseInstance(config, ConfigurationConstants.KERBEROS_CLIENT_SUBJECT_CACHE_INSTANCE,
+                      KerberosClientSubjectCache.class, properties);
+
         String derivedSignatureKeyLength = getString(ConfigurationConstants.DERIVED_SIGNATURE_KEY_LENGTH, config);
         if (derivedSignatureKeyLength != null) {
             int sigLength = Integer.parseInt(derivedSignatureKeyLength);
@@ -706,6 +728,19 @@ public final class ConfigurationConverter {
         return null;
     }
 
+    /**
+     * Set the instance of the given type that is configured under the given key (if any) on the
+     * WSSSecurityProperties
+     */
+    private static <T> void parseInstance(
+        Map<String, Object> config, String key, Class<T> type, WSSSecurityProperties properties
+    ) {
+        T instance = type.cast(config.get(key));
+        if (instance != null) {
+            properties.setInstance(type, instance);
+        }
+    }
+
     private static int decodeTimeToLive(Map<String, Object> config, boolean timestamp) {
         String tag = ConfigurationConstants.TTL_TIMESTAMP;
         if (!timestamp) {
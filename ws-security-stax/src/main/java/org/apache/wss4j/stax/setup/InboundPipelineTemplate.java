@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.setup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.impl.InboundWSSecurityContextImpl;
+import org.apache.wss4j.stax.impl.SecurityHeaderHandlerRegistry;
+import org.apache.wss4j.stax.impl.processor.input.OperationInputProcessor;
+import org.apache.wss4j.stax.impl.processor.input.SecurityHeaderInputProcessor;
+import org.apache.wss4j.stax.impl.processor.input.SignatureConfirmationInputProcessor;
+import org.apache.xml.security.stax.ext.InputProcessor;
+import org.apache.xml.security.stax.impl.DocumentContextImpl;
+import org.apache.xml.security.stax.impl.InputProcessorChainImpl;
+import org.apache.xml.security.stax.impl.processor.input.XMLEventReaderInputProcessor;
+
+/**
+ * The static part of the inbound processing pipeline of an InboundWSSec, which is computed once
+ * from its (immutable) WSSSecurityProperties rather than for each message: the resolved
+ * configuration of the security context, the order of the InputProcessors in the chain, and the
+ * registry of SecurityHeaderHandlers. Setting up a message then only consists of creating the
+ * InputProcessors that hold per-message state, and placing them in the precomputed order.
+ */
+final class InboundPipelineTemplate {
+
+    /**
+     * The InputProcessors that hold per-message state, and so are created for each message
+     */
+    private enum MessageProcessor {
+        XML_EVENT_READER,
+        SECURITY_HEADER,
+        OPERATION,
+        SIGNATURE_CONFIRMATION
+    }
+
+    private final WSSSecurityProperties securityProperties;
+    private final List<BSPRule> ignoredBSPRules;
+    private final boolean disableBSPEnforcement;
+    private final boolean allowRSA15KeyTransportAlgorithm;
+    private final boolean soap12;
+    private final SecurityHeaderHandlerRegistry handlerRegistry = new SecurityHeaderHandlerRegistry();
+
+    /**
+     * The InputProcessors in chain order, each either a MessageProcessor that is created for each
+     * message, or a (configured) InputProcessor that is shared by all messages
+     */
+    private final Object[] processorOrder;
+
+    InboundPipelineTemplate(WSSSecurityProperties securityProperties) {
+        this.securityProperties = securityProperties;
+        this.ignoredBSPRules = Collections.unmodifiableList(new ArrayList<>(securityProperties.getIgnoredBSPRules()));
+        this.disableBSPEnforcement = securityProperties.isDisableBSPEnforcement();
+        this.allowRSA15KeyTransportAlgorithm = securityProperties.isAllowRSA15KeyTransportAlgorithm();
+        this.soap12 = securityProperties.isSoap12();
+        this.processorOrder = computeProcessorOrder();
+    }
+
+    /**
+     * Build a chain with prototypes of the InputProcessors to let it work out their order, which
+     * only depends on their classes and the phase and before/after processors they declare.
+     */
+    private Object[] computeProcessorOrder() {
+        List<InputProcessor> prototypes = new ArrayList<>();
+        List<MessageProcessor> prototypeKinds = new ArrayList<>();
+        for (MessageProcessor messageProcessor : MessageProcessor.values()) {
+            if (messageProcessor != MessageProcessor.SIGNATURE_CONFIRMATION
+                || securityProperties.isEnableSignatureConfirmationVerification()) {
+                prototypes.add(createProcessor(messageProcessor, null));
+                prototypeKinds.add(messageProcessor);
+            }
+        }
+
+        // Add them in the same order as they were added per message, as the order that the chain
+        // works out can depend on it
+        InputProcessorChainImpl prototypeChain =
+            new InputProcessorChainImpl(new InboundWSSecurityContextImpl(), new DocumentContextImpl());
+        for (InputProcessor prototype : prototypes) {
+            prototypeChain.addProcessor(prototype);
+        }
+        for (InputProcessor inputProcessor : securityProperties.getInputProcessorList()) {
+            prototypeChain.addProcessor(inputProcessor);
+        }
+
+        List<InputProcessor> orderedProcessors = prototypeChain.getProcessors();
+        Object[] order = new Object[orderedProcessors.size()];
+        for (int i = 0; i < order.length; i++) {
+            InputProcessor inputProcessor = orderedProcessors.get(i);
+            order[i] = inputProcessor;
+            for (int j = 0; j < prototypes.size(); j++) {
+                if (prototypes.get(j) == inputProcessor) {
+                    order[i] = prototypeKinds.get(j);
+                }
+            }
+        }
+        return order;
+    }
+
+    private InputProcessor createProcessor(MessageProcessor messageProcessor, XMLStreamReader xmlStreamReader) {
+        switch (messageProcessor) {
+        case XML_EVENT_READER:
+            return new XMLEventReaderInputProcessor(securityProperties, xmlStreamReader);
+        case SECURITY_HEADER:
+            return new SecurityHeaderInputProcessor(securityProperties, handlerRegistry);
+        case OPERATION:
+            return new OperationInputProcessor(securityProperties);
+        default:
+            return new SignatureConfirmationInputProcessor(securityProperties);
+        }
+    }
+
+    /**
+     * Apply the resolved configuration to the security context of a message
+     */
+    void configure(InboundWSSecurityContextImpl securityContext) {
+        securityContext.ignoredBSPRules(ignoredBSPRules);
+        securityContext.setDisableBSPEnforcement(disableBSPEnforcement);
+        securityContext.setAllowRSA15KeyTransportAlgorithm(allowRSA15KeyTransportAlgorithm);
+        securityContext.setSoap12(soap12);
+    }
+
+    /**
+     * Add the InputProcessors for a message to its (empty) chain, in the precomputed order
+     */
+    void populate(InputProcessorChainImpl inputProcessorChain, XMLStreamReader xmlStreamReader) {
+        List<InputProcessor> inputProcessors = inputProcessorChain.getProcessors();
+        for (Object processor : processorOrder) {
+            if (processor instanceof MessageProcessor) {
+                inputProcessors.add(createProcessor((MessageProcessor)processor, xmlStreamReader));
+            } else {
+                inputProcessors.add((InputProcessor)processor);
+            }
+        }
+    }
+
+}
@@ -34,16 +34,12 @@ import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.impl.InboundWSSecurityContextImpl;
 import org.apache.wss4j.stax.impl.WSSecurityStreamReader;
-import org.apache.wss4j.stax.impl.processor.input.OperationInputProcessor;
 import org.apache.wss4j.stax.impl.processor.input.SecurityHeaderInputProcessor;
-import org.apache.wss4j.stax.impl.processor.input.SignatureConfirmationInputProcessor;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.xml.security.exceptions.XMLSecurityException;
-import org.apache.xml.security.stax.ext.InputProcessor;
 import org.apache.xml.security.stax.impl.DocumentContextImpl;
 import org.apache.xml.security.stax.impl.InputProcessorChainImpl;
 import org.apache.xml.security.stax.impl.processor.input.LogInputProcessor;
-import org.apache.xml.security.stax.impl.processor.input.XMLEventReaderInputProcessor;
 import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
@@ -78,6 +74,7 @@ public class InboundWSSec {
     private final WSSSecurityProperties securityProperties;
     private final boolean initiator;
     private final boolean returnSecurityError;
+    private final InboundPipelineTemplate pipelineTemplate;
 
     public InboundWSSec(WSSSecurityProperties securityProperties) {
         this(securityProperties, false, false);
@@ -88,6 +85,7 @@ public class InboundWSSec {
         this.securityProperties = securityProperties;
         this.initiator = initiator;
         this.returnSecurityError = returnSecurityError;
+        this.pipelineTemplate = new InboundPipelineTemplate(securityProperties);
     }
 
     /**
@@ -192,10 +190,7 @@ public class InboundWSSec {
                 securityContextImpl.addSecurityEventListener(securityEventListener);
             }
         }
-        securityContextImpl.ignoredBSPRules(this.securityProperties.getIgnoredBSPRules());
-        securityContextImpl.setDisableBSPEnforcement(this.securityProperties.isDisableBSPEnforcement());
-        securityContextImpl.setAllowRSA15KeyTransportAlgorithm(this.securityProperties.isAllowRSA15KeyTransportAlgorithm());
-        securityContextImpl.setSoap12(this.securityProperties.isSoap12());
+        pipelineTemplate.configure(securityContextImpl);
 
         if (securityProperties.getDocumentCreator() == null) {
             try {
@@ -254,13 +249,7 @@ public class InboundWSSec {
         DocumentContextImpl documentContext = new DocumentContextImpl();
         documentContext.setEncoding(xmlStreamReader.getEncoding() != null ? xmlStreamReader.getEncoding() : StandardCharsets.UTF_8.name());
         InputProcessorChainImpl inputProcessorChain = new InputProcessorChainImpl(securityContextImpl, documentContext);
-        inputProcessorChain.addProcessor(new XMLEventReaderInputProcessor(securityProperties, xmlStreamReader));
-        inputProcessorChain.addProcessor(new SecurityHeaderInputProcessor(securityProperties));
-        inputProcessorChain.addProcessor(new OperationInputProcessor(securityProperties));
-
-        if (securityProperties.isEnableSignatureConfirmationVerification()) {
-            inputProcessorChain.addProcessor(new SignatureConfirmationInputProcessor(securityProperties));
-        }
+        pipelineTemplate.populate(inputProcessorChain, xmlStreamReader);
 
         if (LOG.isTraceEnabled()) {
             LogInputProcessor logInputProcessor = new LogInputProcessor(securityProperties);
@@ -268,15 +257,6 @@ public class InboundWSSec {
             inputProcessorChain.addProcessor(logInputProcessor);
         }
 
-        List<InputProcessor> additionalInputProcessors = securityProperties.getInputProcessorList();
-        if (!additionalInputProcessors.isEmpty()) {
-            Iterator<InputProcessor> inputProcessorIterator = additionalInputProcessors.iterator();
-            while (inputProcessorIterator.hasNext()) {
-                InputProcessor inputProcessor = inputProcessorIterator.next();
-                inputProcessorChain.addProcessor(inputProcessor);
-            }
-        }
-
         return new WSSecurityStreamReader(inputProcessorChain, securityProperties, initiator, returnSecurityError);
     }
 }
@@ -461,7 +461,8 @@ public class OutboundWSSec {
             kerberosId = id;
             final KerberosClientSecurityToken kerberosClientSecurityToken =
                     new KerberosClientSecurityToken(
-                        securityProperties.getCallbackHandler(), id
+                        securityProperties.getCallbackHandler(),
+                        securityProperties.getKerberosClientSubjectCache(), id
                     );
 
             final SecurityTokenProvider<OutboundSecurityToken> kerberosSecurityTokenProvider =
@@ -20,7 +20,6 @@ package org.apache.wss4j.stax.utils;
 
 import java.io.IOException;
 import java.security.Key;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
@@ -40,6 +39,7 @@ import javax.xml.stream.events.Attribute;
 
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.JCAEnginePool;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.securityEvent.DerivedKeyTokenSecurityEvent;
@@ -125,8 +125,12 @@ public class WSSUtils extends XMLSecurityUtils {
     }
 
     public static boolean isInSOAPHeader(XMLSecEvent xmlSecEvent) {
-        final List<QName> elementPath = xmlSecEvent.getElementPath();
-        return isInSOAPHeader(elementPath);
+        // Walk the (shared) parent elements rather than materializing the element path
+        if (xmlSecEvent.getDocumentLevel() > 1) {
+            final XMLSecStartElement secondLevelElement = xmlSecEvent.getStartElementAtLevel(2);
+            return isSOAPChild(secondLevelElement, WSSConstants.TAG_SOAP_HEADER_LN);
+        }
+        return false;
     }
 
     public static boolean isInSOAPHeader(List<QName> elementPath) {
@@ -139,8 +143,11 @@ public class WSSUtils extends XMLSecurityUtils {
     }
 
     public static boolean isInSOAPBody(XMLSecEvent xmlSecEvent) {
-        final List<QName> elementPath = xmlSecEvent.getElementPath();
-        return isInSOAPBody(elementPath);
+        if (xmlSecEvent.getDocumentLevel() > 1) {
+            final XMLSecStartElement secondLevelElement = xmlSecEvent.getStartElementAtLevel(2);
+            return isSOAPChild(secondLevelElement, WSSConstants.TAG_SOAP_BODY_LN);
+        }
+        return false;
     }
 
     public static boolean isInSOAPBody(List<QName> elementPath) {
@@ -153,8 +160,7 @@ public class WSSUtils extends XMLSecurityUtils {
     }
 
     public static boolean isInSecurityHeader(XMLSecEvent xmlSecEvent, String actorOrRole) {
-        final List<QName> elementPath = xmlSecEvent.getElementPath();
-        return isInSecurityHeader(xmlSecEvent, elementPath, actorOrRole);
+        return xmlSecEvent.getDocumentLevel() > 2 && isSecurityHeader(xmlSecEvent.getStartElementAtLevel(3), actorOrRole);
     }
 
     public static boolean isInSecurityHeader(XMLSecEvent xmlSecEvent, List<QName> elementPath, String actorOrRole) {
@@ -172,16 +178,28 @@ public class WSSUtils extends XMLSecurityUtils {
         if (!xmlSecEvent.isStartElement()) {
             return false;
         }
+        return xmlSecEvent.getDocumentLevel() == 3 && isSecurityHeader(xmlSecEvent.asStartElement(), actorOrRole);
+    }
 
-        final List<QName> elementPath = xmlSecEvent.getElementPath();
-        if (elementPath.size() == 3) {
-            final QName secondLevelElementName = elementPath.get(1);
-            return WSSConstants.TAG_WSSE_SECURITY.equals(elementPath.get(2))
-                    && isResponsibleActorOrRole(xmlSecEvent.getStartElementAtLevel(3), actorOrRole)
-                    && WSSConstants.TAG_SOAP_HEADER_LN.equals(secondLevelElementName.getLocalPart())
-                    && elementPath.get(0).getNamespaceURI().equals(secondLevelElementName.getNamespaceURI());
+    /**
+     * Whether the given third level element is the (responsible) wsse:Security header of the SOAP Header
+     */
+    private static boolean isSecurityHeader(XMLSecStartElement thirdLevelElement, String actorOrRole) {
+        if (!WSSConstants.TAG_WSSE_SECURITY.equals(thirdLevelElement.getName())) {
+            return false;
         }
-        return false;
+        return isSOAPChild(thirdLevelElement.getParentXMLSecStartElement(), WSSConstants.TAG_SOAP_HEADER_LN)
+            && isResponsibleActorOrRole(thirdLevelElement, actorOrRole);
+    }
+
+    /**
+     * Whether the given second level element has the given local name and the namespace of the SOAP Envelope
+     */
+    private static boolean isSOAPChild(XMLSecStartElement secondLevelElement, String localName) {
+        final QName secondLevelElementName = secondLevelElement.getName();
+        return localName.equals(secondLevelElementName.getLocalPart())
+            && secondLevelElement.getParentXMLSecStartElement().getName().getNamespaceURI().equals(
+                secondLevelElementName.getNamespaceURI());
     }
 
     public static boolean isResponsibleActorOrRole(XMLSecStartElement xmlSecStartElement, String responsibleActor) {
@@ -307,8 +325,7 @@ public class WSSUtils extends XMLSecurityUtils {
                                                                    WSSConstants.TAG_WSSE_KEY_IDENTIFIER,
                                                                    false, attributes);
         try {
-            MessageDigest sha = MessageDigest.getInstance("SHA-1");
-            byte[] data = sha.digest(x509Certificates[0].getEncoded());
+            byte[] data = JCAEnginePool.digest("SHA-1", x509Certificates[0].getEncoded());
             abstractOutputProcessor.createCharactersAndOutputAsEvent(outputProcessorChain,
                                                                      XMLUtils.encodeToString(data));
         } catch (CertificateEncodingException | NoSuchAlgorithmException e) {
@@ -322,8 +339,7 @@ public class WSSUtils extends XMLSecurityUtils {
             throws XMLStreamException, XMLSecurityException {
 
         try {
-            MessageDigest sha = MessageDigest.getInstance("SHA-1");
-            byte[] data = sha.digest(key.getEncoded());
+            byte[] data = JCAEnginePool.digest("SHA-1", key.getEncoded());
             createEncryptedKeySha1IdentifierStructure(abstractOutputProcessor, outputProcessorChain,
                                                       XMLUtils.encodeToString(data));
         } catch (NoSuchAlgorithmException e) {
@@ -22,8 +22,10 @@ import java.time.Instant;
 import java.util.List;
 
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.ReplayCacheUtils;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.common.saml.builder.SAML1Constants;
@@ -122,7 +124,8 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
 
         // Check OneTimeUse Condition
         checkOneTimeUse(samlAssertionWrapper,
-                        tokenContext.getWssSecurityProperties().getSamlOneTimeUseReplayCache());
+                        tokenContext.getWssSecurityProperties().getSamlOneTimeUseReplayCache(),
+                        tokenContext.getWssSecurityProperties().getSecurityMetrics());
 
         // Validate the assertion against schemas/profiles
         validateAssertion(samlAssertionWrapper);
@@ -244,6 +247,17 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
      */
     protected void checkOneTimeUse(
         SamlAssertionWrapper samlAssertion, ReplayCache replayCache
+    ) throws WSSecurityException {
+        checkOneTimeUse(samlAssertion, replayCache, null);
+    }
+
+    /**
+     * Check the "OneTimeUse" Condition of the Assertion. If this is set then the Assertion
+     * is cached (if a cache is defined), and must not have been previously cached. The replay
+     * cache lookup is reported to the given SecurityMetrics instance (if any).
+     */
+    protected void checkOneTimeUse(
+        SamlAssertionWrapper samlAssertion, ReplayCache replayCache, SecurityMetrics metrics
     ) throws WSSecurityException {
         if (replayCache != null
             && samlAssertion.getSamlVersion().equals(SAMLVersion.VERSION_20)
@@ -251,7 +265,7 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
             && samlAssertion.getSaml2().getConditions().getOneTimeUse() != null) {
             String identifier = samlAssertion.getId();
 
-            if (replayCache.contains(identifier)) {
+            if (ReplayCacheUtils.contains(replayCache, identifier, "SAMLOneTimeUse", metrics)) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
@@ -271,7 +285,8 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
      * Validate the samlAssertion against schemas/profiles
      */
     protected void validateAssertion(SamlAssertionWrapper samlAssertion) throws WSSecurityException {
-        if (validateSignatureAgainstProfile) {
+        // An Assertion verified from the cache has already been validated against the profile
+        if (validateSignatureAgainstProfile && !samlAssertion.isVerifiedFromCache()) {
             samlAssertion.validateSignatureAgainstProfile();
         }
     }
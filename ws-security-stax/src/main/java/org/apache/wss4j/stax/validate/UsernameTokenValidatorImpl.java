@@ -153,6 +153,7 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
                 WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE);
         usernameSecurityToken.setElementPath(tokenContext.getElementPath());
         usernameSecurityToken.setXMLSecEvent(tokenContext.getFirstXMLSecEvent());
+        usernameSecurityToken.setDerivedKeyCache(tokenContext.getWssSecurityProperties().getDerivedKeyCache());
 
         @SuppressWarnings("unchecked")
         T token = (T)usernameSecurityToken;
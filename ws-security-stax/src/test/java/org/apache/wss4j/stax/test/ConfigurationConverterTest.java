@@ -22,11 +22,16 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.kerberos.KerberosClientSubjectCache;
+import org.apache.wss4j.common.metrics.MemorySecurityMetrics;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSConstants.UsernameTokenPasswordType;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.wss4j.stax.setup.CachingConfigurationConverter;
 import org.apache.wss4j.stax.setup.ConfigurationConverter;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.OutboundWSSec;
 import org.apache.wss4j.stax.setup.WSSec;
 import org.apache.wss4j.stax.test.saml.SAMLCallbackHandlerImpl;
 import org.junit.jupiter.api.Test;
@@ -34,6 +39,9 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -263,4 +271,64 @@ public class ConfigurationConverterTest extends AbstractTestBase {
         WSSec.validateAndApplyDefaultsToInboundSecurityProperties(properties);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCachingConverter() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigurationConstants.ACTION, ConfigurationConstants.TIMESTAMP);
+        config.put(ConfigurationConstants.TTL_TIMESTAMP, "180");
+
+        CachingConfigurationConverter converter = new CachingConfigurationConverter();
+        OutboundWSSec outboundWSSec = converter.getOutboundWSSec(config);
+        assertSame(outboundWSSec, converter.getOutboundWSSec(config));
+        assertSame(outboundWSSec, converter.getOutboundWSSec(new HashMap<>(config)));
+        InboundWSSec inboundWSSec = converter.getInboundWSSec(config);
+        assertSame(inboundWSSec, converter.getInboundWSSec(config));
+        assertNotSame(inboundWSSec, converter.getInboundWSSec(config, true, false));
+
+        // A modified configuration is converted again
+        config.put(ConfigurationConstants.TTL_TIMESTAMP, "300");
+        assertNotSame(outboundWSSec, converter.getOutboundWSSec(config));
+        assertNotSame(inboundWSSec, converter.getInboundWSSec(config));
+    }
+
+    @Test
+    public void testCachingConverterEviction() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigurationConstants.ACTION, ConfigurationConstants.TIMESTAMP);
+        Map<String, Object> otherConfig = new HashMap<>(config);
+        otherConfig.put(ConfigurationConstants.TTL_TIMESTAMP, "180");
+
+        CachingConfigurationConverter converter = new CachingConfigurationConverter(1);
+        OutboundWSSec outboundWSSec = converter.getOutboundWSSec(config);
+        OutboundWSSec otherOutboundWSSec = converter.getOutboundWSSec(otherConfig);
+        assertSame(otherOutboundWSSec, converter.getOutboundWSSec(otherConfig));
+
+        // The first configuration was evicted when the second one was added
+        assertNotSame(outboundWSSec, converter.getOutboundWSSec(config));
+
+        converter.clear();
+        assertNotSame(otherOutboundWSSec, converter.getOutboundWSSec(otherConfig));
+    }
+
+    @Test
+    public void testCacheInstances() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigurationConstants.ACTION, ConfigurationConstants.TIMESTAMP);
+        MemorySecurityMetrics securityMetrics = new MemorySecurityMetrics();
+        config.put(ConfigurationConstants.SECURITY_METRICS_INSTANCE, securityMetrics);
+        KerberosClientSubjectCache kerberosClientSubjectCache = new KerberosClientSubjectCache();
+        config.put(ConfigurationConstants.KERBEROS_CLIENT_SUBJECT_CACHE_INSTANCE, kerberosClientSubjectCache);
+
+        WSSSecurityProperties properties = ConfigurationConverter.convert(config);
+        assertSame(securityMetrics, properties.getSecurityMetrics());
+        assertSame(kerberosClientSubjectCache, properties.getInstance(KerberosClientSubjectCache.class));
+        assertNull(properties.getEncryptedKeyCache());
+
+        WSSSecurityProperties copy = new WSSSecurityProperties(properties);
+        assertSame(securityMetrics, copy.getSecurityMetrics());
+        copy.setSecurityMetrics(null);
+        assertNull(copy.getSecurityMetrics());
+        assertSame(securityMetrics, properties.getSecurityMetrics());
+    }
+
+}
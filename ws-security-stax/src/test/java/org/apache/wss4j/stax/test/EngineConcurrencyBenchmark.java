@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.wss4j.common.util.ThreadBenchmark;
+import org.apache.wss4j.dom.handler.WSHandlerConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the throughput of processing a signed and timestamped message with a single InboundWSSec
+ * on a platform thread pool and on virtual threads, and reports where the virtual threads are pinned
+ * to their carrier threads. It is run via the "benchmark" profile (see ThreadBenchmark), e.g. on
+ * JDK 21:
+ *
+ * <pre>
+ * mvn test -Pbenchmark -pl ws-security-stax -Dtest=EngineConcurrencyBenchmark
+ *     -Dwss4j.benchmark.argLine=-Djdk.tracePinnedThreads=full
+ * </pre>
+ */
+public class EngineConcurrencyBenchmark extends AbstractTestBase {
+
+    private static final int TASKS = Integer.getInteger("wss4j.benchmark.tasks", 2000);
+    private static final int PLATFORM_THREADS = Integer.getInteger("wss4j.benchmark.threads", 50);
+
+    @Test
+    public void benchmark() throws Exception {
+        byte[] message = createSignedMessage();
+
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.loadSignatureVerificationKeystore(
+            this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+        InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+        Callable<Void> task = () -> {
+            List<SecurityEvent> securityEvents = new ArrayList<>();
+            XMLStreamReader xmlStreamReader =
+                xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(message));
+            xmlStreamReader = wsSecIn.processInMessage(xmlStreamReader, securityEvents, (SecurityEventListener)null);
+            while (xmlStreamReader.hasNext()) {
+                xmlStreamReader.next();
+            }
+            xmlStreamReader.close();
+            assertTrue(securityEvents.stream().anyMatch(
+                event -> event.getSecurityEventType() == SecurityEventConstants.SignatureValue));
+            return null;
+        };
+
+        ThreadBenchmark.run("StAX, " + PLATFORM_THREADS + " platform threads",
+                            () -> Executors.newFixedThreadPool(PLATFORM_THREADS), TASKS, task);
+        if (ThreadBenchmark.isVirtualThreadSupported()) {
+            ThreadBenchmark.run("StAX, virtual threads",
+                                ThreadBenchmark::newVirtualThreadPerTaskExecutor, TASKS, task);
+        }
+    }
+
+    private byte[] createSignedMessage() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (InputStream sourceDocument =
+                this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml")) {
+            String action = WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE;
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, new Properties());
+            TRANSFORMER_FACTORY.newTransformer().transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.wss4j.dom.handler.WSHandlerConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Processes a signed and timestamped message with a single InboundWSSec from a large number of
+ * concurrent tasks, on a platform thread pool and (where the JDK supports them) on virtual threads,
+ * and logs how long each run takes.
+ */
+public class EngineConcurrencyTest extends AbstractTestBase {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(EngineConcurrencyTest.class);
+
+    private static final int TASKS = 500;
+
+    @Test
+    public void testPlatformThreads() throws Exception {
+        processMessages("platform", Executors.newFixedThreadPool(50));
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Method factory = null;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            // Virtual threads are not supported by this JDK
+        }
+        assumeTrue(factory != null);
+        processMessages("virtual", (ExecutorService)factory.invoke(null));
+    }
+
+    private void processMessages(String threadType, ExecutorService executor) throws Exception {
+        byte[] message = createSignedMessage();
+
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.loadSignatureVerificationKeystore(
+            this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+        InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+        try {
+            long startTime = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(TASKS);
+            for (int i = 0; i < TASKS; i++) {
+                futures.add(executor.submit(() -> {
+                    List<SecurityEvent> securityEvents = new ArrayList<>();
+                    XMLStreamReader xmlStreamReader =
+                        xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(message));
+                    xmlStreamReader = wsSecIn.processInMessage(xmlStreamReader, securityEvents, (SecurityEventListener)null);
+                    while (xmlStreamReader.hasNext()) {
+                        xmlStreamReader.next();
+                    }
+                    xmlStreamReader.close();
+                    assertTrue(securityEvents.stream().anyMatch(
+                        event -> event.getSecurityEventType() == SecurityEventConstants.SignatureValue));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            LOG.info("{} messages on {} threads took {} ms", TASKS, threadType,
+                     TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private byte[] createSignedMessage() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (InputStream sourceDocument =
+                this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml")) {
+            String action = WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE;
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, new Properties());
+            TRANSFORMER_FACTORY.newTransformer().transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.test;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.impl.SecurityHeaderHandlerRegistry;
+import org.apache.wss4j.stax.impl.processor.input.TimestampInputHandler;
+import org.apache.wss4j.stax.impl.processor.input.UsernameTokenInputHandler;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.config.Init;
+import org.apache.xml.security.stax.ext.XMLSecurityHeaderHandler;
+import org.apache.xml.security.utils.ClassLoaderUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the SecurityHeaderHandlerRegistry
+ */
+public class SecurityHeaderHandlerRegistryTest {
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        Init.init(ClassLoaderUtils.getResource("wss/wss-config.xml", WSSec.class).toURI(), WSSec.class);
+    }
+
+    @Test
+    public void testSharedHandlers() throws Exception {
+        SecurityHeaderHandlerRegistry registry = new SecurityHeaderHandlerRegistry();
+
+        XMLSecurityHeaderHandler handler = registry.getHandler(WSSConstants.TAG_WSSE_USERNAME_TOKEN);
+        assertTrue(handler instanceof UsernameTokenInputHandler);
+        assertSame(handler, registry.getHandler(WSSConstants.TAG_WSSE_USERNAME_TOKEN));
+
+        assertTrue(registry.getHandler(WSSConstants.TAG_WSU_TIMESTAMP) instanceof TimestampInputHandler);
+    }
+
+    @Test
+    public void testUnknownElement() throws Exception {
+        SecurityHeaderHandlerRegistry registry = new SecurityHeaderHandlerRegistry();
+        QName unknown = new QName("urn:unknown", "Unknown");
+        assertNull(registry.getHandler(unknown));
+        assertNull(registry.getHandler(unknown));
+    }
+}
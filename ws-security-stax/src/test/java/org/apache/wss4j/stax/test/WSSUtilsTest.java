@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.wss4j.stax.utils.WSSUtils;
+import org.apache.wss4j.stax.test.utils.XMLSecEventAllocator;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the element path checks of WSSUtils, which walk the parent elements of an event
+ * rather than materializing its element path.
+ */
+public class WSSUtilsTest {
+
+    private static final String SOAP11_MSG =
+        "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+        + "<soap:Header>"
+        + "<wsse:Security soap:actor=\"other\" "
+        + "xmlns:wsse=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd\">"
+        + "<wsse:UsernameToken><wsse:Username>other</wsse:Username></wsse:UsernameToken>"
+        + "</wsse:Security>"
+        + "<wsse:Security "
+        + "xmlns:wsse=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd\">"
+        + "<wsu:Timestamp xmlns:wsu=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd\">"
+        + "<wsu:Created>2024-01-01T00:00:00Z</wsu:Created>"
+        + "</wsu:Timestamp>"
+        + "</wsse:Security>"
+        + "<ns:Other xmlns:ns=\"urn:other\">text</ns:Other>"
+        + "</soap:Header>"
+        + "<soap:Body><ns:add xmlns:ns=\"urn:counter\"><value>15</value></ns:add></soap:Body>"
+        + "</soap:Envelope>";
+
+    private static final String SOAP12_MSG =
+        "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\">"
+        + "<soap:Header>"
+        + "<wsse:Security soap:role=\"other\" "
+        + "xmlns:wsse=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd\">"
+        + "<wsse:UsernameToken><wsse:Username>other</wsse:Username></wsse:UsernameToken>"
+        + "</wsse:Security>"
+        + "</soap:Header>"
+        + "<soap:Body><ns:add xmlns:ns=\"urn:counter\"><value>15</value></ns:add></soap:Body>"
+        + "</soap:Envelope>";
+
+    @Test
+    public void testSoap11PathChecks() throws Exception {
+        List<XMLSecEvent> events = allocateEvents(SOAP11_MSG);
+        assertPathChecks(events, null);
+        assertPathChecks(events, "other");
+
+        XMLSecEvent timestamp = findStartElement(events, "Timestamp");
+        assertTrue(WSSUtils.isInSOAPHeader(timestamp));
+        assertFalse(WSSUtils.isInSOAPBody(timestamp));
+        assertTrue(WSSUtils.isInSecurityHeader(timestamp, null));
+        assertFalse(WSSUtils.isInSecurityHeader(timestamp, "other"));
+
+        XMLSecEvent value = findStartElement(events, "value");
+        assertTrue(WSSUtils.isInSOAPBody(value));
+        assertFalse(WSSUtils.isInSecurityHeader(value, null));
+    }
+
+    @Test
+    public void testSoap12PathChecks() throws Exception {
+        List<XMLSecEvent> events = allocateEvents(SOAP12_MSG);
+        assertPathChecks(events, null);
+        assertPathChecks(events, "other");
+
+        XMLSecEvent usernameToken = findStartElement(events, "UsernameToken");
+        assertTrue(WSSUtils.isInSecurityHeader(usernameToken, "other"));
+        assertFalse(WSSUtils.isInSecurityHeader(usernameToken, null));
+    }
+
+    /**
+     * The checks on an event must give the same answers as the checks on its element path
+     */
+    private static void assertPathChecks(List<XMLSecEvent> events, String actor) {
+        for (XMLSecEvent event : events) {
+            assertEquals(WSSUtils.isInSOAPHeader(event.getElementPath()), WSSUtils.isInSOAPHeader(event));
+            assertEquals(WSSUtils.isInSOAPBody(event.getElementPath()), WSSUtils.isInSOAPBody(event));
+            assertEquals(
+                WSSUtils.isInSecurityHeader(event, event.getElementPath(), actor),
+                WSSUtils.isInSecurityHeader(event, actor)
+            );
+            assertEquals(
+                event.isStartElement() && event.getElementPath().size() == 3
+                    && WSSUtils.isInSecurityHeader(event, event.getElementPath(), actor),
+                WSSUtils.isSecurityHeaderElement(event, actor)
+            );
+        }
+    }
+
+    private static XMLSecEvent findStartElement(List<XMLSecEvent> events, String localName) {
+        for (XMLSecEvent event : events) {
+            if (event.isStartElement() && localName.equals(event.asStartElement().getName().getLocalPart())) {
+                return event;
+            }
+        }
+        throw new AssertionError("No element " + localName);
+    }
+
+    private static List<XMLSecEvent> allocateEvents(String message) throws Exception {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(new StringReader(message));
+        XMLSecEventAllocator allocator = new XMLSecEventAllocator();
+        List<XMLSecEvent> events = new ArrayList<>();
+        while (xmlStreamReader.hasNext()) {
+            if (xmlStreamReader.next() != XMLStreamConstants.START_DOCUMENT) {
+                events.add((XMLSecEvent)allocator.allocate(xmlStreamReader));
+            }
+        }
+        return events;
+    }
+}